@@ -0,0 +1,115 @@
+package geotweetz.location.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geotweetz.location.estimation.FocalElementCombiner;
+import geotweetz.location.estimation.StandardCombinationRule;
+import geotweetz.location.type.FocalElementTable;
+import geotweetz.location.type.LocationIndex;
+import geotweetz.location.type.LocationSet;
+
+/**
+ * Benchmark for the combination kernel (FocalElementCombiner) with the Dubois-Prade rule and the other standard
+ * combination rules, which share the kernel and differ only in the handling of conflicting focal elements. Run it with
+ * the GC profiler (-prof gc) to see the allocation rate; after warm-up, gc.alloc.rate.norm is expected to be close to
+ * 0 B/op, since intersections and unions are calculated into scratch buffers and probability values are accumulated
+ * in reused FocalElementTables.
+ *
+ * @author oozdikis
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuboisPradeCombinationBenchmark {
+
+	/**
+	 * Number of cities in the frame of discernment.
+	 */
+	@Param({ "100", "1000" })
+	public int numberOfCities;
+
+	/**
+	 * Number of focal elements in each of the two BPAs.
+	 */
+	@Param({ "10", "100" })
+	public int numberOfFocalElements;
+
+	/**
+	 * Maximum number of cities in a focal element.
+	 */
+	@Param({ "1", "4" })
+	public int maximumFocalElementSize;
+
+	/**
+	 * Combination rule.
+	 */
+	@Param({ "DUBOIS_PRADE", "DEMPSTER", "YAGER", "PCR5" })
+	public StandardCombinationRule combinationRule;
+
+	private FocalElementTable bpas1;
+	private FocalElementTable bpas2;
+	private FocalElementTable combinedBpas;
+	private FocalElementCombiner combiner;
+
+	@Setup
+	public void setUp() {
+		List<Long> locationIds = new ArrayList<Long>();
+		for (long i = 1; i <= numberOfCities; i++) {
+			locationIds.add(i);
+		}
+		LocationIndex locationIndex = new LocationIndex(locationIds);
+		Random random = new Random(42);
+		bpas1 = generateRandomBpas(locationIndex, random);
+		bpas2 = generateRandomBpas(locationIndex, random);
+		combiner = new FocalElementCombiner(locationIndex.getNumberOfWords(),
+				LocationSet.allLocations(locationIndex).getWords());
+		combinedBpas = new FocalElementTable(locationIndex.getNumberOfWords());
+	}
+
+	@Benchmark
+	public int combine() {
+		combiner.combine(combinationRule, bpas1, bpas2, combinedBpas);
+		return combinedBpas.size();
+	}
+
+	private FocalElementTable generateRandomBpas(LocationIndex locationIndex, Random random) {
+		FocalElementTable bpas = new FocalElementTable(locationIndex.getNumberOfWords());
+		long[] locationsSet = new long[locationIndex.getNumberOfWords()];
+		while (bpas.size() < numberOfFocalElements - 1) {
+			Arrays.fill(locationsSet, 0L);
+			int focalElementSize = 1 + random.nextInt(maximumFocalElementSize);
+			for (int i = 0; i < focalElementSize; i++) {
+				int index = random.nextInt(numberOfCities);
+				locationsSet[index >>> 6] |= 1L << index;
+			}
+			bpas.addElementCount(locationsSet, 0, 1 + random.nextInt(5));
+		}
+		bpas.addElementCount(LocationSet.allLocations(locationIndex).getWords(), 0, numberOfFocalElements);
+		int totalElementCount = 0;
+		for (int element = 0; element < bpas.size(); element++) {
+			totalElementCount += bpas.getElementCount(element);
+		}
+		bpas.setProbabilityValuesFromElementCounts(totalElementCount);
+		return bpas;
+	}
+}
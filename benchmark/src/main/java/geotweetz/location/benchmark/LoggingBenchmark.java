@@ -0,0 +1,105 @@
+package geotweetz.location.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.estimation.LocationEstimator;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Benchmark for the throughput of location estimation for small clusters by concurrent threads, with debug and trace
+ * logging turned off, written synchronously to a file (as in config/log4j.properties), or written asynchronously
+ * through an AsyncAppender and a buffered file appender (as in config/log4j-async.xml). Small clusters are estimated,
+ * so that the cost of logging is a considerable part of the cost of an estimation. Asynchronous logging can only
+ * improve throughput if there is a spare core for the thread of the AsyncAppender.
+ *
+ * @author oozdikis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+	private static final String CONVERSION_PATTERN = "%d %p [%c] - %m%n";
+
+	/**
+	 * Number of tweets in the cluster.
+	 */
+	@Param({ "10", "100" })
+	public int clusterSize;
+
+	/**
+	 * Logging configuration: OFF (INFO level), SYNC or ASYNC (DEBUG level, TRACE for LocationEstimator).
+	 */
+	@Param({ "OFF", "SYNC", "ASYNC" })
+	public String logging;
+
+	private File logFile;
+	private LocationEstimator locationEstimator;
+	private List<TweetObservation> observationsInCluster;
+
+	@Setup
+	public void setUp() throws IOException {
+		logFile = File.createTempFile("location-estimation", ".log");
+		LogManager.resetConfiguration();
+		Logger rootLogger = Logger.getRootLogger();
+		FileAppender fileAppender = new FileAppender(new PatternLayout(CONVERSION_PATTERN), logFile.getPath(), false,
+				logging.equals("ASYNC"), 65536);
+		if (logging.equals("ASYNC")) {
+			AsyncAppender asyncAppender = new AsyncAppender();
+			asyncAppender.setBufferSize(8192);
+			asyncAppender.setBlocking(false);
+			asyncAppender.addAppender(fileAppender);
+			rootLogger.addAppender(asyncAppender);
+		} else {
+			rootLogger.addAppender(fileAppender);
+		}
+		rootLogger.setLevel(logging.equals("OFF") ? Level.INFO : Level.DEBUG);
+		Logger.getLogger(LocationEstimator.class).setLevel(logging.equals("OFF") ? null : Level.TRACE);
+
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+		List<CityDBO> cities = generator.generateCities(1000, 20);
+		observationsInCluster = TweetObservation.fromTweetDBOs(generator.generateCluster(cities, clusterSize, 3, 0.3));
+		locationEstimator = new LocationEstimator(cities);
+	}
+
+	@TearDown
+	public void tearDown() {
+		LogManager.shutdown();
+		logFile.delete();
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> estimateLocationForObservations() {
+		return locationEstimator.estimateLocationForObservations(observationsInCluster);
+	}
+}
@@ -0,0 +1,113 @@
+package geotweetz.location.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Benchmark that compares point-in-polygon throughput of plain JTS polygons (Point.within, as used by the linear scan
+ * in TweetLocationMapper before) and prepared polygons (PreparedGeometry.contains) for city boundaries with many
+ * vertices.
+ *
+ * @author oozdikis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointInPolygonBenchmark {
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+	private static final int NUMBER_OF_POINTS = 1024;
+
+	/**
+	 * Number of vertices on the boundary of the test polygon.
+	 */
+	@Param({ "100", "1000", "10000" })
+	public int numberOfVertices;
+
+	private Polygon polygon;
+	private PreparedGeometry preparedPolygon;
+	private Point[] points;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		polygon = generateIrregularPolygon(numberOfVertices, random);
+		preparedPolygon = PreparedGeometryFactory.prepare(polygon);
+		Envelope envelope = polygon.getEnvelopeInternal();
+		points = new Point[NUMBER_OF_POINTS];
+		for (int i = 0; i < NUMBER_OF_POINTS; i++) {
+			double x = envelope.getMinX() + random.nextDouble() * envelope.getWidth();
+			double y = envelope.getMinY() + random.nextDouble() * envelope.getHeight();
+			points[i] = GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_POINTS)
+	public int pointWithinPolygon() {
+		int numberOfPointsInPolygon = 0;
+		for (Point point : points) {
+			if (point.within(polygon)) {
+				numberOfPointsInPolygon++;
+			}
+		}
+		return numberOfPointsInPolygon;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_POINTS)
+	public int preparedPolygonContainsPoint() {
+		int numberOfPointsInPolygon = 0;
+		for (Point point : points) {
+			if (preparedPolygon.contains(point)) {
+				numberOfPointsInPolygon++;
+			}
+		}
+		return numberOfPointsInPolygon;
+	}
+
+	/**
+	 * Generates a star-shaped polygon with a jagged boundary, which resembles administrative boundaries better than
+	 * regular shapes.
+	 *
+	 * @param numberOfVertices
+	 *            number of distinct vertices on the boundary
+	 * @param random
+	 *            random number generator
+	 * @return generated polygon
+	 */
+	static Polygon generateIrregularPolygon(int numberOfVertices, Random random) {
+		Coordinate[] coordinates = new Coordinate[numberOfVertices + 1];
+		for (int i = 0; i < numberOfVertices; i++) {
+			double angle = 2 * Math.PI * i / numberOfVertices;
+			double radius = 1.0 + 0.3 * Math.sin(7 * angle) + 0.2 * random.nextDouble();
+			coordinates[i] = new Coordinate(radius * Math.cos(angle), radius * Math.sin(angle));
+		}
+		coordinates[numberOfVertices] = new Coordinate(coordinates[0]);
+		return GEOMETRY_FACTORY.createPolygon(GEOMETRY_FACTORY.createLinearRing(coordinates), null);
+	}
+}
@@ -0,0 +1,93 @@
+package geotweetz.location.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.estimation.LocationEstimator;
+import geotweetz.location.type.LocationCommonalityValue;
+
+/**
+ * Benchmark for the latency of location estimation for a single cluster, with evidence sources (lat-lon, content and
+ * user profile) processed one after another or concurrently.
+ *
+ * <p>
+ * Results on a host with a single vCPU (average ms per estimation, short runs), where the concurrent mode can not be
+ * faster since the pipelines share one core:
+ *
+ * <pre>
+ * tweets   sequential   concurrent
+ * 1000     2.0          2.3
+ * 10000    31           36
+ * 50000    ~800         ~1300 (very noisy, GC-bound)
+ * </pre>
+ *
+ * The concurrent mode has no measured benefit yet; it has to be measured on a multi-core host before it is enabled.
+ *
+ * @author oozdikis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleClusterLatencyBenchmark {
+
+	/**
+	 * Number of tweets in the cluster.
+	 */
+	@Param({ "1000", "10000", "50000" })
+	public int clusterSize;
+
+	/**
+	 * Whether the three evidence sources are processed concurrently.
+	 */
+	@Param({ "false", "true" })
+	public boolean concurrentEvidenceSources;
+
+	private ExecutorService evidenceSourceExecutor;
+	private LocationEstimator locationEstimator;
+	private List<TweetDBO> tweetsInCluster;
+
+	@Setup
+	public void setUp() {
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+		List<CityDBO> cities = generator.generateCities(1000, 100);
+		tweetsInCluster = generator.generateCluster(cities, clusterSize, 3, 0.3);
+		if (concurrentEvidenceSources) {
+			evidenceSourceExecutor = Executors.newFixedThreadPool(2);
+		}
+		locationEstimator = new LocationEstimator(cities, evidenceSourceExecutor);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (evidenceSourceExecutor != null) {
+			evidenceSourceExecutor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> estimateLocationForCluster() {
+		return locationEstimator.estimateLocationForCluster(tweetsInCluster);
+	}
+}
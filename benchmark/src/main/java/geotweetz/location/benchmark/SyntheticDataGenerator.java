@@ -0,0 +1,140 @@
+package geotweetz.location.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.dbo.TweetDBO;
+
+/**
+ * Generator of synthetic cities and tweet clusters for benchmarks. Cities are laid out on a grid of unit cells in
+ * latitude-longitude space, starting at (1, 1), and each city boundary is a jagged star-shaped polygon inside its cell.
+ * City i is named "city{i}". All data is generated from a seeded Random, so that a benchmark run can be reproduced
+ * offline.
+ *
+ * @author oozdikis
+ *
+ */
+public class SyntheticDataGenerator {
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private final Random random;
+
+	/**
+	 *
+	 * @param seed
+	 *            seed of the random number generator
+	 */
+	public SyntheticDataGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates cities on a grid.
+	 *
+	 * @param numberOfCities
+	 *            number of cities to generate
+	 * @param numberOfVertices
+	 *            number of vertices on the boundary of each city (polygon complexity)
+	 * @return generated cities with ids 1..numberOfCities
+	 */
+	public List<CityDBO> generateCities(int numberOfCities, int numberOfVertices) {
+		int gridSize = (int) Math.ceil(Math.sqrt(numberOfCities));
+		List<CityDBO> cities = new ArrayList<CityDBO>(numberOfCities);
+		for (int i = 0; i < numberOfCities; i++) {
+			CityDBO city = new CityDBO();
+			city.setId(i + 1);
+			city.setName("city" + (i + 1));
+			double centerLatitude = 1.5 + i / gridSize;
+			double centerLongitude = 1.5 + i % gridSize;
+			city.setBoundaryCoordinates(generateBoundary(centerLatitude, centerLongitude, numberOfVertices));
+			cities.add(city);
+		}
+		return cities;
+	}
+
+	/**
+	 * Generates a cluster of tweets about an event that happens in one of the given cities. Each tweet is geotagged
+	 * with the given probability, and it is posted in one of the candidate cities of the event (99%) or in a random
+	 * city. Tweet content mentions up to ambiguity cities among the candidate cities, or no city. The user profile
+	 * mentions a candidate city (30%), a random city (1%) or no city. Random cities are kept rare on purpose: each of
+	 * them is a separate focal element, and the number of combined focal elements grows with their product.
+	 *
+	 * @param cities
+	 *            all cities, as generated by generateCities
+	 * @param numberOfTweets
+	 *            number of tweets in the cluster
+	 * @param ambiguity
+	 *            number of candidate cities of the event (1 means that the evidence is not ambiguous)
+	 * @param geotaggedRatio
+	 *            probability that a tweet is geotagged
+	 * @return generated tweets
+	 */
+	public List<TweetDBO> generateCluster(List<CityDBO> cities, int numberOfTweets, int ambiguity,
+			double geotaggedRatio) {
+		int gridSize = (int) Math.ceil(Math.sqrt(cities.size()));
+		int[] candidateCities = new int[Math.min(ambiguity, cities.size())];
+		for (int i = 0; i < candidateCities.length; i++) {
+			candidateCities[i] = random.nextInt(cities.size());
+		}
+		List<TweetDBO> tweets = new ArrayList<TweetDBO>(numberOfTweets);
+		for (int i = 0; i < numberOfTweets; i++) {
+			TweetDBO tweet = new TweetDBO();
+			tweet.setId(i);
+			if (random.nextDouble() < geotaggedRatio) {
+				int city = random.nextDouble() < 0.99 ? candidateCities[random.nextInt(candidateCities.length)]
+						: random.nextInt(cities.size());
+				tweet.setLatitude(1.5 + city / gridSize + 0.5 * (random.nextDouble() - 0.5));
+				tweet.setLongitude(1.5 + city % gridSize + 0.5 * (random.nextDouble() - 0.5));
+			}
+			StringBuilder content = new StringBuilder("lorem ipsum");
+			int numberOfMentionedCities = random.nextInt(candidateCities.length + 1);
+			for (int j = 0; j < numberOfMentionedCities; j++) {
+				content.append(' ').append(cities.get(candidateCities[random.nextInt(candidateCities.length)])
+						.getName());
+			}
+			content.append(" dolor sit amet");
+			tweet.setContent(content.toString());
+			double userLocationType = random.nextDouble();
+			if (userLocationType < 0.3) {
+				tweet.setUserLocation(cities.get(candidateCities[random.nextInt(candidateCities.length)]).getName()
+						+ ", lorem");
+			} else if (userLocationType < 0.31) {
+				tweet.setUserLocation(cities.get(random.nextInt(cities.size())).getName() + ", lorem");
+			} else {
+				tweet.setUserLocation("ipsum");
+			}
+			tweets.add(tweet);
+		}
+		return tweets;
+	}
+
+	/**
+	 * Generates a star-shaped polygon with a jagged boundary, which resembles administrative boundaries better than
+	 * regular shapes. The polygon stays within 0.5 of its center.
+	 *
+	 * @param centerLatitude
+	 *            latitude of the center
+	 * @param centerLongitude
+	 *            longitude of the center
+	 * @param numberOfVertices
+	 *            number of distinct vertices on the boundary
+	 * @return generated polygon
+	 */
+	public Polygon generateBoundary(double centerLatitude, double centerLongitude, int numberOfVertices) {
+		Coordinate[] coordinates = new Coordinate[numberOfVertices + 1];
+		for (int i = 0; i < numberOfVertices; i++) {
+			double angle = 2 * Math.PI * i / numberOfVertices;
+			double radius = 0.35 + 0.1 * Math.sin(7 * angle) + 0.04 * random.nextDouble();
+			coordinates[i] = new Coordinate(centerLatitude + radius * Math.cos(angle),
+					centerLongitude + radius * Math.sin(angle));
+		}
+		coordinates[numberOfVertices] = new Coordinate(coordinates[0]);
+		return GEOMETRY_FACTORY.createPolygon(GEOMETRY_FACTORY.createLinearRing(coordinates), null);
+	}
+}
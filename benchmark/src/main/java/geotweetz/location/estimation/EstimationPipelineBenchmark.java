@@ -0,0 +1,203 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geotweetz.location.benchmark.SyntheticDataGenerator;
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.FocalElementTable;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Benchmark for each stage of the estimation pipeline: mapping tweets to locations using the three spatial features,
+ * calculation of basic probability assignments, Dubois-Prade combination, selection of the locations with the highest
+ * commonality values, and the full estimation for a cluster (also with EstimationStatistics, to measure the overhead of
+ * metrics, and with a FocalElementSummarizer that bounds the number of focal elements in combinations). The
+ * mapping stages and the full estimation are measured for both lists of observations and columnar batches. Cities
+ * and tweets are generated by SyntheticDataGenerator with a fixed seed, so that a regression can be reproduced offline
+ * with the same parameters.
+ *
+ * <p>
+ * The benchmark is in the estimation package to measure the package-private stages of LocationEstimator separately.
+ * Parameters can be narrowed from the command line, e.g. "-p numberOfCities=1000 -p clusterSize=10000".
+ *
+ * @author oozdikis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class EstimationPipelineBenchmark {
+
+	/**
+	 * Number of cities in the frame of discernment.
+	 */
+	@Param({ "100", "1000" })
+	public int numberOfCities;
+
+	/**
+	 * Number of vertices on the boundary of each city (polygon complexity).
+	 */
+	@Param({ "20", "200" })
+	public int numberOfVertices;
+
+	/**
+	 * Number of tweets in the cluster.
+	 */
+	@Param({ "1000", "10000" })
+	public int clusterSize;
+
+	/**
+	 * Number of candidate cities that tweets about the event refer to (1 means that the evidence is not ambiguous).
+	 */
+	@Param({ "1", "5" })
+	public int ambiguity;
+
+	private TweetLocationMapper tweetLocationMapper;
+	private TweetLocationMapper cachingTweetLocationMapper;
+	private LocationEstimator locationEstimator;
+	private LocationEstimator measuredLocationEstimator;
+	private LocationEstimator summarizingLocationEstimator;
+	private List<TweetDBO> tweetsInCluster;
+	private List<TweetObservation> observationsInCluster;
+	private TweetBatch tweetBatch;
+	private TweetCityMapping tweetCityMapping;
+	private ArrayList<HashSet<Long>> tweetCityMappingsUsingContent;
+	private FocalElementTable basicProbabilityAssignmentsUsingTweetLatitudeLongitude;
+	private FocalElementTable basicProbabilityAssignmentsUsingTweetContent;
+	private FocalElementTable combinedBasicProbabilityAssignments;
+	private long[] locationsInFocalElements;
+
+	@Setup
+	public void setUp() {
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+		List<CityDBO> cities = generator.generateCities(numberOfCities, numberOfVertices);
+		tweetsInCluster = generator.generateCluster(cities, clusterSize, ambiguity, 0.3);
+		locationEstimator = new LocationEstimator(cities);
+		measuredLocationEstimator = new LocationEstimator(cities);
+		measuredLocationEstimator.setEstimationMetrics(new EstimationStatistics());
+		summarizingLocationEstimator = new LocationEstimator(cities);
+		summarizingLocationEstimator.setFocalElementSummarizer(
+				new FocalElementSummarizer(32, 0.001, FocalElementSummarizer.MergeTarget.UNION));
+		tweetLocationMapper = locationEstimator.getTweetLocationMapper();
+		cachingTweetLocationMapper = new TweetLocationMapper(cities);
+		cachingTweetLocationMapper.setCityNameCache(new CityNameCache(10000));
+		cachingTweetLocationMapper.setCityGridCache(
+				new CityGridCache(cachingTweetLocationMapper.getCityGazetteer(), 0.02));
+		observationsInCluster = TweetObservation.fromTweetDBOs(tweetsInCluster);
+		tweetBatch = TweetBatch.fromObservations(observationsInCluster);
+		tweetCityMapping = new TweetCityMapping(clusterSize);
+		tweetCityMappingsUsingContent = tweetLocationMapper.mapObservationsToCitiesUsingContent(observationsInCluster);
+		basicProbabilityAssignmentsUsingTweetLatitudeLongitude = locationEstimator.getBasicProbabilityAssignments(
+				tweetLocationMapper.mapObservationsToCitiesUsingLatitudeLongitude(observationsInCluster));
+		basicProbabilityAssignmentsUsingTweetContent = locationEstimator
+				.getBasicProbabilityAssignments(tweetCityMappingsUsingContent);
+		combinedBasicProbabilityAssignments = locationEstimator.executeCombineUsingDuboisAndPrade(
+				basicProbabilityAssignmentsUsingTweetLatitudeLongitude, basicProbabilityAssignmentsUsingTweetContent);
+		locationsInFocalElements = new long[(numberOfCities + 63) >>> 6];
+	}
+
+	@Benchmark
+	public ArrayList<HashSet<Long>> mapObservationsToCitiesUsingLatitudeLongitude() {
+		return tweetLocationMapper.mapObservationsToCitiesUsingLatitudeLongitude(observationsInCluster);
+	}
+
+	@Benchmark
+	public ArrayList<HashSet<Long>> mapObservationsToCitiesUsingContent() {
+		return tweetLocationMapper.mapObservationsToCitiesUsingContent(observationsInCluster);
+	}
+
+	@Benchmark
+	public ArrayList<HashSet<Long>> mapObservationsToCitiesUsingProfile() {
+		return tweetLocationMapper.mapObservationsToCitiesUsingProfile(observationsInCluster);
+	}
+
+	@Benchmark
+	public TweetCityMapping mapBatchToCitiesUsingLatitudeLongitude() {
+		tweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, tweetCityMapping);
+		return tweetCityMapping;
+	}
+
+	@Benchmark
+	public TweetCityMapping mapBatchToCitiesUsingLatitudeLongitudeWithGrid() {
+		cachingTweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, tweetCityMapping);
+		return tweetCityMapping;
+	}
+
+	@Benchmark
+	public TweetCityMapping mapBatchToCitiesUsingContent() {
+		tweetLocationMapper.mapBatchToCitiesUsingContent(tweetBatch, tweetCityMapping);
+		return tweetCityMapping;
+	}
+
+	@Benchmark
+	public TweetCityMapping mapBatchToCitiesUsingProfile() {
+		tweetLocationMapper.mapBatchToCitiesUsingProfile(tweetBatch, tweetCityMapping);
+		return tweetCityMapping;
+	}
+
+	@Benchmark
+	public TweetCityMapping mapBatchToCitiesUsingProfileWithCache() {
+		cachingTweetLocationMapper.mapBatchToCitiesUsingProfile(tweetBatch, tweetCityMapping);
+		return tweetCityMapping;
+	}
+
+	@Benchmark
+	public FocalElementTable getBasicProbabilityAssignments() {
+		return locationEstimator.getBasicProbabilityAssignments(tweetCityMappingsUsingContent);
+	}
+
+	@Benchmark
+	public FocalElementTable executeCombineUsingDuboisAndPrade() {
+		return locationEstimator.executeCombineUsingDuboisAndPrade(
+				basicProbabilityAssignmentsUsingTweetLatitudeLongitude, basicProbabilityAssignmentsUsingTweetContent);
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> getTopLocationCommonalityValues() {
+		double[] commonalities = locationEstimator.getLocationCommonalityValues(combinedBasicProbabilityAssignments,
+				locationsInFocalElements);
+		return locationEstimator.getTopLocationCommonalityValues(commonalities, locationsInFocalElements, 5);
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> estimateLocationForCluster() {
+		return locationEstimator.estimateLocationForCluster(tweetsInCluster);
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> estimateLocationForBatch() {
+		return locationEstimator.estimateLocationForBatch(tweetBatch);
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> estimateLocationForBatchWithStatistics() {
+		return measuredLocationEstimator.estimateLocationForBatch(tweetBatch);
+	}
+
+	@Benchmark
+	public ArrayList<LocationCommonalityValue> estimateLocationForBatchWithSummarization() {
+		return summarizingLocationEstimator.estimateLocationForBatch(tweetBatch);
+	}
+}
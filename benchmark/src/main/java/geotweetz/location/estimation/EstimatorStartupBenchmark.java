@@ -0,0 +1,77 @@
+package geotweetz.location.estimation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import geotweetz.location.benchmark.SyntheticDataGenerator;
+import geotweetz.location.type.CityGazetteer;
+
+/**
+ * Benchmark for the startup of a LocationEstimator: building the estimator from a CityGazetteer (prepared polygons,
+ * spatial index and name automaton are built on the heap), and loading a compiled GazetteerSnapshot (the file is
+ * memory-mapped, nothing is built). Loading the cities from the database is not included in the first case, so the
+ * difference is a lower bound of the startup time that a worker saves.
+ *
+ * @author oozdikis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class EstimatorStartupBenchmark {
+
+	/**
+	 * Number of cities in the frame of discernment.
+	 */
+	@Param({ "1000", "10000" })
+	public int numberOfCities;
+
+	/**
+	 * Number of vertices on the boundary of each city (polygon complexity).
+	 */
+	@Param({ "200" })
+	public int numberOfVertices;
+
+	private CityGazetteer cityGazetteer;
+	private File snapshotFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+		cityGazetteer = CityGazetteer.fromCityDBOs(generator.generateCities(numberOfCities, numberOfVertices));
+		snapshotFile = File.createTempFile("cities", ".snapshot");
+		GazetteerSnapshot.write(cityGazetteer, snapshotFile);
+	}
+
+	@TearDown
+	public void tearDown() {
+		snapshotFile.delete();
+	}
+
+	@Benchmark
+	public LocationEstimator createEstimatorFromGazetteer() {
+		return new LocationEstimator(cityGazetteer);
+	}
+
+	@Benchmark
+	public LocationEstimator createEstimatorFromSnapshot() throws IOException {
+		return new LocationEstimator(GazetteerSnapshot.load(snapshotFile));
+	}
+}
@@ -0,0 +1,38 @@
+package geotweetz.location.estimation;
+
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Finds the cities whose boundaries contain GPS positions. A position is in a city if and only if it is in the interior
+ * of the city boundary (points on the boundary are not in the city). Cities are identified by their numbers in the
+ * gazetteer. Implementations are not modified after they are built, so they can be shared by multiple threads.
+ *
+ * @author oozdikis
+ *
+ */
+interface CityBoundaryLocator {
+
+	/**
+	 * Adds the cities that contain a position to the current tweet of a mapping.
+	 *
+	 * @param latitude
+	 *            latitude
+	 * @param longitude
+	 *            longitude
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found cities are added to.
+	 */
+	void findCitiesAtLatitudeLongitude(double latitude, double longitude, TweetCityMapping tweetCityMapping);
+
+	/**
+	 * Finds the cities that contain each position, and adds them to the mapping as one tweet per position.
+	 *
+	 * @param latitudes
+	 *            latitudes of positions
+	 * @param longitudes
+	 *            longitudes of positions
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found cities are added to.
+	 */
+	void findCitiesAtLatitudesLongitudes(double[] latitudes, double[] longitudes, TweetCityMapping tweetCityMapping);
+}
@@ -0,0 +1,378 @@
+package geotweetz.location.estimation;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Grid of square cells in latitude-longitude space that resolves GPS positions to cities without point-in-polygon
+ * tests. Many geotagged tweets are posted from identical or nearby positions (e.g., check-ins at a venue, or bots), and
+ * most of them fall into cells that do not cross any city boundary.
+ *
+ * <p>
+ * The grid is precomputed from the city boundaries in the constructor. Each cell that overlaps the envelope of a city
+ * is classified as an inner cell of a city (the cell is in the interior of exactly one city boundary), or as a boundary
+ * cell (the cell crosses a city boundary, or it is in more than one city). Inner and boundary cells are kept in an
+ * open-addressing hash table from cell keys to city numbers, and all other cells are outside all cities. A position in
+ * an inner cell or outside all cities is resolved with a single probe of the table, and a position in a boundary cell
+ * is passed to a CityBoundaryLocator for an exact test.
+ *
+ * <p>
+ * The grid is not modified after it is built, so it can be shared by multiple threads. Cities are kept as city numbers
+ * of the gazetteer, so a grid can be shared by the mappers of many estimators only if they are created from the same
+ * gazetteer or snapshot; the grid keeps the ids of the cities it is built from, and a mapper with other cities
+ * rejects it (see TweetLocationMapper.setCityGridCache). Numbers of positions that are resolved by the grid (hits) and passed to the locator (misses)
+ * are counted.
+ *
+ * @author oozdikis
+ *
+ */
+public class CityGridCache {
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	/**
+	 * Value of a boundary cell in the table.
+	 */
+	private static final int BOUNDARY_CELL = -1;
+
+	/**
+	 * Value of a cell that is not in the table (outside all cities).
+	 */
+	private static final int NO_CITY = -2;
+
+	/**
+	 * Key of empty slots in the table. It is not the key of any cell, since cells with the minimum x index are not
+	 * resolved by the grid.
+	 */
+	private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+	/**
+	 * Cells are enlarged by this fraction of the cell size when they are classified, so that a position whose cell
+	 * index is rounded to a neighbouring cell is still classified correctly.
+	 */
+	private static final double CELL_MARGIN = 1e-6;
+
+	private final double cellSize;
+
+	/**
+	 * Ids of the cities (indexed by city number) that the grid is built from.
+	 */
+	private final long[] cityIds;
+	private long[] cellKeys;
+	private int[] cellValues;
+	private int numberOfCells;
+	private int numberOfBoundaryCells;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Builds the grid from the boundaries of the cities in a gazetteer. The cost of the build is proportional to the
+	 * number of cells that overlap the envelopes of cities, so the cell size should be chosen with respect to the size
+	 * of cities (e.g., 0.01 degrees for cities that span a few tenths of a degree).
+	 *
+	 * @param cityGazetteer
+	 *            Cities to be indexed.
+	 * @param cellSize
+	 *            Width and height of cells in degrees.
+	 * @throws IllegalArgumentException
+	 *             if the cell size is not a positive number, or if the gazetteer has cities but none of them has a
+	 *             boundary (e.g., a gazetteer read with SpatialDatabaseCityLocator.readCityGazetteer), in which case
+	 *             every position would be resolved as outside all cities
+	 */
+	public CityGridCache(CityGazetteer cityGazetteer, double cellSize) {
+		if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+			throw new IllegalArgumentException("Cell size must be a positive number: " + cellSize);
+		}
+		this.cityIds = new long[cityGazetteer.size()];
+		boolean hasBoundaries = false;
+		for (int city = 0; city < cityIds.length; city++) {
+			cityIds[city] = cityGazetteer.getCityId(city);
+			hasBoundaries |= !cityGazetteer.getCityBoundary(city).isEmpty();
+		}
+		if (cityIds.length > 0 && !hasBoundaries) {
+			throw new IllegalArgumentException("A grid can not be built from a gazetteer without city boundaries");
+		}
+		this.cellSize = cellSize;
+		this.cellKeys = newKeys(1024);
+		this.cellValues = new int[cellKeys.length];
+		double margin = cellSize * CELL_MARGIN;
+		Envelope cellEnvelope = new Envelope();
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			Polygon boundary = cityGazetteer.getCityBoundary(city);
+			if (boundary.isEmpty()) {
+				continue;
+			}
+			PreparedGeometry preparedBoundary = PreparedGeometryFactory.prepare(boundary);
+			Envelope boundaryEnvelope = boundary.getEnvelopeInternal();
+			long minX = cellIndex(boundaryEnvelope.getMinX()), maxX = cellIndex(boundaryEnvelope.getMaxX());
+			long minY = cellIndex(boundaryEnvelope.getMinY()), maxY = cellIndex(boundaryEnvelope.getMaxY());
+			for (long x = minX; x <= maxX; x++) {
+				for (long y = minY; y <= maxY; y++) {
+					if (!isIndexed(x, y)) {
+						continue;
+					}
+					cellEnvelope.init(x * cellSize - margin, (x + 1) * cellSize + margin, y * cellSize - margin,
+							(y + 1) * cellSize + margin);
+					Polygon cell = (Polygon) GEOMETRY_FACTORY.toGeometry(cellEnvelope);
+					if (preparedBoundary.containsProperly(cell)) {
+						addCell(cellKey(x, y), city);
+					} else if (preparedBoundary.intersects(cell)) {
+						addCell(cellKey(x, y), BOUNDARY_CELL);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param cityIdsOfMapper
+	 *            Ids of the cities of a mapper, indexed by city number.
+	 * @return true if the grid is built from the same cities, in the same order
+	 */
+	boolean isBuiltFrom(long[] cityIdsOfMapper) {
+		return Arrays.equals(cityIds, cityIdsOfMapper);
+	}
+
+	/**
+	 * Adds the cities that contain a position to the current tweet of a mapping. If the position is in a boundary
+	 * cell, the cities are found with the locator.
+	 *
+	 * @param cityBoundaryLocator
+	 *            Locator for the gazetteer that the grid is built from.
+	 * @param latitude
+	 *            latitude
+	 * @param longitude
+	 *            longitude
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found cities are added to.
+	 */
+	void findCitiesAtLatitudeLongitude(CityBoundaryLocator cityBoundaryLocator, double latitude, double longitude,
+			TweetCityMapping tweetCityMapping) {
+		int value = lookUp(latitude, longitude);
+		if (value == BOUNDARY_CELL) {
+			missCount.incrementAndGet();
+			cityBoundaryLocator.findCitiesAtLatitudeLongitude(latitude, longitude, tweetCityMapping);
+			return;
+		}
+		hitCount.incrementAndGet();
+		if (value != NO_CITY) {
+			tweetCityMapping.addCity(value);
+		}
+	}
+
+	/**
+	 * Finds the cities that contain each position, and adds them to the mapping as one tweet per position. Positions
+	 * in boundary cells are passed to the locator together, so that a locator can find them with a single query.
+	 *
+	 * @param cityBoundaryLocator
+	 *            Locator for the gazetteer that the grid is built from.
+	 * @param latitudes
+	 *            latitudes of positions
+	 * @param longitudes
+	 *            longitudes of positions
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found cities are added to.
+	 */
+	void findCitiesAtLatitudesLongitudes(CityBoundaryLocator cityBoundaryLocator, double[] latitudes,
+			double[] longitudes, TweetCityMapping tweetCityMapping) {
+		int[] values = new int[latitudes.length];
+		int numberOfMisses = 0;
+		for (int i = 0; i < latitudes.length; i++) {
+			values[i] = lookUp(latitudes[i], longitudes[i]);
+			if (values[i] == BOUNDARY_CELL) {
+				numberOfMisses++;
+			}
+		}
+		hitCount.addAndGet(latitudes.length - numberOfMisses);
+		TweetCityMapping boundaryCellCities = null;
+		if (numberOfMisses > 0) {
+			missCount.addAndGet(numberOfMisses);
+			double[] missedLatitudes = new double[numberOfMisses];
+			double[] missedLongitudes = new double[numberOfMisses];
+			for (int i = 0, miss = 0; i < latitudes.length; i++) {
+				if (values[i] == BOUNDARY_CELL) {
+					missedLatitudes[miss] = latitudes[i];
+					missedLongitudes[miss++] = longitudes[i];
+				}
+			}
+			boundaryCellCities = new TweetCityMapping(numberOfMisses);
+			cityBoundaryLocator.findCitiesAtLatitudesLongitudes(missedLatitudes, missedLongitudes, boundaryCellCities);
+		}
+		for (int i = 0, miss = 0; i < latitudes.length; i++) {
+			if (values[i] == BOUNDARY_CELL) {
+				int[] offsets = boundaryCellCities.getOffsets();
+				for (int j = offsets[miss]; j < offsets[miss + 1]; j++) {
+					tweetCityMapping.addCity(boundaryCellCities.getCities()[j]);
+				}
+				miss++;
+			} else if (values[i] != NO_CITY) {
+				tweetCityMapping.addCity(values[i]);
+			}
+			tweetCityMapping.endTweet();
+		}
+	}
+
+	/**
+	 *
+	 * @return width and height of cells in degrees
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 *
+	 * @return number of inner and boundary cells in the grid
+	 */
+	public int getNumberOfCells() {
+		return numberOfCells;
+	}
+
+	/**
+	 *
+	 * @return number of boundary cells in the grid
+	 */
+	public int getNumberOfBoundaryCells() {
+		return numberOfBoundaryCells;
+	}
+
+	/**
+	 *
+	 * @return number of positions that are resolved by the grid
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 *
+	 * @return number of positions that are passed to the locator
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 *
+	 * @return ratio of the positions that are resolved by the grid, or 0 if there is no lookup yet
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long lookups = hits + missCount.get();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public String toString() {
+		return "(city grid cache: " + numberOfCells + " cells, " + numberOfBoundaryCells + " boundary cells, "
+				+ getHitCount() + " hits, " + getMissCount() + " misses)";
+	}
+
+	/**
+	 * Finds the cell of a position in the table.
+	 *
+	 * @return city number of an inner cell, BOUNDARY_CELL for a boundary cell (or for a position that can not be
+	 *         resolved by the grid), or NO_CITY for a position outside all cities
+	 */
+	private int lookUp(double latitude, double longitude) {
+		if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+			return BOUNDARY_CELL;
+		}
+		long x = cellIndex(latitude);
+		long y = cellIndex(longitude);
+		if (!isIndexed(x, y)) {
+			return BOUNDARY_CELL;
+		}
+		long key = cellKey(x, y);
+		int mask = cellKeys.length - 1;
+		for (int slot = slotOf(key, mask);; slot = (slot + 1) & mask) {
+			if (cellKeys[slot] == key) {
+				return cellValues[slot];
+			}
+			if (cellKeys[slot] == EMPTY_KEY) {
+				return NO_CITY;
+			}
+		}
+	}
+
+	/**
+	 * Adds a cell to the table while the grid is built. A cell that is already in the table (in another city) becomes a
+	 * boundary cell.
+	 */
+	private void addCell(long key, int value) {
+		int mask = cellKeys.length - 1;
+		int slot = slotOf(key, mask);
+		while (cellKeys[slot] != EMPTY_KEY) {
+			if (cellKeys[slot] == key) {
+				if (cellValues[slot] != BOUNDARY_CELL) {
+					cellValues[slot] = BOUNDARY_CELL;
+					numberOfBoundaryCells++;
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		cellKeys[slot] = key;
+		cellValues[slot] = value;
+		numberOfCells++;
+		if (value == BOUNDARY_CELL) {
+			numberOfBoundaryCells++;
+		}
+		if (2 * numberOfCells > cellKeys.length) {
+			resize();
+		}
+	}
+
+	private void resize() {
+		long[] oldKeys = cellKeys;
+		int[] oldValues = cellValues;
+		cellKeys = newKeys(oldKeys.length * 2);
+		cellValues = new int[cellKeys.length];
+		int mask = cellKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY_KEY) {
+				int slot = slotOf(oldKeys[i], mask);
+				while (cellKeys[slot] != EMPTY_KEY) {
+					slot = (slot + 1) & mask;
+				}
+				cellKeys[slot] = oldKeys[i];
+				cellValues[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static long[] newKeys(int capacity) {
+		long[] keys = new long[capacity];
+		Arrays.fill(keys, EMPTY_KEY);
+		return keys;
+	}
+
+	private long cellIndex(double coordinate) {
+		return (long) Math.floor(coordinate / cellSize);
+	}
+
+	/**
+	 * Cells are indexed if both of their indexes fit in an int (x must also be greater than the minimum int, so that no
+	 * cell has the empty key). Infinite positions are not indexed.
+	 */
+	private static boolean isIndexed(long x, long y) {
+		return x > Integer.MIN_VALUE && x <= Integer.MAX_VALUE && y >= Integer.MIN_VALUE && y <= Integer.MAX_VALUE;
+	}
+
+	private static long cellKey(long x, long y) {
+		return (x << 32) | (y & 0xffffffffL);
+	}
+
+	private static int slotOf(long key, int mask) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,216 @@
+package geotweetz.location.estimation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Bounded cache from normalized texts (see CityNameMatcher.normalizeText) to the locations that are found in them.
+ * Location attributes in user profiles repeat a lot (e.g., "Istanbul, Turkey" or "NYC"), so a profile text that is
+ * found in the cache is not tokenized and matched again.
+ *
+ * <p>
+ * The cache is split into segments by the hash of the text, and each segment is a synchronized LinkedHashMap in access
+ * order that evicts its least recently used text when it is full. Threads that look up texts in different segments do
+ * not block each other. Numbers of hits, misses and evictions are counted for all segments.
+ *
+ * <p>
+ * Locations are kept as city numbers of the gazetteer, so a cache can be shared by the mappers of many estimators (and
+ * clusters) only if they are created from the same gazetteer or snapshot. A cache is bound to the cities of the first
+ * mapper that it is set for (see TweetLocationMapper.setCityNameCache), and setting it for a mapper with other cities
+ * (or the same cities in another order) is rejected with an IllegalArgumentException.
+ *
+ * @author oozdikis
+ *
+ */
+public class CityNameCache {
+	private static final int NUMBER_OF_SEGMENTS = 16;
+	private static final int[] NO_CITIES = new int[0];
+
+	private final Segment[] segments;
+	private final int maximumSize;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Ids of the cities (indexed by city number) that the cache is bound to, or null if it is not bound yet.
+	 */
+	private long[] cityIds;
+
+	/**
+	 *
+	 * @param maximumSize
+	 *            maximum number of texts in the cache (rounded up to a multiple of the number of segments)
+	 */
+	public CityNameCache(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.segments = new Segment[NUMBER_OF_SEGMENTS];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment((maximumSize + NUMBER_OF_SEGMENTS - 1) / NUMBER_OF_SEGMENTS);
+		}
+	}
+
+	/**
+	 * Binds the cache to the cities of a mapper, or checks that the cache is already bound to the same cities.
+	 *
+	 * @param cityIdsOfMapper
+	 *            Ids of the cities of the mapper, indexed by city number.
+	 * @throws IllegalArgumentException
+	 *             if the cache is bound to different cities
+	 */
+	synchronized void bind(long[] cityIdsOfMapper) {
+		if (cityIds == null) {
+			cityIds = cityIdsOfMapper.clone();
+		} else if (!Arrays.equals(cityIds, cityIdsOfMapper)) {
+			throw new IllegalArgumentException("City name cache is bound to the cities of another gazetteer");
+		}
+	}
+
+	/**
+	 * Finds the locations in a text, using the cache. If the normalized text is not in the cache, locations are found
+	 * with the matcher and added to the cache.
+	 *
+	 * @param cityNameMatcher
+	 *            Matcher for the gazetteer that the cache is bound to.
+	 * @param text
+	 *            Characters of the text.
+	 * @param start
+	 *            Start of the text in the array (inclusive).
+	 * @param end
+	 *            End of the text in the array (exclusive).
+	 * @return Numbers of the locations (in the gazetteer) that are found in the text (must not be modified).
+	 */
+	int[] findCitiesInText(CityNameMatcher cityNameMatcher, char[] text, int start, int end) {
+		String normalizedText = CityNameMatcher.normalizeText(text, start, end);
+		if (normalizedText.isEmpty()) {
+			return NO_CITIES;
+		}
+		Segment segment = segmentFor(normalizedText);
+		int[] cities;
+		synchronized (segment) {
+			cities = segment.get(normalizedText);
+		}
+		if (cities != null) {
+			hitCount.incrementAndGet();
+			return cities;
+		}
+		missCount.incrementAndGet();
+		TweetCityMapping foundCities = new TweetCityMapping(1);
+		char[] normalizedCharacters = normalizedText.toCharArray();
+		cityNameMatcher.findCitiesInText(normalizedCharacters, 0, normalizedCharacters.length, foundCities);
+		foundCities.endTweet();
+		cities = foundCities.getNumberOfCities(0) == 0 ? NO_CITIES
+				: Arrays.copyOf(foundCities.getCities(), foundCities.getNumberOfCities(0));
+		synchronized (segment) {
+			segment.put(normalizedText, cities);
+		}
+		return cities;
+	}
+
+	/**
+	 *
+	 * @return number of lookups that are found in the cache
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 *
+	 * @return number of lookups that are not found in the cache
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 *
+	 * @return ratio of the lookups that are found in the cache, or 0 if there is no lookup yet
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long lookups = hits + missCount.get();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 *
+	 * @return number of texts that are evicted from the cache
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 *
+	 * @return maximum number of texts in the cache
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 *
+	 * @return number of texts in the cache
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Removes all texts from the cache. Statistics are not reset.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	public String toString() {
+		return "(city name cache: " + size() + " texts, " + getHitCount() + " hits, " + getMissCount() + " misses, "
+				+ getEvictionCount() + " evictions)";
+	}
+
+	private Segment segmentFor(String normalizedText) {
+		int hash = normalizedText.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (NUMBER_OF_SEGMENTS - 1)];
+	}
+
+	/**
+	 * LRU map of a segment. It is used only while holding its lock.
+	 */
+	private class Segment extends LinkedHashMap<String, int[]> {
+		private static final long serialVersionUID = -2931047263360184720L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			if (size() > capacity) {
+				evictionCount.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,569 @@
+package geotweetz.location.estimation;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Dictionary automaton (Aho-Corasick over terms) that finds city names in a text. The automaton is built once from the
+ * names of all cities in the frame of discernment. City names and texts are split into terms using the same
+ * delimiters, and terms are compared case-insensitively. Names that consist of multiple terms (e.g., "New York") are
+ * matched as consecutive terms in the text. A text is scanned in a single pass, so the cost of a search is linear in
+ * the length of the text and does not depend on the number of cities.
+ *
+ * <p>
+ * Texts can be given as strings, or as ranges of a char array (e.g., the concatenated texts of a TweetBatch). Matches
+ * in a char range are written as city numbers of the gazetteer into a TweetCityMapping.
+ *
+ * <p>
+ * The automaton is kept in flat buffers: case-folded terms are numbered and found with an open-addressing hash table,
+ * and nodes are numbered in breadth-first order (the root is node 0) with sorted transitions. The same buffers are
+ * written to a GazetteerSnapshot, and a matcher can be created over the memory-mapped buffers of a snapshot without
+ * building the automaton again.
+ *
+ * <p>
+ * The automaton is not modified after it is built, so a CityNameMatcher can be shared by multiple threads.
+ *
+ * @author oozdikis
+ *
+ */
+public class CityNameMatcher {
+
+	/**
+	 * Characters that separate terms in city names and texts.
+	 */
+	public static final String TERM_DELIMITERS = " ,.\n\t()!?:;\"“'@#\\/-&";
+
+	/**
+	 * Lookup table for delimiters in the ASCII range (other delimiters are searched in TERM_DELIMITERS).
+	 */
+	private static final boolean[] ASCII_TERM_DELIMITERS = new boolean[128];
+
+	static {
+		for (int i = 0; i < TERM_DELIMITERS.length(); i++) {
+			char delimiter = TERM_DELIMITERS.charAt(i);
+			if (delimiter < ASCII_TERM_DELIMITERS.length) {
+				ASCII_TERM_DELIMITERS[delimiter] = true;
+			}
+		}
+	}
+
+	/**
+	 * Node number of the root (empty sequence of terms).
+	 */
+	private static final int ROOT = 0;
+
+	/**
+	 * Ids of cities, indexed by city number.
+	 */
+	private final LongBuffer cityIds;
+
+	/**
+	 * Characters of term t are termCharacters[termOffsets[t], termOffsets[t + 1]).
+	 */
+	private final IntBuffer termOffsets;
+
+	/**
+	 * Case-folded characters of all terms, concatenated.
+	 */
+	private final CharBuffer termCharacters;
+
+	/**
+	 * Open-addressing hash table of terms (term numbers, or -1 for empty slots). Its capacity is a power of two.
+	 */
+	private final IntBuffer termTable;
+
+	/**
+	 * Transitions of node n are at [transitionOffsets[n], transitionOffsets[n + 1]) in transitionTerms and
+	 * transitionTargets, sorted by term number.
+	 */
+	private final IntBuffer transitionOffsets;
+	private final IntBuffer transitionTerms;
+	private final IntBuffer transitionTargets;
+
+	/**
+	 * Failure links of nodes (longest proper suffix of a node's term sequence that is also in the trie).
+	 */
+	private final IntBuffer failures;
+
+	/**
+	 * Output links of nodes (longest proper suffix that is a complete city name), or -1.
+	 */
+	private final IntBuffer outputs;
+
+	/**
+	 * Numbers of the cities whose names end at node n are cities[cityOffsets[n], cityOffsets[n + 1]).
+	 */
+	private final IntBuffer cityOffsets;
+	private final IntBuffer cities;
+
+	/**
+	 * Builds the dictionary automaton from the names of the given cities.
+	 *
+	 * @param allCitiesInFrameOfDiscernment
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public CityNameMatcher(List<CityDBO> allCitiesInFrameOfDiscernment) {
+		this(CityGazetteer.fromCityDBOs(allCitiesInFrameOfDiscernment));
+	}
+
+	/**
+	 * Builds the dictionary automaton from the names of the cities in the given gazetteer.
+	 *
+	 * @param cityGazetteer
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public CityNameMatcher(CityGazetteer cityGazetteer) {
+		long[] ids = new long[cityGazetteer.size()];
+		Node root = new Node();
+		HashMap<String, Integer> termNumbers = new HashMap<String, Integer>();
+		List<String> terms = new ArrayList<String>();
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			ids[city] = cityGazetteer.getCityId(city);
+			addCityName(root, cityGazetteer.getCityName(city), city, termNumbers, terms);
+		}
+		List<Node> nodes = buildFailureLinks(root);
+
+		this.cityIds = LongBuffer.wrap(ids);
+		int[] termOffsetsArray = new int[terms.size() + 1];
+		StringBuilder termCharactersBuilder = new StringBuilder();
+		for (int term = 0; term < terms.size(); term++) {
+			termOffsetsArray[term] = termCharactersBuilder.length();
+			termCharactersBuilder.append(terms.get(term));
+		}
+		termOffsetsArray[terms.size()] = termCharactersBuilder.length();
+		this.termOffsets = IntBuffer.wrap(termOffsetsArray);
+		this.termCharacters = CharBuffer.wrap(termCharactersBuilder.toString().toCharArray());
+		int[] termTableArray = new int[Math.max(Integer.highestOneBit(Math.max(terms.size(), 1)) * 4, 2)];
+		Arrays.fill(termTableArray, -1);
+		for (int term = 0; term < terms.size(); term++) {
+			String foldedTerm = terms.get(term);
+			int slot = hashOfTerm(foldedTerm.toCharArray(), 0, foldedTerm.length()) & (termTableArray.length - 1);
+			while (termTableArray[slot] >= 0) {
+				slot = (slot + 1) & (termTableArray.length - 1);
+			}
+			termTableArray[slot] = term;
+		}
+		this.termTable = IntBuffer.wrap(termTableArray);
+
+		int numberOfTransitions = 0;
+		int numberOfCityEntries = 0;
+		for (Node node : nodes) {
+			numberOfTransitions += node.children.size();
+			numberOfCityEntries += node.cities != null ? node.cities.length : 0;
+		}
+		int[] transitionOffsetsArray = new int[nodes.size() + 1];
+		int[] transitionTermsArray = new int[numberOfTransitions];
+		int[] transitionTargetsArray = new int[numberOfTransitions];
+		int[] failuresArray = new int[nodes.size()];
+		int[] outputsArray = new int[nodes.size()];
+		int[] cityOffsetsArray = new int[nodes.size() + 1];
+		int[] citiesArray = new int[numberOfCityEntries];
+		int transition = 0;
+		int cityEntry = 0;
+		for (Node node : nodes) {
+			transitionOffsetsArray[node.number] = transition;
+			int[] childTerms = new int[node.children.size()];
+			int i = 0;
+			for (String term : node.children.keySet()) {
+				childTerms[i++] = termNumbers.get(term);
+			}
+			Arrays.sort(childTerms);
+			for (int childTerm : childTerms) {
+				transitionTermsArray[transition] = childTerm;
+				transitionTargetsArray[transition] = node.children.get(terms.get(childTerm)).number;
+				transition++;
+			}
+			failuresArray[node.number] = node.failure != null ? node.failure.number : ROOT;
+			outputsArray[node.number] = node.output != null ? node.output.number : -1;
+			cityOffsetsArray[node.number] = cityEntry;
+			if (node.cities != null) {
+				for (int city : node.cities) {
+					citiesArray[cityEntry++] = city;
+				}
+			}
+		}
+		transitionOffsetsArray[nodes.size()] = transition;
+		cityOffsetsArray[nodes.size()] = cityEntry;
+		this.transitionOffsets = IntBuffer.wrap(transitionOffsetsArray);
+		this.transitionTerms = IntBuffer.wrap(transitionTermsArray);
+		this.transitionTargets = IntBuffer.wrap(transitionTargetsArray);
+		this.failures = IntBuffer.wrap(failuresArray);
+		this.outputs = IntBuffer.wrap(outputsArray);
+		this.cityOffsets = IntBuffer.wrap(cityOffsetsArray);
+		this.cities = IntBuffer.wrap(citiesArray);
+	}
+
+	/**
+	 * Creates a matcher over the buffers of an automaton that is already built (e.g., the buffers of a snapshot). The
+	 * buffers are not copied, and are read with absolute gets only.
+	 */
+	CityNameMatcher(LongBuffer cityIds, IntBuffer termOffsets, CharBuffer termCharacters, IntBuffer termTable,
+			IntBuffer transitionOffsets, IntBuffer transitionTerms, IntBuffer transitionTargets, IntBuffer failures,
+			IntBuffer outputs, IntBuffer cityOffsets, IntBuffer cities) {
+		this.cityIds = cityIds;
+		this.termOffsets = termOffsets;
+		this.termCharacters = termCharacters;
+		this.termTable = termTable;
+		this.transitionOffsets = transitionOffsets;
+		this.transitionTerms = transitionTerms;
+		this.transitionTargets = transitionTargets;
+		this.failures = failures;
+		this.outputs = outputs;
+		this.cityOffsets = cityOffsets;
+		this.cities = cities;
+	}
+
+	/**
+	 * Finds the location names in a given text and returns the ids of these locations.
+	 *
+	 * @param textToSearchForLocationNames
+	 *            Text to search for location names.
+	 * @return Ids of locations that are found in the given text.
+	 */
+	public HashSet<Long> findIdsOfCitiesInText(String textToSearchForLocationNames) {
+		HashSet<Long> foundLocationIds = new HashSet<Long>();
+		if (textToSearchForLocationNames == null) {
+			return foundLocationIds;
+		}
+		TweetCityMapping foundCities = new TweetCityMapping(1);
+		char[] text = textToSearchForLocationNames.toCharArray();
+		findCitiesInText(text, 0, text.length, foundCities);
+		foundCities.endTweet();
+		for (int i = 0; i < foundCities.getNumberOfCities(0); i++) {
+			foundLocationIds.add(cityIds.get(foundCities.getCities()[i]));
+		}
+		return foundLocationIds;
+	}
+
+	/**
+	 * Finds the location names in a range of a char array, and adds the numbers of these locations (in the gazetteer
+	 * that the automaton is built from) to the current tweet of the given mapping. Terms are split with the same
+	 * delimiters as findIdsOfCitiesInText, so both methods find the same locations in the same text.
+	 *
+	 * @param text
+	 *            Characters of the text.
+	 * @param start
+	 *            Start of the text in the array (inclusive).
+	 * @param end
+	 *            End of the text in the array (exclusive).
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found locations are added to.
+	 */
+	public void findCitiesInText(char[] text, int start, int end, TweetCityMapping tweetCityMapping) {
+		int node = ROOT;
+		char[] foldedCharacters = null;
+		int position = start;
+		while (position < end) {
+			while (position < end && isTermDelimiter(text[position])) {
+				position++;
+			}
+			int termStart = position;
+			while (position < end && !isTermDelimiter(text[position])) {
+				position++;
+			}
+			int termLength = position - termStart;
+			if (termLength == 0) {
+				break;
+			}
+			if (foldedCharacters == null || foldedCharacters.length < termLength) {
+				foldedCharacters = new char[Math.max(termLength, 32)];
+			}
+			for (int i = 0; i < termLength; i++) {
+				foldedCharacters[i] = Character.toLowerCase(Character.toUpperCase(text[termStart + i]));
+			}
+			node = nextNode(node, findTerm(foldedCharacters, termLength));
+			for (int output = cityOffsets.get(node) < cityOffsets.get(node + 1) ? node
+					: outputs.get(node); output >= 0; output = outputs.get(output)) {
+				for (int i = cityOffsets.get(output); i < cityOffsets.get(output + 1); i++) {
+					tweetCityMapping.addCity(cities.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Normalizes a text for lookups of the locations found in it: terms are case-folded and separated by a single
+	 * space, and delimiters are removed. The same locations are found in two texts if their normalized texts are equal
+	 * (e.g., "Istanbul, TURKEY" and "istanbul turkey").
+	 *
+	 * @param text
+	 *            Characters of the text.
+	 * @param start
+	 *            Start of the text in the array (inclusive).
+	 * @param end
+	 *            End of the text in the array (exclusive).
+	 * @return Normalized text.
+	 */
+	public static String normalizeText(char[] text, int start, int end) {
+		StringBuilder normalizedText = new StringBuilder(end - start);
+		boolean inTerm = false;
+		for (int position = start; position < end; position++) {
+			char c = text[position];
+			if (isTermDelimiter(c)) {
+				inTerm = false;
+				continue;
+			}
+			if (!inTerm && normalizedText.length() > 0) {
+				normalizedText.append(' ');
+			}
+			inTerm = true;
+			normalizedText.append(Character.toLowerCase(Character.toUpperCase(c)));
+		}
+		return normalizedText.toString();
+	}
+
+	/**
+	 * Folds the case of a term so that two terms are equal after folding if and only if they are equal ignoring case
+	 * (in the sense of String.equalsIgnoreCase).
+	 *
+	 * @param term
+	 *            Term to fold.
+	 * @return Case-folded term.
+	 */
+	public static String foldCase(String term) {
+		char[] foldedCharacters = new char[term.length()];
+		for (int i = 0; i < foldedCharacters.length; i++) {
+			foldedCharacters[i] = Character.toLowerCase(Character.toUpperCase(term.charAt(i)));
+		}
+		return new String(foldedCharacters);
+	}
+
+	/**
+	 * Finds the number of a case-folded term in the hash table of terms.
+	 *
+	 * @param foldedCharacters
+	 *            Array that keeps the characters of the term.
+	 * @param termLength
+	 *            Length of the term.
+	 * @return Term number, or -1 if the term is not in any city name.
+	 */
+	private int findTerm(char[] foldedCharacters, int termLength) {
+		int mask = termTable.capacity() - 1;
+		for (int slot = hashOfTerm(foldedCharacters, 0, termLength) & mask;; slot = (slot + 1) & mask) {
+			int term = termTable.get(slot);
+			if (term < 0) {
+				return -1;
+			}
+			int termStart = termOffsets.get(term);
+			if (termOffsets.get(term + 1) - termStart == termLength) {
+				int i = 0;
+				while (i < termLength && termCharacters.get(termStart + i) == foldedCharacters[i]) {
+					i++;
+				}
+				if (i == termLength) {
+					return term;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Follows the transition of the automaton from a node with a term. Failure links are followed until a node with a
+	 * transition for the term is found; if there is none, the root is returned.
+	 *
+	 * @param node
+	 *            Current node.
+	 * @param term
+	 *            Number of the next term in the text, or -1 if the term is not in any city name.
+	 * @return Next node.
+	 */
+	private int nextNode(int node, int term) {
+		if (term < 0) {
+			return ROOT;
+		}
+		int next = findTransition(node, term);
+		while (next < 0 && node != ROOT) {
+			node = failures.get(node);
+			next = findTransition(node, term);
+		}
+		return next >= 0 ? next : ROOT;
+	}
+
+	/**
+	 * Finds the transition of a node for a term with binary search.
+	 *
+	 * @return Target node of the transition, or -1 if the node has no transition for the term.
+	 */
+	private int findTransition(int node, int term) {
+		int low = transitionOffsets.get(node);
+		int high = transitionOffsets.get(node + 1) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleTerm = transitionTerms.get(middle);
+			if (middleTerm < term) {
+				low = middle + 1;
+			} else if (middleTerm > term) {
+				high = middle - 1;
+			} else {
+				return transitionTargets.get(middle);
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isTermDelimiter(char c) {
+		return c < ASCII_TERM_DELIMITERS.length ? ASCII_TERM_DELIMITERS[c] : TERM_DELIMITERS.indexOf(c) >= 0;
+	}
+
+	private static int hashOfTerm(char[] characters, int start, int length) {
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + characters[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Adds the terms of a city name to the trie of the automaton.
+	 *
+	 * @param root
+	 *            Root of the trie.
+	 * @param cityName
+	 *            Name of the city.
+	 * @param city
+	 *            Number of the city in the gazetteer.
+	 * @param termNumbers
+	 *            Numbers of the case-folded terms that are already in the trie.
+	 * @param terms
+	 *            Case-folded terms, ordered by their numbers.
+	 */
+	private static void addCityName(Node root, String cityName, int city, HashMap<String, Integer> termNumbers,
+			List<String> terms) {
+		if (cityName == null) {
+			return;
+		}
+		String[] termsInName = StringUtils.split(cityName, TERM_DELIMITERS);
+		if (termsInName.length == 0) {
+			return;
+		}
+		Node node = root;
+		for (String termInName : termsInName) {
+			String foldedTerm = foldCase(termInName);
+			if (!termNumbers.containsKey(foldedTerm)) {
+				termNumbers.put(foldedTerm, terms.size());
+				terms.add(foldedTerm);
+			}
+			Node child = node.children.get(foldedTerm);
+			if (child == null) {
+				child = new Node();
+				node.children.put(foldedTerm, child);
+			}
+			node = child;
+		}
+		if (node.cities == null) {
+			node.cities = new int[] { city };
+		} else {
+			int[] cities = new int[node.cities.length + 1];
+			System.arraycopy(node.cities, 0, cities, 0, node.cities.length);
+			cities[node.cities.length] = city;
+			node.cities = cities;
+		}
+	}
+
+	/**
+	 * Sets failure links (longest proper suffix of a node's term sequence that is also in the trie) and output links
+	 * (longest proper suffix that is a complete city name) of all nodes, and numbers the nodes in breadth-first order.
+	 *
+	 * @param root
+	 *            Root of the trie.
+	 * @return All nodes in breadth-first order.
+	 */
+	private static List<Node> buildFailureLinks(Node root) {
+		List<Node> nodes = new ArrayList<Node>();
+		root.number = ROOT;
+		nodes.add(root);
+		for (Node child : root.children.values()) {
+			child.failure = root;
+			child.number = nodes.size();
+			nodes.add(child);
+		}
+		for (int queueHead = 1; queueHead < nodes.size(); queueHead++) {
+			Node node = nodes.get(queueHead);
+			for (String term : node.children.keySet()) {
+				Node child = node.children.get(term);
+				Node failure = node.failure;
+				while (failure != root && !failure.children.containsKey(term)) {
+					failure = failure.failure;
+				}
+				Node failureChild = failure.children.get(term);
+				child.failure = failureChild != null ? failureChild : root;
+				child.output = child.failure.cities != null ? child.failure : child.failure.output;
+				child.number = nodes.size();
+				nodes.add(child);
+			}
+		}
+		return nodes;
+	}
+
+	LongBuffer getCityIds() {
+		return cityIds;
+	}
+
+	IntBuffer getTermOffsets() {
+		return termOffsets;
+	}
+
+	CharBuffer getTermCharacters() {
+		return termCharacters;
+	}
+
+	IntBuffer getTermTable() {
+		return termTable;
+	}
+
+	IntBuffer getTransitionOffsets() {
+		return transitionOffsets;
+	}
+
+	IntBuffer getTransitionTerms() {
+		return transitionTerms;
+	}
+
+	IntBuffer getTransitionTargets() {
+		return transitionTargets;
+	}
+
+	IntBuffer getFailures() {
+		return failures;
+	}
+
+	IntBuffer getOutputs() {
+		return outputs;
+	}
+
+	IntBuffer getCityOffsets() {
+		return cityOffsets;
+	}
+
+	IntBuffer getCities() {
+		return cities;
+	}
+
+	/**
+	 * Node of the trie that represents a sequence of terms, which is used while the automaton is built.
+	 */
+	private static class Node {
+		private final HashMap<String, Node> children = new HashMap<String, Node>();
+		private Node failure = null;
+		private Node output = null;
+		private int number;
+
+		/**
+		 * Numbers of cities whose names end at this node, or null if no city name ends here.
+		 */
+		private int[] cities = null;
+	}
+
+}
@@ -0,0 +1,61 @@
+package geotweetz.location.estimation;
+
+import geotweetz.location.type.FocalElementTable;
+
+/**
+ * Combination rule of DS theory that is applied by a FocalElementCombiner. Rules in DS theory differ only in how they
+ * handle conflicting evidence: for each pair of focal elements from two evidence sources, the combiner assigns the
+ * product of their probability values to their intersection, and passes the pairs with an empty intersection to the
+ * rule. StandardCombinationRule has the implementations of Dempster's rule, Yager's rule, Dubois and Prade's rule and
+ * PCR5.
+ *
+ * <p>
+ * A rule is shared by all threads, so an implementation must not keep state between calls. Scratch buffers and tables
+ * are given by the combiner.
+ *
+ * @author oozdikis
+ *
+ */
+public interface CombinationRule {
+
+	/**
+	 * Assigns the probability of a pair of conflicting focal elements (with an empty intersection). The probability can
+	 * be added to conflictingProbabilityValues, or it can be handled in distributeConflictingProbability using the
+	 * total conflict mass.
+	 *
+	 * @param words1
+	 *            array that contains the bitset of the focal element using evidence source #1
+	 * @param offset1
+	 *            position of the first word of the focal element in words1
+	 * @param probabilityValue1
+	 *            probability value of the focal element using evidence source #1
+	 * @param words2
+	 *            array that contains the bitset of the focal element using evidence source #2
+	 * @param offset2
+	 *            position of the first word of the focal element in words2
+	 * @param probabilityValue2
+	 *            probability value of the focal element using evidence source #2
+	 * @param conflictingProbabilityValues
+	 *            table that accumulates the probability values assigned to focal elements for conflicting evidence
+	 * @param buffer
+	 *            scratch buffer with the number of words of a focal element
+	 */
+	void assignConflictingProbability(long[] words1, int offset1, double probabilityValue1, long[] words2,
+			int offset2, double probabilityValue2, FocalElementTable conflictingProbabilityValues, long[] buffer);
+
+	/**
+	 * Completes a combination, after the probabilities of all pairs of focal elements are assigned.
+	 *
+	 * @param combinedBpas
+	 *            probability values assigned to the non-empty intersections of focal elements, which are updated to the
+	 *            combined probability assignments
+	 * @param conflictingProbabilityValues
+	 *            probability values assigned by assignConflictingProbability
+	 * @param conflictMass
+	 *            total probability of the pairs of conflicting focal elements
+	 * @param thetaWords
+	 *            bitset of all locations in the frame of discernment (Theta)
+	 */
+	void distributeConflictingProbability(FocalElementTable combinedBpas,
+			FocalElementTable conflictingProbabilityValues, double conflictMass, long[] thetaWords);
+}
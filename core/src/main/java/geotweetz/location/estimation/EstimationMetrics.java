@@ -0,0 +1,57 @@
+package geotweetz.location.estimation;
+
+/**
+ * Receives measurements from the stages of the estimation pipeline of a LocationEstimator (see
+ * LocationEstimator.setEstimationMetrics). EstimationStatistics is an implementation that accumulates the
+ * measurements and exports them with JMX; other implementations can forward them to a metrics registry.
+ *
+ * <p>
+ * Evidence sources and clusters can be estimated concurrently, so an implementation must be thread-safe. Methods are
+ * called on the hot path of estimation and should not block.
+ *
+ * @author oozdikis
+ *
+ */
+public interface EstimationMetrics {
+
+	/**
+	 * Records the time spent in a stage.
+	 *
+	 * @param stage
+	 *            stage of the estimation pipeline
+	 * @param elapsedNanos
+	 *            elapsed time in nanoseconds
+	 */
+	void recordStageTime(EstimationStage stage, long elapsedNanos);
+
+	/**
+	 * Records the number of focal elements in the probability assignments that are calculated in a stage
+	 * (BASIC_PROBABILITY_ASSIGNMENT, FIRST_COMBINATION, SECOND_COMBINATION or SUMMARIZATION).
+	 *
+	 * @param stage
+	 *            stage of the estimation pipeline
+	 * @param numberOfFocalElements
+	 *            number of focal elements
+	 */
+	void recordFocalElements(EstimationStage stage, int numberOfFocalElements);
+
+	/**
+	 * Records the total probability of conflicting focal elements (with an empty intersection) in a combination stage
+	 * (FIRST_COMBINATION or SECOND_COMBINATION).
+	 *
+	 * @param stage
+	 *            stage of the estimation pipeline
+	 * @param conflictMass
+	 *            probability mass of conflicting evidence, between 0 and 1
+	 */
+	void recordConflictMass(EstimationStage stage, double conflictMass);
+
+	/**
+	 * Records the bound of the error in commonality values of an estimation with approximated probability assignments
+	 * (see FocalElementSummarizer).
+	 *
+	 * @param commonalityErrorBound
+	 *            bound of the error in commonality values
+	 */
+	void recordCommonalityErrorBound(double commonalityErrorBound);
+}
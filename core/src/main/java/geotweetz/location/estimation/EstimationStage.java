@@ -0,0 +1,57 @@
+package geotweetz.location.estimation;
+
+/**
+ * Stages of the estimation pipeline that are measured by EstimationMetrics.
+ *
+ * @author oozdikis
+ *
+ */
+public enum EstimationStage {
+
+	/**
+	 * Mapping tweets to locations using tweet lat-lon.
+	 */
+	LATITUDE_LONGITUDE_MAPPING,
+
+	/**
+	 * Mapping tweets to locations using tweet content.
+	 */
+	CONTENT_MAPPING,
+
+	/**
+	 * Mapping tweets to locations using location in user profile.
+	 */
+	USER_PROFILE_MAPPING,
+
+	/**
+	 * Calculation of basic probability assignments from the mappings of an evidence source (three times for each
+	 * cluster).
+	 */
+	BASIC_PROBABILITY_ASSIGNMENT,
+
+	/**
+	 * Combination of the BPAs using tweet lat-lon and tweet content.
+	 */
+	FIRST_COMBINATION,
+
+	/**
+	 * Combination of the result of the first combination and the BPAs using location in user profile.
+	 */
+	SECOND_COMBINATION,
+
+	/**
+	 * Approximation of probability assignments with fewer focal elements before or after a combination (see
+	 * FocalElementSummarizer).
+	 */
+	SUMMARIZATION,
+
+	/**
+	 * Calculation of commonality values and selection of the locations with the highest values.
+	 */
+	COMMONALITY_SELECTION,
+
+	/**
+	 * Estimation for a cluster, from the tweets to the selected locations (all stages above).
+	 */
+	ESTIMATION
+}
@@ -0,0 +1,257 @@
+package geotweetz.location.estimation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * EstimationMetrics that accumulate the measurements of all estimations: numbers and times of stages, numbers of focal
+ * elements, conflict masses and bounds of errors in commonality values. If a TweetLocationMapper is given, the
+ * statistics of its city name cache and city grid cache are also reported.
+ *
+ * <p>
+ * Measurements are added to LongAdders and DoubleAdders, so threads that estimate clusters concurrently do not contend
+ * on a single counter. The statistics can be exported with JMX, e.g.
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, new
+ * ObjectName("geotweetz:type=EstimationStatistics")).
+ *
+ * @author oozdikis
+ *
+ */
+public class EstimationStatistics implements EstimationMetrics, EstimationStatisticsMXBean {
+	private static final EstimationStage[] STAGES = EstimationStage.values();
+
+	private final TweetLocationMapper tweetLocationMapper;
+	private final LongAdder[] stageCounts = newLongAdders();
+	private final LongAdder[] stageNanos = newLongAdders();
+	private final LongAdder[] focalElementCounts = newLongAdders();
+	private final LongAdder[] focalElementSums = newLongAdders();
+	private final LongAdder[] conflictCounts = newLongAdders();
+	private final DoubleAdder[] conflictMassSums = new DoubleAdder[STAGES.length];
+	private final LongAdder commonalityErrorBoundCount = new LongAdder();
+	private final DoubleAdder commonalityErrorBoundSum = new DoubleAdder();
+	private final DoubleAccumulator maximumCommonalityErrorBound = new DoubleAccumulator(new DoubleBinaryOperator() {
+		@Override
+		public double applyAsDouble(double left, double right) {
+			return Math.max(left, right);
+		}
+	}, 0);
+
+	/**
+	 * Constructor for statistics without cache statistics.
+	 */
+	public EstimationStatistics() {
+		this(null);
+	}
+
+	/**
+	 *
+	 * @param tweetLocationMapper
+	 *            mapper whose caches are reported, or null
+	 */
+	public EstimationStatistics(TweetLocationMapper tweetLocationMapper) {
+		this.tweetLocationMapper = tweetLocationMapper;
+		for (int i = 0; i < conflictMassSums.length; i++) {
+			conflictMassSums[i] = new DoubleAdder();
+		}
+	}
+
+	@Override
+	public void recordStageTime(EstimationStage stage, long elapsedNanos) {
+		stageCounts[stage.ordinal()].increment();
+		stageNanos[stage.ordinal()].add(elapsedNanos);
+	}
+
+	@Override
+	public void recordFocalElements(EstimationStage stage, int numberOfFocalElements) {
+		focalElementCounts[stage.ordinal()].increment();
+		focalElementSums[stage.ordinal()].add(numberOfFocalElements);
+	}
+
+	@Override
+	public void recordConflictMass(EstimationStage stage, double conflictMass) {
+		conflictCounts[stage.ordinal()].increment();
+		conflictMassSums[stage.ordinal()].add(conflictMass);
+	}
+
+	@Override
+	public void recordCommonalityErrorBound(double commonalityErrorBound) {
+		commonalityErrorBoundCount.increment();
+		commonalityErrorBoundSum.add(commonalityErrorBound);
+		maximumCommonalityErrorBound.accumulate(commonalityErrorBound);
+	}
+
+	@Override
+	public long getNumberOfEstimations() {
+		return getStageCount(EstimationStage.ESTIMATION);
+	}
+
+	/**
+	 *
+	 * @param stage
+	 *            stage of the estimation pipeline
+	 * @return number of measurements of the stage
+	 */
+	public long getStageCount(EstimationStage stage) {
+		return stageCounts[stage.ordinal()].sum();
+	}
+
+	/**
+	 *
+	 * @param stage
+	 *            stage of the estimation pipeline
+	 * @return total time spent in the stage, in nanoseconds
+	 */
+	public long getTotalStageNanos(EstimationStage stage) {
+		return stageNanos[stage.ordinal()].sum();
+	}
+
+	/**
+	 *
+	 * @param stage
+	 *            stage of the estimation pipeline
+	 * @return average number of focal elements in the probability assignments of the stage, or 0 if there is no
+	 *         measurement
+	 */
+	public double getMeanNumberOfFocalElements(EstimationStage stage) {
+		return mean(focalElementSums[stage.ordinal()].sum(), focalElementCounts[stage.ordinal()].sum());
+	}
+
+	/**
+	 *
+	 * @param stage
+	 *            combination stage of the estimation pipeline
+	 * @return average probability mass of conflicting evidence in the stage, or 0 if there is no measurement
+	 */
+	public double getMeanConflictMass(EstimationStage stage) {
+		return mean(conflictMassSums[stage.ordinal()].sum(), conflictCounts[stage.ordinal()].sum());
+	}
+
+	@Override
+	public Map<String, Long> getStageCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (EstimationStage stage : STAGES) {
+			counts.put(stage.name(), getStageCount(stage));
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getTotalStageTimesMillis() {
+		Map<String, Double> times = new LinkedHashMap<String, Double>();
+		for (EstimationStage stage : STAGES) {
+			times.put(stage.name(), getTotalStageNanos(stage) / 1e6);
+		}
+		return times;
+	}
+
+	@Override
+	public Map<String, Double> getMeanStageTimesMicros() {
+		Map<String, Double> times = new LinkedHashMap<String, Double>();
+		for (EstimationStage stage : STAGES) {
+			times.put(stage.name(), mean(getTotalStageNanos(stage), getStageCount(stage)) / 1e3);
+		}
+		return times;
+	}
+
+	@Override
+	public Map<String, Double> getMeanNumbersOfFocalElements() {
+		Map<String, Double> numbers = new LinkedHashMap<String, Double>();
+		for (EstimationStage stage : STAGES) {
+			if (focalElementCounts[stage.ordinal()].sum() > 0) {
+				numbers.put(stage.name(), getMeanNumberOfFocalElements(stage));
+			}
+		}
+		return numbers;
+	}
+
+	@Override
+	public Map<String, Double> getMeanConflictMasses() {
+		Map<String, Double> masses = new LinkedHashMap<String, Double>();
+		for (EstimationStage stage : STAGES) {
+			if (conflictCounts[stage.ordinal()].sum() > 0) {
+				masses.put(stage.name(), getMeanConflictMass(stage));
+			}
+		}
+		return masses;
+	}
+
+	@Override
+	public double getMeanCommonalityErrorBound() {
+		return mean(commonalityErrorBoundSum.sum(), commonalityErrorBoundCount.sum());
+	}
+
+	@Override
+	public double getMaximumCommonalityErrorBound() {
+		return maximumCommonalityErrorBound.get();
+	}
+
+	@Override
+	public long getCityNameCacheHitCount() {
+		CityNameCache cityNameCache = getCityNameCache();
+		return cityNameCache == null ? 0 : cityNameCache.getHitCount();
+	}
+
+	@Override
+	public long getCityNameCacheMissCount() {
+		CityNameCache cityNameCache = getCityNameCache();
+		return cityNameCache == null ? 0 : cityNameCache.getMissCount();
+	}
+
+	@Override
+	public long getCityGridCacheHitCount() {
+		CityGridCache cityGridCache = getCityGridCache();
+		return cityGridCache == null ? 0 : cityGridCache.getHitCount();
+	}
+
+	@Override
+	public long getCityGridCacheMissCount() {
+		CityGridCache cityGridCache = getCityGridCache();
+		return cityGridCache == null ? 0 : cityGridCache.getMissCount();
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < STAGES.length; i++) {
+			stageCounts[i].reset();
+			stageNanos[i].reset();
+			focalElementCounts[i].reset();
+			focalElementSums[i].reset();
+			conflictCounts[i].reset();
+			conflictMassSums[i].reset();
+		}
+		commonalityErrorBoundCount.reset();
+		commonalityErrorBoundSum.reset();
+		maximumCommonalityErrorBound.reset();
+	}
+
+	public String toString() {
+		return "(estimation statistics: " + getNumberOfEstimations() + " estimations, mean stage times (us): "
+				+ getMeanStageTimesMicros() + ", mean focal elements: " + getMeanNumbersOfFocalElements()
+				+ ", mean conflict masses: " + getMeanConflictMasses() + ", maximum commonality error bound: "
+				+ getMaximumCommonalityErrorBound() + ")";
+	}
+
+	private CityNameCache getCityNameCache() {
+		return tweetLocationMapper == null ? null : tweetLocationMapper.getCityNameCache();
+	}
+
+	private CityGridCache getCityGridCache() {
+		return tweetLocationMapper == null ? null : tweetLocationMapper.getCityGridCache();
+	}
+
+	private static double mean(double sum, long count) {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	private static LongAdder[] newLongAdders() {
+		LongAdder[] adders = new LongAdder[STAGES.length];
+		for (int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+}
@@ -0,0 +1,92 @@
+package geotweetz.location.estimation;
+
+import java.util.Map;
+
+/**
+ * Management interface of EstimationStatistics. Maps are keyed by the names of EstimationStages.
+ *
+ * @author oozdikis
+ *
+ */
+public interface EstimationStatisticsMXBean {
+
+	/**
+	 *
+	 * @return number of clusters that are estimated
+	 */
+	long getNumberOfEstimations();
+
+	/**
+	 *
+	 * @return number of measurements of each stage
+	 */
+	Map<String, Long> getStageCounts();
+
+	/**
+	 *
+	 * @return total time spent in each stage, in milliseconds
+	 */
+	Map<String, Double> getTotalStageTimesMillis();
+
+	/**
+	 *
+	 * @return average time spent in each stage, in microseconds
+	 */
+	Map<String, Double> getMeanStageTimesMicros();
+
+	/**
+	 *
+	 * @return average number of focal elements in the probability assignments of each stage
+	 */
+	Map<String, Double> getMeanNumbersOfFocalElements();
+
+	/**
+	 *
+	 * @return average probability mass of conflicting evidence in each combination stage
+	 */
+	Map<String, Double> getMeanConflictMasses();
+
+	/**
+	 *
+	 * @return average bound of the error in commonality values of estimations with approximated probability
+	 *         assignments
+	 */
+	double getMeanCommonalityErrorBound();
+
+	/**
+	 *
+	 * @return largest bound of the error in commonality values of estimations with approximated probability
+	 *         assignments
+	 */
+	double getMaximumCommonalityErrorBound();
+
+	/**
+	 *
+	 * @return number of profile texts that are found in the city name cache, or 0 if there is no cache
+	 */
+	long getCityNameCacheHitCount();
+
+	/**
+	 *
+	 * @return number of profile texts that are not found in the city name cache, or 0 if there is no cache
+	 */
+	long getCityNameCacheMissCount();
+
+	/**
+	 *
+	 * @return number of GPS positions that are resolved by the city grid cache, or 0 if there is no cache
+	 */
+	long getCityGridCacheHitCount();
+
+	/**
+	 *
+	 * @return number of GPS positions that are passed to the city boundary locator by the city grid cache, or 0 if
+	 *         there is no cache
+	 */
+	long getCityGridCacheMissCount();
+
+	/**
+	 * Resets all statistics except the statistics of the caches.
+	 */
+	void reset();
+}
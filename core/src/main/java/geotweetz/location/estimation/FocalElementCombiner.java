@@ -0,0 +1,119 @@
+package geotweetz.location.estimation;
+
+import geotweetz.location.type.FocalElementTable;
+
+/**
+ * Combines probability assignments using two different evidence sources with a CombinationRule. For each pair of focal
+ * elements, the product of their probability values is assigned to their intersection. If the intersection is empty
+ * (conflicting evidence), the pair is passed to the rule, and after all pairs are processed the rule distributes the
+ * conflicting evidence. All rules share this loop, so the cost of a rule is only in the handling of conflicting pairs.
+ *
+ * <p>
+ * The combiner keeps scratch buffers for intersections and conflicting evidence, and accumulates probability values in
+ * FocalElementTables. Once the tables have grown to the sizes needed, combining two sets of probability assignments
+ * does not allocate any memory. Because of the scratch buffers, a FocalElementCombiner must not be used by multiple
+ * threads at the same time.
+ *
+ * @author oozdikis
+ *
+ */
+public class FocalElementCombiner {
+
+	/**
+	 * Number of 64-bit words in the bitset of a focal element.
+	 */
+	private final int numberOfWords;
+
+	/**
+	 * Bitset of all locations in the frame of discernment (Theta).
+	 */
+	private final long[] thetaWords;
+
+	/**
+	 * Scratch buffer for the intersection of two focal elements.
+	 */
+	private final long[] intersection;
+
+	/**
+	 * Probability values that are assigned to focal elements by the rule for conflicting evidence.
+	 */
+	private final FocalElementTable conflictingProbabilityValues;
+
+	/**
+	 * Total probability value of conflicting focal elements in the last combination.
+	 */
+	private double conflictMass;
+
+	/**
+	 *
+	 * @param numberOfWords
+	 *            number of 64-bit words in the bitset of a focal element (see LocationIndex.getNumberOfWords())
+	 * @param thetaWords
+	 *            bitset of all locations in the frame of discernment (Theta), which rules can assign evidence to (e.g.,
+	 *            StandardCombinationRule.YAGER)
+	 * @throws IllegalArgumentException
+	 *             if Theta is null, or it does not have numberOfWords words
+	 */
+	public FocalElementCombiner(int numberOfWords, long[] thetaWords) {
+		if (thetaWords == null || thetaWords.length != numberOfWords) {
+			throw new IllegalArgumentException("Theta must be a bitset with " + numberOfWords + " words");
+		}
+		this.numberOfWords = numberOfWords;
+		this.thetaWords = thetaWords;
+		this.intersection = new long[numberOfWords];
+		this.conflictingProbabilityValues = new FocalElementTable(numberOfWords);
+	}
+
+	/**
+	 * Combines probability assignments using two different evidence sources.
+	 *
+	 * @param combinationRule
+	 *            rule that handles conflicting evidence
+	 * @param bpas1
+	 *            Basic probability assignments using evidence source #1
+	 * @param bpas2
+	 *            Basic probability assignments using evidence source #2
+	 * @param combinedBpas
+	 *            Table to write the combined probability assignments. It is cleared before the combination, and it must
+	 *            not be one of the input tables.
+	 */
+	public void combine(CombinationRule combinationRule, FocalElementTable bpas1, FocalElementTable bpas2,
+			FocalElementTable combinedBpas) {
+		combinedBpas.clear();
+		conflictingProbabilityValues.clear();
+		conflictMass = 0;
+		long[] words1 = bpas1.getWords();
+		long[] words2 = bpas2.getWords();
+		for (int element1 = 0; element1 < bpas1.size(); element1++) {
+			int offset1 = element1 * numberOfWords;
+			double probabilityValue1 = bpas1.getProbabilityValue(element1);
+			for (int element2 = 0; element2 < bpas2.size(); element2++) {
+				int offset2 = element2 * numberOfWords;
+				double probabilityValue2 = bpas2.getProbabilityValue(element2);
+				long nonEmpty = 0;
+				for (int i = 0; i < numberOfWords; i++) {
+					intersection[i] = words1[offset1 + i] & words2[offset2 + i];
+					nonEmpty |= intersection[i];
+				}
+				if (nonEmpty != 0) { // non-conflicting evidence, assign to intersection
+					combinedBpas.addProbabilityValue(intersection, 0, probabilityValue1 * probabilityValue2);
+				} else { // conflicting evidence, the intersection buffer can be reused by the rule
+					conflictMass += probabilityValue1 * probabilityValue2;
+					combinationRule.assignConflictingProbability(words1, offset1, probabilityValue1, words2, offset2,
+							probabilityValue2, conflictingProbabilityValues, intersection);
+				}
+			}
+		}
+		combinationRule.distributeConflictingProbability(combinedBpas, conflictingProbabilityValues, conflictMass,
+				thetaWords);
+	}
+
+	/**
+	 *
+	 * @return total probability value of the pairs of focal elements with an empty intersection in the last
+	 *         combination
+	 */
+	public double getConflictMass() {
+		return conflictMass;
+	}
+}
@@ -0,0 +1,223 @@
+package geotweetz.location.estimation;
+
+import java.util.Arrays;
+
+import geotweetz.location.type.FocalElementTable;
+
+/**
+ * Approximates probability assignments with fewer focal elements, to bound the cost of combinations. The combination
+ * of two tables is quadratic in their sizes, and conflicting evidence adds unions to the combined table, so ambiguous
+ * evidence in a large cluster can make the combinations very expensive.
+ *
+ * <p>
+ * Focal elements with a probability value below a minimum value are removed, and if there are still more focal
+ * elements than a maximum number, only the focal elements with the highest probability values are kept. The total
+ * probability value of the removed focal elements is assigned to the union of these focal elements, or to Theta (a
+ * summarization in the style of the k-l-x method). The approximation moves probability only from a focal element to a
+ * superset of it, so the commonality value of a location can only increase, and not more than the moved probability.
+ *
+ * <p>
+ * Combination with the rule "Dubois and Prade" does not increase the distance between approximated and exact
+ * probability assignments: if probability p is moved in one of the combined tables, the combined table differs from
+ * the exact combination by at most p moved between focal elements. Therefore, the commonality value of a location that
+ * is estimated with approximations before and after combinations differs from the exact commonality value by at most
+ * the total probability that is moved in all approximations (see LocationCommonalityValue.getCommonalityErrorBound).
+ *
+ * <p>
+ * A FocalElementSummarizer is immutable and can be shared by threads.
+ *
+ * @author oozdikis
+ *
+ */
+public class FocalElementSummarizer {
+
+	/**
+	 * Focal element that takes the probability values of removed focal elements.
+	 */
+	public static enum MergeTarget {
+
+		/**
+		 * Union of the removed focal elements (the most specific superset of all removed focal elements).
+		 */
+		UNION,
+
+		/**
+		 * Set of all locations (the removed evidence is considered as indifference).
+		 */
+		THETA
+	}
+
+	private final int maximumNumberOfFocalElements;
+	private final double minimumProbabilityValue;
+	private final MergeTarget mergeTarget;
+
+	/**
+	 *
+	 * @param maximumNumberOfFocalElements
+	 *            maximum number of focal elements in an approximated table (including the merged focal element)
+	 * @param minimumProbabilityValue
+	 *            focal elements with a smaller probability value are merged (0 to merge only to limit the number of
+	 *            focal elements)
+	 * @param mergeTarget
+	 *            focal element that takes the probability values of merged focal elements
+	 * @throws IllegalArgumentException
+	 *             if the maximum number of focal elements is not positive, or the minimum probability value is not in
+	 *             [0, 1)
+	 */
+	public FocalElementSummarizer(int maximumNumberOfFocalElements, double minimumProbabilityValue,
+			MergeTarget mergeTarget) {
+		if (maximumNumberOfFocalElements < 1) {
+			throw new IllegalArgumentException(
+					"Maximum number of focal elements must be positive: " + maximumNumberOfFocalElements);
+		}
+		if (!(minimumProbabilityValue >= 0 && minimumProbabilityValue < 1)) {
+			throw new IllegalArgumentException(
+					"Minimum probability value must be in [0, 1): " + minimumProbabilityValue);
+		}
+		if (mergeTarget == null) {
+			throw new IllegalArgumentException("Merge target must be set");
+		}
+		this.maximumNumberOfFocalElements = maximumNumberOfFocalElements;
+		this.minimumProbabilityValue = minimumProbabilityValue;
+		this.mergeTarget = mergeTarget;
+	}
+
+	/**
+	 *
+	 * @param bpas
+	 *            probability assignments
+	 * @return true if some focal elements of the probability assignments are merged by summarize
+	 */
+	public boolean needsSummarization(FocalElementTable bpas) {
+		if (bpas.size() > maximumNumberOfFocalElements) {
+			return true;
+		}
+		for (int element = 0; element < bpas.size(); element++) {
+			if (bpas.getProbabilityValue(element) < minimumProbabilityValue) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Approximates probability assignments with fewer focal elements. Focal elements are kept in the order of the
+	 * given table, and the merged focal element is added after them (or its probability value is added to a kept focal
+	 * element that is the same set).
+	 *
+	 * @param bpas
+	 *            probability assignments to approximate (not modified)
+	 * @param summarizedBpas
+	 *            table to write the approximated probability assignments. It is cleared before the approximation, and
+	 *            it must not be the given table.
+	 * @param thetaWords
+	 *            bitset of Theta (all locations)
+	 * @return probability that is moved from focal elements to their supersets, which is the bound of the error in
+	 *         commonality values
+	 */
+	public double summarize(FocalElementTable bpas, FocalElementTable summarizedBpas, long[] thetaWords) {
+		summarizedBpas.clear();
+		int size = bpas.size();
+		int numberOfWords = bpas.getNumberOfWords();
+		long[] words = bpas.getWords();
+
+		int numberOfEligibleElements = 0;
+		double[] eligibleProbabilityValues = new double[size];
+		for (int element = 0; element < size; element++) {
+			double probabilityValue = bpas.getProbabilityValue(element);
+			if (probabilityValue >= minimumProbabilityValue) {
+				eligibleProbabilityValues[numberOfEligibleElements++] = probabilityValue;
+			}
+		}
+		int numberOfKeptElements = numberOfEligibleElements;
+		double lowestKeptProbabilityValue = minimumProbabilityValue;
+		int numberOfElementsWithLowestKeptValue = Integer.MAX_VALUE;
+		if (size > maximumNumberOfFocalElements) {
+			// one place is left for the merged focal element
+			numberOfKeptElements = Math.min(numberOfEligibleElements, maximumNumberOfFocalElements - 1);
+			if (numberOfKeptElements < numberOfEligibleElements) {
+				Arrays.sort(eligibleProbabilityValues, 0, numberOfEligibleElements);
+				lowestKeptProbabilityValue = numberOfKeptElements == 0 ? Double.POSITIVE_INFINITY
+						: eligibleProbabilityValues[numberOfEligibleElements - numberOfKeptElements];
+				numberOfElementsWithLowestKeptValue = 0;
+				for (int i = numberOfEligibleElements - numberOfKeptElements; i < numberOfEligibleElements; i++) {
+					if (eligibleProbabilityValues[i] == lowestKeptProbabilityValue) {
+						numberOfElementsWithLowestKeptValue++;
+					}
+				}
+			}
+		}
+
+		boolean[] mergedElements = new boolean[size];
+		long[] merged = new long[numberOfWords];
+		double mergedProbabilityValue = 0;
+		int numberOfMergedElements = 0;
+		for (int element = 0; element < size; element++) {
+			double probabilityValue = bpas.getProbabilityValue(element);
+			boolean kept = probabilityValue > lowestKeptProbabilityValue
+					|| (probabilityValue == lowestKeptProbabilityValue && numberOfElementsWithLowestKeptValue-- > 0);
+			if (kept) {
+				summarizedBpas.addProbabilityValue(words, element * numberOfWords, probabilityValue);
+			} else {
+				mergedElements[element] = true;
+				for (int i = 0; i < numberOfWords; i++) {
+					merged[i] |= words[element * numberOfWords + i];
+				}
+				mergedProbabilityValue += probabilityValue;
+				numberOfMergedElements++;
+			}
+		}
+		if (numberOfMergedElements == 0) {
+			return 0;
+		}
+		long[] target = mergeTarget == MergeTarget.THETA ? thetaWords : merged;
+		summarizedBpas.addProbabilityValue(target, 0, mergedProbabilityValue);
+
+		// probability of a merged focal element that is the same set with the target does not move
+		double movedProbabilityValue = 0;
+		for (int element = 0; element < size; element++) {
+			if (mergedElements[element] && !equalWords(words, element * numberOfWords, target, numberOfWords)) {
+				movedProbabilityValue += bpas.getProbabilityValue(element);
+			}
+		}
+		return movedProbabilityValue;
+	}
+
+	private static boolean equalWords(long[] words, int offset, long[] otherWords, int numberOfWords) {
+		for (int i = 0; i < numberOfWords; i++) {
+			if (words[offset + i] != otherWords[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return maximum number of focal elements in an approximated table
+	 */
+	public int getMaximumNumberOfFocalElements() {
+		return maximumNumberOfFocalElements;
+	}
+
+	/**
+	 *
+	 * @return focal elements with a smaller probability value are merged
+	 */
+	public double getMinimumProbabilityValue() {
+		return minimumProbabilityValue;
+	}
+
+	/**
+	 *
+	 * @return focal element that takes the probability values of merged focal elements
+	 */
+	public MergeTarget getMergeTarget() {
+		return mergeTarget;
+	}
+
+	public String toString() {
+		return "(focal element summarizer: at most " + maximumNumberOfFocalElements + " focal elements, minimum "
+				+ minimumProbabilityValue + ", merged into " + mergeTarget + ")";
+	}
+}
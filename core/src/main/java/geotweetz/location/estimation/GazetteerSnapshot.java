@@ -0,0 +1,726 @@
+package geotweetz.location.estimation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.log4j.Logger;
+
+import com.vividsolutions.jts.algorithm.RayCrossingCounter;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Location;
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Compiled, read-only form of the frame of discernment that is loaded by memory-mapping a file. A snapshot keeps city
+ * ids, city names, the coordinates of city boundaries, an STR-packed R-tree over the envelopes of city boundaries, and
+ * the city name automaton (case-folded terms and the flat automaton of CityNameMatcher). Loading a snapshot only maps
+ * the file and creates views over its sections: no polygon, index or automaton is built, and the data stays off-heap
+ * in the page cache, where it is shared by all processes that map the same file.
+ *
+ * <p>
+ * A snapshot is written with write(CityGazetteer, File) (or with GazetteerSnapshotCompiler), and loaded with
+ * load(File). Estimators and mappers are created from a snapshot with LocationEstimator(GazetteerSnapshot) and
+ * TweetLocationMapper(GazetteerSnapshot); mappings are the same with the mappings of the gazetteer that the snapshot
+ * is written from.
+ *
+ * <p>
+ * File format (little-endian): a header with a magic number, the format version, the number of sections and the
+ * number of leaf nodes in the R-tree, followed by the offset and length (in bytes) of each section. Sections are
+ * aligned to 8 bytes. A snapshot file is replaced atomically when it is written again, so processes that have mapped
+ * the old file are not affected. A snapshot is not modified after it is loaded, so it can be shared by multiple
+ * threads.
+ *
+ * <p>
+ * When a snapshot is loaded, the offset and length of each section are checked against the size of the file, and the
+ * sizes of the sections are checked against each other (e.g., the number of name offsets against the number of
+ * cities, and the last name offset against the number of name characters), so a truncated or corrupt file is rejected
+ * with an IOException instead of failing later in a lookup.
+ *
+ * @author oozdikis
+ *
+ */
+public final class GazetteerSnapshot {
+	private static final Logger logger = Logger.getLogger(GazetteerSnapshot.class);
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private static final int MAGIC = 0x4E535A47; // "GZSN"
+	private static final int VERSION = 1;
+
+	/**
+	 * Maximum number of children of a node in the R-tree.
+	 */
+	private static final int INDEX_NODE_CAPACITY = 16;
+
+	// sections of the file, in order
+	private static final int CITY_IDS = 0;
+	private static final int NAME_OFFSETS = 1;
+	private static final int NAME_CHARACTERS = 2;
+	private static final int RING_OFFSETS = 3;
+	private static final int COORDINATE_OFFSETS = 4;
+	private static final int COORDINATES = 5;
+	private static final int CITY_ENVELOPES = 6;
+	private static final int INDEX_NODE_ENVELOPES = 7;
+	private static final int INDEX_NODE_CHILDREN = 8;
+	private static final int INDEX_ENTRIES = 9;
+	private static final int TERM_OFFSETS = 10;
+	private static final int TERM_CHARACTERS = 11;
+	private static final int TERM_TABLE = 12;
+	private static final int TRANSITION_OFFSETS = 13;
+	private static final int TRANSITION_TERMS = 14;
+	private static final int TRANSITION_TARGETS = 15;
+	private static final int FAILURES = 16;
+	private static final int OUTPUTS = 17;
+	private static final int CITY_OFFSETS = 18;
+	private static final int CITIES = 19;
+	private static final int NUMBER_OF_SECTIONS = 20;
+
+	private static final int HEADER_LENGTH = 16 + 16 * NUMBER_OF_SECTIONS;
+
+	/**
+	 * Size (in bytes) of the values in each section.
+	 */
+	private static final int[] SECTION_VALUE_SIZES = { 8, 4, 2, 4, 4, 8, 8, 8, 4, 4, 4, 2, 4, 4, 4, 4, 4, 4, 4, 4 };
+
+	/**
+	 * City ids, indexed by city number.
+	 */
+	private final LongBuffer cityIds;
+
+	/**
+	 * Name of city c is nameCharacters[nameOffsets[c], nameOffsets[c + 1]).
+	 */
+	private final IntBuffer nameOffsets;
+	private final CharBuffer nameCharacters;
+
+	/**
+	 * Rings of city c (shell first, then holes) are [ringOffsets[c], ringOffsets[c + 1]). Coordinates of ring r are
+	 * [coordinateOffsets[r], coordinateOffsets[r + 1]) in coordinates, as (x, y) pairs.
+	 */
+	private final IntBuffer ringOffsets;
+	private final IntBuffer coordinateOffsets;
+	private final DoubleBuffer coordinates;
+
+	/**
+	 * Envelopes of city boundaries (minX, maxX, minY, maxY), indexed by city number. Envelopes of empty boundaries are
+	 * NaN.
+	 */
+	private final DoubleBuffer cityEnvelopes;
+
+	/**
+	 * R-tree: envelopes of nodes, and the range [start, end) of the children of each node. Leaf nodes come first, and
+	 * their children are ranges of indexEntries (city numbers); children of other nodes are ranges of nodes. The root
+	 * is the last node.
+	 */
+	private final DoubleBuffer indexNodeEnvelopes;
+	private final IntBuffer indexNodeChildren;
+	private final IntBuffer indexEntries;
+	private final int numberOfLeafIndexNodes;
+
+	private final CityNameMatcher cityNameMatcher;
+	private final CityBoundaryLocator cityBoundaryLocator;
+
+	private GazetteerSnapshot(ByteBuffer data) throws IOException {
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		if (data.capacity() < HEADER_LENGTH || data.getInt(0) != MAGIC) {
+			throw new IOException("Not a gazetteer snapshot");
+		}
+		if (data.getInt(4) != VERSION || data.getInt(8) != NUMBER_OF_SECTIONS) {
+			throw new IOException("Unsupported gazetteer snapshot version " + data.getInt(4));
+		}
+		this.numberOfLeafIndexNodes = data.getInt(12);
+		ByteBuffer[] sections = new ByteBuffer[NUMBER_OF_SECTIONS];
+		for (int section = 0; section < NUMBER_OF_SECTIONS; section++) {
+			long offset = data.getLong(16 + 16 * section);
+			long length = data.getLong(24 + 16 * section);
+			if (offset < HEADER_LENGTH || offset % 8 != 0 || length < 0 || length % SECTION_VALUE_SIZES[section] != 0
+					|| length > data.capacity() - offset) {
+				throw new IOException("Gazetteer snapshot is truncated or corrupt");
+			}
+			ByteBuffer sectionData = data.duplicate();
+			sectionData.position((int) offset);
+			sectionData.limit((int) (offset + length));
+			sections[section] = sectionData.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		this.cityIds = sections[CITY_IDS].asLongBuffer();
+		this.nameOffsets = sections[NAME_OFFSETS].asIntBuffer();
+		this.nameCharacters = sections[NAME_CHARACTERS].asCharBuffer();
+		this.ringOffsets = sections[RING_OFFSETS].asIntBuffer();
+		this.coordinateOffsets = sections[COORDINATE_OFFSETS].asIntBuffer();
+		this.coordinates = sections[COORDINATES].asDoubleBuffer();
+		this.cityEnvelopes = sections[CITY_ENVELOPES].asDoubleBuffer();
+		this.indexNodeEnvelopes = sections[INDEX_NODE_ENVELOPES].asDoubleBuffer();
+		this.indexNodeChildren = sections[INDEX_NODE_CHILDREN].asIntBuffer();
+		this.indexEntries = sections[INDEX_ENTRIES].asIntBuffer();
+		int numberOfCities = cityIds.capacity();
+		int numberOfIndexNodes = indexNodeChildren.capacity() / 2;
+		if (nameOffsets.capacity() != numberOfCities + 1 || nameCharacters.capacity() != lastOffset(nameOffsets)
+				|| ringOffsets.capacity() != numberOfCities + 1
+				|| coordinateOffsets.capacity() != lastOffset(ringOffsets) + 1
+				|| coordinates.capacity() != 2 * lastOffset(coordinateOffsets)
+				|| cityEnvelopes.capacity() != 4 * numberOfCities || indexEntries.capacity() != numberOfCities
+				|| indexNodeChildren.capacity() % 2 != 0 || indexNodeEnvelopes.capacity() != 4 * numberOfIndexNodes
+				|| numberOfLeafIndexNodes != countLeafIndexNodes(numberOfCities)
+				|| numberOfLeafIndexNodes > numberOfIndexNodes || (numberOfCities == 0) != (numberOfIndexNodes == 0)) {
+			throw new IOException("Gazetteer snapshot is truncated or corrupt");
+		}
+
+		IntBuffer termOffsets = sections[TERM_OFFSETS].asIntBuffer();
+		CharBuffer termCharacters = sections[TERM_CHARACTERS].asCharBuffer();
+		IntBuffer termTable = sections[TERM_TABLE].asIntBuffer();
+		IntBuffer transitionOffsets = sections[TRANSITION_OFFSETS].asIntBuffer();
+		IntBuffer transitionTerms = sections[TRANSITION_TERMS].asIntBuffer();
+		IntBuffer transitionTargets = sections[TRANSITION_TARGETS].asIntBuffer();
+		IntBuffer failures = sections[FAILURES].asIntBuffer();
+		IntBuffer outputs = sections[OUTPUTS].asIntBuffer();
+		IntBuffer cityOffsets = sections[CITY_OFFSETS].asIntBuffer();
+		IntBuffer cities = sections[CITIES].asIntBuffer();
+		int numberOfNodes = failures.capacity(); // nodes of the automaton, the root is always present
+		if (termOffsets.capacity() == 0 || termCharacters.capacity() != lastOffset(termOffsets)
+				|| termTable.capacity() < 2 || Integer.bitCount(termTable.capacity()) != 1 || numberOfNodes == 0
+				|| transitionOffsets.capacity() != numberOfNodes + 1
+				|| transitionTerms.capacity() != lastOffset(transitionOffsets)
+				|| transitionTargets.capacity() != lastOffset(transitionOffsets) || outputs.capacity() != numberOfNodes
+				|| cityOffsets.capacity() != numberOfNodes + 1 || cities.capacity() != lastOffset(cityOffsets)) {
+			throw new IOException("Gazetteer snapshot is truncated or corrupt");
+		}
+		this.cityNameMatcher = new CityNameMatcher(cityIds, termOffsets, termCharacters, termTable, transitionOffsets,
+				transitionTerms, transitionTargets, failures, outputs, cityOffsets, cities);
+		this.cityBoundaryLocator = new SnapshotCityBoundaryLocator();
+	}
+
+	/**
+	 * Loads a snapshot by memory-mapping the given file (read-only). The mapping stays valid after the file is
+	 * replaced or deleted.
+	 *
+	 * @param file
+	 *            Snapshot file.
+	 * @return Snapshot over the mapped file.
+	 * @throws IOException
+	 *             if the file can not be read, or is not a valid snapshot.
+	 */
+	public static GazetteerSnapshot load(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Gazetteer snapshot is larger than 2 GB: " + file);
+			}
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			GazetteerSnapshot snapshot = new GazetteerSnapshot(data);
+			logger.info("Loaded gazetteer snapshot with " + snapshot.size() + " cities from " + file);
+			return snapshot;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Compiles a gazetteer to a snapshot file. The file is written to a temporary file in the same directory first, and
+	 * then moved to the given file.
+	 *
+	 * @param cityGazetteer
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 * @param file
+	 *            Snapshot file.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public static void write(CityGazetteer cityGazetteer, File file) throws IOException {
+		ByteBuffer[] sections = compile(cityGazetteer);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(NUMBER_OF_SECTIONS);
+		header.putInt(countLeafIndexNodes(cityGazetteer.size()));
+		long offset = HEADER_LENGTH;
+		for (ByteBuffer section : sections) {
+			header.putLong(offset).putLong(section.capacity());
+			offset = align(offset + section.capacity());
+		}
+		header.flip();
+
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temporaryFile = File.createTempFile("." + file.getName() + "-", ".tmp", directory);
+		try {
+			FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				writeFully(channel, header);
+				long position = HEADER_LENGTH;
+				for (ByteBuffer section : sections) {
+					section.rewind();
+					writeFully(channel, section);
+					position += section.capacity();
+					ByteBuffer padding = ByteBuffer.allocate((int) (align(position) - position));
+					writeFully(channel, padding);
+					position += padding.capacity();
+				}
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+			try {
+				Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temporaryFile.delete();
+		}
+		logger.info("Wrote gazetteer snapshot with " + cityGazetteer.size() + " cities to " + file);
+	}
+
+	/**
+	 *
+	 * @return number of cities
+	 */
+	public int size() {
+		return cityIds.capacity();
+	}
+
+	/**
+	 *
+	 * @param city
+	 *            city number (0 to size-1)
+	 * @return city id
+	 */
+	public long getCityId(int city) {
+		return cityIds.get(city);
+	}
+
+	/**
+	 *
+	 * @param city
+	 *            city number (0 to size-1)
+	 * @return name of the city
+	 */
+	public String getCityName(int city) {
+		int start = nameOffsets.get(city);
+		char[] name = new char[nameOffsets.get(city + 1) - start];
+		for (int i = 0; i < name.length; i++) {
+			name[i] = nameCharacters.get(start + i);
+		}
+		return new String(name);
+	}
+
+	/**
+	 * Creates a gazetteer with the cities in the snapshot. Boundaries are created as new polygons, so this is as
+	 * expensive as loading the cities from another source; it is meant for tools and tests, not for estimation.
+	 *
+	 * @return gazetteer with the cities in the same order
+	 */
+	public CityGazetteer toCityGazetteer() {
+		long[] ids = new long[size()];
+		String[] names = new String[size()];
+		Polygon[] boundaries = new Polygon[size()];
+		for (int city = 0; city < size(); city++) {
+			ids[city] = getCityId(city);
+			names[city] = getCityName(city);
+			int firstRing = ringOffsets.get(city);
+			int numberOfRings = ringOffsets.get(city + 1) - firstRing;
+			if (numberOfRings == 0) {
+				boundaries[city] = GEOMETRY_FACTORY.createPolygon(null, null);
+				continue;
+			}
+			LinearRing[] holes = new LinearRing[numberOfRings - 1];
+			for (int hole = 0; hole < holes.length; hole++) {
+				holes[hole] = createRing(firstRing + 1 + hole);
+			}
+			boundaries[city] = GEOMETRY_FACTORY.createPolygon(createRing(firstRing), holes);
+		}
+		return new CityGazetteer(ids, names, boundaries);
+	}
+
+	CityNameMatcher getCityNameMatcher() {
+		return cityNameMatcher;
+	}
+
+	CityBoundaryLocator getCityBoundaryLocator() {
+		return cityBoundaryLocator;
+	}
+
+	private LinearRing createRing(int ring) {
+		int start = coordinateOffsets.get(ring);
+		Coordinate[] ringCoordinates = new Coordinate[coordinateOffsets.get(ring + 1) - start];
+		for (int i = 0; i < ringCoordinates.length; i++) {
+			ringCoordinates[i] = new Coordinate(coordinates.get(2 * (start + i)), coordinates.get(2 * (start + i) + 1));
+		}
+		return GEOMETRY_FACTORY.createLinearRing(ringCoordinates);
+	}
+
+	/**
+	 * Creates the sections of a snapshot for a gazetteer.
+	 */
+	private static ByteBuffer[] compile(CityGazetteer cityGazetteer) {
+		int numberOfCities = cityGazetteer.size();
+		long[] ids = new long[numberOfCities];
+		int[] nameOffsetsArray = new int[numberOfCities + 1];
+		StringBuilder names = new StringBuilder();
+		int[] ringOffsetsArray = new int[numberOfCities + 1];
+		int numberOfRings = 0;
+		int numberOfCoordinates = 0;
+		double[] envelopes = new double[4 * numberOfCities];
+		for (int city = 0; city < numberOfCities; city++) {
+			ids[city] = cityGazetteer.getCityId(city);
+			nameOffsetsArray[city] = names.length();
+			if (cityGazetteer.getCityName(city) != null) {
+				names.append(cityGazetteer.getCityName(city));
+			}
+			Polygon boundary = cityGazetteer.getCityBoundary(city);
+			ringOffsetsArray[city] = numberOfRings;
+			if (!boundary.isEmpty()) {
+				numberOfRings += 1 + boundary.getNumInteriorRing();
+				numberOfCoordinates += boundary.getNumPoints();
+			}
+			Envelope envelope = boundary.getEnvelopeInternal();
+			if (envelope.isNull()) {
+				Arrays.fill(envelopes, 4 * city, 4 * city + 4, Double.NaN);
+			} else {
+				envelopes[4 * city] = envelope.getMinX();
+				envelopes[4 * city + 1] = envelope.getMaxX();
+				envelopes[4 * city + 2] = envelope.getMinY();
+				envelopes[4 * city + 3] = envelope.getMaxY();
+			}
+		}
+		nameOffsetsArray[numberOfCities] = names.length();
+		ringOffsetsArray[numberOfCities] = numberOfRings;
+
+		int[] coordinateOffsetsArray = new int[numberOfRings + 1];
+		double[] coordinatesArray = new double[2 * numberOfCoordinates];
+		int ring = 0;
+		int coordinate = 0;
+		for (int city = 0; city < numberOfCities; city++) {
+			Polygon boundary = cityGazetteer.getCityBoundary(city);
+			if (boundary.isEmpty()) {
+				continue;
+			}
+			for (int i = -1; i < boundary.getNumInteriorRing(); i++) {
+				LineString ringOfBoundary = i < 0 ? boundary.getExteriorRing() : boundary.getInteriorRingN(i);
+				coordinateOffsetsArray[ring++] = coordinate;
+				for (Coordinate ringCoordinate : ringOfBoundary.getCoordinates()) {
+					coordinatesArray[2 * coordinate] = ringCoordinate.x;
+					coordinatesArray[2 * coordinate + 1] = ringCoordinate.y;
+					coordinate++;
+				}
+			}
+		}
+		coordinateOffsetsArray[numberOfRings] = coordinate;
+
+		PackedIndex packedIndex = buildIndex(envelopes, numberOfCities);
+		CityNameMatcher cityNameMatcher = new CityNameMatcher(cityGazetteer);
+
+		ByteBuffer[] sections = new ByteBuffer[NUMBER_OF_SECTIONS];
+		sections[CITY_IDS] = toBytes(ids);
+		sections[NAME_OFFSETS] = toBytes(nameOffsetsArray);
+		sections[NAME_CHARACTERS] = toBytes(names.toString().toCharArray());
+		sections[RING_OFFSETS] = toBytes(ringOffsetsArray);
+		sections[COORDINATE_OFFSETS] = toBytes(coordinateOffsetsArray);
+		sections[COORDINATES] = toBytes(coordinatesArray);
+		sections[CITY_ENVELOPES] = toBytes(envelopes);
+		sections[INDEX_NODE_ENVELOPES] = toBytes(packedIndex.nodeEnvelopes);
+		sections[INDEX_NODE_CHILDREN] = toBytes(packedIndex.nodeChildren);
+		sections[INDEX_ENTRIES] = toBytes(packedIndex.entries);
+		sections[TERM_OFFSETS] = toBytes(cityNameMatcher.getTermOffsets());
+		sections[TERM_CHARACTERS] = toBytes(cityNameMatcher.getTermCharacters());
+		sections[TERM_TABLE] = toBytes(cityNameMatcher.getTermTable());
+		sections[TRANSITION_OFFSETS] = toBytes(cityNameMatcher.getTransitionOffsets());
+		sections[TRANSITION_TERMS] = toBytes(cityNameMatcher.getTransitionTerms());
+		sections[TRANSITION_TARGETS] = toBytes(cityNameMatcher.getTransitionTargets());
+		sections[FAILURES] = toBytes(cityNameMatcher.getFailures());
+		sections[OUTPUTS] = toBytes(cityNameMatcher.getOutputs());
+		sections[CITY_OFFSETS] = toBytes(cityNameMatcher.getCityOffsets());
+		sections[CITIES] = toBytes(cityNameMatcher.getCities());
+		return sections;
+	}
+
+	/**
+	 * Builds an R-tree over the envelopes of cities with Sort-Tile-Recursive packing: the items of a level are sorted by
+	 * the x of their centers and split into vertical slices, items in each slice are sorted by the y of their centers,
+	 * and consecutive items are packed into nodes. Levels are packed until a single root node remains.
+	 */
+	private static PackedIndex buildIndex(double[] envelopes, int numberOfCities) {
+		PackedIndex packedIndex = new PackedIndex();
+		if (numberOfCities == 0) {
+			packedIndex.nodeEnvelopes = new double[0];
+			packedIndex.nodeChildren = new int[0];
+			packedIndex.entries = new int[0];
+			return packedIndex;
+		}
+		Integer[] items = new Integer[numberOfCities];
+		for (int city = 0; city < numberOfCities; city++) {
+			items[city] = city;
+		}
+		packedIndex.entries = new int[numberOfCities];
+		double[] itemEnvelopes = envelopes;
+		int numberOfNodes = 0;
+		double[] nodeEnvelopes = new double[0];
+		int[] nodeChildren = new int[0];
+		int firstItem = 0; // index of the first item of the current level in the nodes (for levels above the leaves)
+		boolean leafLevel = true;
+		while (true) {
+			sortTileRecursive(items, itemEnvelopes);
+			int numberOfParents = (items.length + INDEX_NODE_CAPACITY - 1) / INDEX_NODE_CAPACITY;
+			nodeEnvelopes = Arrays.copyOf(nodeEnvelopes, 4 * (numberOfNodes + numberOfParents));
+			nodeChildren = Arrays.copyOf(nodeChildren, 2 * (numberOfNodes + numberOfParents));
+			double[] parentEnvelopes = new double[4 * numberOfParents];
+			if (leafLevel) {
+				for (int i = 0; i < items.length; i++) {
+					packedIndex.entries[i] = items[i];
+				}
+			} else { // nodes of the level are stored in the order of items
+				double[] levelEnvelopes = Arrays.copyOfRange(nodeEnvelopes, 4 * firstItem, 4 * (firstItem + items.length));
+				int[] levelChildren = Arrays.copyOfRange(nodeChildren, 2 * firstItem, 2 * (firstItem + items.length));
+				for (int i = 0; i < items.length; i++) {
+					System.arraycopy(levelEnvelopes, 4 * items[i], nodeEnvelopes, 4 * (firstItem + i), 4);
+					System.arraycopy(levelChildren, 2 * items[i], nodeChildren, 2 * (firstItem + i), 2);
+				}
+			}
+			for (int parent = 0; parent < numberOfParents; parent++) {
+				int start = parent * INDEX_NODE_CAPACITY;
+				int end = Math.min(start + INDEX_NODE_CAPACITY, items.length);
+				double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+				double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+				for (int i = start; i < end; i++) {
+					int item = items[i];
+					if (!Double.isNaN(itemEnvelopes[4 * item])) {
+						minX = Math.min(minX, itemEnvelopes[4 * item]);
+						maxX = Math.max(maxX, itemEnvelopes[4 * item + 1]);
+						minY = Math.min(minY, itemEnvelopes[4 * item + 2]);
+						maxY = Math.max(maxY, itemEnvelopes[4 * item + 3]);
+					}
+				}
+				int node = numberOfNodes + parent;
+				parentEnvelopes[4 * parent] = minX;
+				parentEnvelopes[4 * parent + 1] = maxX;
+				parentEnvelopes[4 * parent + 2] = minY;
+				parentEnvelopes[4 * parent + 3] = maxY;
+				System.arraycopy(parentEnvelopes, 4 * parent, nodeEnvelopes, 4 * node, 4);
+				nodeChildren[2 * node] = leafLevel ? start : firstItem + start;
+				nodeChildren[2 * node + 1] = leafLevel ? end : firstItem + end;
+			}
+			firstItem = numberOfNodes;
+			numberOfNodes += numberOfParents;
+			leafLevel = false;
+			if (numberOfParents == 1) {
+				break;
+			}
+			items = new Integer[numberOfParents];
+			for (int i = 0; i < numberOfParents; i++) {
+				items[i] = i;
+			}
+			itemEnvelopes = parentEnvelopes;
+		}
+		packedIndex.nodeEnvelopes = nodeEnvelopes;
+		packedIndex.nodeChildren = nodeChildren;
+		return packedIndex;
+	}
+
+	private static void sortTileRecursive(Integer[] items, final double[] itemEnvelopes) {
+		Arrays.sort(items, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer item1, Integer item2) {
+				return Double.compare(itemEnvelopes[4 * item1] + itemEnvelopes[4 * item1 + 1],
+						itemEnvelopes[4 * item2] + itemEnvelopes[4 * item2 + 1]);
+			}
+		});
+		int numberOfParents = (items.length + INDEX_NODE_CAPACITY - 1) / INDEX_NODE_CAPACITY;
+		int sliceLength = INDEX_NODE_CAPACITY * (int) Math.ceil(Math.sqrt(numberOfParents));
+		for (int start = 0; start < items.length; start += sliceLength) {
+			Arrays.sort(items, start, Math.min(start + sliceLength, items.length), new Comparator<Integer>() {
+				@Override
+				public int compare(Integer item1, Integer item2) {
+					return Double.compare(itemEnvelopes[4 * item1 + 2] + itemEnvelopes[4 * item1 + 3],
+							itemEnvelopes[4 * item2 + 2] + itemEnvelopes[4 * item2 + 3]);
+				}
+			});
+		}
+	}
+
+	private static int countLeafIndexNodes(int numberOfCities) {
+		return (numberOfCities + INDEX_NODE_CAPACITY - 1) / INDEX_NODE_CAPACITY;
+	}
+
+	/**
+	 * @return the last value of an offsets section (the number of values in the section that it indexes), or -1 if the
+	 *         section is empty
+	 */
+	private static long lastOffset(IntBuffer offsets) {
+		return offsets.capacity() > 0 ? offsets.get(offsets.capacity() - 1) : -1;
+	}
+
+	private static long align(long offset) {
+		return (offset + 7) & ~7L;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static ByteBuffer toBytes(long[] values) {
+		ByteBuffer bytes = ByteBuffer.allocate(8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asLongBuffer().put(values);
+		return bytes;
+	}
+
+	private static ByteBuffer toBytes(double[] values) {
+		ByteBuffer bytes = ByteBuffer.allocate(8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asDoubleBuffer().put(values);
+		return bytes;
+	}
+
+	private static ByteBuffer toBytes(int[] values) {
+		ByteBuffer bytes = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asIntBuffer().put(values);
+		return bytes;
+	}
+
+	private static ByteBuffer toBytes(char[] values) {
+		ByteBuffer bytes = ByteBuffer.allocate(2 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asCharBuffer().put(values);
+		return bytes;
+	}
+
+	private static ByteBuffer toBytes(IntBuffer values) {
+		int[] array = new int[values.capacity()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+		return toBytes(array);
+	}
+
+	private static ByteBuffer toBytes(CharBuffer values) {
+		char[] array = new char[values.capacity()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+		return toBytes(array);
+	}
+
+	/**
+	 * R-tree in packed form, which is written to the index sections.
+	 */
+	private static class PackedIndex {
+		private double[] nodeEnvelopes;
+		private int[] nodeChildren;
+		private int[] entries;
+	}
+
+	/**
+	 * CityBoundaryLocator over the R-tree and the boundary coordinates in the snapshot. Candidate cities are found by
+	 * traversing the R-tree, and the boundary of each candidate is tested with a ray crossing count over the
+	 * coordinates of all of its rings (which finds the same location as the point-in-area test of JTS).
+	 */
+	private class SnapshotCityBoundaryLocator implements CityBoundaryLocator {
+
+		@Override
+		public void findCitiesAtLatitudeLongitude(double latitude, double longitude,
+				TweetCityMapping tweetCityMapping) {
+			findCities(latitude, longitude, tweetCityMapping, new int[64], new Coordinate(), new Coordinate(),
+					new Coordinate());
+		}
+
+		@Override
+		public void findCitiesAtLatitudesLongitudes(double[] latitudes, double[] longitudes,
+				TweetCityMapping tweetCityMapping) {
+			int[] stack = new int[64];
+			Coordinate point = new Coordinate();
+			Coordinate segmentStart = new Coordinate();
+			Coordinate segmentEnd = new Coordinate();
+			for (int i = 0; i < latitudes.length; i++) {
+				stack = findCities(latitudes[i], longitudes[i], tweetCityMapping, stack, point, segmentStart,
+						segmentEnd);
+				tweetCityMapping.endTweet();
+			}
+		}
+
+		/**
+		 * Traverses the R-tree with a stack of nodes, and tests the boundaries of the cities in the leaves whose
+		 * envelopes contain the position.
+		 *
+		 * @return the stack (a larger array if the given one is too small)
+		 */
+		private int[] findCities(double x, double y, TweetCityMapping tweetCityMapping, int[] stack, Coordinate point,
+				Coordinate segmentStart, Coordinate segmentEnd) {
+			int numberOfNodes = indexNodeChildren.capacity() / 2;
+			if (numberOfNodes == 0) {
+				return stack;
+			}
+			point.x = x;
+			point.y = y;
+			int stackSize = 0;
+			stack[stackSize++] = numberOfNodes - 1;
+			while (stackSize > 0) {
+				int node = stack[--stackSize];
+				if (!envelopeContains(indexNodeEnvelopes, node, x, y)) {
+					continue;
+				}
+				int start = indexNodeChildren.get(2 * node);
+				int end = indexNodeChildren.get(2 * node + 1);
+				if (node < numberOfLeafIndexNodes) {
+					for (int i = start; i < end; i++) {
+						int city = indexEntries.get(i);
+						if (envelopeContains(cityEnvelopes, city, x, y)
+								&& boundaryContains(city, point, segmentStart, segmentEnd)) {
+							tweetCityMapping.addCity(city);
+						}
+					}
+				} else {
+					if (stackSize + end - start > stack.length) {
+						stack = Arrays.copyOf(stack, 2 * (stackSize + end - start));
+					}
+					for (int child = start; child < end; child++) {
+						stack[stackSize++] = child;
+					}
+				}
+			}
+			return stack;
+		}
+
+		private boolean envelopeContains(DoubleBuffer envelopes, int item, double x, double y) {
+			return envelopes.get(4 * item) <= x && x <= envelopes.get(4 * item + 1) && envelopes.get(4 * item + 2) <= y
+					&& y <= envelopes.get(4 * item + 3);
+		}
+
+		private boolean boundaryContains(int city, Coordinate point, Coordinate segmentStart, Coordinate segmentEnd) {
+			RayCrossingCounter rayCrossingCounter = new RayCrossingCounter(point);
+			for (int ring = ringOffsets.get(city); ring < ringOffsets.get(city + 1); ring++) {
+				int start = coordinateOffsets.get(ring);
+				int end = coordinateOffsets.get(ring + 1);
+				segmentEnd.x = coordinates.get(2 * start);
+				segmentEnd.y = coordinates.get(2 * start + 1);
+				for (int i = start + 1; i < end; i++) {
+					segmentStart.x = segmentEnd.x;
+					segmentStart.y = segmentEnd.y;
+					segmentEnd.x = coordinates.get(2 * i);
+					segmentEnd.y = coordinates.get(2 * i + 1);
+					rayCrossingCounter.countSegment(segmentStart, segmentEnd);
+					if (rayCrossingCounter.isOnSegment()) {
+						return false;
+					}
+				}
+			}
+			return rayCrossingCounter.getLocation() == Location.INTERIOR;
+		}
+	}
+}
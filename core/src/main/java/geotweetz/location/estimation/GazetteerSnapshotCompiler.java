@@ -0,0 +1,95 @@
+package geotweetz.location.estimation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+import geotweetz.location.type.CityGazetteer;
+
+/**
+ * Command-line tool that compiles a city list to a GazetteerSnapshot file:
+ *
+ * <pre>
+ * java -cp location-estimation-core.jar:... geotweetz.location.estimation.GazetteerSnapshotCompiler cities.tsv cities.snapshot
+ * </pre>
+ *
+ * The city list is a UTF-8 text file with one city per line, and three tab-separated columns: city id, city name and
+ * city boundary as a WKT polygon. Coordinates of boundaries are in the same order with CityDBO boundaries (latitude
+ * first). Such a list can be exported from the city table, e.g. with "\copy (select id, name, ST_AsText(boundary) from
+ * city) to 'cities.tsv'" in psql. Empty lines and lines that start with '#' are skipped.
+ *
+ * @author oozdikis
+ *
+ */
+public class GazetteerSnapshotCompiler {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: GazetteerSnapshotCompiler <city list (id, name, WKT boundary)> <snapshot file>");
+			System.exit(2);
+		}
+		Reader cityList = new InputStreamReader(new FileInputStream(args[0]), "UTF-8");
+		try {
+			GazetteerSnapshot.write(readCityGazetteer(cityList), new File(args[1]));
+		} finally {
+			cityList.close();
+		}
+	}
+
+	/**
+	 * Reads a city list (see GazetteerSnapshotCompiler).
+	 *
+	 * @param cityList
+	 *            Reader of the city list.
+	 * @return Gazetteer with the cities in the order of the list.
+	 * @throws IOException
+	 *             if the list can not be read, or a line is not valid.
+	 */
+	public static CityGazetteer readCityGazetteer(Reader cityList) throws IOException {
+		BufferedReader reader = new BufferedReader(cityList);
+		WKTReader wktReader = new WKTReader();
+		List<Long> ids = new ArrayList<Long>();
+		List<String> names = new ArrayList<String>();
+		List<Polygon> boundaries = new ArrayList<Polygon>();
+		int lineNumber = 0;
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			lineNumber++;
+			if (line.trim().isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] columns = line.split("\t", 3);
+			if (columns.length != 3) {
+				throw new IOException("Line " + lineNumber + ": expected id, name and boundary separated by tabs");
+			}
+			try {
+				Geometry boundary = wktReader.read(columns[2]);
+				if (!(boundary instanceof Polygon)) {
+					throw new IOException("Line " + lineNumber + ": boundary is not a polygon");
+				}
+				ids.add(Long.parseLong(columns[0].trim()));
+				names.add(columns[1]);
+				boundaries.add((Polygon) boundary);
+			} catch (NumberFormatException e) {
+				throw new IOException("Line " + lineNumber + ": invalid city id", e);
+			} catch (ParseException e) {
+				throw new IOException("Line " + lineNumber + ": invalid WKT boundary", e);
+			}
+		}
+		long[] idsArray = new long[ids.size()];
+		for (int i = 0; i < idsArray.length; i++) {
+			idsArray[i] = ids.get(i);
+		}
+		return new CityGazetteer(idsArray, names.toArray(new String[names.size()]),
+				boundaries.toArray(new Polygon[boundaries.size()]));
+	}
+}
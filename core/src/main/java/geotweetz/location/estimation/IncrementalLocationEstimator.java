@@ -0,0 +1,187 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.FocalElementTable;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Stateful location estimator for a cluster whose tweets arrive over time (e.g., a live event). Tweets are added one
+ * at a time or in micro-batches. Each new tweet is mapped to locations once using its three spatial features, and only
+ * the number of tweets for each set of locations (focal element) is kept per evidence source. The cost of adding a
+ * tweet is therefore proportional to that tweet only, and the cluster does not need to be kept in memory.
+ *
+ * <p>
+ * The current estimation is calculated on demand from the focal element counts. The result is the same as
+ * LocationEstimator.estimateLocationForCluster for all tweets added so far, and its cost depends on the number of
+ * focal elements, not on the number of tweets.
+ *
+ * <p>
+ * Methods are synchronized, so tweets can be added by one thread while the estimation is requested by another.
+ *
+ * @author oozdikis
+ *
+ */
+public class IncrementalLocationEstimator {
+	private static final Logger logger = Logger.getLogger(IncrementalLocationEstimator.class);
+
+	/**
+	 * Estimator that provides the tweet-location mapper, the location index and the combination of BPAs.
+	 */
+	private final LocationEstimator locationEstimator;
+
+	/**
+	 * Number of tweets for each set of locations found using tweet lat-lon.
+	 */
+	private final FocalElementTable tweetCountsUsingTweetLatitudeLongitude;
+
+	/**
+	 * Number of tweets for each set of locations found using tweet content.
+	 */
+	private final FocalElementTable tweetCountsUsingTweetContent;
+
+	/**
+	 * Number of tweets for each set of locations found using location in user profile.
+	 */
+	private final FocalElementTable tweetCountsUsingUserProfileLocation;
+
+	/**
+	 * Buffer for the bitset of a set of locations.
+	 */
+	private final long[] locationsSetBuffer;
+
+	/**
+	 * Buffer for the tweet-location mappings of a batch.
+	 */
+	private final TweetCityMapping tweetCityMapping;
+
+	/**
+	 * Number of tweets added so far.
+	 */
+	private int numberOfTweets;
+
+	/**
+	 *
+	 * @param locationEstimator
+	 *            Estimator for the frame of discernment that the cluster is estimated in. It can be shared by many
+	 *            incremental estimators.
+	 */
+	public IncrementalLocationEstimator(LocationEstimator locationEstimator) {
+		int numberOfWords = locationEstimator.getLocationIndex().getNumberOfWords();
+		this.locationEstimator = locationEstimator;
+		this.tweetCountsUsingTweetLatitudeLongitude = new FocalElementTable(numberOfWords);
+		this.tweetCountsUsingTweetContent = new FocalElementTable(numberOfWords);
+		this.tweetCountsUsingUserProfileLocation = new FocalElementTable(numberOfWords);
+		this.locationsSetBuffer = new long[numberOfWords];
+		this.tweetCityMapping = new TweetCityMapping();
+		this.numberOfTweets = 0;
+	}
+
+	/**
+	 * Adds a new tweet to the cluster.
+	 *
+	 * @param tweet
+	 *            Tweet to add.
+	 */
+	public synchronized void addTweet(TweetDBO tweet) {
+		addTweet(TweetObservation.fromTweetDBO(tweet));
+	}
+
+	/**
+	 * Adds a new tweet, given as an observation, to the cluster.
+	 *
+	 * @param tweet
+	 *            Tweet to add.
+	 */
+	public synchronized void addTweet(TweetObservation tweet) {
+		TweetLocationMapper tweetLocationMapper = locationEstimator.getTweetLocationMapper();
+		locationEstimator.addElementCount(tweetCountsUsingTweetLatitudeLongitude,
+				tweetLocationMapper.mapTweetToCitiesUsingLatitudeLongitude(tweet), 1, locationsSetBuffer);
+		locationEstimator.addElementCount(tweetCountsUsingTweetContent,
+				tweetLocationMapper.mapTweetToCitiesUsingContent(tweet), 1, locationsSetBuffer);
+		locationEstimator.addElementCount(tweetCountsUsingUserProfileLocation,
+				tweetLocationMapper.mapTweetToCitiesUsingProfile(tweet), 1, locationsSetBuffer);
+		numberOfTweets++;
+	}
+
+	/**
+	 * Adds a micro-batch of new tweets to the cluster.
+	 *
+	 * @param tweets
+	 *            Tweets to add.
+	 */
+	public synchronized void addTweets(List<TweetDBO> tweets) {
+		for (TweetDBO tweet : tweets) {
+			addTweet(tweet);
+		}
+	}
+
+	/**
+	 * Adds a micro-batch of new tweets, given in columnar form, to the cluster. The batch is not referenced after the
+	 * method returns, so a stream of batches can be added without keeping the tweets in memory.
+	 *
+	 * @param tweetBatch
+	 *            Tweets to add.
+	 */
+	public synchronized void addTweets(TweetBatch tweetBatch) {
+		TweetLocationMapper tweetLocationMapper = locationEstimator.getTweetLocationMapper();
+		tweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, tweetCityMapping);
+		locationEstimator.addElementCounts(tweetCountsUsingTweetLatitudeLongitude, tweetCityMapping,
+				locationsSetBuffer);
+		tweetLocationMapper.mapBatchToCitiesUsingContent(tweetBatch, tweetCityMapping);
+		locationEstimator.addElementCounts(tweetCountsUsingTweetContent, tweetCityMapping, locationsSetBuffer);
+		tweetLocationMapper.mapBatchToCitiesUsingProfile(tweetBatch, tweetCityMapping);
+		locationEstimator.addElementCounts(tweetCountsUsingUserProfileLocation, tweetCityMapping, locationsSetBuffer);
+		numberOfTweets += tweetBatch.size();
+	}
+
+	/**
+	 *
+	 * @return number of tweets added so far
+	 */
+	public synchronized int getNumberOfTweets() {
+		return numberOfTweets;
+	}
+
+	/**
+	 * Estimates the location of the cluster using all tweets added so far.
+	 *
+	 * @return LocationCommonalityValues for locations with the highest commonality score, or an empty list if no tweet
+	 *         is added yet.
+	 */
+	public synchronized ArrayList<LocationCommonalityValue> estimateLocation() {
+		return estimateTopLocations(1);
+	}
+
+	/**
+	 * Estimates the k most likely locations of the cluster using all tweets added so far.
+	 *
+	 * @param numberOfLocations
+	 *            Number of locations to return (k).
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores (with ties), or an
+	 *         empty list if no tweet is added yet.
+	 */
+	public synchronized ArrayList<LocationCommonalityValue> estimateTopLocations(int numberOfLocations) {
+		LocationEstimator.checkNumberOfLocations(numberOfLocations);
+		if (numberOfTweets == 0) {
+			return new ArrayList<LocationCommonalityValue>();
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Estimating location for incremental cluster with " + numberOfTweets + " tweets");
+		}
+		tweetCountsUsingTweetLatitudeLongitude.setProbabilityValuesFromElementCounts(numberOfTweets);
+		tweetCountsUsingTweetContent.setProbabilityValuesFromElementCounts(numberOfTweets);
+		tweetCountsUsingUserProfileLocation.setProbabilityValuesFromElementCounts(numberOfTweets);
+		return locationEstimator.estimateLocationUsingBasicProbabilityAssignments(
+				tweetCountsUsingTweetLatitudeLongitude, tweetCountsUsingTweetContent,
+				tweetCountsUsingUserProfileLocation, numberOfLocations);
+	}
+
+}
@@ -0,0 +1,113 @@
+package geotweetz.location.estimation;
+
+import com.vividsolutions.jts.algorithm.locate.IndexedPointInAreaLocator;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Location;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.index.ItemVisitor;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * CityBoundaryLocator over the JTS polygons of a gazetteer. An STR-packed R-tree over the envelopes of city boundaries
+ * is used as a pre-filter, so that exact point-in-polygon tests are only executed for candidate cities whose bounding
+ * boxes contain a GPS position.
+ *
+ * @author oozdikis
+ *
+ */
+class IndexedCityBoundaryLocator implements CityBoundaryLocator {
+
+	/**
+	 * Spatial index (STR-packed R-tree) over the envelopes of city boundaries. It is built once in the constructor.
+	 * Items in the index are PreparedCityBoundary objects.
+	 */
+	private final STRtree cityBoundaryIndex;
+
+	/**
+	 * Builds the spatial index over the envelopes of city boundaries. The index is read-only after it is built.
+	 *
+	 * @param cityGazetteer
+	 *            Cities to be indexed.
+	 */
+	IndexedCityBoundaryLocator(CityGazetteer cityGazetteer) {
+		this.cityBoundaryIndex = new STRtree();
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			Polygon boundary = cityGazetteer.getCityBoundary(city);
+			cityBoundaryIndex.insert(boundary.getEnvelopeInternal(), new PreparedCityBoundary(city, boundary));
+		}
+		cityBoundaryIndex.build();
+	}
+
+	@Override
+	public void findCitiesAtLatitudeLongitude(double latitude, double longitude, TweetCityMapping tweetCityMapping) {
+		CityBoundaryVisitor cityBoundaryVisitor = new CityBoundaryVisitor(tweetCityMapping);
+		cityBoundaryVisitor.coordinate.x = latitude;
+		cityBoundaryVisitor.coordinate.y = longitude;
+		cityBoundaryIndex.query(new Envelope(latitude, latitude, longitude, longitude), cityBoundaryVisitor);
+	}
+
+	@Override
+	public void findCitiesAtLatitudesLongitudes(double[] latitudes, double[] longitudes,
+			TweetCityMapping tweetCityMapping) {
+		CityBoundaryVisitor cityBoundaryVisitor = new CityBoundaryVisitor(tweetCityMapping);
+		Envelope searchEnvelope = new Envelope();
+		for (int i = 0; i < latitudes.length; i++) {
+			cityBoundaryVisitor.coordinate.x = latitudes[i];
+			cityBoundaryVisitor.coordinate.y = longitudes[i];
+			searchEnvelope.init(latitudes[i], latitudes[i], longitudes[i], longitudes[i]);
+			cityBoundaryIndex.query(searchEnvelope, cityBoundaryVisitor);
+			tweetCityMapping.endTweet();
+		}
+	}
+
+	/**
+	 * Boundary of a city in prepared form. The point-in-area locator keeps an index of the segments of the boundary,
+	 * which makes repeated point-in-polygon tests much cheaper for boundaries with many vertices, and tests a
+	 * coordinate without creating a point geometry. Note that a point is within a city boundary if and only if it is
+	 * in the interior of the boundary.
+	 */
+	private static class PreparedCityBoundary {
+		private final int city;
+		private final IndexedPointInAreaLocator boundaryLocator;
+
+		private PreparedCityBoundary(int city, Polygon boundary) {
+			this.city = city;
+			this.boundaryLocator = new IndexedPointInAreaLocator(boundary);
+			// The locator builds its interval tree lazily on the first test. A first test here builds it before the
+			// locator is shared by threads, so later tests only read it.
+			if (!boundary.isEmpty()) {
+				boundaryLocator.locate(boundary.getCoordinate());
+			}
+		}
+
+		private boolean contains(Coordinate coordinate) {
+			return boundaryLocator.locate(coordinate) == Location.INTERIOR;
+		}
+	}
+
+	/**
+	 * Visitor for the candidate cities of a GPS position in the spatial index. It adds the cities that contain the
+	 * position to the current tweet of a mapping. A visitor is used by a single thread, and its coordinate is updated
+	 * for each position.
+	 */
+	private static class CityBoundaryVisitor implements ItemVisitor {
+		private final Coordinate coordinate = new Coordinate();
+		private final TweetCityMapping tweetCityMapping;
+
+		private CityBoundaryVisitor(TweetCityMapping tweetCityMapping) {
+			this.tweetCityMapping = tweetCityMapping;
+		}
+
+		@Override
+		public void visitItem(Object item) {
+			PreparedCityBoundary location = (PreparedCityBoundary) item;
+			if (location.contains(coordinate)) {
+				tweetCityMapping.addCity(location.city);
+			}
+		}
+	}
+}
@@ -0,0 +1,1280 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.BeliefFunction;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.FocalElementTable;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.LocationIndex;
+import geotweetz.location.type.LocationSet;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Implementation of a location estimation method using Dempster-Shafer (DS) Theory.
+ * 
+ * Please see:
+ * <p>
+ * "Evidential estimation of event locations in microblogs using the Dempster–Shafer theory"
+ * <a href="http://dl.acm.org/citation.cfm?id=3009510">(http://dl.acm.org/ citation.cfm?id=3009510)</a>
+ * <p>
+ * and
+ * <p>
+ * "Evidential location estimation for events detected in Twitter"
+ * <a href="http://dl.acm.org/citation.cfm?id=2533929">(http://dl.acm.org/ citation.cfm?id=2533929)</a>
+ * 
+ * <p>
+ * The estimation method expects a clustered set of tweets that are presumably about an event and the set of locations
+ * that define the propositional space of possible solutions (the frame of discernment). Using three spatial attributes
+ * in tweets (lat-lon, tweet text, location in user profile) as three evidence sources, the estimation method assigns
+ * basic probability values to sets of locations, combines them using combination rules in DS theory, calculates
+ * commonality values for locations, and selects the location(s) with the highest commonality as the estimated event
+ * location(s). The rule of "Dubois and Prade" is used by default, and other rules can be selected with
+ * setCombinationRule.
+ * 
+ * <p>
+ * The estimator works on immutable input types (CityGazetteer and TweetObservation), so that it can be fed directly
+ * from a parsed stream without creating database objects. Constructors and methods that take CityDBO and TweetDBO
+ * convert them to these types. An estimator can also be created from a memory-mapped GazetteerSnapshot, which starts
+ * without building the spatial index and the city name automaton. Large clusters can also be given as a columnar
+ * TweetBatch (see estimateLocationForBatch).
+ * 
+ * <p>
+ * The estimateLocationFor... methods return the locations with the highest commonality value. The
+ * estimateTopLocationsFor... methods return the k locations with the highest commonality values instead, e.g. to show
+ * the 5 most likely locations of an event with their scores. The estimateBeliefFunctionFor... methods return the
+ * combined probability assignments as a BeliefFunction, which gives the belief, plausibility and commonality of any
+ * set of locations.
+ * 
+ * <p>
+ * A LocationEstimator is thread-safe. The frame of discernment, the location index and the TweetLocationMapper are not
+ * modified after construction and are shared by all threads, and the scratch buffers that are used in combinations are
+ * kept per thread. Many clusters can be estimated concurrently with estimateLocationsForClusters.
+ * 
+ * <p>
+ * Stages of the estimation (mappings, BPAs, combinations and commonality selection) can be measured by setting
+ * EstimationMetrics (see setEstimationMetrics). Without metrics, the stages are not timed. Debug messages are only built
+ * if debug logging is enabled, and a structured trace event is logged for each estimation if trace logging is enabled
+ * (see config/log4j-async.xml for asynchronous logging).
+ * 
+ * @author oozdikis
+ *
+ */
+/*
+ * Other components and extensions to the method, such as estimation at town level, using city-town association
+ * (association of evidence), and location disambiguation are not included in this sample code. The terms "Location" and
+ * "City" can be used interchangeably (since the code can also be used for location estimation using other types of
+ * locations (e.g., town or POI). In this sample code, estimations are made at the city level, and the set of all cities
+ * is denoted by Theta.
+ * 
+ */
+public class LocationEstimator {
+	private static final Logger logger = Logger.getLogger(LocationEstimator.class);
+
+	/**
+	 * TweetLocationMapper Object that is used to map tweets to locations.
+	 */
+	private final TweetLocationMapper tweetLocationMapper;
+
+	/**
+	 * Dense index of the locations in the frame of discernment, which is used to represent sets of locations as
+	 * bitsets.
+	 */
+	private final LocationIndex locationIndex;
+
+	/**
+	 * Indices of the locations in the location index, by their numbers in the frame of discernment (CityGazetteer).
+	 */
+	private final int[] locationIndicesOfCities;
+
+	/**
+	 * Set of all locations in the frame of discernment (Theta).
+	 */
+	private final LocationSet thetaLocationSet;
+
+	/**
+	 * Combiners that apply combination rules to probability assignments. A combiner keeps scratch buffers that are
+	 * reused in all combinations, so each thread gets its own combiner.
+	 */
+	private final ThreadLocal<FocalElementCombiner> focalElementCombiners;
+
+	/**
+	 * Executor that runs the mapping and BPA calculation for evidence sources of a cluster concurrently, or null if
+	 * evidence sources are processed one after another.
+	 */
+	private final ExecutorService evidenceSourceExecutor;
+
+	/**
+	 * Metrics that receive the measurements of the stages of the estimation, or null.
+	 */
+	private volatile EstimationMetrics estimationMetrics;
+
+	/**
+	 * Summarizer that approximates probability assignments before and after combinations, or null.
+	 */
+	private volatile FocalElementSummarizer focalElementSummarizer;
+
+	/**
+	 * Rule that is used to combine the probability assignments of evidence sources.
+	 */
+	private volatile CombinationRule combinationRule = StandardCombinationRule.DUBOIS_PRADE;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param allCitiesInFrameOfDiscernment
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public LocationEstimator(List<CityDBO> allCitiesInFrameOfDiscernment) {
+		this(allCitiesInFrameOfDiscernment, null);
+	}
+
+	/**
+	 * Constructor for an estimator that processes the three evidence sources of a cluster (lat-lon, tweet content and
+	 * user profile) concurrently. Mapping tweets to locations and calculating BPAs for an evidence source does not
+	 * depend on other evidence sources, so the three pipelines are joined only before the combination step. This is
+	 * meant to reduce the latency of estimation for large clusters on multi-core hosts, but no benefit has been
+	 * measured yet: it has only been measured on a single core, where it is slower than running the pipelines one
+	 * after another (see SingleClusterLatencyBenchmark).
+	 * 
+	 * <p>
+	 * The calling thread waits for the pipelines that run on the executor. If clusters are also estimated concurrently
+	 * (see estimateLocationsForClusters), a bounded executor that is used for both can run out of threads; either use
+	 * separate executors or a ForkJoinPool.
+	 * 
+	 * @param allCitiesInFrameOfDiscernment
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 * @param evidenceSourceExecutor
+	 *            Executor that runs the pipelines of evidence sources, or null to run them one after another.
+	 */
+	public LocationEstimator(List<CityDBO> allCitiesInFrameOfDiscernment, ExecutorService evidenceSourceExecutor) {
+		this(CityGazetteer.fromCityDBOs(allCitiesInFrameOfDiscernment), evidenceSourceExecutor);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param allCitiesInFrameOfDiscernment
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public LocationEstimator(CityGazetteer allCitiesInFrameOfDiscernment) {
+		this(allCitiesInFrameOfDiscernment, null);
+	}
+
+	/**
+	 * Constructor for an estimator that processes the three evidence sources of a cluster concurrently (see
+	 * LocationEstimator(List, ExecutorService)).
+	 * 
+	 * @param allCitiesInFrameOfDiscernment
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 * @param evidenceSourceExecutor
+	 *            Executor that runs the pipelines of evidence sources, or null to run them one after another.
+	 */
+	public LocationEstimator(CityGazetteer allCitiesInFrameOfDiscernment, ExecutorService evidenceSourceExecutor) {
+		this(new TweetLocationMapper(allCitiesInFrameOfDiscernment), evidenceSourceExecutor);
+	}
+
+	/**
+	 * Constructor for an estimator that uses a compiled snapshot of the frame of discernment. The spatial index, city
+	 * boundaries and city name automaton are read from the memory-mapped snapshot, so the estimator is created without
+	 * building them.
+	 * 
+	 * @param gazetteerSnapshot
+	 *            Compiled snapshot of all locations (cities) that define the propositional space of possible solutions.
+	 */
+	public LocationEstimator(GazetteerSnapshot gazetteerSnapshot) {
+		this(gazetteerSnapshot, null);
+	}
+
+	/**
+	 * Constructor for an estimator that uses a compiled snapshot of the frame of discernment, and processes the three
+	 * evidence sources of a cluster concurrently (see LocationEstimator(List, ExecutorService)).
+	 * 
+	 * @param gazetteerSnapshot
+	 *            Compiled snapshot of all locations (cities) that define the propositional space of possible solutions.
+	 * @param evidenceSourceExecutor
+	 *            Executor that runs the pipelines of evidence sources, or null to run them one after another.
+	 */
+	public LocationEstimator(GazetteerSnapshot gazetteerSnapshot, ExecutorService evidenceSourceExecutor) {
+		this(new TweetLocationMapper(gazetteerSnapshot), evidenceSourceExecutor);
+	}
+
+	/**
+	 * Constructor for an estimator that maps tweets to locations with the given mapper (e.g. a mapper that finds the
+	 * locations at GPS positions in a spatial database).
+	 * 
+	 * @param tweetLocationMapper
+	 *            Mapper for the locations (cities) that define the propositional space of possible solutions.
+	 */
+	public LocationEstimator(TweetLocationMapper tweetLocationMapper) {
+		this(tweetLocationMapper, null);
+	}
+
+	/**
+	 * Constructor for an estimator that maps tweets to locations with the given mapper, and processes the three
+	 * evidence sources of a cluster concurrently (see LocationEstimator(List, ExecutorService)).
+	 * 
+	 * @param tweetLocationMapper
+	 *            Mapper for the locations (cities) that define the propositional space of possible solutions.
+	 * @param evidenceSourceExecutor
+	 *            Executor that runs the pipelines of evidence sources, or null to run them one after another.
+	 */
+	public LocationEstimator(TweetLocationMapper tweetLocationMapper, ExecutorService evidenceSourceExecutor) {
+		this.evidenceSourceExecutor = evidenceSourceExecutor;
+		this.tweetLocationMapper = tweetLocationMapper;
+		List<Long> cityIds = new ArrayList<Long>(tweetLocationMapper.getNumberOfCities());
+		for (int city = 0; city < tweetLocationMapper.getNumberOfCities(); city++) {
+			cityIds.add(tweetLocationMapper.getCityId(city));
+		}
+		this.locationIndex = new LocationIndex(cityIds);
+		this.locationIndicesOfCities = new int[cityIds.size()];
+		for (int city = 0; city < locationIndicesOfCities.length; city++) {
+			locationIndicesOfCities[city] = locationIndex.getIndex(cityIds.get(city));
+		}
+		this.thetaLocationSet = LocationSet.allLocations(locationIndex);
+		final int numberOfWords = locationIndex.getNumberOfWords();
+		this.focalElementCombiners = new ThreadLocal<FocalElementCombiner>() {
+			@Override
+			protected FocalElementCombiner initialValue() {
+				return new FocalElementCombiner(numberOfWords, thetaLocationSet.getWords());
+			}
+		};
+	}
+
+	/**
+	 * Estimates the locations for many clusters concurrently using the common ForkJoinPool. See
+	 * estimateLocationsForClusters(Map, ExecutorService).
+	 * 
+	 * @param clusters
+	 *            Clusters of tweets, mapped by their keys (e.g., cluster ids).
+	 * @return LocationCommonalityValues for locations with the highest commonality score, mapped by cluster keys.
+	 */
+	public <K> LinkedHashMap<K, ArrayList<LocationCommonalityValue>> estimateLocationsForClusters(
+			Map<K, List<TweetDBO>> clusters) {
+		return estimateLocationsForClusters(clusters, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Estimates the locations for many clusters concurrently. Each cluster is estimated by a separate task (see
+	 * estimateLocationForCluster) on the given executor, and all tasks share the city indexes of this estimator. The
+	 * method returns when all clusters are estimated. If the estimation fails for a cluster, the remaining tasks are
+	 * cancelled.
+	 * 
+	 * @param clusters
+	 *            Clusters of tweets, mapped by their keys (e.g., cluster ids).
+	 * @param executor
+	 *            ExecutorService that runs the estimation tasks. It is not shut down by this method.
+	 * @return LocationCommonalityValues for locations with the highest commonality score, mapped by cluster keys in
+	 *         the iteration order of the given clusters.
+	 * @throws IllegalStateException
+	 *             if the estimation fails for a cluster, or if the current thread is interrupted while waiting.
+	 */
+	public <K> LinkedHashMap<K, ArrayList<LocationCommonalityValue>> estimateLocationsForClusters(
+			Map<K, List<TweetDBO>> clusters, ExecutorService executor) {
+		LinkedHashMap<K, Future<ArrayList<LocationCommonalityValue>>> estimationTasks = new LinkedHashMap<K, Future<ArrayList<LocationCommonalityValue>>>();
+		for (Map.Entry<K, List<TweetDBO>> cluster : clusters.entrySet()) {
+			final List<TweetDBO> tweetsInCluster = cluster.getValue();
+			estimationTasks.put(cluster.getKey(), executor.submit(new Callable<ArrayList<LocationCommonalityValue>>() {
+				@Override
+				public ArrayList<LocationCommonalityValue> call() {
+					return estimateLocationForCluster(tweetsInCluster);
+				}
+			}));
+		}
+
+		LinkedHashMap<K, ArrayList<LocationCommonalityValue>> estimatedLocations = new LinkedHashMap<K, ArrayList<LocationCommonalityValue>>();
+		try {
+			for (Map.Entry<K, Future<ArrayList<LocationCommonalityValue>>> estimationTask : estimationTasks.entrySet()) {
+				try {
+					estimatedLocations.put(estimationTask.getKey(), estimationTask.getValue().get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(
+							"Location estimation failed for cluster " + estimationTask.getKey(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while estimating locations for clusters", e);
+		} finally {
+			if (estimatedLocations.size() < estimationTasks.size()) {
+				for (Future<ArrayList<LocationCommonalityValue>> estimationTask : estimationTasks.values()) {
+					estimationTask.cancel(true);
+				}
+			}
+		}
+		return estimatedLocations;
+	}
+
+	/**
+	 * The method is used to estimate the location for an event represented by a collection of clustered tweets.
+	 * Estimation using DS theory is carried out in 3 steps: 1) basic probability assignments for sets of locations are
+	 * calculated using spatial attribute in tweets, 2) basic probability assignments are combined using combination
+	 * rules, 3) commonality score for each location are found and the locations with the highest commonality score are
+	 * selected as the event location.
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @return LocationCommonalityValues for locations with the highest commonality score.
+	 */
+	public ArrayList<LocationCommonalityValue> estimateLocationForCluster(List<TweetDBO> tweetsInCluster) {
+		return estimateLocationForObservations(TweetObservation.fromTweetDBOs(tweetsInCluster));
+	}
+
+	/**
+	 * Estimates the k most likely locations for an event represented by a collection of clustered tweets (see
+	 * estimateLocationForCluster).
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @param numberOfLocations
+	 *            Number of locations to return (k).
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores, and for the locations
+	 *         that have the same score with the k-th location, in descending order of their scores.
+	 */
+	public ArrayList<LocationCommonalityValue> estimateTopLocationsForCluster(List<TweetDBO> tweetsInCluster,
+			int numberOfLocations) {
+		return estimateTopLocationsForObservations(TweetObservation.fromTweetDBOs(tweetsInCluster), numberOfLocations);
+	}
+
+	/**
+	 * Estimates the location for an event represented by a collection of clustered tweets (see
+	 * estimateLocationForCluster), given as observations.
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @return LocationCommonalityValues for locations with the highest commonality score.
+	 */
+	public ArrayList<LocationCommonalityValue> estimateLocationForObservations(
+			final List<TweetObservation> tweetsInCluster) {
+		return estimateTopLocationsForObservations(tweetsInCluster, 1);
+	}
+
+	/**
+	 * Estimates the k most likely locations for an event represented by a collection of clustered tweets (see
+	 * estimateTopLocationsForCluster), given as observations.
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @param numberOfLocations
+	 *            Number of locations to return (k).
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores (with ties).
+	 */
+	public ArrayList<LocationCommonalityValue> estimateTopLocationsForObservations(
+			final List<TweetObservation> tweetsInCluster, int numberOfLocations) {
+		checkNumberOfLocations(numberOfLocations);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Estimating location for cluster with " + tweetsInCluster.size() + " tweets");
+		}
+		return estimateLocationUsingEvidenceSources(new ClusterEvidence() {
+			@Override
+			FocalElementTable getBasicProbabilityAssignments(EvidenceSource evidenceSource) {
+				return LocationEstimator.this.getBasicProbabilityAssignments(tweetsInCluster, evidenceSource);
+			}
+		}, numberOfLocations);
+	}
+
+	/**
+	 * Estimates the location for an event represented by a collection of clustered tweets (see
+	 * estimateLocationForCluster), given as a columnar batch. Tweets are mapped to locations with the batch methods of
+	 * TweetLocationMapper, and BPAs are calculated from the primitive mappings without creating a set of location ids
+	 * for each tweet. This is the cheapest way to estimate the location of a large cluster.
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @return LocationCommonalityValues for locations with the highest commonality score.
+	 */
+	public ArrayList<LocationCommonalityValue> estimateLocationForBatch(final TweetBatch tweetsInCluster) {
+		return estimateTopLocationsForBatch(tweetsInCluster, 1);
+	}
+
+	/**
+	 * Estimates the k most likely locations for an event represented by a collection of clustered tweets (see
+	 * estimateTopLocationsForCluster), given as a columnar batch (see estimateLocationForBatch).
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @param numberOfLocations
+	 *            Number of locations to return (k).
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores (with ties).
+	 */
+	public ArrayList<LocationCommonalityValue> estimateTopLocationsForBatch(final TweetBatch tweetsInCluster,
+			int numberOfLocations) {
+		checkNumberOfLocations(numberOfLocations);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Estimating location for cluster with " + tweetsInCluster.size() + " tweets");
+		}
+		return estimateLocationUsingEvidenceSources(new ClusterEvidence() {
+			@Override
+			FocalElementTable getBasicProbabilityAssignments(EvidenceSource evidenceSource) {
+				return LocationEstimator.this.getBasicProbabilityAssignments(tweetsInCluster, evidenceSource);
+			}
+		}, numberOfLocations);
+	}
+
+	/**
+	 * Calculates the belief function for an event represented by a collection of clustered tweets, i.e. the combined
+	 * probability assignments of the three evidence sources. Unlike estimateLocationForCluster, which finds the
+	 * commonality values of single locations, the belief function gives the mass, belief, plausibility and commonality
+	 * of any set of locations, e.g. the belief that the event is in one of the cities of a region. If the focal
+	 * elements contain few locations, these values are calculated once for all subsets (see BeliefFunction).
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @return Belief function of the cluster.
+	 */
+	public BeliefFunction estimateBeliefFunctionForCluster(List<TweetDBO> tweetsInCluster) {
+		return estimateBeliefFunctionForObservations(TweetObservation.fromTweetDBOs(tweetsInCluster));
+	}
+
+	/**
+	 * Calculates the belief function for an event represented by a collection of clustered tweets (see
+	 * estimateBeliefFunctionForCluster), given as observations.
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @return Belief function of the cluster.
+	 */
+	public BeliefFunction estimateBeliefFunctionForObservations(final List<TweetObservation> tweetsInCluster) {
+		return estimateBeliefFunctionUsingEvidenceSources(new ClusterEvidence() {
+			@Override
+			FocalElementTable getBasicProbabilityAssignments(EvidenceSource evidenceSource) {
+				return LocationEstimator.this.getBasicProbabilityAssignments(tweetsInCluster, evidenceSource);
+			}
+		});
+	}
+
+	/**
+	 * Calculates the belief function for an event represented by a collection of clustered tweets (see
+	 * estimateBeliefFunctionForCluster), given as a columnar batch (see estimateLocationForBatch).
+	 * 
+	 * @param tweetsInCluster
+	 *            A collection of clustered tweets.
+	 * @return Belief function of the cluster.
+	 */
+	public BeliefFunction estimateBeliefFunctionForBatch(final TweetBatch tweetsInCluster) {
+		return estimateBeliefFunctionUsingEvidenceSources(new ClusterEvidence() {
+			@Override
+			FocalElementTable getBasicProbabilityAssignments(EvidenceSource evidenceSource) {
+				return LocationEstimator.this.getBasicProbabilityAssignments(tweetsInCluster, evidenceSource);
+			}
+		});
+	}
+
+	/**
+	 * Calculates the BPAs of the three evidence sources of a cluster, and estimates the location using these BPAs.
+	 * 
+	 * @param clusterEvidence
+	 *            Tweets in a cluster that provide the evidence.
+	 * @param numberOfLocations
+	 *            Number of locations to return (k).
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores (with ties).
+	 */
+	private ArrayList<LocationCommonalityValue> estimateLocationUsingEvidenceSources(ClusterEvidence clusterEvidence,
+			int numberOfLocations) {
+		EstimationMetrics metrics = estimationMetrics;
+		long startTime = metrics == null ? 0 : System.nanoTime();
+		FocalElementTable[] basicProbabilityAssignments = getBasicProbabilityAssignmentsOfEvidenceSources(
+				clusterEvidence);
+
+		/*
+		 * Disambiguation and city-town association can be executed at this point. They are excluded from this sample
+		 * code for simplicity.
+		 */
+
+		ArrayList<LocationCommonalityValue> topCityCommonalityValues = estimateLocationUsingBasicProbabilityAssignments(
+				basicProbabilityAssignments[EvidenceSource.LATITUDE_LONGITUDE.ordinal()],
+				basicProbabilityAssignments[EvidenceSource.CONTENT.ordinal()],
+				basicProbabilityAssignments[EvidenceSource.USER_PROFILE.ordinal()], numberOfLocations);
+		if (metrics != null) {
+			recordStageTime(metrics, EstimationStage.ESTIMATION, startTime);
+		}
+		return topCityCommonalityValues;
+	}
+
+	/**
+	 * Calculates the BPAs of the three evidence sources of a cluster, and combines them into the belief function of
+	 * the cluster. The FocalElementSummarizer is not used, so the belief function is exact.
+	 * 
+	 * @param clusterEvidence
+	 *            Tweets in a cluster that provide the evidence.
+	 * @return Belief function of the combined probability assignments.
+	 */
+	private BeliefFunction estimateBeliefFunctionUsingEvidenceSources(ClusterEvidence clusterEvidence) {
+		EstimationMetrics metrics = estimationMetrics;
+		CombinationRule rule = combinationRule;
+		FocalElementTable[] basicProbabilityAssignments = getBasicProbabilityAssignmentsOfEvidenceSources(
+				clusterEvidence);
+		FocalElementTable combinedBPAsUsingGpsAndContent = executeCombination(rule,
+				basicProbabilityAssignments[EvidenceSource.LATITUDE_LONGITUDE.ordinal()],
+				basicProbabilityAssignments[EvidenceSource.CONTENT.ordinal()], metrics,
+				EstimationStage.FIRST_COMBINATION);
+		FocalElementTable combinedBPAsUsingAllThreeTweetFeatures = executeCombination(rule,
+				combinedBPAsUsingGpsAndContent, basicProbabilityAssignments[EvidenceSource.USER_PROFILE.ordinal()],
+				metrics, EstimationStage.SECOND_COMBINATION);
+		return BeliefFunction.fromProbabilityAssignments(combinedBPAsUsingAllThreeTweetFeatures, locationIndex);
+	}
+
+	/**
+	 * Calculates the BPAs of the three evidence sources of a cluster, one after another or concurrently on the
+	 * evidence source executor.
+	 * 
+	 * @param clusterEvidence
+	 *            Tweets in a cluster that provide the evidence.
+	 * @return Basic probability assignments of the evidence sources, indexed by the ordinals of EvidenceSources.
+	 */
+	private FocalElementTable[] getBasicProbabilityAssignmentsOfEvidenceSources(ClusterEvidence clusterEvidence) {
+		FocalElementTable[] basicProbabilityAssignments = new FocalElementTable[EvidenceSource.values().length];
+		if (evidenceSourceExecutor == null) {
+			for (EvidenceSource evidenceSource : EvidenceSource.values()) {
+				basicProbabilityAssignments[evidenceSource.ordinal()] = clusterEvidence
+						.getBasicProbabilityAssignments(evidenceSource);
+			}
+		} else { // content and profile pipelines run on the executor, lat-lon pipeline runs on this thread
+			Future<FocalElementTable> contentTask = submitBasicProbabilityAssignments(clusterEvidence,
+					EvidenceSource.CONTENT);
+			Future<FocalElementTable> userProfileTask = submitBasicProbabilityAssignments(clusterEvidence,
+					EvidenceSource.USER_PROFILE);
+			try {
+				basicProbabilityAssignments[EvidenceSource.LATITUDE_LONGITUDE.ordinal()] = clusterEvidence
+						.getBasicProbabilityAssignments(EvidenceSource.LATITUDE_LONGITUDE);
+				basicProbabilityAssignments[EvidenceSource.CONTENT.ordinal()] = waitForBasicProbabilityAssignments(
+						contentTask);
+				basicProbabilityAssignments[EvidenceSource.USER_PROFILE.ordinal()] = waitForBasicProbabilityAssignments(
+						userProfileTask);
+			} finally {
+				contentTask.cancel(true);
+				userProfileTask.cancel(true);
+			}
+		}
+		return basicProbabilityAssignments;
+	}
+
+	/**
+	 * Combines the basic probability assignments of the three evidence sources, and selects the locations with the
+	 * highest commonality score. If a FocalElementSummarizer is set, probability assignments are approximated before
+	 * and after each combination, and the selected values include the bound of the error in commonality values.
+	 * 
+	 * @param basicProbabilityAssignmentsUsingTweetLatitudeLongitude
+	 *            BPAs using tweet lat-lon
+	 * @param basicProbabilityAssignmentsUsingTweetContent
+	 *            BPAs using tweet content
+	 * @param basicProbabilityAssignmentsUsingUserProfileLocation
+	 *            BPAs using location in user profile
+	 * @param numberOfLocations
+	 *            Number of locations to return (k). If k is 1, the locations with the highest commonality score are
+	 *            returned.
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores (with ties).
+	 */
+	ArrayList<LocationCommonalityValue> estimateLocationUsingBasicProbabilityAssignments(
+			FocalElementTable basicProbabilityAssignmentsUsingTweetLatitudeLongitude,
+			FocalElementTable basicProbabilityAssignmentsUsingTweetContent,
+			FocalElementTable basicProbabilityAssignmentsUsingUserProfileLocation, int numberOfLocations) {
+		EstimationMetrics metrics = estimationMetrics;
+		FocalElementSummarizer summarizer = focalElementSummarizer;
+		CombinationRule rule = combinationRule;
+		double[] commonalityErrorBound = new double[1];
+		if (summarizer != null) {
+			basicProbabilityAssignmentsUsingTweetLatitudeLongitude = summarize(summarizer,
+					basicProbabilityAssignmentsUsingTweetLatitudeLongitude, commonalityErrorBound, metrics);
+			basicProbabilityAssignmentsUsingTweetContent = summarize(summarizer,
+					basicProbabilityAssignmentsUsingTweetContent, commonalityErrorBound, metrics);
+			basicProbabilityAssignmentsUsingUserProfileLocation = summarize(summarizer,
+					basicProbabilityAssignmentsUsingUserProfileLocation, commonalityErrorBound, metrics);
+		}
+		FocalElementTable combinedBPAsUsingGpsAndContent = executeCombination(rule,
+				basicProbabilityAssignmentsUsingTweetLatitudeLongitude, basicProbabilityAssignmentsUsingTweetContent,
+				metrics, EstimationStage.FIRST_COMBINATION);
+		double conflictMassOfFirstCombination = logger.isTraceEnabled()
+				? focalElementCombiners.get().getConflictMass() : 0;
+		if (summarizer != null) {
+			combinedBPAsUsingGpsAndContent = summarize(summarizer, combinedBPAsUsingGpsAndContent,
+					commonalityErrorBound, metrics);
+		}
+		FocalElementTable combinedBPAsUsingAllThreeTweetFeatures = executeCombination(rule,
+				combinedBPAsUsingGpsAndContent, basicProbabilityAssignmentsUsingUserProfileLocation, metrics,
+				EstimationStage.SECOND_COMBINATION);
+		if (summarizer != null) {
+			combinedBPAsUsingAllThreeTweetFeatures = summarize(summarizer, combinedBPAsUsingAllThreeTweetFeatures,
+					commonalityErrorBound, metrics);
+		}
+
+		long startTime = metrics == null ? 0 : System.nanoTime();
+		long[] locationsInFocalElements = new long[locationIndex.getNumberOfWords()];
+		double[] cityCommonalityValues = getLocationCommonalityValues(combinedBPAsUsingAllThreeTweetFeatures,
+				locationsInFocalElements);
+		ArrayList<LocationCommonalityValue> topCityCommonalityValues = getTopLocationCommonalityValues(
+				cityCommonalityValues, locationsInFocalElements, numberOfLocations);
+		if (metrics != null) {
+			recordStageTime(metrics, EstimationStage.COMMONALITY_SELECTION, startTime);
+		}
+		if (summarizer != null) {
+			if (!StandardCombinationRule.boundsCommonalityError(rule)) {
+				commonalityErrorBound[0] = Double.NaN; // no bound is known for the rule
+			}
+			for (LocationCommonalityValue topCityCommonalityValue : topCityCommonalityValues) {
+				topCityCommonalityValue.setCommonalityErrorBound(commonalityErrorBound[0]);
+			}
+			if (metrics != null && !Double.isNaN(commonalityErrorBound[0])) {
+				metrics.recordCommonalityErrorBound(commonalityErrorBound[0]);
+			}
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace(getEstimationTraceEvent(rule, basicProbabilityAssignmentsUsingTweetLatitudeLongitude,
+					basicProbabilityAssignmentsUsingTweetContent, basicProbabilityAssignmentsUsingUserProfileLocation,
+					combinedBPAsUsingGpsAndContent, conflictMassOfFirstCombination,
+					combinedBPAsUsingAllThreeTweetFeatures, focalElementCombiners.get().getConflictMass(),
+					locationsInFocalElements, commonalityErrorBound[0], topCityCommonalityValues));
+		}
+		return topCityCommonalityValues;
+	}
+
+	/**
+	 * Builds a trace event for the estimation of a cluster, as space-separated key=value pairs that can be parsed by
+	 * log processors, e.g. "estimation combinationRule=DUBOIS_PRADE bpaFocalElements=3,3,2 combinedFocalElements=4,4
+	 * conflictMasses=0.0625,0.046875 commonalityErrorBound=0.0 candidateLocations=10 selectedLocations=1
+	 * topLocationId=1 topCommonality=0.859375". The event is built only if trace logging is enabled for
+	 * LocationEstimator.
+	 * 
+	 * @return trace event
+	 */
+	private static String getEstimationTraceEvent(CombinationRule combinationRule,
+			FocalElementTable basicProbabilityAssignmentsUsingTweetLatitudeLongitude,
+			FocalElementTable basicProbabilityAssignmentsUsingTweetContent,
+			FocalElementTable basicProbabilityAssignmentsUsingUserProfileLocation,
+			FocalElementTable combinedBPAsUsingGpsAndContent, double conflictMassOfFirstCombination,
+			FocalElementTable combinedBPAsUsingAllThreeTweetFeatures, double conflictMassOfSecondCombination,
+			long[] locationsInFocalElements, double commonalityErrorBound,
+			ArrayList<LocationCommonalityValue> topCityCommonalityValues) {
+		int numberOfCandidateLocations = 0;
+		for (long word : locationsInFocalElements) {
+			numberOfCandidateLocations += Long.bitCount(word);
+		}
+		StringBuilder event = new StringBuilder("estimation");
+		event.append(" combinationRule=").append(combinationRule);
+		event.append(" bpaFocalElements=").append(basicProbabilityAssignmentsUsingTweetLatitudeLongitude.size())
+				.append(',').append(basicProbabilityAssignmentsUsingTweetContent.size()).append(',')
+				.append(basicProbabilityAssignmentsUsingUserProfileLocation.size());
+		event.append(" combinedFocalElements=").append(combinedBPAsUsingGpsAndContent.size()).append(',')
+				.append(combinedBPAsUsingAllThreeTweetFeatures.size());
+		event.append(" conflictMasses=").append(conflictMassOfFirstCombination).append(',')
+				.append(conflictMassOfSecondCombination);
+		event.append(" commonalityErrorBound=").append(commonalityErrorBound);
+		event.append(" candidateLocations=").append(numberOfCandidateLocations);
+		event.append(" selectedLocations=").append(topCityCommonalityValues.size());
+		if (!topCityCommonalityValues.isEmpty()) {
+			event.append(" topLocationId=").append(topCityCommonalityValues.get(0).getLocationId());
+			event.append(" topCommonality=").append(topCityCommonalityValues.get(0).getCommonalityValue());
+		}
+		return event.toString();
+	}
+
+	/**
+	 * Maps tweets to locations using one of the spatial features in tweets, and calculates basic probability
+	 * assignments using these mappings.
+	 * 
+	 * @param tweetsInCluster
+	 *            Collection of tweets in a cluster (tweet cluster that represents an event)
+	 * @param evidenceSource
+	 *            Spatial feature in tweets that is used as the evidence source.
+	 * @return Basic probability assignments (BPAs) for locations.
+	 */
+	private FocalElementTable getBasicProbabilityAssignments(List<TweetObservation> tweetsInCluster,
+			EvidenceSource evidenceSource) {
+		EstimationMetrics metrics = estimationMetrics;
+		long startTime = metrics == null ? 0 : System.nanoTime();
+		ArrayList<HashSet<Long>> tweetCityMappings;
+		switch (evidenceSource) {
+		case LATITUDE_LONGITUDE:
+			tweetCityMappings = tweetLocationMapper.mapObservationsToCitiesUsingLatitudeLongitude(tweetsInCluster);
+			break;
+		case CONTENT:
+			tweetCityMappings = tweetLocationMapper.mapObservationsToCitiesUsingContent(tweetsInCluster);
+			break;
+		default:
+			tweetCityMappings = tweetLocationMapper.mapObservationsToCitiesUsingProfile(tweetsInCluster);
+			break;
+		}
+		if (metrics == null) {
+			return getBasicProbabilityAssignments(tweetCityMappings);
+		}
+		startTime = recordStageTime(metrics, evidenceSource.mappingStage, startTime);
+		FocalElementTable basicProbabilityAssignments = getBasicProbabilityAssignments(tweetCityMappings);
+		recordBasicProbabilityAssignments(metrics, basicProbabilityAssignments, startTime);
+		return basicProbabilityAssignments;
+	}
+
+	/**
+	 * Maps the tweets of a batch to locations using one of the spatial features in tweets, and calculates basic
+	 * probability assignments using these mappings.
+	 * 
+	 * @param tweetsInCluster
+	 *            Collection of tweets in a cluster (tweet cluster that represents an event)
+	 * @param evidenceSource
+	 *            Spatial feature in tweets that is used as the evidence source.
+	 * @return Basic probability assignments (BPAs) for locations.
+	 */
+	private FocalElementTable getBasicProbabilityAssignments(TweetBatch tweetsInCluster,
+			EvidenceSource evidenceSource) {
+		EstimationMetrics metrics = estimationMetrics;
+		long startTime = metrics == null ? 0 : System.nanoTime();
+		TweetCityMapping tweetCityMapping = new TweetCityMapping(tweetsInCluster.size());
+		switch (evidenceSource) {
+		case LATITUDE_LONGITUDE:
+			tweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetsInCluster, tweetCityMapping);
+			break;
+		case CONTENT:
+			tweetLocationMapper.mapBatchToCitiesUsingContent(tweetsInCluster, tweetCityMapping);
+			break;
+		default:
+			tweetLocationMapper.mapBatchToCitiesUsingProfile(tweetsInCluster, tweetCityMapping);
+			break;
+		}
+		if (metrics == null) {
+			return getBasicProbabilityAssignments(tweetCityMapping);
+		}
+		startTime = recordStageTime(metrics, evidenceSource.mappingStage, startTime);
+		FocalElementTable basicProbabilityAssignments = getBasicProbabilityAssignments(tweetCityMapping);
+		recordBasicProbabilityAssignments(metrics, basicProbabilityAssignments, startTime);
+		return basicProbabilityAssignments;
+	}
+
+	/**
+	 * Records the time of a stage that started at the given time.
+	 * 
+	 * @return end time of the stage, in nanoseconds
+	 */
+	private static long recordStageTime(EstimationMetrics metrics, EstimationStage stage, long startTime) {
+		long endTime = System.nanoTime();
+		metrics.recordStageTime(stage, endTime - startTime);
+		return endTime;
+	}
+
+	/**
+	 * Records the time of a BPA calculation that started at the given time, and the number of focal elements in the
+	 * BPAs.
+	 */
+	private static void recordBasicProbabilityAssignments(EstimationMetrics metrics,
+			FocalElementTable basicProbabilityAssignments, long startTime) {
+		recordStageTime(metrics, EstimationStage.BASIC_PROBABILITY_ASSIGNMENT, startTime);
+		metrics.recordFocalElements(EstimationStage.BASIC_PROBABILITY_ASSIGNMENT, basicProbabilityAssignments.size());
+	}
+
+	/**
+	 * Submits the calculation of basic probability assignments for an evidence source to the evidence source executor.
+	 * 
+	 * @param clusterEvidence
+	 *            Tweets in a cluster that provide the evidence.
+	 * @param evidenceSource
+	 *            Spatial feature in tweets that is used as the evidence source.
+	 * @return Future for the basic probability assignments.
+	 */
+	private Future<FocalElementTable> submitBasicProbabilityAssignments(final ClusterEvidence clusterEvidence,
+			final EvidenceSource evidenceSource) {
+		return evidenceSourceExecutor.submit(new Callable<FocalElementTable>() {
+			@Override
+			public FocalElementTable call() {
+				return clusterEvidence.getBasicProbabilityAssignments(evidenceSource);
+			}
+		});
+	}
+
+	/**
+	 * Waits for the basic probability assignments that are calculated on the evidence source executor.
+	 * 
+	 * @param task
+	 *            Future for the basic probability assignments.
+	 * @return Basic probability assignments (BPAs) for locations.
+	 * @throws IllegalStateException
+	 *             if the calculation fails, or if the current thread is interrupted while waiting.
+	 */
+	private static FocalElementTable waitForBasicProbabilityAssignments(Future<FocalElementTable> task) {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Calculation of basic probability assignments failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while calculating basic probability assignments", e);
+		}
+	}
+
+	/**
+	 * 
+	 * Calculates basic probability values for subsets of locations in the frame of discernment. A tweet that does not
+	 * provide any evidence for a specific location supports Theta (to represent indifference). The method takes
+	 * tweet-location mappings that are determined using one of the spatial features in tweets, and returns basic
+	 * probability assignments (BPAs) for locations.
+	 * 
+	 * @param tweetLocationMappings
+	 *            Sets of location ids for all tweets in a cluster (tweet cluster that represents an event) that are
+	 *            identified using either tweet lat-lon, tweet content or location in user profile.
+	 * @return Basic probability assignments (BPAs) for locations.
+	 */
+	FocalElementTable getBasicProbabilityAssignments(List<HashSet<Long>> tweetLocationMappings) {
+		FocalElementTable probabilityAssignments = new FocalElementTable(locationIndex.getNumberOfWords());
+		long[] locationsSet = new long[locationIndex.getNumberOfWords()];
+
+		int numberOfTweetsWithNoLocationMapping = 0;
+		for (HashSet<Long> locationIdsFoundInTweet : tweetLocationMappings) {
+			if (locationIdsFoundInTweet != null && locationIdsFoundInTweet.size() > 0) {
+				addElementCount(probabilityAssignments, locationIdsFoundInTweet, 1, locationsSet);
+			} else {
+				numberOfTweetsWithNoLocationMapping++;
+			}
+		}
+		if (numberOfTweetsWithNoLocationMapping > 0) {
+			probabilityAssignments.addElementCount(thetaLocationSet.getWords(), 0, numberOfTweetsWithNoLocationMapping);
+		}
+		probabilityAssignments.setProbabilityValuesFromElementCounts(tweetLocationMappings.size());
+		return probabilityAssignments;
+	}
+
+	/**
+	 * Calculates basic probability values for subsets of locations in the frame of discernment (see
+	 * getBasicProbabilityAssignments(List)), given tweet-location mappings of a batch in primitive form.
+	 * 
+	 * @param tweetCityMapping
+	 *            Numbers of the locations (in the frame of discernment) for all tweets in a cluster.
+	 * @return Basic probability assignments (BPAs) for locations.
+	 */
+	FocalElementTable getBasicProbabilityAssignments(TweetCityMapping tweetCityMapping) {
+		FocalElementTable probabilityAssignments = new FocalElementTable(locationIndex.getNumberOfWords());
+		addElementCounts(probabilityAssignments, tweetCityMapping, new long[locationIndex.getNumberOfWords()]);
+		probabilityAssignments.setProbabilityValuesFromElementCounts(tweetCityMapping.size());
+		return probabilityAssignments;
+	}
+
+	/**
+	 * Adds the tweets of a batch to the numbers of elements (tweets) that are mapped to sets of locations. Tweets that
+	 * are not mapped to any location are counted for Theta.
+	 * 
+	 * @param probabilityAssignments
+	 *            Table of focal elements with their element counts.
+	 * @param tweetCityMapping
+	 *            Numbers of the locations (in the frame of discernment) for the tweets of the batch.
+	 * @param locationsSetBuffer
+	 *            Buffer for the bitset of a set of locations.
+	 */
+	void addElementCounts(FocalElementTable probabilityAssignments, TweetCityMapping tweetCityMapping,
+			long[] locationsSetBuffer) {
+		Arrays.fill(locationsSetBuffer, 0L);
+		int[] offsets = tweetCityMapping.getOffsets();
+		int[] cities = tweetCityMapping.getCities();
+
+		int numberOfTweetsWithNoLocationMapping = 0;
+		for (int tweet = 0; tweet < tweetCityMapping.size(); tweet++) {
+			int start = offsets[tweet];
+			int end = offsets[tweet + 1];
+			if (start == end) {
+				numberOfTweetsWithNoLocationMapping++;
+				continue;
+			}
+			for (int i = start; i < end; i++) {
+				int index = locationIndicesOfCities[cities[i]];
+				locationsSetBuffer[index >>> 6] |= 1L << index;
+			}
+			probabilityAssignments.addElementCount(locationsSetBuffer, 0, 1);
+			for (int i = start; i < end; i++) { // clears only the words that are set, instead of the whole buffer
+				locationsSetBuffer[locationIndicesOfCities[cities[i]] >>> 6] = 0L;
+			}
+		}
+		if (numberOfTweetsWithNoLocationMapping > 0) {
+			probabilityAssignments.addElementCount(thetaLocationSet.getWords(), 0, numberOfTweetsWithNoLocationMapping);
+		}
+	}
+
+	/**
+	 * Adds to the number of elements (tweets) that are mapped to a set of locations. An empty set of locations is
+	 * counted for Theta.
+	 * 
+	 * @param probabilityAssignments
+	 *            Table of focal elements with their element counts.
+	 * @param locationIds
+	 *            Ids of the locations that are found in a tweet.
+	 * @param elementCount
+	 *            Number of elements to add (negative to remove elements).
+	 * @param locationsSetBuffer
+	 *            Buffer for the bitset of the set of locations.
+	 * @return element number of the focal element in the table
+	 */
+	int addElementCount(FocalElementTable probabilityAssignments, HashSet<Long> locationIds, int elementCount,
+			long[] locationsSetBuffer) {
+		return probabilityAssignments.addElementCount(getLocationsSet(locationIds, locationsSetBuffer), 0,
+				elementCount);
+	}
+
+	/**
+	 * Converts a set of location ids to a bitset of location indices. An empty set of locations is converted to Theta.
+	 * 
+	 * @param locationIds
+	 *            Ids of the locations that are found in a tweet.
+	 * @param locationsSetBuffer
+	 *            Buffer for the bitset of the set of locations.
+	 * @return the buffer that keeps the bitset, or the words of Theta (must not be modified)
+	 */
+	long[] getLocationsSet(HashSet<Long> locationIds, long[] locationsSetBuffer) {
+		if (locationIds.isEmpty()) {
+			return thetaLocationSet.getWords();
+		}
+		Arrays.fill(locationsSetBuffer, 0L);
+		for (long locationId : locationIds) {
+			int index = locationIndex.getIndex(locationId);
+			if (index >= 0) {
+				locationsSetBuffer[index >>> 6] |= 1L << index;
+			}
+		}
+		return locationsSetBuffer;
+	}
+
+	/**
+	 * 
+	 * @return TweetLocationMapper that is used to map tweets to locations
+	 */
+	TweetLocationMapper getTweetLocationMapper() {
+		return tweetLocationMapper;
+	}
+
+	/**
+	 * 
+	 * @return dense index of the locations in the frame of discernment
+	 */
+	LocationIndex getLocationIndex() {
+		return locationIndex;
+	}
+
+	/**
+	 * Sets metrics that receive the measurements of the stages of the estimation: times of the stages, numbers of
+	 * focal elements in BPAs and combinations, and conflict masses in combinations. Metrics are called by all threads
+	 * that estimate with this estimator (see EstimationMetrics).
+	 * 
+	 * @param estimationMetrics
+	 *            Metrics for the stages of the estimation, or null to estimate without measurements.
+	 */
+	public void setEstimationMetrics(EstimationMetrics estimationMetrics) {
+		this.estimationMetrics = estimationMetrics;
+	}
+
+	/**
+	 * 
+	 * @return Metrics for the stages of the estimation, or null if the stages are not measured.
+	 */
+	public EstimationMetrics getEstimationMetrics() {
+		return estimationMetrics;
+	}
+
+	/**
+	 * Sets a summarizer that approximates probability assignments with fewer focal elements before and after each
+	 * combination, to bound the cost of combinations for clusters with ambiguous evidence. Estimated commonality
+	 * values are then reported with the bound of their errors (see FocalElementSummarizer). The bound is only
+	 * guaranteed for some combination rules (see StandardCombinationRule); with other rules, the error bound of the
+	 * commonality values is NaN, and it is not recorded in the estimation metrics.
+	 * 
+	 * @param focalElementSummarizer
+	 *            Summarizer for probability assignments, or null to combine exact probability assignments.
+	 */
+	public void setFocalElementSummarizer(FocalElementSummarizer focalElementSummarizer) {
+		this.focalElementSummarizer = focalElementSummarizer;
+	}
+
+	/**
+	 * 
+	 * @return Summarizer for probability assignments, or null if probability assignments are not approximated.
+	 */
+	public FocalElementSummarizer getFocalElementSummarizer() {
+		return focalElementSummarizer;
+	}
+
+	/**
+	 * Sets the rule that is used to combine the probability assignments of evidence sources (see
+	 * StandardCombinationRule). The default rule is StandardCombinationRule.DUBOIS_PRADE. The rule can be changed
+	 * while clusters are estimated; each estimation uses the rule that is set when it starts, and the rule is
+	 * reported in trace events, so that estimators with different rules can be compared on the same clusters.
+	 * 
+	 * @param combinationRule
+	 *            Combination rule.
+	 */
+	public void setCombinationRule(CombinationRule combinationRule) {
+		if (combinationRule == null) {
+			throw new IllegalArgumentException("Combination rule can not be null");
+		}
+		this.combinationRule = combinationRule;
+	}
+
+	/**
+	 * 
+	 * @return Rule that is used to combine the probability assignments of evidence sources.
+	 */
+	public CombinationRule getCombinationRule() {
+		return combinationRule;
+	}
+
+	/**
+	 * Approximates probability assignments with the summarizer, if they have more focal elements than the summarizer
+	 * allows.
+	 * 
+	 * @param summarizer
+	 *            Summarizer for probability assignments.
+	 * @param bpas
+	 *            Probability assignments (not modified).
+	 * @param commonalityErrorBound
+	 *            Single-element array that the probability moved by the approximation is added to.
+	 * @param metrics
+	 *            Metrics for the stages of the estimation, or null.
+	 * @return Approximated probability assignments, or the given probability assignments if they are not approximated.
+	 */
+	private FocalElementTable summarize(FocalElementSummarizer summarizer, FocalElementTable bpas,
+			double[] commonalityErrorBound, EstimationMetrics metrics) {
+		if (!summarizer.needsSummarization(bpas)) {
+			return bpas;
+		}
+		long startTime = metrics == null ? 0 : System.nanoTime();
+		FocalElementTable summarizedBpas = new FocalElementTable(locationIndex.getNumberOfWords(),
+				summarizer.getMaximumNumberOfFocalElements());
+		commonalityErrorBound[0] += summarizer.summarize(bpas, summarizedBpas, thetaLocationSet.getWords());
+		if (metrics != null) {
+			recordStageTime(metrics, EstimationStage.SUMMARIZATION, startTime);
+			metrics.recordFocalElements(EstimationStage.SUMMARIZATION, summarizedBpas.size());
+		}
+		return summarizedBpas;
+	}
+
+	/**
+	 * Combines probability assignments using two different evidence sources with a combination rule (see
+	 * FocalElementCombiner).
+	 * 
+	 * @param rule
+	 *            Combination rule.
+	 * @param bpas1
+	 *            Basic probability assignments using evidence source #1
+	 * @param bpas2
+	 *            Basic probability assignments using evidence source #2
+	 * @return Combined probability assignments
+	 */
+	FocalElementTable executeCombination(CombinationRule rule, FocalElementTable bpas1, FocalElementTable bpas2) {
+		FocalElementTable combinedBpas = new FocalElementTable(locationIndex.getNumberOfWords(),
+				bpas1.size() + bpas2.size());
+		focalElementCombiners.get().combine(rule, bpas1, bpas2, combinedBpas);
+		return combinedBpas;
+	}
+
+	/**
+	 * Combines probability assignments using two different evidence sources with the combination rule "Dubois and
+	 * Prade" (see StandardCombinationRule.DUBOIS_PRADE).
+	 * 
+	 * @param bpas1
+	 *            Basic probability assignments using evidence source #1
+	 * @param bpas2
+	 *            Basic probability assignments using evidence source #2
+	 * @return Combined probability assignments
+	 */
+	FocalElementTable executeCombineUsingDuboisAndPrade(FocalElementTable bpas1, FocalElementTable bpas2) {
+		return executeCombination(StandardCombinationRule.DUBOIS_PRADE, bpas1, bpas2);
+	}
+
+	/**
+	 * Combines probability assignments with a combination rule (see executeCombination(CombinationRule,
+	 * FocalElementTable, FocalElementTable)), and records the time, the number of focal elements and the conflict mass
+	 * of the combination.
+	 * 
+	 * @param metrics
+	 *            Metrics for the stages of the estimation, or null.
+	 * @param stage
+	 *            Combination stage.
+	 * @return Combined probability assignments
+	 */
+	private FocalElementTable executeCombination(CombinationRule rule, FocalElementTable bpas1,
+			FocalElementTable bpas2, EstimationMetrics metrics, EstimationStage stage) {
+		if (metrics == null) {
+			return executeCombination(rule, bpas1, bpas2);
+		}
+		long startTime = System.nanoTime();
+		FocalElementTable combinedBpas = executeCombination(rule, bpas1, bpas2);
+		recordStageTime(metrics, stage, startTime);
+		metrics.recordFocalElements(stage, combinedBpas.size());
+		metrics.recordConflictMass(stage, focalElementCombiners.get().getConflictMass());
+		return combinedBpas;
+	}
+
+	/**
+	 * Finds the commonality values for locations using the given probability assignments. The commonality value of a
+	 * location is the total probability of the focal elements that contain the location.
+	 * 
+	 * @param combinedProbabilities
+	 *            Probability assignments for sets of locations.
+	 * @param locationsInFocalElements
+	 *            Bitset that is filled with the locations that are in at least one focal element (the other locations
+	 *            have no commonality value).
+	 * @return Commonality values of locations, indexed by location index (see LocationIndex).
+	 */
+	double[] getLocationCommonalityValues(FocalElementTable combinedProbabilities, long[] locationsInFocalElements) {
+		double[] commonalities = new double[locationIndex.size()];
+		Arrays.fill(locationsInFocalElements, 0L);
+		int numberOfWords = combinedProbabilities.getNumberOfWords();
+		long[] words = combinedProbabilities.getWords();
+		for (int element = 0; element < combinedProbabilities.size(); element++) {
+			double probabilityValue = combinedProbabilities.getProbabilityValue(element);
+			for (int w = 0; w < numberOfWords; w++) {
+				long elementWord = words[element * numberOfWords + w];
+				locationsInFocalElements[w] |= elementWord;
+				for (long word = elementWord; word != 0; word &= word - 1) {
+					commonalities[(w << 6) + Long.numberOfTrailingZeros(word)] += probabilityValue;
+				}
+			}
+		}
+		return commonalities;
+	}
+
+	/**
+	 * Selects the k locations with the highest commonality values, without sorting all locations. The candidate
+	 * locations are scanned once with a bounded min-heap of k locations, which gives the k-th highest value. Then the
+	 * locations with a value that is not less than the k-th highest value are selected, so that the locations that
+	 * have the same value with the k-th location are also returned. If k is 1, these are the locations with the highest
+	 * commonality value.
+	 * 
+	 * @param commonalities
+	 *            Commonality values of locations, indexed by location index.
+	 * @param candidateLocations
+	 *            Bitset of the locations that can be selected.
+	 * @param numberOfLocations
+	 *            Number of locations to select (k). It can be larger than the number of candidate locations (e.g.,
+	 *            Integer.MAX_VALUE to select all of them); the heap is not larger than the number of candidates.
+	 * @return LocationCommonalityValues of the selected locations, in descending order of their commonality values
+	 *         (locations with the same value are in the order of their indices).
+	 */
+	ArrayList<LocationCommonalityValue> getTopLocationCommonalityValues(double[] commonalities,
+			long[] candidateLocations, int numberOfLocations) {
+		int numberOfCandidateLocations = 0;
+		for (long word : candidateLocations) {
+			numberOfCandidateLocations += Long.bitCount(word);
+		}
+		double[] heap = new double[Math.min(numberOfLocations, numberOfCandidateLocations)];
+		int heapSize = 0;
+		for (int w = 0; w < candidateLocations.length; w++) {
+			for (long word = candidateLocations[w]; word != 0; word &= word - 1) {
+				double commonality = commonalities[(w << 6) + Long.numberOfTrailingZeros(word)];
+				if (heapSize < heap.length) {
+					siftUp(heap, heapSize++, commonality);
+				} else if (commonality > heap[0]) {
+					siftDown(heap, heapSize, commonality);
+				}
+			}
+		}
+		ArrayList<LocationCommonalityValue> topLocationCommonalityValues = new ArrayList<LocationCommonalityValue>();
+		if (heapSize == 0) {
+			return topLocationCommonalityValues;
+		}
+		double lowestSelectedCommonality = heapSize < numberOfLocations ? Double.NEGATIVE_INFINITY : heap[0];
+		for (int w = 0; w < candidateLocations.length; w++) {
+			for (long word = candidateLocations[w]; word != 0; word &= word - 1) {
+				int index = (w << 6) + Long.numberOfTrailingZeros(word);
+				if (commonalities[index] >= lowestSelectedCommonality) {
+					topLocationCommonalityValues.add(
+							new LocationCommonalityValue(locationIndex.getLocationId(index), commonalities[index]));
+				}
+			}
+		}
+		Collections.sort(topLocationCommonalityValues); // stable, so equal values stay in the order of indices
+		return topLocationCommonalityValues;
+	}
+
+	/**
+	 * Adds a value to a min-heap of values.
+	 */
+	private static void siftUp(double[] heap, int position, double value) {
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (heap[parent] <= value) {
+				break;
+			}
+			heap[position] = heap[parent];
+			position = parent;
+		}
+		heap[position] = value;
+	}
+
+	/**
+	 * Replaces the smallest value of a min-heap with a larger value.
+	 */
+	private static void siftDown(double[] heap, int heapSize, double value) {
+		int position = 0;
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= value) {
+				break;
+			}
+			heap[position] = heap[child];
+			position = child;
+		}
+		heap[position] = value;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the number of locations to return is not positive
+	 */
+	static void checkNumberOfLocations(int numberOfLocations) {
+		if (numberOfLocations < 1) {
+			throw new IllegalArgumentException("Number of locations must be positive: " + numberOfLocations);
+		}
+	}
+
+	/**
+	 * Tweets in a cluster, in one of the input representations, that provide the evidence of the three evidence
+	 * sources.
+	 */
+	private static abstract class ClusterEvidence {
+
+		/**
+		 * Maps the tweets to locations using an evidence source, and calculates BPAs using these mappings.
+		 * 
+		 * @param evidenceSource
+		 *            Spatial feature in tweets that is used as the evidence source.
+		 * @return Basic probability assignments (BPAs) for locations.
+		 */
+		abstract FocalElementTable getBasicProbabilityAssignments(EvidenceSource evidenceSource);
+	}
+
+	/**
+	 * Spatial features in tweets that are used as evidence sources.
+	 */
+	private static enum EvidenceSource {
+		LATITUDE_LONGITUDE(EstimationStage.LATITUDE_LONGITUDE_MAPPING),
+		CONTENT(EstimationStage.CONTENT_MAPPING),
+		USER_PROFILE(EstimationStage.USER_PROFILE_MAPPING);
+
+		/**
+		 * Stage that maps tweets to locations using the evidence source.
+		 */
+		private final EstimationStage mappingStage;
+
+		private EvidenceSource(EstimationStage mappingStage) {
+			this.mappingStage = mappingStage;
+		}
+	}
+}
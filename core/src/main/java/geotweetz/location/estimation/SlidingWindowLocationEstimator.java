@@ -0,0 +1,460 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.FocalElementTable;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Stateful location estimator for long-running event clusters, which uses only the evidence in a sliding time window.
+ * Tweets are added as they arrive, and they are kept in order of their posting time (TweetDBO.getCreatedAt()), so that a
+ * tweet that arrives late is placed among the tweets in the window. A tweet is evicted when it is older than the window
+ * length with respect to the latest tweet (or the time given to advanceTime), so that the memory used by the estimator
+ * is bounded by the number of tweets in the window and their focal elements.
+ *
+ * <p>
+ * Optionally, the evidence of a tweet can be down-weighted with an exponential decay: the weight of a tweet is halved
+ * for each half-life that passed since its posting time. Basic probability assignments are then calculated from the
+ * weights of tweets instead of their numbers. Since the weights of all tweets decay at the same rate, the estimation
+ * only changes when tweets are added or evicted. Without decay, the estimation is the same as
+ * LocationEstimator.estimateLocationForCluster for the tweets in the window.
+ *
+ * <p>
+ * As in IncrementalLocationEstimator, each tweet is mapped to locations only once. For eviction, the focal element of
+ * each tweet in the window is kept per evidence source in a ring buffer. Methods are synchronized.
+ *
+ * @author oozdikis
+ *
+ */
+public class SlidingWindowLocationEstimator {
+	private static final Logger logger = Logger.getLogger(SlidingWindowLocationEstimator.class);
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Maximum number of half-lives between the reference time of weights and the latest tweet. Weights are rescaled
+	 * when this number is exceeded, so that they do not overflow.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_HALF_LIVES = 512;
+
+	/**
+	 * Estimator that provides the tweet-location mapper, the location index and the combination of BPAs.
+	 */
+	private final LocationEstimator locationEstimator;
+
+	/**
+	 * Length of the window in milliseconds.
+	 */
+	private final long windowLengthMillis;
+
+	/**
+	 * Half-life of the evidence of a tweet in milliseconds, or 0 if the evidence does not decay.
+	 */
+	private final long halfLifeMillis;
+
+	/**
+	 * Evidence using tweet lat-lon.
+	 */
+	private final WindowedEvidence evidenceUsingTweetLatitudeLongitude;
+
+	/**
+	 * Evidence using tweet content.
+	 */
+	private final WindowedEvidence evidenceUsingTweetContent;
+
+	/**
+	 * Evidence using location in user profile.
+	 */
+	private final WindowedEvidence evidenceUsingUserProfileLocation;
+
+	/**
+	 * Buffer for the bitset of a set of locations.
+	 */
+	private final long[] locationsSetBuffer;
+
+	/**
+	 * Ring buffer of the posting times of tweets in the window (in milliseconds), in order of time.
+	 */
+	private long[] tweetTimes;
+
+	/**
+	 * Position of the oldest tweet in the ring buffers.
+	 */
+	private int head;
+
+	/**
+	 * Number of tweets in the window.
+	 */
+	private int numberOfTweets;
+
+	/**
+	 * End of the window (time of the latest tweet, or the time given to advanceTime) in milliseconds.
+	 */
+	private long currentTimeMillis;
+
+	/**
+	 * Time at which the weight of a tweet is 1, if the evidence decays.
+	 */
+	private long referenceTimeMillis;
+
+	/**
+	 * Estimator with a sliding window and no decay.
+	 *
+	 * @param locationEstimator
+	 *            Estimator for the frame of discernment that the cluster is estimated in. It can be shared by many
+	 *            windowed estimators.
+	 * @param windowLengthMillis
+	 *            Length of the window in milliseconds. Tweets that are older than the window are evicted.
+	 */
+	public SlidingWindowLocationEstimator(LocationEstimator locationEstimator, long windowLengthMillis) {
+		this(locationEstimator, windowLengthMillis, 0);
+	}
+
+	/**
+	 * Estimator with a sliding window and an exponential decay of evidence.
+	 *
+	 * @param locationEstimator
+	 *            Estimator for the frame of discernment that the cluster is estimated in. It can be shared by many
+	 *            windowed estimators.
+	 * @param windowLengthMillis
+	 *            Length of the window in milliseconds. Tweets that are older than the window are evicted.
+	 * @param halfLifeMillis
+	 *            Half-life of the evidence of a tweet in milliseconds, or 0 if the evidence does not decay.
+	 */
+	public SlidingWindowLocationEstimator(LocationEstimator locationEstimator, long windowLengthMillis,
+			long halfLifeMillis) {
+		if (windowLengthMillis <= 0) {
+			throw new IllegalArgumentException("Window length must be positive: " + windowLengthMillis);
+		}
+		if (halfLifeMillis < 0) {
+			throw new IllegalArgumentException("Half-life must not be negative: " + halfLifeMillis);
+		}
+		int numberOfWords = locationEstimator.getLocationIndex().getNumberOfWords();
+		this.locationEstimator = locationEstimator;
+		this.windowLengthMillis = windowLengthMillis;
+		this.halfLifeMillis = halfLifeMillis;
+		this.evidenceUsingTweetLatitudeLongitude = new WindowedEvidence(numberOfWords);
+		this.evidenceUsingTweetContent = new WindowedEvidence(numberOfWords);
+		this.evidenceUsingUserProfileLocation = new WindowedEvidence(numberOfWords);
+		this.locationsSetBuffer = new long[numberOfWords];
+		this.tweetTimes = new long[DEFAULT_CAPACITY];
+		this.head = 0;
+		this.numberOfTweets = 0;
+		this.currentTimeMillis = Long.MIN_VALUE;
+		this.referenceTimeMillis = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Adds a new tweet to the window, and evicts tweets that are older than the window. A tweet that is older than the
+	 * latest tweet in the window is placed in order of its posting time, since its weight only depends on its own
+	 * posting time. A tweet that is already older than the window is ignored.
+	 *
+	 * @param tweet
+	 *            Tweet to add. Its posting time must be set.
+	 * @throws IllegalArgumentException
+	 *             if the posting time of the tweet is not set.
+	 */
+	public synchronized void addTweet(TweetDBO tweet) {
+		addTweet(TweetObservation.fromTweetDBO(tweet));
+	}
+
+	/**
+	 * Adds a new tweet, given as an observation, to the window (see addTweet(TweetDBO)).
+	 *
+	 * @param tweet
+	 *            Tweet to add. Its posting time must be known.
+	 * @throws IllegalArgumentException
+	 *             if the posting time of the tweet is not known.
+	 */
+	public synchronized void addTweet(TweetObservation tweet) {
+		long tweetTimeMillis = tweet.getCreatedAtMillis();
+		if (tweetTimeMillis == TweetObservation.UNKNOWN_TIME) {
+			throw new IllegalArgumentException("Posting time of tweet is not set: " + tweet);
+		}
+		advanceTime(tweetTimeMillis);
+		if (isOutsideWindow(tweetTimeMillis)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Ignoring tweet that is older than the window: " + tweet);
+			}
+			return;
+		}
+		if (referenceTimeMillis == Long.MIN_VALUE) {
+			referenceTimeMillis = tweetTimeMillis;
+		}
+		if (numberOfTweets == tweetTimes.length) {
+			grow();
+		}
+		int position = (head + numberOfTweets) % tweetTimes.length;
+		double weight = getWeight(tweetTimeMillis);
+		TweetLocationMapper tweetLocationMapper = locationEstimator.getTweetLocationMapper();
+		evidenceUsingTweetLatitudeLongitude.add(position,
+				tweetLocationMapper.mapTweetToCitiesUsingLatitudeLongitude(tweet), weight);
+		evidenceUsingTweetContent.add(position, tweetLocationMapper.mapTweetToCitiesUsingContent(tweet), weight);
+		evidenceUsingUserProfileLocation.add(position, tweetLocationMapper.mapTweetToCitiesUsingProfile(tweet),
+				weight);
+		tweetTimes[position] = tweetTimeMillis;
+		numberOfTweets++;
+		// a late tweet is moved back to its place, so that tweets are evicted in order of time
+		for (int i = numberOfTweets - 1; i > 0; i--) {
+			int previousPosition = (head + i - 1) % tweetTimes.length;
+			if (tweetTimes[previousPosition] <= tweetTimeMillis) {
+				break;
+			}
+			swap(previousPosition, position);
+			position = previousPosition;
+		}
+	}
+
+	/**
+	 * Adds a micro-batch of new tweets to the window.
+	 *
+	 * @param tweets
+	 *            Tweets to add, preferably in order of their posting times.
+	 */
+	public synchronized void addTweets(List<TweetDBO> tweets) {
+		for (TweetDBO tweet : tweets) {
+			addTweet(tweet);
+		}
+	}
+
+	/**
+	 * Moves the end of the window to the given time, and evicts tweets that are older than the window. The window is
+	 * not moved backwards.
+	 *
+	 * @param timeMillis
+	 *            current time in milliseconds
+	 */
+	public synchronized void advanceTime(long timeMillis) {
+		if (timeMillis <= currentTimeMillis) {
+			return;
+		}
+		currentTimeMillis = timeMillis;
+		while (numberOfTweets > 0 && isOutsideWindow(tweetTimes[head])) {
+			double weight = getWeight(tweetTimes[head]);
+			evidenceUsingTweetLatitudeLongitude.remove(head, weight);
+			evidenceUsingTweetContent.remove(head, weight);
+			evidenceUsingUserProfileLocation.remove(head, weight);
+			head = (head + 1) % tweetTimes.length;
+			numberOfTweets--;
+		}
+		evidenceUsingTweetLatitudeLongitude.removeEmptyElementsIfNeeded();
+		evidenceUsingTweetContent.removeEmptyElementsIfNeeded();
+		evidenceUsingUserProfileLocation.removeEmptyElementsIfNeeded();
+		if (numberOfTweets == 0) {
+			referenceTimeMillis = Long.MIN_VALUE;
+		} else if (halfLifeMillis > 0) {
+			long numberOfHalfLives = (currentTimeMillis - referenceTimeMillis) / halfLifeMillis;
+			if (numberOfHalfLives > MAXIMUM_NUMBER_OF_HALF_LIVES) {
+				// the factor is 0 below the smallest subnormal number, the exponent is clamped to fit in an int
+				double factor = Math.scalb(1.0, (int) Math.max(-numberOfHalfLives, Double.MIN_EXPONENT - 53));
+				evidenceUsingTweetLatitudeLongitude.tweetWeights.scaleElementWeights(factor);
+				evidenceUsingTweetContent.tweetWeights.scaleElementWeights(factor);
+				evidenceUsingUserProfileLocation.tweetWeights.scaleElementWeights(factor);
+				referenceTimeMillis += numberOfHalfLives * halfLifeMillis;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return number of tweets in the window
+	 */
+	public synchronized int getNumberOfTweets() {
+		return numberOfTweets;
+	}
+
+	/**
+	 * Estimates the location of the cluster using the tweets in the window.
+	 *
+	 * @return LocationCommonalityValues for locations with the highest commonality score, or an empty list if there is
+	 *         no tweet in the window.
+	 */
+	public synchronized ArrayList<LocationCommonalityValue> estimateLocation() {
+		return estimateTopLocations(1);
+	}
+
+	/**
+	 * Estimates the k most likely locations of the cluster using the tweets in the window.
+	 *
+	 * @param numberOfLocations
+	 *            Number of locations to return (k).
+	 * @return LocationCommonalityValues for the k locations with the highest commonality scores (with ties), or an
+	 *         empty list if there is no tweet in the window.
+	 */
+	public synchronized ArrayList<LocationCommonalityValue> estimateTopLocations(int numberOfLocations) {
+		LocationEstimator.checkNumberOfLocations(numberOfLocations);
+		if (numberOfTweets == 0) {
+			return new ArrayList<LocationCommonalityValue>();
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Estimating location for sliding window with " + numberOfTweets + " tweets");
+		}
+		return locationEstimator.estimateLocationUsingBasicProbabilityAssignments(
+				evidenceUsingTweetLatitudeLongitude.getBasicProbabilityAssignments(),
+				evidenceUsingTweetContent.getBasicProbabilityAssignments(),
+				evidenceUsingUserProfileLocation.getBasicProbabilityAssignments(), numberOfLocations);
+	}
+
+	private boolean isOutsideWindow(long tweetTimeMillis) {
+		return currentTimeMillis - tweetTimeMillis >= windowLengthMillis;
+	}
+
+	/**
+	 * Calculates the weight of a tweet, which is 2^(-t/h) for a tweet that is posted t milliseconds before the
+	 * reference time, with a half-life of h milliseconds. Weights are relative to the reference time instead of the
+	 * current time, so that the weights of tweets in the window do not have to be updated as time passes.
+	 *
+	 * @param tweetTimeMillis
+	 *            posting time of the tweet
+	 * @return weight of the tweet
+	 */
+	private double getWeight(long tweetTimeMillis) {
+		if (halfLifeMillis == 0) {
+			return 1;
+		}
+		return Math.pow(2, 1.0 * (tweetTimeMillis - referenceTimeMillis) / halfLifeMillis);
+	}
+
+	/**
+	 * Swaps two tweets in the ring buffers.
+	 */
+	private void swap(int position, int otherPosition) {
+		long tweetTimeMillis = tweetTimes[position];
+		tweetTimes[position] = tweetTimes[otherPosition];
+		tweetTimes[otherPosition] = tweetTimeMillis;
+		evidenceUsingTweetLatitudeLongitude.swap(position, otherPosition);
+		evidenceUsingTweetContent.swap(position, otherPosition);
+		evidenceUsingUserProfileLocation.swap(position, otherPosition);
+	}
+
+	/**
+	 * Doubles the capacity of the ring buffers. The oldest tweet is moved to the beginning.
+	 */
+	private void grow() {
+		long[] newTweetTimes = new long[tweetTimes.length * 2];
+		for (int i = 0; i < numberOfTweets; i++) {
+			newTweetTimes[i] = tweetTimes[(head + i) % tweetTimes.length];
+		}
+		evidenceUsingTweetLatitudeLongitude.grow(head, numberOfTweets, newTweetTimes.length);
+		evidenceUsingTweetContent.grow(head, numberOfTweets, newTweetTimes.length);
+		evidenceUsingUserProfileLocation.grow(head, numberOfTweets, newTweetTimes.length);
+		tweetTimes = newTweetTimes;
+		head = 0;
+	}
+
+	/**
+	 * Evidence of the tweets in the window using one of the spatial features in tweets.
+	 */
+	private class WindowedEvidence {
+
+		/**
+		 * Number and total weight of tweets for each set of locations.
+		 */
+		private final FocalElementTable tweetWeights;
+
+		/**
+		 * Basic probability assignments of the focal elements with tweets.
+		 */
+		private final FocalElementTable basicProbabilityAssignments;
+
+		/**
+		 * Ring buffer of the focal elements (element numbers in tweetWeights) of tweets in the window.
+		 */
+		private int[] tweetElements;
+
+		/**
+		 * Number of focal elements whose tweets have all been evicted since the last compaction.
+		 */
+		private int numberOfEmptyElements;
+
+		private WindowedEvidence(int numberOfWords) {
+			this.tweetWeights = new FocalElementTable(numberOfWords);
+			this.basicProbabilityAssignments = new FocalElementTable(numberOfWords);
+			this.tweetElements = new int[DEFAULT_CAPACITY];
+			this.numberOfEmptyElements = 0;
+		}
+
+		private void add(int position, HashSet<Long> locationIds, double weight) {
+			tweetElements[position] = tweetWeights
+					.addElements(locationEstimator.getLocationsSet(locationIds, locationsSetBuffer), 0, 1, weight);
+		}
+
+		private void swap(int position, int otherPosition) {
+			int element = tweetElements[position];
+			tweetElements[position] = tweetElements[otherPosition];
+			tweetElements[otherPosition] = element;
+		}
+
+		private void remove(int position, double weight) {
+			int element = tweetElements[position];
+			tweetWeights.addElements(element, -1, -weight);
+			if (tweetWeights.getElementCount(element) == 0) {
+				numberOfEmptyElements++;
+			}
+		}
+
+		/**
+		 * Removes focal elements with no tweets if they are more than half of the table, so that the size of the table
+		 * is bounded by the number of tweets in the window.
+		 */
+		private void removeEmptyElementsIfNeeded() {
+			if (numberOfEmptyElements > tweetWeights.size() / 2) {
+				removeEmptyElements();
+			}
+		}
+
+		/**
+		 * Removes focal elements with no tweets from the table, and updates the focal elements of tweets in the window.
+		 */
+		private void removeEmptyElements() {
+			numberOfEmptyElements = 0;
+			int[] newElements = tweetWeights.removeEmptyElements();
+			if (newElements == null) {
+				return;
+			}
+			for (int i = 0; i < numberOfTweets; i++) {
+				int position = (head + i) % tweetElements.length;
+				tweetElements[position] = newElements[tweetElements[position]];
+			}
+		}
+
+		/**
+		 * Calculates the BPAs from the weights of focal elements. Focal elements with no tweets are skipped (their
+		 * weights may not be exactly 0 after the evictions), and they are removed from the table only if they are more
+		 * than half of the table.
+		 */
+		private FocalElementTable getBasicProbabilityAssignments() {
+			removeEmptyElementsIfNeeded();
+			double totalWeight = 0;
+			for (int element = 0; element < tweetWeights.size(); element++) {
+				if (tweetWeights.getElementCount(element) > 0) {
+					totalWeight += tweetWeights.getElementWeight(element);
+				}
+			}
+			basicProbabilityAssignments.clear();
+			long[] words = tweetWeights.getWords();
+			int numberOfWords = tweetWeights.getNumberOfWords();
+			for (int element = 0; element < tweetWeights.size(); element++) {
+				if (tweetWeights.getElementCount(element) > 0) {
+					basicProbabilityAssignments.addProbabilityValue(words, element * numberOfWords,
+							tweetWeights.getElementWeight(element) / totalWeight);
+				}
+			}
+			return basicProbabilityAssignments;
+		}
+
+		private void grow(int head, int numberOfTweets, int capacity) {
+			int[] newTweetElements = new int[capacity];
+			for (int i = 0; i < numberOfTweets; i++) {
+				newTweetElements[i] = tweetElements[(head + i) % tweetElements.length];
+			}
+			tweetElements = newTweetElements;
+		}
+	}
+
+}
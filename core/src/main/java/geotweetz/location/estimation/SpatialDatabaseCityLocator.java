@@ -0,0 +1,272 @@
+package geotweetz.location.estimation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Finds the cities that contain GPS positions with a spatial join in the database, instead of loading city boundaries
+ * into the JVM. The positions of a batch are written to a temporary table, and a single query joins them with the
+ * city table (see CityDBO) using the spatial index on city boundaries. Only the ids of the cities that contain each
+ * position are returned from the database.
+ *
+ * <p>
+ * The queries use functions that are available in both PostGIS and H2GIS (ST_MakePoint, ST_SetSRID, ST_Contains and
+ * the bounding box operator &&). As in the gazetteer, a position on the boundary of a city is not contained by the
+ * city. Cities in the table that are not in the frame of discernment of the mapper are ignored.
+ *
+ * <p>
+ * The locator uses a single connection, so its methods are synchronized. The temporary table is created and the
+ * statements are prepared for the connection when the locator is created, and the statements are closed with
+ * close(). If auto-commit is switched off for a batch and the batch fails, the positions of the batch are rolled back
+ * before auto-commit is restored.
+ *
+ * @author oozdikis
+ *
+ */
+public class SpatialDatabaseCityLocator implements CityBoundaryLocator {
+	private static final Logger logger = Logger.getLogger(SpatialDatabaseCityLocator.class);
+
+	private static final String CREATE_POSITION_TABLE = "create local temporary table if not exists tweet_position "
+			+ "(tweet integer, position geometry)";
+	private static final String INSERT_POSITION = "insert into tweet_position values (?, ST_SetSRID(ST_MakePoint(?, ?), ?))";
+	private static final String DELETE_POSITIONS = "delete from tweet_position";
+	private static final String SELECT_CITIES_AT_POSITIONS = "select p.tweet, c.id from tweet_position p join city c "
+			+ "on c.boundary && p.position and ST_Contains(c.boundary, p.position) order by p.tweet";
+	private static final String SELECT_CITIES_AT_POSITION = "select id from city "
+			+ "where boundary && ST_SetSRID(ST_MakePoint(?, ?), ?) and ST_Contains(boundary, ST_SetSRID(ST_MakePoint(?, ?), ?))";
+	private static final String SELECT_CITY_NAMES = "select id, name from city order by id";
+
+	private final Connection connection;
+
+	/**
+	 * Statements for the cities at a single position, and for the positions of a batch.
+	 */
+	private final PreparedStatement selectCitiesAtPosition;
+	private final PreparedStatement insertPosition;
+
+	/**
+	 * Spatial reference id of city boundaries, which is also set for GPS positions.
+	 */
+	private final int srid;
+
+	/**
+	 * Locations (cities) that define the frame of discernment.
+	 */
+	private final CityGazetteer cityGazetteer;
+
+	/**
+	 * City numbers (in the frame of discernment) by city id.
+	 */
+	private final HashMap<Long, Integer> citiesById;
+
+	/**
+	 *
+	 * @param connection
+	 *            connection to the database with the city table (boundaries in a spatial column, with a spatial index)
+	 * @param srid
+	 *            spatial reference id of city boundaries (e.g. 4326, or 0 if it is not set)
+	 * @param cityGazetteer
+	 *            locations (cities) that define the frame of discernment (boundaries are not used, and can be empty)
+	 * @throws SQLException
+	 *             if the temporary table for positions can not be created, or the statements can not be prepared
+	 */
+	public SpatialDatabaseCityLocator(Connection connection, int srid, CityGazetteer cityGazetteer)
+			throws SQLException {
+		this.connection = connection;
+		this.srid = srid;
+		this.cityGazetteer = cityGazetteer;
+		this.citiesById = new HashMap<Long, Integer>();
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			citiesById.put(cityGazetteer.getCityId(city), city);
+		}
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(CREATE_POSITION_TABLE);
+		} finally {
+			statement.close();
+		}
+		this.selectCitiesAtPosition = connection.prepareStatement(SELECT_CITIES_AT_POSITION);
+		this.insertPosition = connection.prepareStatement(INSERT_POSITION);
+	}
+
+	/**
+	 * Closes the statements of the locator. The connection is not closed.
+	 *
+	 * @throws SQLException
+	 *             if the statements can not be closed
+	 */
+	public synchronized void close() throws SQLException {
+		try {
+			selectCitiesAtPosition.close();
+		} finally {
+			insertPosition.close();
+		}
+	}
+
+	/**
+	 * Reads the ids and names of all cities in the city table, without their boundaries.
+	 *
+	 * @param connection
+	 *            connection to the database with the city table
+	 * @return gazetteer with the cities ordered by id, and with empty boundaries
+	 * @throws SQLException
+	 *             if the cities can not be read
+	 */
+	public static CityGazetteer readCityGazetteer(Connection connection) throws SQLException {
+		List<Long> ids = new ArrayList<Long>();
+		List<String> names = new ArrayList<String>();
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery(SELECT_CITY_NAMES);
+			while (resultSet.next()) {
+				ids.add(resultSet.getLong(1));
+				names.add(resultSet.getString(2));
+			}
+			resultSet.close();
+		} finally {
+			statement.close();
+		}
+		long[] cityIds = new long[ids.size()];
+		Polygon[] cityBoundaries = new Polygon[ids.size()];
+		GeometryFactory geometryFactory = new GeometryFactory();
+		for (int city = 0; city < cityIds.length; city++) {
+			cityIds[city] = ids.get(city);
+			cityBoundaries[city] = geometryFactory.createPolygon(null, null);
+		}
+		return new CityGazetteer(cityIds, names.toArray(new String[names.size()]), cityBoundaries);
+	}
+
+	/**
+	 *
+	 * @return Locations (cities) that define the frame of discernment.
+	 */
+	public CityGazetteer getCityGazetteer() {
+		return cityGazetteer;
+	}
+
+	public synchronized void findCitiesAtLatitudeLongitude(double latitude, double longitude,
+			TweetCityMapping tweetCityMapping) {
+		if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+			return;
+		}
+		try {
+			for (int i = 0; i < 2; i++) {
+				selectCitiesAtPosition.setDouble(3 * i + 1, latitude);
+				selectCitiesAtPosition.setDouble(3 * i + 2, longitude);
+				selectCitiesAtPosition.setInt(3 * i + 3, srid);
+			}
+			ResultSet resultSet = selectCitiesAtPosition.executeQuery();
+			try {
+				while (resultSet.next()) {
+					Integer city = citiesById.get(resultSet.getLong(1));
+					if (city != null) {
+						tweetCityMapping.addCity(city);
+					}
+				}
+			} finally {
+				resultSet.close();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Cities at a GPS position can not be found in the database", e);
+		}
+	}
+
+	public synchronized void findCitiesAtLatitudesLongitudes(double[] latitudes, double[] longitudes,
+			TweetCityMapping tweetCityMapping) {
+		try {
+			boolean autoCommit = connection.getAutoCommit();
+			if (autoCommit) {
+				connection.setAutoCommit(false);
+			}
+			boolean completed = false;
+			try {
+				insertPositions(latitudes, longitudes);
+				int tweet = 0;
+				Statement statement = connection.createStatement();
+				try {
+					ResultSet resultSet = statement.executeQuery(SELECT_CITIES_AT_POSITIONS);
+					while (resultSet.next()) {
+						int tweetOfCity = resultSet.getInt(1);
+						for (; tweet < tweetOfCity; tweet++) {
+							tweetCityMapping.endTweet();
+						}
+						Integer city = citiesById.get(resultSet.getLong(2));
+						if (city != null) {
+							tweetCityMapping.addCity(city);
+						}
+					}
+					resultSet.close();
+					statement.executeUpdate(DELETE_POSITIONS);
+				} finally {
+					statement.close();
+				}
+				for (; tweet < latitudes.length; tweet++) {
+					tweetCityMapping.endTweet();
+				}
+				completed = true;
+			} finally {
+				if (autoCommit) {
+					if (!completed) {
+						rollback();
+					}
+					connection.setAutoCommit(true);
+				}
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Cities at GPS positions can not be found in the database", e);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Found cities of " + latitudes.length + " GPS positions in the database");
+		}
+	}
+
+	/**
+	 * Writes GPS positions to the temporary table, replacing the positions of a previous batch. Positions without
+	 * coordinates (NaN) are not written.
+	 */
+	private void insertPositions(double[] latitudes, double[] longitudes) throws SQLException {
+		Statement deleteStatement = connection.createStatement();
+		try {
+			deleteStatement.executeUpdate(DELETE_POSITIONS);
+		} finally {
+			deleteStatement.close();
+		}
+		for (int tweet = 0; tweet < latitudes.length; tweet++) {
+			if (Double.isNaN(latitudes[tweet]) || Double.isNaN(longitudes[tweet])) {
+				continue;
+			}
+			insertPosition.setInt(1, tweet);
+			insertPosition.setDouble(2, latitudes[tweet]);
+			insertPosition.setDouble(3, longitudes[tweet]);
+			insertPosition.setInt(4, srid);
+			insertPosition.addBatch();
+		}
+		insertPosition.executeBatch();
+	}
+
+	/**
+	 * Rolls back the positions of a batch after a failure. A failure of the rollback is only logged, so that it does
+	 * not hide the failure that is being thrown.
+	 */
+	private void rollback() {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			logger.warn("Rollback failed after finding cities at GPS positions", e);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package geotweetz.location.estimation;
+
+import geotweetz.location.type.FocalElementTable;
+
+/**
+ * Combination rules of DS theory (see CombinationRule). All rules assign the product of the probability values of two
+ * focal elements to their intersection if it is not empty; they differ in how the products of conflicting focal
+ * elements (the conflict mass K) are assigned.
+ *
+ * <p>
+ * The bound of the error in commonality values of approximated probability assignments (see FocalElementSummarizer)
+ * holds for DUBOIS_PRADE and YAGER, which assign the product of each pair of focal elements to a single set. It is
+ * not guaranteed for DEMPSTER, which scales the probability values by 1/(1-K), and for PCR5, so no bound is reported
+ * for them (see boundsCommonalityError).
+ *
+ * @author oozdikis
+ *
+ */
+public enum StandardCombinationRule implements CombinationRule {
+
+	/**
+	 * Dempster's rule: conflicting evidence is discarded, and the probability values of the intersections are
+	 * normalized by 1/(1-K). If all evidence is conflicting (K=1), the rule is undefined and the combination has no
+	 * focal elements.
+	 */
+	DEMPSTER {
+		@Override
+		public void assignConflictingProbability(long[] words1, int offset1, double probabilityValue1,
+				long[] words2, int offset2, double probabilityValue2, FocalElementTable conflictingProbabilityValues,
+				long[] buffer) {
+			// normalized in distributeConflictingProbability
+		}
+
+		@Override
+		public void distributeConflictingProbability(FocalElementTable combinedBpas,
+				FocalElementTable conflictingProbabilityValues, double conflictMass, long[] thetaWords) {
+			double nonConflictingMass = 0;
+			for (int element = 0; element < combinedBpas.size(); element++) {
+				nonConflictingMass += combinedBpas.getProbabilityValue(element);
+			}
+			if (nonConflictingMass == 0) {
+				combinedBpas.clear();
+				return;
+			}
+			for (int element = 0; element < combinedBpas.size(); element++) {
+				combinedBpas.setProbabilityValue(element,
+						combinedBpas.getProbabilityValue(element) / nonConflictingMass);
+			}
+		}
+	},
+
+	/**
+	 * Yager's rule: conflicting evidence is assigned to Theta (ignorance).
+	 */
+	YAGER {
+		@Override
+		public void assignConflictingProbability(long[] words1, int offset1, double probabilityValue1,
+				long[] words2, int offset2, double probabilityValue2, FocalElementTable conflictingProbabilityValues,
+				long[] buffer) {
+			// assigned to Theta in distributeConflictingProbability
+		}
+
+		@Override
+		public void distributeConflictingProbability(FocalElementTable combinedBpas,
+				FocalElementTable conflictingProbabilityValues, double conflictMass, long[] thetaWords) {
+			if (conflictMass > 0) {
+				combinedBpas.addProbabilityValue(thetaWords, 0, conflictMass);
+			}
+		}
+	},
+
+	/**
+	 * Dubois and Prade's rule: the product of two conflicting focal elements is assigned to their union.
+	 */
+	DUBOIS_PRADE {
+		@Override
+		public void assignConflictingProbability(long[] words1, int offset1, double probabilityValue1,
+				long[] words2, int offset2, double probabilityValue2, FocalElementTable conflictingProbabilityValues,
+				long[] buffer) {
+			for (int i = 0; i < buffer.length; i++) {
+				buffer[i] = words1[offset1 + i] | words2[offset2 + i];
+			}
+			conflictingProbabilityValues.addProbabilityValue(buffer, 0, probabilityValue1 * probabilityValue2);
+		}
+
+		@Override
+		public void distributeConflictingProbability(FocalElementTable combinedBpas,
+				FocalElementTable conflictingProbabilityValues, double conflictMass, long[] thetaWords) {
+			addProbabilityValues(conflictingProbabilityValues, combinedBpas);
+		}
+	},
+
+	/**
+	 * Proportional conflict redistribution rule no. 5 (PCR5): the product of two conflicting focal elements X1 and X2
+	 * is redistributed back to X1 and X2, in proportion to their probability values m1(X1) and m2(X2), i.e.
+	 * m1(X1)^2*m2(X2)/(m1(X1)+m2(X2)) to X1 and m1(X1)*m2(X2)^2/(m1(X1)+m2(X2)) to X2.
+	 */
+	PCR5 {
+		@Override
+		public void assignConflictingProbability(long[] words1, int offset1, double probabilityValue1,
+				long[] words2, int offset2, double probabilityValue2, FocalElementTable conflictingProbabilityValues,
+				long[] buffer) {
+			double sum = probabilityValue1 + probabilityValue2;
+			if (sum > 0) {
+				double multiplication = probabilityValue1 * probabilityValue2;
+				conflictingProbabilityValues.addProbabilityValue(words1, offset1,
+						multiplication * probabilityValue1 / sum);
+				conflictingProbabilityValues.addProbabilityValue(words2, offset2,
+						multiplication * probabilityValue2 / sum);
+			}
+		}
+
+		@Override
+		public void distributeConflictingProbability(FocalElementTable combinedBpas,
+				FocalElementTable conflictingProbabilityValues, double conflictMass, long[] thetaWords) {
+			addProbabilityValues(conflictingProbabilityValues, combinedBpas);
+		}
+	};
+
+	/**
+	 * Checks if the bound of the error in commonality values of approximated probability assignments holds for a
+	 * combination rule. It is known to hold only for DUBOIS_PRADE and YAGER, so it is not assumed for other rules.
+	 *
+	 * @param combinationRule
+	 *            combination rule
+	 * @return true if the error bound holds for the rule
+	 */
+	static boolean boundsCommonalityError(CombinationRule combinationRule) {
+		return combinationRule == DUBOIS_PRADE || combinationRule == YAGER;
+	}
+
+	/**
+	 * Adds the probability values of all focal elements of a table to another table.
+	 */
+	private static void addProbabilityValues(FocalElementTable source, FocalElementTable destination) {
+		int numberOfWords = source.getNumberOfWords();
+		long[] words = source.getWords();
+		for (int element = 0; element < source.size(); element++) {
+			destination.addProbabilityValue(words, element * numberOfWords, source.getProbabilityValue(element));
+		}
+	}
+}
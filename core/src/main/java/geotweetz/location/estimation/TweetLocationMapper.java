@@ -0,0 +1,672 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Implementation of location mapping methods for tweets. The class supports mappings using three spatial features in
+ * tweets: 1) latitude-longitude information in geotagged tweets, 2) location names mentioned in tweet content, 3)
+ * location names in user profile.
+ * 
+ * <p>
+ * Tweets can be given as database objects (TweetDBO) or as immutable observations (TweetObservation). Mappings of a
+ * list of observations are returned in a list in the same order, instead of a HashMap that uses tweets as keys. For
+ * large clusters, tweets can be given as a columnar TweetBatch, and mappings of the batch are written as city numbers
+ * into a TweetCityMapping, without creating a set for each tweet.
+ * 
+ * <p>
+ * The spatial index, prepared city boundaries and the city name automaton are built in the constructor and are not
+ * modified afterwards, so a TweetLocationMapper can be shared by multiple threads. A mapper can also be created from a
+ * memory-mapped GazetteerSnapshot, in which case the index, boundaries and automaton are read from the snapshot and
+ * nothing is built.
+ * 
+ * <p>
+ * GPS lookups can be resolved by a precomputed CityGridCache, and profile lookups by a CityNameCache. Both are
+ * optional, and they can be set at any time.
+ * 
+ * @author oozdikis
+ *
+ */
+public class TweetLocationMapper {
+	private static final Logger logger = Logger.getLogger(TweetLocationMapper.class);
+
+	/**
+	 * All locations (cities) that define the propositional space of possible solutions. If the mapper is created from
+	 * a snapshot, the gazetteer is created from the snapshot when it is first requested.
+	 */
+	private volatile CityGazetteer cityGazetteer;
+
+	/**
+	 * Snapshot that the mapper is created from, or null.
+	 */
+	private final GazetteerSnapshot gazetteerSnapshot;
+
+	/**
+	 * Ids of cities, indexed by city number.
+	 */
+	private final long[] cityIds;
+
+	/**
+	 * Spatial index over city boundaries that finds the cities containing a GPS position, so that exact
+	 * point-in-polygon tests are only executed for candidate cities whose bounding boxes contain the position.
+	 */
+	private final CityBoundaryLocator cityBoundaryLocator;
+
+	/**
+	 * Dictionary automaton that is built once from city names, and used to find city names in tweet content and user
+	 * profile locations.
+	 */
+	private final CityNameMatcher cityNameMatcher;
+
+	/**
+	 * Cache for the locations found in the location attributes of user profiles, or null.
+	 */
+	private volatile CityNameCache cityNameCache;
+
+	/**
+	 * Grid that resolves GPS positions away from city boundaries without point-in-polygon tests, or null.
+	 */
+	private volatile CityGridCache cityGridCache;
+
+	/**
+	 * 
+	 * @param allCitiesInFrameOfDiscernment
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public TweetLocationMapper(List<CityDBO> allCitiesInFrameOfDiscernment) {
+		this(CityGazetteer.fromCityDBOs(allCitiesInFrameOfDiscernment));
+	}
+
+	/**
+	 * 
+	 * @param cityGazetteer
+	 *            All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public TweetLocationMapper(CityGazetteer cityGazetteer) {
+		this.cityGazetteer = cityGazetteer;
+		this.gazetteerSnapshot = null;
+		this.cityIds = new long[cityGazetteer.size()];
+		for (int city = 0; city < cityIds.length; city++) {
+			cityIds[city] = cityGazetteer.getCityId(city);
+		}
+		this.cityBoundaryLocator = new IndexedCityBoundaryLocator(cityGazetteer);
+		this.cityNameMatcher = new CityNameMatcher(cityGazetteer);
+	}
+
+	/**
+	 * Creates a mapper that reads the spatial index, city boundaries and city name automaton from a snapshot.
+	 * 
+	 * @param gazetteerSnapshot
+	 *            Compiled snapshot of all locations (cities) that define the propositional space of possible solutions.
+	 */
+	public TweetLocationMapper(GazetteerSnapshot gazetteerSnapshot) {
+		this.cityGazetteer = null;
+		this.gazetteerSnapshot = gazetteerSnapshot;
+		this.cityIds = new long[gazetteerSnapshot.size()];
+		for (int city = 0; city < cityIds.length; city++) {
+			cityIds[city] = gazetteerSnapshot.getCityId(city);
+		}
+		this.cityBoundaryLocator = gazetteerSnapshot.getCityBoundaryLocator();
+		this.cityNameMatcher = gazetteerSnapshot.getCityNameMatcher();
+	}
+
+	/**
+	 * Creates a mapper that finds the locations at GPS positions with a spatial join in the database (see
+	 * SpatialDatabaseCityLocator). Names of locations are matched in the JVM, and boundaries are not needed.
+	 * 
+	 * @param spatialDatabaseCityLocator
+	 *            Locator for the locations (cities) that define the propositional space of possible solutions.
+	 */
+	public TweetLocationMapper(SpatialDatabaseCityLocator spatialDatabaseCityLocator) {
+		this.cityGazetteer = spatialDatabaseCityLocator.getCityGazetteer();
+		this.gazetteerSnapshot = null;
+		this.cityIds = new long[cityGazetteer.size()];
+		for (int city = 0; city < cityIds.length; city++) {
+			cityIds[city] = cityGazetteer.getCityId(city);
+		}
+		this.cityBoundaryLocator = spatialDatabaseCityLocator;
+		this.cityNameMatcher = new CityNameMatcher(cityGazetteer);
+	}
+
+	/**
+	 * The method that maps tweets to locations using their GPS coordinates (latitude-longitude). It maps a tweet t to
+	 * the location that contains t's GPS position.
+	 * 
+	 * @param tweets
+	 *            Tweets to be processed.
+	 * @return HashMap that keeps mappings from tweets to location ids that are found using GPS coordinates. In
+	 *         practice, the set of location ids for a tweet contains at most one element (a specific lat-lon can not be
+	 *         in two different cities). If a tweet is not geotagged (see TweetDBO.hasCoordinates), it is mapped to an
+	 *         empty set without a spatial lookup.
+	 */
+	public HashMap<TweetDBO, HashSet<Long>> mapTweetsToCitiesUsingLatitudeLongitude(List<TweetDBO> tweets) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapTweetsToCitiesUsingLatitudeLongitude() called for " + tweets.size() + " tweets.");
+		}
+		double[] latitudes = new double[tweets.size()];
+		double[] longitudes = new double[tweets.size()];
+		for (int i = 0; i < latitudes.length; i++) {
+			TweetDBO tweet = tweets.get(i);
+			latitudes[i] = tweet.hasCoordinates() ? tweet.getLatitude() : TweetObservation.NO_COORDINATE;
+			longitudes[i] = tweet.hasCoordinates() ? tweet.getLongitude() : TweetObservation.NO_COORDINATE;
+		}
+		ArrayList<HashSet<Long>> locations = findIdsOfCitiesAtLatitudesLongitudes(latitudes, longitudes);
+		HashMap<TweetDBO, HashSet<Long>> tweetCityMappings = new HashMap<TweetDBO, HashSet<Long>>();
+		for (int i = 0; i < latitudes.length; i++) {
+			tweetCityMappings.put(tweets.get(i), locations.get(i));
+		}
+		return tweetCityMappings;
+	}
+
+	/**
+	 * The method that maps tweets to locations using their content (tweet text).
+	 * 
+	 * @param tweets
+	 *            Tweets to be processed.
+	 * @return HashMap that keeps mappings from tweets to location ids that are found using tweet text. A tweet can
+	 *         include multiple location names. In this case, ids of these locations are returned for that tweet. If a
+	 *         tweet does not include any reference to a location in its content, the tweet is mapped to an empty set.
+	 */
+	public HashMap<TweetDBO, HashSet<Long>> mapTweetsToCitiesUsingContent(List<TweetDBO> tweets) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapTweetsToCitiesUsingContent() called for " + tweets.size() + " tweets.");
+		}
+		HashMap<TweetDBO, HashSet<Long>> tweetCityMappings = new HashMap<TweetDBO, HashSet<Long>>();
+		for (TweetDBO tweet : tweets) {
+			HashSet<Long> locations = findIdsOfCitiesInText(tweet.getContent());
+			tweetCityMappings.put(tweet, locations);
+		}
+		return tweetCityMappings;
+	}
+
+	/**
+	 * The method that maps tweets to locations using the location attribute in the user profiles.
+	 * 
+	 * @param tweets
+	 *            Tweets to be processed.
+	 * @return HashMap that keeps mappings from tweets to location ids that are found using user profile. The location
+	 *         attribute in the user profile can include multiple location names. In this case, ids of these locations
+	 *         are included in the mapping for that tweet. If a user profile does not include any reference to a
+	 *         location, the tweet posted by that user is mapped to an empty set.
+	 */
+	public HashMap<TweetDBO, HashSet<Long>> mapTweetsToCitiesUsingProfile(List<TweetDBO> tweets) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapTweetsToCitiesUsingProfile() called for " + tweets.size() + " tweets.");
+		}
+		HashMap<TweetDBO, HashSet<Long>> tweetCityMappings = new HashMap<TweetDBO, HashSet<Long>>();
+		for (TweetDBO tweet : tweets) {
+			HashSet<Long> locations = findIdsOfCitiesInProfile(tweet.getUserLocation());
+			tweetCityMappings.put(tweet, locations);
+		}
+		return tweetCityMappings;
+	}
+
+	/**
+	 * Maps a single tweet to locations using its GPS coordinates (see mapTweetsToCitiesUsingLatitudeLongitude).
+	 * 
+	 * @param tweet
+	 *            Tweet to be processed.
+	 * @return Ids of locations that contain the GPS position of the tweet, or an empty set if the tweet is not
+	 *         geotagged (see TweetDBO.hasCoordinates).
+	 */
+	public HashSet<Long> mapTweetToCitiesUsingLatitudeLongitude(TweetDBO tweet) {
+		if (!tweet.hasCoordinates()) {
+			return new HashSet<Long>();
+		}
+		return findIdsOfCitiesAtLatitudeLongitude(tweet.getLatitude(), tweet.getLongitude());
+	}
+
+	/**
+	 * Maps a single tweet to locations using its content (see mapTweetsToCitiesUsingContent).
+	 * 
+	 * @param tweet
+	 *            Tweet to be processed.
+	 * @return Ids of locations that are found in the tweet text.
+	 */
+	public HashSet<Long> mapTweetToCitiesUsingContent(TweetDBO tweet) {
+		return findIdsOfCitiesInText(tweet.getContent());
+	}
+
+	/**
+	 * Maps a single tweet to locations using the location attribute in the user profile (see
+	 * mapTweetsToCitiesUsingProfile).
+	 * 
+	 * @param tweet
+	 *            Tweet to be processed.
+	 * @return Ids of locations that are found in the user profile.
+	 */
+	public HashSet<Long> mapTweetToCitiesUsingProfile(TweetDBO tweet) {
+		return findIdsOfCitiesInProfile(tweet.getUserLocation());
+	}
+
+	/**
+	 * Maps observations to locations using their GPS coordinates (see mapTweetsToCitiesUsingLatitudeLongitude).
+	 * 
+	 * @param observations
+	 *            Observations to be processed.
+	 * @return Ids of locations for each observation, in the same order with the given observations.
+	 */
+	public ArrayList<HashSet<Long>> mapObservationsToCitiesUsingLatitudeLongitude(
+			List<TweetObservation> observations) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapObservationsToCitiesUsingLatitudeLongitude() called for " + observations.size()
+					+ " observations.");
+		}
+		double[] latitudes = new double[observations.size()];
+		double[] longitudes = new double[observations.size()];
+		for (int i = 0; i < latitudes.length; i++) {
+			latitudes[i] = observations.get(i).getLatitude();
+			longitudes[i] = observations.get(i).getLongitude();
+		}
+		return findIdsOfCitiesAtLatitudesLongitudes(latitudes, longitudes);
+	}
+
+	/**
+	 * Maps observations to locations using their content (see mapTweetsToCitiesUsingContent).
+	 * 
+	 * @param observations
+	 *            Observations to be processed.
+	 * @return Ids of locations for each observation, in the same order with the given observations.
+	 */
+	public ArrayList<HashSet<Long>> mapObservationsToCitiesUsingContent(List<TweetObservation> observations) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapObservationsToCitiesUsingContent() called for " + observations.size() + " observations.");
+		}
+		ArrayList<HashSet<Long>> observationCityMappings = new ArrayList<HashSet<Long>>(observations.size());
+		for (TweetObservation observation : observations) {
+			observationCityMappings.add(mapTweetToCitiesUsingContent(observation));
+		}
+		return observationCityMappings;
+	}
+
+	/**
+	 * Maps observations to locations using the location attribute in the user profiles (see
+	 * mapTweetsToCitiesUsingProfile).
+	 * 
+	 * @param observations
+	 *            Observations to be processed.
+	 * @return Ids of locations for each observation, in the same order with the given observations.
+	 */
+	public ArrayList<HashSet<Long>> mapObservationsToCitiesUsingProfile(List<TweetObservation> observations) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapObservationsToCitiesUsingProfile() called for " + observations.size() + " observations.");
+		}
+		ArrayList<HashSet<Long>> observationCityMappings = new ArrayList<HashSet<Long>>(observations.size());
+		for (TweetObservation observation : observations) {
+			observationCityMappings.add(mapTweetToCitiesUsingProfile(observation));
+		}
+		return observationCityMappings;
+	}
+
+	/**
+	 * Maps a single observation to locations using its GPS coordinates.
+	 * 
+	 * @param observation
+	 *            Observation to be processed.
+	 * @return Ids of locations that contain the GPS position of the observation.
+	 */
+	public HashSet<Long> mapTweetToCitiesUsingLatitudeLongitude(TweetObservation observation) {
+		return findIdsOfCitiesAtLatitudeLongitude(observation.getLatitude(), observation.getLongitude());
+	}
+
+	/**
+	 * Maps a single observation to locations using its content.
+	 * 
+	 * @param observation
+	 *            Observation to be processed.
+	 * @return Ids of locations that are found in the tweet text.
+	 */
+	public HashSet<Long> mapTweetToCitiesUsingContent(TweetObservation observation) {
+		return findIdsOfCitiesInText(observation.getContent());
+	}
+
+	/**
+	 * Maps a single observation to locations using the location attribute in the user profile.
+	 * 
+	 * @param observation
+	 *            Observation to be processed.
+	 * @return Ids of locations that are found in the user profile.
+	 */
+	public HashSet<Long> mapTweetToCitiesUsingProfile(TweetObservation observation) {
+		return findIdsOfCitiesInProfile(observation.getUserLocation());
+	}
+
+	/**
+	 * Maps the tweets of a batch to locations using their GPS coordinates (see
+	 * mapTweetsToCitiesUsingLatitudeLongitude). The latitude and longitude columns of the batch are scanned in order,
+	 * and no geometry or set is created for a tweet. Tweets that are not geotagged are mapped to no location, and a
+	 * batch without geotagged tweets is not scanned.
+	 * 
+	 * @param tweetBatch
+	 *            Tweets to be processed.
+	 * @param tweetCityMapping
+	 *            Mapping that is cleared, and then filled with the numbers of the locations (in the city gazetteer)
+	 *            that contain the GPS position of each tweet, in the same order with the tweets in the batch.
+	 */
+	public void mapBatchToCitiesUsingLatitudeLongitude(TweetBatch tweetBatch, TweetCityMapping tweetCityMapping) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapBatchToCitiesUsingLatitudeLongitude() called for " + tweetBatch.size() + " tweets.");
+		}
+		tweetCityMapping.clear();
+		findCitiesAtLatitudesLongitudes(tweetBatch.getLatitudes(), tweetBatch.getLongitudes(),
+				tweetBatch.getNumberOfGeotaggedTweets(), tweetCityMapping);
+	}
+
+	/**
+	 * Maps the tweets of a batch to locations using their content (see mapTweetsToCitiesUsingContent).
+	 * 
+	 * @param tweetBatch
+	 *            Tweets to be processed.
+	 * @param tweetCityMapping
+	 *            Mapping that is cleared, and then filled with the numbers of the locations (in the city gazetteer)
+	 *            that are found in the text of each tweet, in the same order with the tweets in the batch.
+	 */
+	public void mapBatchToCitiesUsingContent(TweetBatch tweetBatch, TweetCityMapping tweetCityMapping) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapBatchToCitiesUsingContent() called for " + tweetBatch.size() + " tweets.");
+		}
+		mapTextsToCities(tweetBatch.getContentCharacters(), tweetBatch.getContentOffsets(), tweetBatch.size(),
+				tweetCityMapping);
+	}
+
+	/**
+	 * Maps the tweets of a batch to locations using the location attribute in the user profiles (see
+	 * mapTweetsToCitiesUsingProfile).
+	 * 
+	 * @param tweetBatch
+	 *            Tweets to be processed.
+	 * @param tweetCityMapping
+	 *            Mapping that is cleared, and then filled with the numbers of the locations (in the city gazetteer)
+	 *            that are found in the user profile of each tweet, in the same order with the tweets in the batch.
+	 */
+	public void mapBatchToCitiesUsingProfile(TweetBatch tweetBatch, TweetCityMapping tweetCityMapping) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("mapBatchToCitiesUsingProfile() called for " + tweetBatch.size() + " tweets.");
+		}
+		CityNameCache cache = cityNameCache;
+		if (cache == null) {
+			mapTextsToCities(tweetBatch.getUserLocationCharacters(), tweetBatch.getUserLocationOffsets(),
+					tweetBatch.size(), tweetCityMapping);
+			return;
+		}
+		char[] characters = tweetBatch.getUserLocationCharacters();
+		int[] offsets = tweetBatch.getUserLocationOffsets();
+		tweetCityMapping.clear();
+		for (int tweet = 0; tweet < tweetBatch.size(); tweet++) {
+			for (int city : cache.findCitiesInText(cityNameMatcher, characters, offsets[tweet], offsets[tweet + 1])) {
+				tweetCityMapping.addCity(city);
+			}
+			tweetCityMapping.endTweet();
+		}
+	}
+
+	/**
+	 * Sets a cache for the locations found in the location attributes of user profiles. Profile texts repeat a lot, so
+	 * they are looked up in the cache before they are matched. Tweet contents are not cached, since they rarely
+	 * repeat. A cache can be shared by mappers that are created from the same gazetteer (see CityNameCache), and it is
+	 * bound to the cities of the first mapper that it is set for.
+	 * 
+	 * @param cityNameCache
+	 *            Cache for profile texts, or null to match every profile text.
+	 * @throws IllegalArgumentException
+	 *             if the cache is bound to the cities of another gazetteer
+	 */
+	public void setCityNameCache(CityNameCache cityNameCache) {
+		if (cityNameCache != null) {
+			cityNameCache.bind(cityIds);
+		}
+		this.cityNameCache = cityNameCache;
+	}
+
+	/**
+	 * 
+	 * @return Cache for profile texts, or null if profile texts are not cached.
+	 */
+	public CityNameCache getCityNameCache() {
+		return cityNameCache;
+	}
+
+	/**
+	 * Sets a grid that resolves GPS positions to locations. Positions in cells that are inside a single location, or
+	 * outside all locations, are resolved without point-in-polygon tests, and other positions are tested exactly. The
+	 * grid must be built from the same gazetteer with this mapper (see CityGridCache).
+	 * 
+	 * @param cityGridCache
+	 *            Grid for GPS positions, or null to test every position exactly.
+	 * @throws IllegalArgumentException
+	 *             if the grid is built from other cities (or the same cities in another order)
+	 */
+	public void setCityGridCache(CityGridCache cityGridCache) {
+		if (cityGridCache != null && !cityGridCache.isBuiltFrom(cityIds)) {
+			throw new IllegalArgumentException("City grid is built from the cities of another gazetteer");
+		}
+		this.cityGridCache = cityGridCache;
+	}
+
+	/**
+	 * 
+	 * @return Grid for GPS positions, or null if positions are not resolved with a grid.
+	 */
+	public CityGridCache getCityGridCache() {
+		return cityGridCache;
+	}
+
+	/**
+	 * 
+	 * @return All locations (cities) that define the propositional space of possible solutions.
+	 */
+	public CityGazetteer getCityGazetteer() {
+		if (cityGazetteer == null) {
+			cityGazetteer = gazetteerSnapshot.toCityGazetteer();
+		}
+		return cityGazetteer;
+	}
+
+	/**
+	 * 
+	 * @return Number of locations (cities) in the propositional space of possible solutions.
+	 */
+	int getNumberOfCities() {
+		return cityIds.length;
+	}
+
+	/**
+	 * 
+	 * @param city
+	 *            city number (0 to getNumberOfCities()-1)
+	 * @return city id
+	 */
+	long getCityId(int city) {
+		return cityIds[city];
+	}
+
+	/**
+	 * The method that finds the location id at the given latitude-longitude.
+	 * 
+	 * @param latitude
+	 *            latitude
+	 * @param longitude
+	 *            longitude
+	 * @return id of the location at the given latitude-longitude. Id is returned in a HashSet to have the same
+	 *         representation with other types of tweet-location mappings. If the position is not the position of a
+	 *         geotagged tweet (see TweetObservation.hasCoordinates), the set is empty.
+	 */
+	private HashSet<Long> findIdsOfCitiesAtLatitudeLongitude(double latitude, double longitude) {
+		HashSet<Long> foundLocations = new HashSet<Long>();
+		if (!TweetObservation.hasCoordinates(latitude, longitude)) {
+			return foundLocations;
+		}
+		TweetCityMapping foundCities = new TweetCityMapping(1);
+		CityGridCache cache = cityGridCache;
+		if (cache == null) {
+			cityBoundaryLocator.findCitiesAtLatitudeLongitude(latitude, longitude, foundCities);
+		} else {
+			cache.findCitiesAtLatitudeLongitude(cityBoundaryLocator, latitude, longitude, foundCities);
+		}
+		foundCities.endTweet();
+		for (int i = 0; i < foundCities.getNumberOfCities(0); i++) {
+			foundLocations.add(cityIds[foundCities.getCities()[i]]);
+		}
+		return foundLocations;
+	}
+
+	/**
+	 * Finds the location ids at a list of latitude-longitude positions. All positions are passed to the locator at
+	 * once, so that a locator can find them with a single query (see SpatialDatabaseCityLocator).
+	 * 
+	 * @param latitudes
+	 *            latitudes of positions
+	 * @param longitudes
+	 *            longitudes of positions
+	 * @return ids of the locations at each position, in the same order with the positions
+	 */
+	private ArrayList<HashSet<Long>> findIdsOfCitiesAtLatitudesLongitudes(double[] latitudes, double[] longitudes) {
+		TweetCityMapping foundCities = new TweetCityMapping(latitudes.length);
+		int numberOfGeotaggedPositions = 0;
+		for (int i = 0; i < latitudes.length; i++) {
+			if (TweetObservation.hasCoordinates(latitudes[i], longitudes[i])) {
+				numberOfGeotaggedPositions++;
+			}
+		}
+		findCitiesAtLatitudesLongitudes(latitudes, longitudes, numberOfGeotaggedPositions, foundCities);
+		ArrayList<HashSet<Long>> foundLocations = new ArrayList<HashSet<Long>>(latitudes.length);
+		for (int tweet = 0; tweet < latitudes.length; tweet++) {
+			HashSet<Long> locations = new HashSet<Long>();
+			for (int i = foundCities.getOffsets()[tweet]; i < foundCities.getOffsets()[tweet + 1]; i++) {
+				locations.add(cityIds[foundCities.getCities()[i]]);
+			}
+			foundLocations.add(locations);
+		}
+		return foundLocations;
+	}
+
+	/**
+	 * Finds the locations at a list of positions. Positions of tweets that are not geotagged (see
+	 * TweetObservation.hasCoordinates) are mapped to no location, and only the geotagged positions are passed to the
+	 * locator.
+	 * 
+	 * @param latitudes
+	 *            latitudes of positions
+	 * @param longitudes
+	 *            longitudes of positions
+	 * @param numberOfGeotaggedPositions
+	 *            Number of geotagged positions in the list.
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found locations are added to, as one tweet per position.
+	 */
+	private void findCitiesAtLatitudesLongitudes(double[] latitudes, double[] longitudes,
+			int numberOfGeotaggedPositions, TweetCityMapping tweetCityMapping) {
+		if (numberOfGeotaggedPositions == latitudes.length) {
+			locateCities(latitudes, longitudes, tweetCityMapping);
+			return;
+		}
+		TweetCityMapping geotaggedCities = null;
+		if (numberOfGeotaggedPositions > 0) {
+			double[] geotaggedLatitudes = new double[numberOfGeotaggedPositions];
+			double[] geotaggedLongitudes = new double[numberOfGeotaggedPositions];
+			for (int i = 0, geotagged = 0; i < latitudes.length; i++) {
+				if (TweetObservation.hasCoordinates(latitudes[i], longitudes[i])) {
+					geotaggedLatitudes[geotagged] = latitudes[i];
+					geotaggedLongitudes[geotagged++] = longitudes[i];
+				}
+			}
+			geotaggedCities = new TweetCityMapping(numberOfGeotaggedPositions);
+			locateCities(geotaggedLatitudes, geotaggedLongitudes, geotaggedCities);
+		}
+		for (int i = 0, geotagged = 0; i < latitudes.length; i++) {
+			if (geotaggedCities != null && TweetObservation.hasCoordinates(latitudes[i], longitudes[i])) {
+				int[] offsets = geotaggedCities.getOffsets();
+				for (int j = offsets[geotagged]; j < offsets[geotagged + 1]; j++) {
+					tweetCityMapping.addCity(geotaggedCities.getCities()[j]);
+				}
+				geotagged++;
+			}
+			tweetCityMapping.endTweet();
+		}
+	}
+
+	/**
+	 * Finds the locations at a list of positions with the locator, using the grid if it is set.
+	 * 
+	 * @param latitudes
+	 *            latitudes of positions
+	 * @param longitudes
+	 *            longitudes of positions
+	 * @param tweetCityMapping
+	 *            Mapping that the numbers of the found locations are added to, as one tweet per position.
+	 */
+	private void locateCities(double[] latitudes, double[] longitudes, TweetCityMapping tweetCityMapping) {
+		CityGridCache cache = cityGridCache;
+		if (cache == null) {
+			cityBoundaryLocator.findCitiesAtLatitudesLongitudes(latitudes, longitudes, tweetCityMapping);
+		} else {
+			cache.findCitiesAtLatitudesLongitudes(cityBoundaryLocator, latitudes, longitudes, tweetCityMapping);
+		}
+	}
+
+	/**
+	 * The method that finds the location names in a given text and returns the ids of these locations. City names with
+	 * multiple terms are also found, and the text is scanned only once (see CityNameMatcher).
+	 * 
+	 * @param textToSearchForLocationNames
+	 *            Text to search for location names.
+	 * @return Ids of locations found that are found in the given text.
+	 */
+	private HashSet<Long> findIdsOfCitiesInText(String textToSearchForLocationNames) {
+		return cityNameMatcher.findIdsOfCitiesInText(textToSearchForLocationNames);
+	}
+
+	/**
+	 * Finds the location names in the location attribute of a user profile (see findIdsOfCitiesInText), using the
+	 * cache of profile texts if it is set.
+	 * 
+	 * @param userLocation
+	 *            Location attribute in the user profile.
+	 * @return Ids of locations that are found in the given text.
+	 */
+	private HashSet<Long> findIdsOfCitiesInProfile(String userLocation) {
+		CityNameCache cache = cityNameCache;
+		if (cache == null || userLocation == null) {
+			return findIdsOfCitiesInText(userLocation);
+		}
+		HashSet<Long> foundLocations = new HashSet<Long>();
+		char[] text = userLocation.toCharArray();
+		for (int city : cache.findCitiesInText(cityNameMatcher, text, 0, text.length)) {
+			foundLocations.add(cityIds[city]);
+		}
+		return foundLocations;
+	}
+
+	/**
+	 * Finds the location names in the texts of a batch (see findIdsOfCitiesInText).
+	 * 
+	 * @param characters
+	 *            Concatenated texts of the tweets.
+	 * @param offsets
+	 *            Start offsets of the texts, followed by the total length.
+	 * @param numberOfTweets
+	 *            Number of tweets in the batch.
+	 * @param tweetCityMapping
+	 *            Mapping that is cleared, and then filled with the numbers of the found locations.
+	 */
+	private void mapTextsToCities(char[] characters, int[] offsets, int numberOfTweets,
+			TweetCityMapping tweetCityMapping) {
+		tweetCityMapping.clear();
+		for (int tweet = 0; tweet < numberOfTweets; tweet++) {
+			cityNameMatcher.findCitiesInText(characters, offsets[tweet], offsets[tweet + 1], tweetCityMapping);
+			tweetCityMapping.endTweet();
+		}
+	}
+
+}
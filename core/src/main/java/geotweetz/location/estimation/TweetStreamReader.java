@@ -0,0 +1,228 @@
+package geotweetz.location.estimation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Reads the tweets of a cluster from the tweet table (see TweetDBO) with a forward-only JDBC cursor, and passes them
+ * in fixed-size batches to a handler, e.g. an IncrementalLocationEstimator. Rows are fetched from the database
+ * fetchSize at a time, and only one batch is kept in memory, so the heap used for reading does not grow with the size
+ * of the cluster.
+ *
+ * <p>
+ * Some drivers read the whole result set unless a cursor is used: PostgreSQL uses a cursor only if auto-commit is
+ * off, so auto-commit is switched off while the tweets are read and restored afterwards. MySQL needs
+ * "useCursorFetch=true" in the connection URL.
+ *
+ * <p>
+ * A NULL latitude or longitude is read as TweetObservation.NO_COORDINATE, and the position (0, 0) of tweets that are
+ * not geotagged (see TweetDBO.hasCoordinates) is also read as TweetObservation.NO_COORDINATE. The reader is not
+ * thread-safe, since it uses the connection that it is created with.
+ *
+ * @author oozdikis
+ *
+ */
+public class TweetStreamReader {
+	private static final Logger logger = Logger.getLogger(TweetStreamReader.class);
+
+	/**
+	 * Query for the attributes of tweets that are used in location estimation. A condition for the tweets in the
+	 * cluster is appended to it.
+	 */
+	public static final String SELECT_TWEETS = "select id, latitude, longitude, content, userlocation, createdat from tweet";
+
+	/**
+	 * Handler for the batches of tweets that are read.
+	 */
+	public interface TweetBatchHandler {
+
+		/**
+		 *
+		 * @param tweetBatch
+		 *            next batch of tweets (at most fetchSize tweets)
+		 */
+		void handleBatch(TweetBatch tweetBatch);
+	}
+
+	private final Connection connection;
+
+	/**
+	 * Number of rows fetched at a time, and the maximum number of tweets in a batch.
+	 */
+	private final int fetchSize;
+
+	/**
+	 *
+	 * @param connection
+	 *            connection to the database with the tweet table
+	 * @param fetchSize
+	 *            number of rows fetched at a time, and the maximum number of tweets in a batch
+	 */
+	public TweetStreamReader(Connection connection, int fetchSize) {
+		if (fetchSize < 1) {
+			throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+		}
+		this.connection = connection;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Reads the tweets that satisfy a condition, and passes them to a handler in batches. A NULL latitude or longitude,
+	 * or the position (0, 0), is read as TweetObservation.NO_COORDINATE (NaN), so such tweets have no coordinates in
+	 * the batches.
+	 *
+	 * <p>
+	 * If auto-commit is switched off for reading and the query, the iteration or the handler fails, the transaction
+	 * of the reader is rolled back before auto-commit is restored, so nothing that is done on the connection during
+	 * reading (e.g. by the handler) is committed.
+	 *
+	 * @param condition
+	 *            SQL condition for the tweets in the cluster (e.g. "createdat between ? and ? and content like ?"), or
+	 *            null to read all tweets.
+	 * @param parameters
+	 *            values of the parameters in the condition
+	 * @param handler
+	 *            handler for the batches of tweets
+	 * @return number of tweets read
+	 * @throws SQLException
+	 *             if the tweets can not be read
+	 */
+	public int readTweets(String condition, Object[] parameters, TweetBatchHandler handler) throws SQLException {
+		String query = condition == null ? SELECT_TWEETS : SELECT_TWEETS + " where " + condition;
+		boolean autoCommit = connection.getAutoCommit();
+		if (autoCommit) {
+			connection.setAutoCommit(false);
+		}
+		int numberOfTweets = 0;
+		boolean completed = false;
+		try {
+			PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			try {
+				statement.setFetchSize(fetchSize);
+				for (int i = 0; parameters != null && i < parameters.length; i++) {
+					statement.setObject(i + 1, parameters[i]);
+				}
+				ResultSet resultSet = statement.executeQuery();
+				try {
+					List<TweetObservation> tweets = new ArrayList<TweetObservation>(fetchSize);
+					while (resultSet.next()) {
+						tweets.add(readTweet(resultSet));
+						if (tweets.size() == fetchSize) {
+							handler.handleBatch(TweetBatch.fromObservations(tweets));
+							numberOfTweets += tweets.size();
+							tweets.clear();
+						}
+					}
+					if (!tweets.isEmpty()) {
+						handler.handleBatch(TweetBatch.fromObservations(tweets));
+						numberOfTweets += tweets.size();
+					}
+				} finally {
+					resultSet.close();
+				}
+			} finally {
+				statement.close();
+			}
+			completed = true;
+		} finally {
+			if (autoCommit) {
+				if (!completed) {
+					rollback();
+				}
+				connection.setAutoCommit(true);
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Read " + numberOfTweets + " tweets in batches of " + fetchSize);
+		}
+		return numberOfTweets;
+	}
+
+	/**
+	 * Reads the tweets that satisfy a condition into an IncrementalLocationEstimator.
+	 *
+	 * @param condition
+	 *            SQL condition for the tweets in the cluster, or null to read all tweets.
+	 * @param parameters
+	 *            values of the parameters in the condition
+	 * @param incrementalLocationEstimator
+	 *            estimator that the tweets are added to
+	 * @return number of tweets read
+	 * @throws SQLException
+	 *             if the tweets can not be read
+	 */
+	public int readTweets(String condition, Object[] parameters,
+			final IncrementalLocationEstimator incrementalLocationEstimator) throws SQLException {
+		return readTweets(condition, parameters, new TweetBatchHandler() {
+			public void handleBatch(TweetBatch tweetBatch) {
+				incrementalLocationEstimator.addTweets(tweetBatch);
+			}
+		});
+	}
+
+	/**
+	 * Estimates the location of a cluster whose tweets are read from the database. Only the numbers of tweets for
+	 * each set of locations are kept during reading (see IncrementalLocationEstimator).
+	 *
+	 * @param locationEstimator
+	 *            estimator for the frame of discernment
+	 * @param condition
+	 *            SQL condition for the tweets in the cluster, or null to read all tweets.
+	 * @param parameters
+	 *            values of the parameters in the condition
+	 * @return LocationCommonalityValues for locations with the highest commonality score, or an empty list if no
+	 *         tweet satisfies the condition.
+	 * @throws SQLException
+	 *             if the tweets can not be read
+	 */
+	public ArrayList<LocationCommonalityValue> estimateLocationForCluster(LocationEstimator locationEstimator,
+			String condition, Object[] parameters) throws SQLException {
+		IncrementalLocationEstimator incrementalLocationEstimator = new IncrementalLocationEstimator(
+				locationEstimator);
+		readTweets(condition, parameters, incrementalLocationEstimator);
+		return incrementalLocationEstimator.estimateLocation();
+	}
+
+	/**
+	 * Rolls back the transaction after a failure. A failure of the rollback is only logged, so that it does not hide
+	 * the failure that is being thrown.
+	 */
+	private void rollback() {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			logger.warn("Rollback failed after reading tweets", e);
+		}
+	}
+
+	private TweetObservation readTweet(ResultSet resultSet) throws SQLException {
+		double latitude = resultSet.getDouble(2);
+		if (resultSet.wasNull()) {
+			latitude = TweetObservation.NO_COORDINATE;
+		}
+		double longitude = resultSet.getDouble(3);
+		if (resultSet.wasNull()) {
+			longitude = TweetObservation.NO_COORDINATE;
+		}
+		if (!TweetDBO.hasCoordinates(latitude, longitude)) {
+			latitude = TweetObservation.NO_COORDINATE;
+			longitude = TweetObservation.NO_COORDINATE;
+		}
+		Timestamp createdAt = resultSet.getTimestamp(6);
+		return new TweetObservation(resultSet.getLong(1), latitude, longitude, resultSet.getString(4),
+				resultSet.getString(5), createdAt == null ? TweetObservation.UNKNOWN_TIME : createdAt.getTime());
+	}
+}
@@ -0,0 +1,165 @@
+package geotweetz.location.type;
+
+import java.util.Collection;
+
+/**
+ * Belief function that is defined by probability assignments for sets of locations (focal elements). Belief,
+ * plausibility and commonality values can be queried for arbitrary sets of locations:
+ * <ul>
+ * <li>mass m(A): probability value assigned to the set A</li>
+ * <li>belief Bel(A): total probability of the non-empty focal elements that are subsets of A</li>
+ * <li>plausibility Pl(A): total probability of the focal elements that intersect A</li>
+ * <li>commonality Q(A): total probability of the focal elements that are supersets of A</li>
+ * </ul>
+ *
+ * <p>
+ * fromProbabilityAssignments selects the representation by the number of locations in the focal elements (the core of
+ * the belief function). Locations outside the core have no probability, so a query is reduced to the core. If the
+ * core is small, the belief function is kept as dense vectors of size 2^|core| that are calculated once with fast
+ * zeta transforms, and a query is an array lookup (see DenseBeliefFunction). Otherwise, each query scans the focal
+ * elements (see SparseBeliefFunction).
+ *
+ * <p>
+ * For the belief function of a cluster, the core is usually the whole frame of discernment. Tweets that are not mapped
+ * to a location in an evidence source assign probability to Theta, and Theta keeps probability in the combination if
+ * each evidence source has such a tweet, which is common in large clusters (Yager's rule also assigns conflicting
+ * evidence to Theta). Then a belief function is dense only if the frame has at most
+ * DenseBeliefFunction.MAXIMUM_NUMBER_OF_LOCATIONS locations. In a larger frame, it is dense only if an evidence source
+ * maps every tweet of the cluster to locations, and the combined focal elements contain few locations.
+ *
+ * @author oozdikis
+ *
+ */
+public abstract class BeliefFunction {
+
+	/**
+	 * Index that maps the bits of focal elements to location ids.
+	 */
+	private final LocationIndex locationIndex;
+
+	BeliefFunction(LocationIndex locationIndex) {
+		this.locationIndex = locationIndex;
+	}
+
+	/**
+	 * Creates a belief function from probability assignments, as a DenseBeliefFunction if the focal elements contain
+	 * at most DenseBeliefFunction.MAXIMUM_NUMBER_OF_LOCATIONS locations, or as a SparseBeliefFunction otherwise.
+	 *
+	 * @param probabilityAssignments
+	 *            probability assignments for sets of locations. The table must not be modified after the belief
+	 *            function is created.
+	 * @param locationIndex
+	 *            index of all locations in the frame of discernment
+	 * @return belief function
+	 */
+	public static BeliefFunction fromProbabilityAssignments(FocalElementTable probabilityAssignments,
+			LocationIndex locationIndex) {
+		long[] core = getCore(probabilityAssignments);
+		int numberOfLocationsInCore = 0;
+		for (long word : core) {
+			numberOfLocationsInCore += Long.bitCount(word);
+		}
+		if (numberOfLocationsInCore <= DenseBeliefFunction.MAXIMUM_NUMBER_OF_LOCATIONS) {
+			return new DenseBeliefFunction(probabilityAssignments, new LocationSet(core, locationIndex));
+		}
+		return new SparseBeliefFunction(probabilityAssignments, locationIndex);
+	}
+
+	/**
+	 *
+	 * @return index that maps the bits of focal elements to location ids
+	 */
+	public LocationIndex getLocationIndex() {
+		return locationIndex;
+	}
+
+	/**
+	 *
+	 * @param locations
+	 *            set of locations in the frame of discernment
+	 * @return probability value assigned to the set
+	 */
+	public abstract double getMass(LocationSet locations);
+
+	/**
+	 *
+	 * @param locations
+	 *            set of locations in the frame of discernment
+	 * @return total probability of the non-empty focal elements that are subsets of the set
+	 */
+	public abstract double getBelief(LocationSet locations);
+
+	/**
+	 *
+	 * @param locations
+	 *            set of locations in the frame of discernment
+	 * @return total probability of the focal elements that intersect the set
+	 */
+	public abstract double getPlausibility(LocationSet locations);
+
+	/**
+	 *
+	 * @param locations
+	 *            set of locations in the frame of discernment
+	 * @return total probability of the focal elements that are supersets of the set
+	 */
+	public abstract double getCommonality(LocationSet locations);
+
+	/**
+	 *
+	 * @param locationIds
+	 *            ids of locations. Ids that are not in the frame of discernment are ignored.
+	 * @return probability value assigned to the set of locations
+	 */
+	public double getMass(Collection<Long> locationIds) {
+		return getMass(LocationSet.fromLocationIds(locationIds, locationIndex));
+	}
+
+	/**
+	 *
+	 * @param locationIds
+	 *            ids of locations. Ids that are not in the frame of discernment are ignored.
+	 * @return belief of the set of locations
+	 */
+	public double getBelief(Collection<Long> locationIds) {
+		return getBelief(LocationSet.fromLocationIds(locationIds, locationIndex));
+	}
+
+	/**
+	 *
+	 * @param locationIds
+	 *            ids of locations. Ids that are not in the frame of discernment are ignored.
+	 * @return plausibility of the set of locations
+	 */
+	public double getPlausibility(Collection<Long> locationIds) {
+		return getPlausibility(LocationSet.fromLocationIds(locationIds, locationIndex));
+	}
+
+	/**
+	 *
+	 * @param locationIds
+	 *            ids of locations. Ids that are not in the frame of discernment are ignored.
+	 * @return commonality of the set of locations
+	 */
+	public double getCommonality(Collection<Long> locationIds) {
+		return getCommonality(LocationSet.fromLocationIds(locationIds, locationIndex));
+	}
+
+	/**
+	 *
+	 * @param probabilityAssignments
+	 *            probability assignments for sets of locations
+	 * @return bitset of the locations that are in at least one focal element
+	 */
+	private static long[] getCore(FocalElementTable probabilityAssignments) {
+		int numberOfWords = probabilityAssignments.getNumberOfWords();
+		long[] words = probabilityAssignments.getWords();
+		long[] core = new long[numberOfWords];
+		for (int element = 0; element < probabilityAssignments.size(); element++) {
+			for (int w = 0; w < numberOfWords; w++) {
+				core[w] |= words[element * numberOfWords + w];
+			}
+		}
+		return core;
+	}
+}
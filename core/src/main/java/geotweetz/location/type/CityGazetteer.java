@@ -0,0 +1,127 @@
+package geotweetz.location.type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.dbo.CityDBO;
+
+/**
+ * Immutable list of the locations (cities) that define the frame of discernment, with their ids, names and boundaries.
+ * Cities are kept in parallel arrays and are numbered from 0 to size-1 in the order they are given. A gazetteer can be
+ * created from city database objects, or directly from another source of city data without creating entities.
+ *
+ * <p>
+ * Boundaries are JTS polygons, which are mutable; they must not be modified after the gazetteer is created.
+ *
+ * @author oozdikis
+ *
+ */
+public final class CityGazetteer {
+
+	/**
+	 * Unique city ids.
+	 */
+	private final long[] cityIds;
+
+	/**
+	 * Names of cities.
+	 */
+	private final String[] cityNames;
+
+	/**
+	 * Boundaries (regions) of cities in terms of latitude-longitude.
+	 */
+	private final Polygon[] cityBoundaries;
+
+	/**
+	 *
+	 * @param cityIds
+	 *            unique city ids
+	 * @param cityNames
+	 *            names of cities, in the same order with ids
+	 * @param cityBoundaries
+	 *            boundaries of cities, in the same order with ids
+	 * @throws IllegalArgumentException
+	 *             if the arrays do not have the same length
+	 */
+	public CityGazetteer(long[] cityIds, String[] cityNames, Polygon[] cityBoundaries) {
+		if (cityNames.length != cityIds.length || cityBoundaries.length != cityIds.length) {
+			throw new IllegalArgumentException("Ids, names and boundaries must have the same number of cities");
+		}
+		this.cityIds = cityIds.clone();
+		this.cityNames = cityNames.clone();
+		this.cityBoundaries = cityBoundaries.clone();
+	}
+
+	/**
+	 * Creates a gazetteer from city database objects.
+	 *
+	 * @param cities
+	 *            city database objects
+	 * @return gazetteer with the cities in the same order
+	 */
+	public static CityGazetteer fromCityDBOs(List<CityDBO> cities) {
+		long[] cityIds = new long[cities.size()];
+		String[] cityNames = new String[cities.size()];
+		Polygon[] cityBoundaries = new Polygon[cities.size()];
+		for (int i = 0; i < cities.size(); i++) {
+			CityDBO city = cities.get(i);
+			cityIds[i] = city.getId();
+			cityNames[i] = city.getName();
+			cityBoundaries[i] = city.getBoundaryCoordinates();
+		}
+		return new CityGazetteer(cityIds, cityNames, cityBoundaries);
+	}
+
+	/**
+	 *
+	 * @return number of cities
+	 */
+	public int size() {
+		return cityIds.length;
+	}
+
+	/**
+	 *
+	 * @param city
+	 *            city number (0 to size-1)
+	 * @return city id
+	 */
+	public long getCityId(int city) {
+		return cityIds[city];
+	}
+
+	/**
+	 *
+	 * @param city
+	 *            city number (0 to size-1)
+	 * @return name of the city
+	 */
+	public String getCityName(int city) {
+		return cityNames[city];
+	}
+
+	/**
+	 *
+	 * @param city
+	 *            city number (0 to size-1)
+	 * @return boundary of the city
+	 */
+	public Polygon getCityBoundary(int city) {
+		return cityBoundaries[city];
+	}
+
+	/**
+	 *
+	 * @return ids of all cities in order
+	 */
+	public List<Long> getCityIds() {
+		List<Long> ids = new ArrayList<Long>(cityIds.length);
+		for (long cityId : cityIds) {
+			ids.add(cityId);
+		}
+		return ids;
+	}
+}
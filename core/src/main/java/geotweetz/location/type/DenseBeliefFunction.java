@@ -0,0 +1,229 @@
+package geotweetz.location.type;
+
+import java.util.Arrays;
+
+/**
+ * Belief function that is kept as dense vectors over the subsets of its core (the locations in at least one focal
+ * element, see BeliefFunction). Subsets of a core with n locations are numbered by n-bit masks, where bit i
+ * represents the i-th location of the core in the order of location indices.
+ *
+ * <p>
+ * The mass vector is transformed once into the vector of beliefs (subset zeta transform, b(A) = sum of m(B) for B
+ * subset of A) and the vector of commonalities (superset zeta transform, Q(A) = sum of m(B) for B superset of A). Fast
+ * transforms take O(n*2^n) time with sequential array accesses, instead of O(4^n) for summing over all pairs of
+ * subsets. Then a query takes O(|A|*log n) time to map the locations of A to the core, and plausibilities are found
+ * from beliefs: Pl(A) = b(core) - b(core - A). Mobius transforms (the inverse transforms) give the mass vector back
+ * from the vector of beliefs or commonalities.
+ *
+ * <p>
+ * Vectors have 2^n elements, so dense belief functions are only created for cores with at most
+ * MAXIMUM_NUMBER_OF_LOCATIONS locations (3 vectors of 512 KB).
+ *
+ * @author oozdikis
+ *
+ */
+public class DenseBeliefFunction extends BeliefFunction {
+
+	/**
+	 * Maximum number of locations in the core of a dense belief function.
+	 */
+	public static final int MAXIMUM_NUMBER_OF_LOCATIONS = 16;
+
+	/**
+	 * Indices of the locations in the core (see LocationIndex), in ascending order. Bit i of a subset mask represents
+	 * the location coreLocationIndices[i].
+	 */
+	private final int[] coreLocationIndices;
+
+	/**
+	 * Probability values of subsets of the core, indexed by subset mask.
+	 */
+	private final double[] masses;
+
+	/**
+	 * Total probability of the subsets of each subset of the core (including the empty set), indexed by subset mask.
+	 */
+	private final double[] beliefs;
+
+	/**
+	 * Total probability of the supersets of each subset of the core, indexed by subset mask.
+	 */
+	private final double[] commonalities;
+
+	/**
+	 *
+	 * @param probabilityAssignments
+	 *            probability assignments for sets of locations. The table is not modified or kept by the belief
+	 *            function.
+	 * @param core
+	 *            set of locations that contains all focal elements, with at most MAXIMUM_NUMBER_OF_LOCATIONS locations
+	 */
+	public DenseBeliefFunction(FocalElementTable probabilityAssignments, LocationSet core) {
+		super(core.getLocationIndex());
+		int numberOfLocationsInCore = core.size();
+		if (numberOfLocationsInCore > MAXIMUM_NUMBER_OF_LOCATIONS) {
+			throw new IllegalArgumentException("Core of a dense belief function can not have more than "
+					+ MAXIMUM_NUMBER_OF_LOCATIONS + " locations: " + numberOfLocationsInCore);
+		}
+		coreLocationIndices = new int[numberOfLocationsInCore];
+		for (int i = 0, index = core.nextLocationIndex(0); index >= 0; index = core.nextLocationIndex(index + 1)) {
+			coreLocationIndices[i++] = index;
+		}
+
+		masses = new double[1 << numberOfLocationsInCore];
+		int numberOfWords = probabilityAssignments.getNumberOfWords();
+		long[] words = probabilityAssignments.getWords();
+		for (int element = 0; element < probabilityAssignments.size(); element++) {
+			int subset = getSubset(words, element * numberOfWords, numberOfWords);
+			if (subset < 0) {
+				throw new IllegalArgumentException("Focal element is not a subset of the core");
+			}
+			masses[subset] += probabilityAssignments.getProbabilityValue(element);
+		}
+		beliefs = Arrays.copyOf(masses, masses.length);
+		subsetZetaTransform(beliefs);
+		commonalities = Arrays.copyOf(masses, masses.length);
+		supersetZetaTransform(commonalities);
+	}
+
+	/**
+	 *
+	 * @return number of locations in the core
+	 */
+	public int getNumberOfLocationsInCore() {
+		return coreLocationIndices.length;
+	}
+
+	@Override
+	public double getMass(LocationSet locations) {
+		int subset = getSubset(locations.getWords(), 0, locations.getWords().length);
+		return subset < 0 ? 0 : masses[subset];
+	}
+
+	@Override
+	public double getBelief(LocationSet locations) {
+		return beliefs[getSubsetOfCore(locations)] - masses[0];
+	}
+
+	@Override
+	public double getPlausibility(LocationSet locations) {
+		int core = masses.length - 1;
+		return beliefs[core] - beliefs[core & ~getSubsetOfCore(locations)];
+	}
+
+	@Override
+	public double getCommonality(LocationSet locations) {
+		int subset = getSubset(locations.getWords(), 0, locations.getWords().length);
+		return subset < 0 ? 0 : commonalities[subset];
+	}
+
+	/**
+	 * Transforms a vector of masses into the vector of their sums over subsets (f(A) = sum of f(B) for B subset of A),
+	 * in place.
+	 *
+	 * @param f
+	 *            vector indexed by subset mask, with a length that is a power of two
+	 */
+	public static void subsetZetaTransform(double[] f) {
+		for (int bit = 1; bit < f.length; bit <<= 1) {
+			for (int block = 0; block < f.length; block += bit << 1) {
+				for (int subset = block; subset < block + bit; subset++) {
+					f[subset + bit] += f[subset];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inverse of subsetZetaTransform, in place.
+	 *
+	 * @param f
+	 *            vector indexed by subset mask, with a length that is a power of two
+	 */
+	public static void subsetMobiusTransform(double[] f) {
+		for (int bit = 1; bit < f.length; bit <<= 1) {
+			for (int block = 0; block < f.length; block += bit << 1) {
+				for (int subset = block; subset < block + bit; subset++) {
+					f[subset + bit] -= f[subset];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Transforms a vector of masses into the vector of their sums over supersets (f(A) = sum of f(B) for B superset of
+	 * A), in place.
+	 *
+	 * @param f
+	 *            vector indexed by subset mask, with a length that is a power of two
+	 */
+	public static void supersetZetaTransform(double[] f) {
+		for (int bit = 1; bit < f.length; bit <<= 1) {
+			for (int block = 0; block < f.length; block += bit << 1) {
+				for (int subset = block; subset < block + bit; subset++) {
+					f[subset] += f[subset + bit];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inverse of supersetZetaTransform, in place.
+	 *
+	 * @param f
+	 *            vector indexed by subset mask, with a length that is a power of two
+	 */
+	public static void supersetMobiusTransform(double[] f) {
+		for (int bit = 1; bit < f.length; bit <<= 1) {
+			for (int block = 0; block < f.length; block += bit << 1) {
+				for (int subset = block; subset < block + bit; subset++) {
+					f[subset] -= f[subset + bit];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Maps a bitset of location indices to a subset mask of the core.
+	 *
+	 * @param words
+	 *            array that contains the bitset
+	 * @param offset
+	 *            position of the first word of the bitset in the array
+	 * @param numberOfWords
+	 *            number of words in the bitset
+	 * @return subset mask, or -1 if the bitset contains a location that is not in the core
+	 */
+	private int getSubset(long[] words, int offset, int numberOfWords) {
+		int subset = 0;
+		for (int w = 0; w < numberOfWords; w++) {
+			for (long word = words[offset + w]; word != 0; word &= word - 1) {
+				int bit = Arrays.binarySearch(coreLocationIndices, (w << 6) + Long.numberOfTrailingZeros(word));
+				if (bit < 0) {
+					return -1;
+				}
+				subset |= 1 << bit;
+			}
+		}
+		return subset;
+	}
+
+	/**
+	 * Maps a set of locations to the subset mask of its locations that are in the core (the other locations are
+	 * ignored).
+	 *
+	 * @param locations
+	 *            set of locations
+	 * @return subset mask
+	 */
+	private int getSubsetOfCore(LocationSet locations) {
+		int subset = 0;
+		for (int index = locations.nextLocationIndex(0); index >= 0; index = locations.nextLocationIndex(index + 1)) {
+			int bit = Arrays.binarySearch(coreLocationIndices, index);
+			if (bit >= 0) {
+				subset |= 1 << bit;
+			}
+		}
+		return subset;
+	}
+}
@@ -0,0 +1,449 @@
+package geotweetz.location.type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Primitive-keyed table of focal elements and their probability values (masses). Focal elements are bitsets of location
+ * indices (see LocationSet) and they are stored back to back in a single array of words. Elements are found with an
+ * open-addressing hash table on the words, so that adding a mass to a focal element does not create any objects.
+ * Memory is only allocated when the table grows; a table that is cleared and reused keeps its capacity.
+ *
+ * <p>
+ * Elements are numbered in the order they are added (0 to size-1). Words of element e are at positions
+ * [e*numberOfWords, (e+1)*numberOfWords) of the array returned by getWords().
+ *
+ * @author oozdikis
+ *
+ */
+public class FocalElementTable {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Number of 64-bit words in the bitset of a focal element.
+	 */
+	private final int numberOfWords;
+
+	/**
+	 * Bitsets of focal elements, stored back to back.
+	 */
+	private long[] words;
+
+	/**
+	 * Probability values of focal elements.
+	 */
+	private double[] probabilityValues;
+
+	/**
+	 * Number of elements (e.g., tweets) that are mapped to each focal element.
+	 */
+	private int[] elementCounts;
+
+	/**
+	 * Total weight of elements that are mapped to each focal element. Weights are used when elements do not count
+	 * equally (e.g., tweets whose evidence decays over time).
+	 */
+	private double[] elementWeights;
+
+	/**
+	 * Hashcodes of focal elements.
+	 */
+	private int[] hashcodes;
+
+	/**
+	 * Open-addressing hash table. A slot keeps (element number + 1), or 0 if it is empty. The length is a power of two.
+	 */
+	private int[] slots;
+
+	/**
+	 * Number of focal elements in the table.
+	 */
+	private int size;
+
+	/**
+	 *
+	 * @param numberOfWords
+	 *            number of 64-bit words in the bitset of a focal element (see LocationIndex.getNumberOfWords())
+	 */
+	public FocalElementTable(int numberOfWords) {
+		this(numberOfWords, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 *
+	 * @param numberOfWords
+	 *            number of 64-bit words in the bitset of a focal element (see LocationIndex.getNumberOfWords())
+	 * @param expectedSize
+	 *            expected number of focal elements
+	 */
+	public FocalElementTable(int numberOfWords, int expectedSize) {
+		int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+		this.numberOfWords = numberOfWords;
+		this.words = new long[capacity * numberOfWords];
+		this.probabilityValues = new double[capacity];
+		this.elementCounts = new int[capacity];
+		this.elementWeights = new double[capacity];
+		this.hashcodes = new int[capacity];
+		this.slots = new int[Integer.highestOneBit(capacity - 1) << 2];
+		this.size = 0;
+	}
+
+	/**
+	 *
+	 * @return number of focal elements in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return number of 64-bit words in the bitset of a focal element
+	 */
+	public int getNumberOfWords() {
+		return numberOfWords;
+	}
+
+	/**
+	 *
+	 * @return bitsets of all focal elements, stored back to back. The returned array must not be modified, and it can
+	 *         be replaced when new focal elements are added to the table.
+	 */
+	public long[] getWords() {
+		return words;
+	}
+
+	/**
+	 *
+	 * @param element
+	 *            element number
+	 * @return probability value of the focal element
+	 */
+	public double getProbabilityValue(int element) {
+		return probabilityValues[element];
+	}
+
+	/**
+	 *
+	 * @param element
+	 *            element number
+	 * @param probabilityValue
+	 *            probability value to set for the focal element
+	 */
+	public void setProbabilityValue(int element, double probabilityValue) {
+		probabilityValues[element] = probabilityValue;
+	}
+
+	/**
+	 *
+	 * @param element
+	 *            element number
+	 * @return number of elements that are mapped to the focal element
+	 */
+	public int getElementCount(int element) {
+		return elementCounts[element];
+	}
+
+	/**
+	 *
+	 * @param element
+	 *            element number
+	 * @return total weight of elements that are mapped to the focal element
+	 */
+	public double getElementWeight(int element) {
+		return elementWeights[element];
+	}
+
+	/**
+	 * Removes all focal elements from the table. The capacity of the table does not change.
+	 */
+	public void clear() {
+		Arrays.fill(slots, 0);
+		size = 0;
+	}
+
+	/**
+	 * Adds a probability value to a focal element. The focal element is added to the table if it is not in the table.
+	 *
+	 * @param focalElement
+	 *            array that keeps the bitset of the focal element
+	 * @param offset
+	 *            position of the first word of the bitset in the array
+	 * @param probabilityValue
+	 *            probability value to add
+	 * @return element number of the focal element
+	 */
+	public int addProbabilityValue(long[] focalElement, int offset, double probabilityValue) {
+		int element = findOrAdd(focalElement, offset);
+		probabilityValues[element] += probabilityValue;
+		return element;
+	}
+
+	/**
+	 * Adds to the number of elements that are mapped to a focal element. The focal element is added to the table if it
+	 * is not in the table.
+	 *
+	 * @param focalElement
+	 *            array that keeps the bitset of the focal element
+	 * @param offset
+	 *            position of the first word of the bitset in the array
+	 * @param elementCount
+	 *            number of elements to add
+	 * @return element number of the focal element
+	 */
+	public int addElementCount(long[] focalElement, int offset, int elementCount) {
+		int element = findOrAdd(focalElement, offset);
+		elementCounts[element] += elementCount;
+		return element;
+	}
+
+	/**
+	 * Adds to the number and the total weight of elements that are mapped to a focal element. The focal element is
+	 * added to the table if it is not in the table.
+	 *
+	 * @param focalElement
+	 *            array that keeps the bitset of the focal element
+	 * @param offset
+	 *            position of the first word of the bitset in the array
+	 * @param elementCount
+	 *            number of elements to add (negative to remove elements)
+	 * @param elementWeight
+	 *            weight of elements to add (negative to remove elements)
+	 * @return element number of the focal element
+	 */
+	public int addElements(long[] focalElement, int offset, int elementCount, double elementWeight) {
+		int element = findOrAdd(focalElement, offset);
+		elementCounts[element] += elementCount;
+		elementWeights[element] += elementWeight;
+		return element;
+	}
+
+	/**
+	 * Adds to the number and the total weight of elements that are mapped to a focal element that is already in the
+	 * table.
+	 *
+	 * @param element
+	 *            element number
+	 * @param elementCount
+	 *            number of elements to add (negative to remove elements)
+	 * @param elementWeight
+	 *            weight of elements to add (negative to remove elements)
+	 */
+	public void addElements(int element, int elementCount, double elementWeight) {
+		elementCounts[element] += elementCount;
+		elementWeights[element] += elementWeight;
+	}
+
+	/**
+	 * Multiplies the weights of all focal elements with the same factor.
+	 *
+	 * @param factor
+	 *            factor to multiply the weights with
+	 */
+	public void scaleElementWeights(double factor) {
+		for (int element = 0; element < size; element++) {
+			elementWeights[element] *= factor;
+		}
+	}
+
+	/**
+	 * Removes focal elements that have no elements mapped to them (element count is 0), and renumbers the remaining
+	 * focal elements in the order they were added. The capacity of the table does not change.
+	 *
+	 * @return new element numbers of focal elements, indexed by their old element numbers (-1 for removed focal
+	 *         elements), or null if no focal element is removed.
+	 */
+	public int[] removeEmptyElements() {
+		int[] newElements = null;
+		int newSize = 0;
+		for (int element = 0; element < size; element++) {
+			if (elementCounts[element] == 0) {
+				if (newElements == null) {
+					newElements = new int[size];
+					for (int i = 0; i < element; i++) {
+						newElements[i] = i;
+					}
+				}
+				newElements[element] = -1;
+				continue;
+			}
+			if (newElements != null) {
+				newElements[element] = newSize;
+				if (newSize != element) {
+					System.arraycopy(words, element * numberOfWords, words, newSize * numberOfWords, numberOfWords);
+					probabilityValues[newSize] = probabilityValues[element];
+					elementCounts[newSize] = elementCounts[element];
+					elementWeights[newSize] = elementWeights[element];
+					hashcodes[newSize] = hashcodes[element];
+				}
+			}
+			newSize++;
+		}
+		if (newElements != null) {
+			size = newSize;
+			rehash();
+		}
+		return newElements;
+	}
+
+	/**
+	 * Finds the element number of a focal element.
+	 *
+	 * @param focalElement
+	 *            array that keeps the bitset of the focal element
+	 * @param offset
+	 *            position of the first word of the bitset in the array
+	 * @return element number, or -1 if the focal element is not in the table
+	 */
+	public int indexOf(long[] focalElement, int offset) {
+		int hashcode = hashcodeOfWords(focalElement, offset, numberOfWords);
+		int mask = slots.length - 1;
+		for (int slot = mix(hashcode) & mask;; slot = (slot + 1) & mask) {
+			int element = slots[slot] - 1;
+			if (element < 0) {
+				return -1;
+			}
+			if (hashcodes[element] == hashcode && equalWords(element, focalElement, offset)) {
+				return element;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the probability values of focal elements from their element counts.
+	 *
+	 * @param totalElementCount
+	 *            total number of elements (e.g., number of tweets in a cluster)
+	 */
+	public void setProbabilityValuesFromElementCounts(int totalElementCount) {
+		for (int element = 0; element < size; element++) {
+			probabilityValues[element] = 1.0 * elementCounts[element] / totalElementCount;
+		}
+	}
+
+	/**
+	 * Creates a LocationSet for a focal element.
+	 *
+	 * @param element
+	 *            element number
+	 * @param locationIndex
+	 *            index that maps the bits to location ids
+	 * @return the focal element as a LocationSet
+	 */
+	public LocationSet getLocationSet(int element, LocationIndex locationIndex) {
+		long[] focalElement = new long[numberOfWords];
+		System.arraycopy(words, element * numberOfWords, focalElement, 0, numberOfWords);
+		return new LocationSet(focalElement, locationIndex);
+	}
+
+	/**
+	 * Converts the table to a list of ProbabilityAssignments.
+	 *
+	 * @param locationIndex
+	 *            index that maps the bits to location ids
+	 * @return probability assignments for all focal elements in the table
+	 */
+	public ArrayList<ProbabilityAssignment> toProbabilityAssignments(LocationIndex locationIndex) {
+		ArrayList<ProbabilityAssignment> probabilityAssignments = new ArrayList<ProbabilityAssignment>(size);
+		for (int element = 0; element < size; element++) {
+			ProbabilityAssignment probabilityAssignment = new ProbabilityAssignment(
+					getLocationSet(element, locationIndex));
+			probabilityAssignment.setElementCount(elementCounts[element]);
+			probabilityAssignment.setProbabilityValue(probabilityValues[element]);
+			probabilityAssignments.add(probabilityAssignment);
+		}
+		return probabilityAssignments;
+	}
+
+	/**
+	 * Calculates the hashcode for a bitset in an array. The result is the same with LocationSet.hashcodeOfWords for
+	 * the same bitset.
+	 *
+	 * @param words
+	 *            array that keeps the bitset
+	 * @param offset
+	 *            position of the first word of the bitset in the array
+	 * @param numberOfWords
+	 *            number of words in the bitset
+	 * @return hashcode of the bitset
+	 */
+	public static int hashcodeOfWords(long[] words, int offset, int numberOfWords) {
+		long hash = 1;
+		for (int i = offset; i < offset + numberOfWords; i++) {
+			hash = 31 * hash + words[i];
+		}
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	private int findOrAdd(long[] focalElement, int offset) {
+		int hashcode = hashcodeOfWords(focalElement, offset, numberOfWords);
+		int mask = slots.length - 1;
+		int slot = mix(hashcode) & mask;
+		for (;; slot = (slot + 1) & mask) {
+			int element = slots[slot] - 1;
+			if (element < 0) {
+				break;
+			}
+			if (hashcodes[element] == hashcode && equalWords(element, focalElement, offset)) {
+				return element;
+			}
+		}
+		if (size == hashcodes.length) {
+			grow();
+			return findOrAdd(focalElement, offset);
+		}
+		int element = size++;
+		System.arraycopy(focalElement, offset, words, element * numberOfWords, numberOfWords);
+		probabilityValues[element] = 0;
+		elementCounts[element] = 0;
+		elementWeights[element] = 0;
+		hashcodes[element] = hashcode;
+		slots[slot] = element + 1;
+		return element;
+	}
+
+	private boolean equalWords(int element, long[] focalElement, int offset) {
+		int start = element * numberOfWords;
+		for (int i = 0; i < numberOfWords; i++) {
+			if (words[start + i] != focalElement[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the capacity of the table. The load factor of the hash table is kept at most 1/2.
+	 */
+	private void grow() {
+		int capacity = hashcodes.length * 2;
+		words = Arrays.copyOf(words, capacity * numberOfWords);
+		probabilityValues = Arrays.copyOf(probabilityValues, capacity);
+		elementCounts = Arrays.copyOf(elementCounts, capacity);
+		elementWeights = Arrays.copyOf(elementWeights, capacity);
+		hashcodes = Arrays.copyOf(hashcodes, capacity);
+		slots = new int[slots.length * 2];
+		rehash();
+	}
+
+	/**
+	 * Rebuilds the hash table from the hashcodes of focal elements.
+	 */
+	private void rehash() {
+		Arrays.fill(slots, 0);
+		int mask = slots.length - 1;
+		for (int element = 0; element < size; element++) {
+			int slot = mix(hashcodes[element]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = element + 1;
+		}
+	}
+
+	private static int mix(int hashcode) {
+		int h = hashcode * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
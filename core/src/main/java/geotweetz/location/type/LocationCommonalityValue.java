@@ -21,6 +21,12 @@ public class LocationCommonalityValue implements Comparable<LocationCommonalityV
 	 */
 	private double commonalityValue;
 
+	/**
+	 * Bound of the difference between the commonality value and the exact commonality value, if probability
+	 * assignments are approximated during estimation (0 if the commonality value is exact, NaN if no bound is known).
+	 */
+	private double commonalityErrorBound;
+
 	/**
 	 * 
 	 * @param locationId
@@ -67,6 +73,25 @@ public class LocationCommonalityValue implements Comparable<LocationCommonalityV
 		this.commonalityValue = commonalityValue;
 	}
 
+	/**
+	 * 
+	 * @return bound of the error in the commonality value (the exact value is within commonalityValue +/- bound), 0
+	 *         if the commonality value is exact, or NaN if the value is approximated and no bound is known for the
+	 *         combination rule (see LocationEstimator.setFocalElementSummarizer)
+	 */
+	public double getCommonalityErrorBound() {
+		return commonalityErrorBound;
+	}
+
+	/**
+	 * 
+	 * @param commonalityErrorBound
+	 *            bound of the error in the commonality value to set
+	 */
+	public void setCommonalityErrorBound(double commonalityErrorBound) {
+		this.commonalityErrorBound = commonalityErrorBound;
+	}
+
 	@Override
 	public int compareTo(LocationCommonalityValue o) {
 		if (o.getCommonalityValue() > commonalityValue) {
@@ -0,0 +1,84 @@
+package geotweetz.location.type;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Dense index of the locations in the frame of discernment. Each location id is mapped to an index in [0, size), so
+ * that sets of locations can be represented as bitsets (see LocationSet). The index is not modified after it is
+ * created.
+ *
+ * @author oozdikis
+ *
+ */
+public class LocationIndex {
+
+	/**
+	 * Location ids ordered by their indices.
+	 */
+	private final long[] locationIds;
+
+	/**
+	 * Mapping from location ids to their indices.
+	 */
+	private final HashMap<Long, Integer> indicesOfLocationIds;
+
+	/**
+	 * Creates the index for the given location ids. Indices are assigned in the order of the list. Duplicate ids are
+	 * indexed only once.
+	 *
+	 * @param locationIds
+	 *            ids of all locations in the frame of discernment
+	 */
+	public LocationIndex(List<Long> locationIds) {
+		this.indicesOfLocationIds = new HashMap<Long, Integer>();
+		long[] orderedLocationIds = new long[locationIds.size()];
+		int size = 0;
+		for (Long locationId : locationIds) {
+			if (!indicesOfLocationIds.containsKey(locationId)) {
+				indicesOfLocationIds.put(locationId, size);
+				orderedLocationIds[size++] = locationId;
+			}
+		}
+		this.locationIds = new long[size];
+		System.arraycopy(orderedLocationIds, 0, this.locationIds, 0, size);
+	}
+
+	/**
+	 *
+	 * @return number of locations in the index
+	 */
+	public int size() {
+		return locationIds.length;
+	}
+
+	/**
+	 *
+	 * @return number of 64-bit words that are needed for a bitset of all locations
+	 */
+	public int getNumberOfWords() {
+		return (locationIds.length + 63) >>> 6;
+	}
+
+	/**
+	 *
+	 * @param locationId
+	 *            location id
+	 * @return index of the location, or -1 if the location is not in the index
+	 */
+	public int getIndex(long locationId) {
+		Integer index = indicesOfLocationIds.get(locationId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 *
+	 * @param index
+	 *            index of a location
+	 * @return id of the location at the given index
+	 */
+	public long getLocationId(int index) {
+		return locationIds[index];
+	}
+
+}
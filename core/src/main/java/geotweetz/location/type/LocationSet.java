@@ -0,0 +1,217 @@
+package geotweetz.location.type;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Compact, immutable representation of a set of locations (a focal element). Locations are kept as a bitset of their
+ * dense indices in a LocationIndex, and the hashcode of the set is calculated once when the set is created. Static
+ * methods of the class work directly on arrays of words, so that intersections and unions of sets can be calculated
+ * into reusable buffers without creating new objects.
+ *
+ * @author oozdikis
+ *
+ */
+public final class LocationSet {
+
+	/**
+	 * Index that maps the bits of this set to location ids.
+	 */
+	private final LocationIndex locationIndex;
+
+	/**
+	 * Bitset of location indices. Bit i of word w represents the location with index 64*w+i.
+	 */
+	private final long[] words;
+
+	/**
+	 * Hashcode calculated from the words of the bitset.
+	 */
+	private final int hashcode;
+
+	/**
+	 * Creates a set of locations from the given words. The array is not copied, and it must not be modified after the
+	 * set is created.
+	 *
+	 * @param words
+	 *            bitset of location indices, with locationIndex.getNumberOfWords() elements
+	 * @param locationIndex
+	 *            index that maps the bits to location ids
+	 */
+	public LocationSet(long[] words, LocationIndex locationIndex) {
+		this.locationIndex = locationIndex;
+		this.words = words;
+		this.hashcode = hashcodeOfWords(words);
+	}
+
+	/**
+	 * Creates a set of locations from location ids. Ids that are not in the index are ignored.
+	 *
+	 * @param locationIds
+	 *            location ids
+	 * @param locationIndex
+	 *            index of all locations in the frame of discernment
+	 * @return set of locations
+	 */
+	public static LocationSet fromLocationIds(Collection<Long> locationIds, LocationIndex locationIndex) {
+		long[] words = new long[locationIndex.getNumberOfWords()];
+		for (long locationId : locationIds) {
+			int index = locationIndex.getIndex(locationId);
+			if (index >= 0) {
+				words[index >>> 6] |= 1L << index;
+			}
+		}
+		return new LocationSet(words, locationIndex);
+	}
+
+	/**
+	 * Creates the set of all locations in the index (Theta).
+	 *
+	 * @param locationIndex
+	 *            index of all locations in the frame of discernment
+	 * @return set of all locations
+	 */
+	public static LocationSet allLocations(LocationIndex locationIndex) {
+		long[] words = new long[locationIndex.getNumberOfWords()];
+		Arrays.fill(words, -1L);
+		int numberOfBitsInLastWord = locationIndex.size() & 63;
+		if (numberOfBitsInLastWord > 0) {
+			words[words.length - 1] = (1L << numberOfBitsInLastWord) - 1;
+		}
+		return new LocationSet(words, locationIndex);
+	}
+
+	/**
+	 *
+	 * @return the words of the bitset. The returned array must not be modified.
+	 */
+	public long[] getWords() {
+		return words;
+	}
+
+	/**
+	 *
+	 * @return index that maps the bits of this set to location ids
+	 */
+	public LocationIndex getLocationIndex() {
+		return locationIndex;
+	}
+
+	/**
+	 *
+	 * @return number of locations in the set
+	 */
+	public int size() {
+		int size = 0;
+		for (long word : words) {
+			size += Long.bitCount(word);
+		}
+		return size;
+	}
+
+	/**
+	 *
+	 * @param fromIndex
+	 *            index to start searching from (inclusive)
+	 * @return the index of the first location in the set that is at or after fromIndex, or -1 if there is no such
+	 *         location
+	 */
+	public int nextLocationIndex(int fromIndex) {
+		int wordIndex = fromIndex >>> 6;
+		if (wordIndex >= words.length) {
+			return -1;
+		}
+		long word = words[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == words.length) {
+				return -1;
+			}
+			word = words[wordIndex];
+		}
+	}
+
+	/**
+	 *
+	 * @return ids of locations in the set
+	 */
+	public HashSet<Long> toLocationIds() {
+		HashSet<Long> locationIds = new HashSet<Long>();
+		for (int i = nextLocationIndex(0); i >= 0; i = nextLocationIndex(i + 1)) {
+			locationIds.add(locationIndex.getLocationId(i));
+		}
+		return locationIds;
+	}
+
+	/**
+	 * Calculates the intersection of two bitsets (word-wise AND) into the given buffer.
+	 *
+	 * @param words1
+	 *            first bitset
+	 * @param words2
+	 *            second bitset
+	 * @param intersection
+	 *            buffer to write the intersection
+	 * @return true if the intersection is not empty
+	 */
+	public static boolean intersect(long[] words1, long[] words2, long[] intersection) {
+		long nonEmpty = 0;
+		for (int i = 0; i < intersection.length; i++) {
+			intersection[i] = words1[i] & words2[i];
+			nonEmpty |= intersection[i];
+		}
+		return nonEmpty != 0;
+	}
+
+	/**
+	 * Calculates the union of two bitsets (word-wise OR) into the given buffer.
+	 *
+	 * @param words1
+	 *            first bitset
+	 * @param words2
+	 *            second bitset
+	 * @param union
+	 *            buffer to write the union
+	 */
+	public static void union(long[] words1, long[] words2, long[] union) {
+		for (int i = 0; i < union.length; i++) {
+			union[i] = words1[i] | words2[i];
+		}
+	}
+
+	/**
+	 * Calculates the hashcode for a bitset. Equal bitsets have equal hashcodes.
+	 *
+	 * @param words
+	 *            bitset
+	 * @return hashcode of the bitset
+	 */
+	public static int hashcodeOfWords(long[] words) {
+		return FocalElementTable.hashcodeOfWords(words, 0, words.length);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashcode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LocationSet)) {
+			return false;
+		}
+		LocationSet other = (LocationSet) obj;
+		return hashcode == other.hashcode && Arrays.equals(words, other.words);
+	}
+
+	public String toString() {
+		return toLocationIds().toString();
+	}
+
+}
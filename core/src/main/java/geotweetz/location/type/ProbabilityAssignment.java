@@ -9,7 +9,8 @@ import java.util.List;
 /**
  * The probability assignment for a set of locations represented by their ids.
  * It also includes the number of elements that are assigned to this location
- * set.
+ * set. The set of locations can be given either as a set of location ids or
+ * as a compact LocationSet.
  * 
  * @author oozdikis
  *
@@ -17,10 +18,17 @@ import java.util.List;
 public class ProbabilityAssignment implements Comparable<ProbabilityAssignment> {
 
 	/**
-	 * Set of location ids.
+	 * Set of location ids. If the assignment is created for a LocationSet, ids
+	 * are created from it when they are first requested.
 	 */
 	private HashSet<Long> locationIds;
 
+	/**
+	 * Set of locations as a bitset of location indices, or null if the
+	 * assignment is created for a set of location ids.
+	 */
+	private LocationSet locationSet;
+
 	/**
 	 * Number of elements that are mapped to this set of locations.
 	 */
@@ -40,6 +48,21 @@ public class ProbabilityAssignment implements Comparable<ProbabilityAssignment>
 	 */
 	public ProbabilityAssignment(HashSet<Long> locationIds) {
 		this.locationIds = locationIds;
+		this.locationSet = null;
+		this.elementCount = 0;
+		this.probabilityValue = 0;
+	}
+
+	/**
+	 * Initializes ProbabilityAssignment for the given set of locations with
+	 * default values.
+	 * 
+	 * @param locationSet
+	 *            set of locations
+	 */
+	public ProbabilityAssignment(LocationSet locationSet) {
+		this.locationIds = null;
+		this.locationSet = locationSet;
 		this.elementCount = 0;
 		this.probabilityValue = 0;
 	}
@@ -49,6 +72,9 @@ public class ProbabilityAssignment implements Comparable<ProbabilityAssignment>
 	 * @return set of location ids
 	 */
 	public HashSet<Long> getLocationIds() {
+		if (locationIds == null && locationSet != null) {
+			locationIds = locationSet.toLocationIds();
+		}
 		return locationIds;
 	}
 
@@ -59,6 +85,16 @@ public class ProbabilityAssignment implements Comparable<ProbabilityAssignment>
 	 */
 	public void setLocationIds(HashSet<Long> locationIds) {
 		this.locationIds = locationIds;
+		this.locationSet = null;
+	}
+
+	/**
+	 * 
+	 * @return set of locations as a LocationSet, or null if the assignment is
+	 *         created for a set of location ids
+	 */
+	public LocationSet getLocationSet() {
+		return locationSet;
 	}
 
 	/**
@@ -103,7 +139,10 @@ public class ProbabilityAssignment implements Comparable<ProbabilityAssignment>
 	 * @param locationIds
 	 *            Location ids to generate the String hashcode.
 	 * @return The String generated as a hashcode.
+	 * @deprecated Sets of locations are identified by LocationSet, which keeps
+	 *             a precomputed hashcode and does not need a String.
 	 */
+	@Deprecated
 	public static String generateHashcodeForSet(Collection<Long> locationIds) {
 		String idString = "";
 		List<Long> sortedIds = new LinkedList<Long>(locationIds);
@@ -0,0 +1,93 @@
+package geotweetz.location.type;
+
+/**
+ * Belief function that scans the focal elements for each query (see BeliefFunction). A query takes O(|F|*w) time for
+ * |F| focal elements of w words, and no memory is allocated other than the probability assignments.
+ *
+ * @author oozdikis
+ *
+ */
+public class SparseBeliefFunction extends BeliefFunction {
+
+	/**
+	 * Probability assignments for sets of locations.
+	 */
+	private final FocalElementTable probabilityAssignments;
+
+	/**
+	 *
+	 * @param probabilityAssignments
+	 *            probability assignments for sets of locations. The table is not copied, and it must not be modified
+	 *            after the belief function is created.
+	 * @param locationIndex
+	 *            index of all locations in the frame of discernment
+	 */
+	public SparseBeliefFunction(FocalElementTable probabilityAssignments, LocationIndex locationIndex) {
+		super(locationIndex);
+		this.probabilityAssignments = probabilityAssignments;
+	}
+
+	@Override
+	public double getMass(LocationSet locations) {
+		int element = probabilityAssignments.indexOf(locations.getWords(), 0);
+		return element < 0 ? 0 : probabilityAssignments.getProbabilityValue(element);
+	}
+
+	@Override
+	public double getBelief(LocationSet locations) {
+		long[] setWords = locations.getWords();
+		int numberOfWords = probabilityAssignments.getNumberOfWords();
+		long[] words = probabilityAssignments.getWords();
+		double belief = 0;
+		for (int element = 0; element < probabilityAssignments.size(); element++) {
+			int offset = element * numberOfWords;
+			boolean isSubset = true;
+			boolean isEmpty = true;
+			for (int w = 0; w < numberOfWords && isSubset; w++) {
+				isSubset = (words[offset + w] & ~setWords[w]) == 0;
+				isEmpty &= words[offset + w] == 0;
+			}
+			if (isSubset && !isEmpty) {
+				belief += probabilityAssignments.getProbabilityValue(element);
+			}
+		}
+		return belief;
+	}
+
+	@Override
+	public double getPlausibility(LocationSet locations) {
+		long[] setWords = locations.getWords();
+		int numberOfWords = probabilityAssignments.getNumberOfWords();
+		long[] words = probabilityAssignments.getWords();
+		double plausibility = 0;
+		for (int element = 0; element < probabilityAssignments.size(); element++) {
+			int offset = element * numberOfWords;
+			for (int w = 0; w < numberOfWords; w++) {
+				if ((words[offset + w] & setWords[w]) != 0) {
+					plausibility += probabilityAssignments.getProbabilityValue(element);
+					break;
+				}
+			}
+		}
+		return plausibility;
+	}
+
+	@Override
+	public double getCommonality(LocationSet locations) {
+		long[] setWords = locations.getWords();
+		int numberOfWords = probabilityAssignments.getNumberOfWords();
+		long[] words = probabilityAssignments.getWords();
+		double commonality = 0;
+		for (int element = 0; element < probabilityAssignments.size(); element++) {
+			int offset = element * numberOfWords;
+			boolean isSuperset = true;
+			for (int w = 0; w < numberOfWords && isSuperset; w++) {
+				isSuperset = (setWords[w] & ~words[offset + w]) == 0;
+			}
+			if (isSuperset) {
+				commonality += probabilityAssignments.getProbabilityValue(element);
+			}
+		}
+		return commonality;
+	}
+}
@@ -0,0 +1,326 @@
+package geotweetz.location.type;
+
+import java.util.List;
+
+import geotweetz.location.dbo.TweetDBO;
+
+/**
+ * Immutable batch of tweets in columnar form (one array per attribute instead of one object per tweet). Latitudes and
+ * longitudes are kept in double arrays, and the texts (tweet content and user profile location) of all tweets are
+ * concatenated in a char array, with an offset array that marks where the text of each tweet starts. Tweets are
+ * numbered from 0 to size-1.
+ *
+ * <p>
+ * A scan over an attribute of the batch reads consecutive memory and does not dereference a tweet object for each
+ * tweet, which makes mapping large clusters to locations cheaper (see TweetLocationMapper.mapBatchToCities... methods).
+ * Missing texts (null) are kept as empty texts, which are mapped to no location in the same way. Tweets that are not
+ * geotagged keep TweetObservation.NO_COORDINATE in the latitude and longitude columns (the position (0, 0) of tweet
+ * database objects is converted by TweetObservation.fromTweetDBO), and the number of geotagged tweets is counted when
+ * the batch is created, so that a batch without geotagged tweets is not scanned for GPS mappings.
+ *
+ * @author oozdikis
+ *
+ */
+public final class TweetBatch {
+
+	/**
+	 * tweet ids received from Twitter
+	 */
+	private final long[] ids;
+
+	/**
+	 * latitudes of tweets
+	 */
+	private final double[] latitudes;
+
+	/**
+	 * longitudes of tweets
+	 */
+	private final double[] longitudes;
+
+	/**
+	 * posting times of tweets in milliseconds, or TweetObservation.UNKNOWN_TIME
+	 */
+	private final long[] createdAtMillis;
+
+	/**
+	 * contents of all tweets, concatenated
+	 */
+	private final char[] contentCharacters;
+
+	/**
+	 * content of tweet i is in contentCharacters[contentOffsets[i], contentOffsets[i + 1])
+	 */
+	private final int[] contentOffsets;
+
+	/**
+	 * user profile locations of all tweets, concatenated
+	 */
+	private final char[] userLocationCharacters;
+
+	/**
+	 * user profile location of tweet i is in userLocationCharacters[userLocationOffsets[i], userLocationOffsets[i + 1])
+	 */
+	private final int[] userLocationOffsets;
+
+	/**
+	 * number of tweets with coordinates (see TweetObservation.hasCoordinates)
+	 */
+	private final int numberOfGeotaggedTweets;
+
+	/**
+	 * Creates a batch from columns. The arrays are used without copying; they must not be modified afterwards.
+	 *
+	 * @param ids
+	 *            tweet ids
+	 * @param latitudes
+	 *            latitudes of tweets (TweetObservation.NO_COORDINATE for tweets that are not geotagged)
+	 * @param longitudes
+	 *            longitudes of tweets (TweetObservation.NO_COORDINATE for tweets that are not geotagged)
+	 * @param createdAtMillis
+	 *            posting times of tweets in milliseconds, or TweetObservation.UNKNOWN_TIME
+	 * @param contentCharacters
+	 *            contents of all tweets, concatenated
+	 * @param contentOffsets
+	 *            start offsets of contents in contentCharacters, followed by the total length (size + 1 offsets)
+	 * @param userLocationCharacters
+	 *            user profile locations of all tweets, concatenated
+	 * @param userLocationOffsets
+	 *            start offsets of user profile locations in userLocationCharacters, followed by the total length (size +
+	 *            1 offsets)
+	 * @throws IllegalArgumentException
+	 *             if the lengths of the arrays do not match, or if offsets are decreasing or out of bounds
+	 */
+	public TweetBatch(long[] ids, double[] latitudes, double[] longitudes, long[] createdAtMillis,
+			char[] contentCharacters, int[] contentOffsets, char[] userLocationCharacters, int[] userLocationOffsets) {
+		int size = ids.length;
+		if (latitudes.length != size || longitudes.length != size || createdAtMillis.length != size
+				|| contentOffsets.length != size + 1 || userLocationOffsets.length != size + 1) {
+			throw new IllegalArgumentException("Columns must have the same number of tweets");
+		}
+		checkOffsets(contentOffsets, contentCharacters.length);
+		checkOffsets(userLocationOffsets, userLocationCharacters.length);
+		this.ids = ids;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.createdAtMillis = createdAtMillis;
+		this.contentCharacters = contentCharacters;
+		this.contentOffsets = contentOffsets;
+		this.userLocationCharacters = userLocationCharacters;
+		this.userLocationOffsets = userLocationOffsets;
+		int geotaggedTweets = 0;
+		for (int i = 0; i < size; i++) {
+			if (TweetObservation.hasCoordinates(latitudes[i], longitudes[i])) {
+				geotaggedTweets++;
+			}
+		}
+		this.numberOfGeotaggedTweets = geotaggedTweets;
+	}
+
+	/**
+	 * Creates a batch from observations.
+	 *
+	 * @param observations
+	 *            observations of tweets
+	 * @return batch with the observations in the same order
+	 */
+	public static TweetBatch fromObservations(List<TweetObservation> observations) {
+		int size = observations.size();
+		long[] ids = new long[size];
+		double[] latitudes = new double[size];
+		double[] longitudes = new double[size];
+		long[] createdAtMillis = new long[size];
+		String[] contents = new String[size];
+		String[] userLocations = new String[size];
+		for (int i = 0; i < size; i++) {
+			TweetObservation observation = observations.get(i);
+			ids[i] = observation.getId();
+			latitudes[i] = observation.getLatitude();
+			longitudes[i] = observation.getLongitude();
+			createdAtMillis[i] = observation.getCreatedAtMillis();
+			contents[i] = observation.getContent();
+			userLocations[i] = observation.getUserLocation();
+		}
+		int[] contentOffsets = new int[size + 1];
+		int[] userLocationOffsets = new int[size + 1];
+		return new TweetBatch(ids, latitudes, longitudes, createdAtMillis, concatenate(contents, contentOffsets),
+				contentOffsets, concatenate(userLocations, userLocationOffsets), userLocationOffsets);
+	}
+
+	/**
+	 * Creates a batch from tweet database objects.
+	 *
+	 * @param tweets
+	 *            tweet database objects
+	 * @return batch with the tweets in the same order
+	 */
+	public static TweetBatch fromTweetDBOs(List<TweetDBO> tweets) {
+		return fromObservations(TweetObservation.fromTweetDBOs(tweets));
+	}
+
+	/**
+	 *
+	 * @return number of tweets in the batch
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return tweet id
+	 */
+	public long getId(int tweet) {
+		return ids[tweet];
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return latitude of tweet
+	 */
+	public double getLatitude(int tweet) {
+		return latitudes[tweet];
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return longitude of tweet
+	 */
+	public double getLongitude(int tweet) {
+		return longitudes[tweet];
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return true if the tweet is geotagged (see TweetObservation.hasCoordinates)
+	 */
+	public boolean hasCoordinates(int tweet) {
+		return TweetObservation.hasCoordinates(latitudes[tweet], longitudes[tweet]);
+	}
+
+	/**
+	 *
+	 * @return number of geotagged tweets in the batch
+	 */
+	public int getNumberOfGeotaggedTweets() {
+		return numberOfGeotaggedTweets;
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return posting time of tweet in milliseconds, or TweetObservation.UNKNOWN_TIME
+	 */
+	public long getCreatedAtMillis(int tweet) {
+		return createdAtMillis[tweet];
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return tweet content (empty if the tweet has no content)
+	 */
+	public String getContent(int tweet) {
+		return new String(contentCharacters, contentOffsets[tweet], contentOffsets[tweet + 1] - contentOffsets[tweet]);
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return location attribute in the user profile (empty if the profile has no location)
+	 */
+	public String getUserLocation(int tweet) {
+		return new String(userLocationCharacters, userLocationOffsets[tweet],
+				userLocationOffsets[tweet + 1] - userLocationOffsets[tweet]);
+	}
+
+	/**
+	 *
+	 * @return latitudes of all tweets (must not be modified)
+	 */
+	public double[] getLatitudes() {
+		return latitudes;
+	}
+
+	/**
+	 *
+	 * @return longitudes of all tweets (must not be modified)
+	 */
+	public double[] getLongitudes() {
+		return longitudes;
+	}
+
+	/**
+	 *
+	 * @return contents of all tweets, concatenated (must not be modified)
+	 */
+	public char[] getContentCharacters() {
+		return contentCharacters;
+	}
+
+	/**
+	 *
+	 * @return start offsets of contents, followed by the total length (must not be modified)
+	 */
+	public int[] getContentOffsets() {
+		return contentOffsets;
+	}
+
+	/**
+	 *
+	 * @return user profile locations of all tweets, concatenated (must not be modified)
+	 */
+	public char[] getUserLocationCharacters() {
+		return userLocationCharacters;
+	}
+
+	/**
+	 *
+	 * @return start offsets of user profile locations, followed by the total length (must not be modified)
+	 */
+	public int[] getUserLocationOffsets() {
+		return userLocationOffsets;
+	}
+
+	/**
+	 * Concatenates texts into a char array, and writes the start offsets of texts (followed by the total length) into
+	 * the given offset array. A null text is concatenated as an empty text.
+	 */
+	private static char[] concatenate(String[] texts, int[] offsets) {
+		int length = 0;
+		for (int i = 0; i < texts.length; i++) {
+			offsets[i] = length;
+			length += texts[i] != null ? texts[i].length() : 0;
+		}
+		offsets[texts.length] = length;
+		char[] characters = new char[length];
+		for (int i = 0; i < texts.length; i++) {
+			if (texts[i] != null) {
+				texts[i].getChars(0, texts[i].length(), characters, offsets[i]);
+			}
+		}
+		return characters;
+	}
+
+	private static void checkOffsets(int[] offsets, int length) {
+		if (offsets[0] < 0 || offsets[offsets.length - 1] > length) {
+			throw new IllegalArgumentException("Offsets are out of bounds");
+		}
+		for (int i = 1; i < offsets.length; i++) {
+			if (offsets[i] < offsets[i - 1]) {
+				throw new IllegalArgumentException("Offsets must not be decreasing");
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package geotweetz.location.type;
+
+import java.util.Arrays;
+
+/**
+ * Mappings from the tweets of a batch to sets of cities, kept in primitive arrays. Cities are identified by their
+ * numbers in a CityGazetteer (0 to size-1). The cities of all tweets are written one after another into a single int
+ * array, and an offset array marks where the cities of each tweet start: the cities of tweet t are in
+ * getCities()[getOffsets()[t], getOffsets()[t + 1]). A tweet that is not mapped to any city has an empty range.
+ *
+ * <p>
+ * Mappings are written tweet by tweet: cities of the current tweet are added with addCity, and endTweet completes the
+ * current tweet. A mapping object can be cleared and reused for another batch without allocating new arrays. It is
+ * not thread-safe.
+ *
+ * @author oozdikis
+ *
+ */
+public class TweetCityMapping {
+
+	/**
+	 * Number of completed tweets.
+	 */
+	private int size;
+
+	/**
+	 * offsets[t] is the start of the cities of tweet t, offsets[size] is the start of the cities of the current tweet.
+	 */
+	private int[] offsets;
+
+	/**
+	 * Cities of all tweets, one after another.
+	 */
+	private int[] cities;
+
+	/**
+	 * Number of cities (of completed tweets and the current tweet) in the cities array.
+	 */
+	private int numberOfCities;
+
+	public TweetCityMapping() {
+		this(16);
+	}
+
+	/**
+	 *
+	 * @param expectedNumberOfTweets
+	 *            expected number of tweets, to size the arrays
+	 */
+	public TweetCityMapping(int expectedNumberOfTweets) {
+		this.offsets = new int[Math.max(expectedNumberOfTweets, 1) + 1];
+		this.cities = new int[Math.max(expectedNumberOfTweets, 1)];
+	}
+
+	/**
+	 * Removes the mappings of all tweets. Arrays are kept to be reused.
+	 */
+	public void clear() {
+		size = 0;
+		numberOfCities = 0;
+		offsets[0] = 0;
+	}
+
+	/**
+	 * Adds a city to the set of cities of the current tweet. A city that is already in the set is not added again.
+	 *
+	 * @param city
+	 *            city number
+	 */
+	public void addCity(int city) {
+		for (int i = offsets[size]; i < numberOfCities; i++) {
+			if (cities[i] == city) {
+				return;
+			}
+		}
+		if (numberOfCities == cities.length) {
+			cities = Arrays.copyOf(cities, cities.length * 2);
+		}
+		cities[numberOfCities++] = city;
+	}
+
+	/**
+	 * Completes the set of cities of the current tweet, and starts the next tweet.
+	 */
+	public void endTweet() {
+		if (size + 1 == offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		offsets[++size] = numberOfCities;
+	}
+
+	/**
+	 *
+	 * @return number of completed tweets
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param tweet
+	 *            tweet number (0 to size-1)
+	 * @return number of cities of the tweet
+	 */
+	public int getNumberOfCities(int tweet) {
+		return offsets[tweet + 1] - offsets[tweet];
+	}
+
+	/**
+	 *
+	 * @return start offsets of the cities of tweets, followed by the end offset of the last tweet (the array can be
+	 *         longer than size + 1, and must not be modified)
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 *
+	 * @return cities of all tweets (the array can be longer than the number of cities, and must not be modified)
+	 */
+	public int[] getCities() {
+		return cities;
+	}
+}
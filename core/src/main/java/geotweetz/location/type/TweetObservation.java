@@ -0,0 +1,218 @@
+package geotweetz.location.type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import geotweetz.location.dbo.TweetDBO;
+
+/**
+ * Immutable input record for the estimator that keeps only the attributes of a tweet that are used in event
+ * localization. Unlike TweetDBO, it is not a persistent entity and has value semantics, so observations can be created
+ * directly from a parsed stream of tweets and used as keys in hash-based collections.
+ *
+ * @author oozdikis
+ *
+ */
+public final class TweetObservation {
+
+	/**
+	 * Posting time of an observation whose posting time is not known.
+	 */
+	public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Latitude and longitude of an observation that is not geotagged.
+	 */
+	public static final double NO_COORDINATE = Double.NaN;
+
+	/**
+	 * tweet id received from Twitter
+	 */
+	private final long id;
+
+	/**
+	 * latitude of tweet, or NO_COORDINATE
+	 */
+	private final double latitude;
+
+	/**
+	 * longitude of tweet, or NO_COORDINATE
+	 */
+	private final double longitude;
+
+	/**
+	 * tweet content (tweet text)
+	 */
+	private final String content;
+
+	/**
+	 * location attribute in the profile of the user who posted the tweet
+	 */
+	private final String userLocation;
+
+	/**
+	 * posting time of tweet in milliseconds, or UNKNOWN_TIME
+	 */
+	private final long createdAtMillis;
+
+	/**
+	 *
+	 * @param id
+	 *            tweet id
+	 * @param latitude
+	 *            latitude of tweet, or NO_COORDINATE if the tweet is not geotagged
+	 * @param longitude
+	 *            longitude of tweet, or NO_COORDINATE if the tweet is not geotagged
+	 * @param content
+	 *            tweet content (tweet text)
+	 * @param userLocation
+	 *            location attribute in the user profile
+	 * @param createdAtMillis
+	 *            posting time of tweet in milliseconds, or UNKNOWN_TIME
+	 */
+	public TweetObservation(long id, double latitude, double longitude, String content, String userLocation,
+			long createdAtMillis) {
+		this.id = id;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.content = content;
+		this.userLocation = userLocation;
+		this.createdAtMillis = createdAtMillis;
+	}
+
+	/**
+	 * Creates an observation from a tweet database object. If the tweet is not geotagged (see TweetDBO.hasCoordinates),
+	 * the observation has no coordinates.
+	 *
+	 * @param tweet
+	 *            tweet database object
+	 * @return observation with the attributes of the tweet
+	 */
+	public static TweetObservation fromTweetDBO(TweetDBO tweet) {
+		long createdAtMillis = tweet.getCreatedAt() != null ? tweet.getCreatedAt().getTime() : UNKNOWN_TIME;
+		if (!tweet.hasCoordinates()) {
+			return new TweetObservation(tweet.getId(), NO_COORDINATE, NO_COORDINATE, tweet.getContent(),
+					tweet.getUserLocation(), createdAtMillis);
+		}
+		return new TweetObservation(tweet.getId(), tweet.getLatitude(), tweet.getLongitude(), tweet.getContent(),
+				tweet.getUserLocation(), createdAtMillis);
+	}
+
+	/**
+	 * Creates observations from tweet database objects.
+	 *
+	 * @param tweets
+	 *            tweet database objects
+	 * @return observations in the same order with the given tweets
+	 */
+	public static List<TweetObservation> fromTweetDBOs(List<TweetDBO> tweets) {
+		List<TweetObservation> observations = new ArrayList<TweetObservation>(tweets.size());
+		for (TweetDBO tweet : tweets) {
+			observations.add(fromTweetDBO(tweet));
+		}
+		return observations;
+	}
+
+	/**
+	 *
+	 * @return tweet id
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 *
+	 * @return latitude of tweet, or NO_COORDINATE
+	 */
+	public double getLatitude() {
+		return latitude;
+	}
+
+	/**
+	 *
+	 * @return longitude of tweet, or NO_COORDINATE
+	 */
+	public double getLongitude() {
+		return longitude;
+	}
+
+	/**
+	 *
+	 * @return true if the observation is geotagged (see hasCoordinates(double, double))
+	 */
+	public boolean hasCoordinates() {
+		return hasCoordinates(latitude, longitude);
+	}
+
+	/**
+	 * Checks if a position is the position of a geotagged tweet. NO_COORDINATE (NaN) is not a coordinate. The position
+	 * (0, 0) of tweets that are not geotagged in the database is converted to NO_COORDINATE when observations are
+	 * created from them (see fromTweetDBO), so it is a coordinate here.
+	 *
+	 * @param latitude
+	 *            latitude
+	 * @param longitude
+	 *            longitude
+	 * @return true if neither the latitude nor the longitude is NO_COORDINATE
+	 */
+	public static boolean hasCoordinates(double latitude, double longitude) {
+		return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+	}
+
+	/**
+	 *
+	 * @return tweet content (tweet text)
+	 */
+	public String getContent() {
+		return content;
+	}
+
+	/**
+	 *
+	 * @return location attribute in the user profile
+	 */
+	public String getUserLocation() {
+		return userLocation;
+	}
+
+	/**
+	 *
+	 * @return posting time of tweet in milliseconds, or UNKNOWN_TIME
+	 */
+	public long getCreatedAtMillis() {
+		return createdAtMillis;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TweetObservation)) {
+			return false;
+		}
+		TweetObservation other = (TweetObservation) obj;
+		return id == other.id && Double.compare(latitude, other.latitude) == 0
+				&& Double.compare(longitude, other.longitude) == 0 && createdAtMillis == other.createdAtMillis
+				&& (content == null ? other.content == null : content.equals(other.content))
+				&& (userLocation == null ? other.userLocation == null : userLocation.equals(other.userLocation));
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = (int) (id ^ (id >>> 32));
+		long latitudeBits = Double.doubleToLongBits(latitude);
+		long longitudeBits = Double.doubleToLongBits(longitude);
+		hash = 31 * hash + (int) (latitudeBits ^ (latitudeBits >>> 32));
+		hash = 31 * hash + (int) (longitudeBits ^ (longitudeBits >>> 32));
+		hash = 31 * hash + (content != null ? content.hashCode() : 0);
+		hash = 31 * hash + (userLocation != null ? userLocation.hashCode() : 0);
+		hash = 31 * hash + (int) (createdAtMillis ^ (createdAtMillis >>> 32));
+		return hash;
+	}
+
+	public String toString() {
+		return "(tweet: " + id + ", " + content + ")";
+	}
+}
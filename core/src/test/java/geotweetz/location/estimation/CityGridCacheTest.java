@@ -0,0 +1,156 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Test class to test CityGridCache.
+ *
+ * @author oozdikis
+ *
+ */
+public class CityGridCacheTest {
+	/**
+	 * Tests GPS mapping with a grid (mappings must be the same with the mappings without a grid, and most positions
+	 * must be resolved by the grid)
+	 */
+	@Test
+	public void testMappingWithGrid() {
+		CityGazetteer cityGazetteer = TestGazetteers.generateJaggedCities(new Random(71));
+		TweetLocationMapper expectedMapper = new TweetLocationMapper(cityGazetteer);
+		TweetLocationMapper gridMapper = new TweetLocationMapper(cityGazetteer);
+		CityGridCache cityGridCache = new CityGridCache(cityGazetteer, 0.02);
+		gridMapper.setCityGridCache(cityGridCache);
+		Assert.assertTrue(cityGridCache.getNumberOfBoundaryCells() > 0);
+		Assert.assertTrue(cityGridCache.getNumberOfCells() > cityGridCache.getNumberOfBoundaryCells());
+
+		Random random = new Random(73);
+		List<TweetObservation> observations = new ArrayList<TweetObservation>();
+		for (int i = 0; i < 5000; i++) {
+			double latitude = 4 * random.nextDouble() - 0.5;
+			double longitude = 2 * random.nextDouble() - 0.5;
+			if (i % 10 == 0) {
+				// positions on cell edges and on city boundaries
+				latitude = Math.round(latitude * 10) / 10.0;
+				longitude = Math.round(longitude * 10) / 10.0;
+			}
+			TweetObservation observation = new TweetObservation(i, latitude, longitude, null, null,
+					TweetObservation.UNKNOWN_TIME);
+			observations.add(observation);
+			Assert.assertEquals(gridMapper.mapTweetToCitiesUsingLatitudeLongitude(observation),
+					expectedMapper.mapTweetToCitiesUsingLatitudeLongitude(observation));
+		}
+		TweetBatch tweetBatch = TweetBatch.fromObservations(observations);
+		TweetCityMapping expectedMapping = new TweetCityMapping();
+		TweetCityMapping mapping = new TweetCityMapping();
+		expectedMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, expectedMapping);
+		gridMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, mapping);
+		Assert.assertEquals(mapping.size(), expectedMapping.size());
+		for (int tweet = 0; tweet < tweetBatch.size(); tweet++) {
+			Assert.assertEquals(citiesOfTweet(mapping, tweet), citiesOfTweet(expectedMapping, tweet));
+		}
+
+		Assert.assertEquals(cityGridCache.getHitCount() + cityGridCache.getMissCount(), 10000);
+		Assert.assertTrue(cityGridCache.getHitRate() > 0.7);
+	}
+
+	/**
+	 * Tests that cells in overlapping cities are passed to the locator, and that positions without coordinates are not
+	 */
+	@Test
+	public void testOverlappingCitiesAndInvalidPositions() {
+		CityGazetteer cityGazetteer = new CityGazetteer(new long[] { 1, 2 }, new String[] { "a", "b" },
+				new Polygon[] { TestGazetteers.createSquare(0, 0, 1), TestGazetteers.createSquare(0.5, 0, 1) });
+		TweetLocationMapper gridMapper = new TweetLocationMapper(cityGazetteer);
+		CityGridCache cityGridCache = new CityGridCache(cityGazetteer, 0.1);
+		gridMapper.setCityGridCache(cityGridCache);
+
+		Assert.assertEquals(gridMapper.mapTweetToCitiesUsingLatitudeLongitude(observationAt(0.25, 0.55)),
+				idSet(1L));
+		Assert.assertEquals(gridMapper.mapTweetToCitiesUsingLatitudeLongitude(observationAt(0.75, 0.55)),
+				idSet(1L, 2L));
+		Assert.assertEquals(gridMapper.mapTweetToCitiesUsingLatitudeLongitude(observationAt(1.25, 0.55)),
+				idSet(2L));
+		Assert.assertEquals(gridMapper.mapTweetToCitiesUsingLatitudeLongitude(observationAt(5, 5)), idSet());
+		Assert.assertEquals(gridMapper.mapTweetToCitiesUsingLatitudeLongitude(observationAt(Double.NaN, 0.5)),
+				idSet());
+		Assert.assertEquals(cityGridCache.getMissCount(), 1);
+	}
+
+	/**
+	 * Tests that a grid can not be created with an invalid cell size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCellSize() {
+		new CityGridCache(TestGazetteers.generateJaggedCities(new Random(79)), 0);
+	}
+
+	/**
+	 * Tests that a grid can not be set for a mapper of another gazetteer
+	 */
+	@Test
+	public void testGridOfOtherGazetteer() {
+		CityGazetteer cityGazetteer = TestGazetteers.generateJaggedCities(new Random(83));
+		CityGridCache cityGridCache = new CityGridCache(cityGazetteer, 0.1);
+		new TweetLocationMapper(TestGazetteers.generateJaggedCities(new Random(89))).setCityGridCache(cityGridCache);
+
+		TweetLocationMapper otherMapper = new TweetLocationMapper(new CityGazetteer(new long[] { 4, 3, 2, 1 },
+				new String[] { "d", "c", "b", "a" }, new Polygon[] { cityGazetteer.getCityBoundary(3),
+						cityGazetteer.getCityBoundary(2), cityGazetteer.getCityBoundary(1),
+						cityGazetteer.getCityBoundary(0) }));
+		try {
+			otherMapper.setCityGridCache(cityGridCache);
+			Assert.fail("Grid of another gazetteer is set");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertNull(otherMapper.getCityGridCache());
+	}
+
+	/**
+	 * Tests that a grid can not be built from a gazetteer without boundaries (e.g., the gazetteer of a spatial database
+	 * locator), since it would resolve every position as outside all cities
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testGridWithoutBoundaries() {
+		CityGazetteer cityGazetteer = TestGazetteers.generateJaggedCities(new Random(97));
+		Polygon[] emptyBoundaries = new Polygon[cityGazetteer.size()];
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			emptyBoundaries[city] = TestGazetteers.withEmptyBoundary(cityGazetteer, city).getCityBoundary(city);
+		}
+		new CityGridCache(new CityGazetteer(new long[] { 1, 2, 3, 4 }, new String[] { "a", "b", "c", "d" },
+				emptyBoundaries), 0.1);
+	}
+
+	private static TweetObservation observationAt(double latitude, double longitude) {
+		return new TweetObservation(0, latitude, longitude, null, null, TweetObservation.UNKNOWN_TIME);
+	}
+
+	private static HashSet<Long> idSet(Long... ids) {
+		HashSet<Long> set = new HashSet<Long>();
+		for (Long id : ids) {
+			set.add(id);
+		}
+		return set;
+	}
+
+	private HashSet<Integer> citiesOfTweet(TweetCityMapping mapping, int tweet) {
+		HashSet<Integer> cities = new HashSet<Integer>();
+		for (int i = mapping.getOffsets()[tweet]; i < mapping.getOffsets()[tweet + 1]; i++) {
+			cities.add(mapping.getCities()[i]);
+		}
+		return cities;
+	}
+}
@@ -0,0 +1,168 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Test class to test CityNameCache.
+ *
+ * @author oozdikis
+ *
+ */
+public class CityNameCacheTest {
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+	private static final String[] CITY_NAMES = { "Istanbul", "Turkey", "New York", "NYC", "York", "İzmir",
+			"San Jose" };
+
+	/**
+	 * Tests that texts with the same terms (ignoring case and delimiters) have the same normalized text
+	 */
+	@Test
+	public void testNormalizeText() {
+		Assert.assertEquals(normalizeText("Istanbul, TURKEY"), "istanbul turkey");
+		Assert.assertEquals(normalizeText("  istanbul/turkey!! "), "istanbul turkey");
+		Assert.assertEquals(normalizeText(" ,. "), "");
+	}
+
+	/**
+	 * Tests profile mapping with a cache (mappings must be the same with the mappings without a cache, and repeated
+	 * texts must be found in the cache)
+	 */
+	@Test
+	public void testProfileMappingWithCache() {
+		CityGazetteer cityGazetteer = generateTestGazetteer();
+		TweetLocationMapper expectedMapper = new TweetLocationMapper(cityGazetteer);
+		TweetLocationMapper cachingMapper = new TweetLocationMapper(cityGazetteer);
+		CityNameCache cityNameCache = new CityNameCache(1000);
+		cachingMapper.setCityNameCache(cityNameCache);
+		List<TweetDBO> tweets = generateTestTweets(2000, 20, new Random(61));
+
+		HashMap<TweetDBO, HashSet<Long>> expectedMappings = expectedMapper.mapTweetsToCitiesUsingProfile(tweets);
+		HashMap<TweetDBO, HashSet<Long>> mappings = cachingMapper.mapTweetsToCitiesUsingProfile(tweets);
+		for (TweetDBO tweet : tweets) {
+			Assert.assertEquals(mappings.get(tweet), expectedMappings.get(tweet));
+		}
+		TweetBatch tweetBatch = TweetBatch.fromTweetDBOs(tweets);
+		TweetCityMapping expectedMapping = new TweetCityMapping();
+		TweetCityMapping mapping = new TweetCityMapping();
+		expectedMapper.mapBatchToCitiesUsingProfile(tweetBatch, expectedMapping);
+		cachingMapper.mapBatchToCitiesUsingProfile(tweetBatch, mapping);
+		Assert.assertEquals(mapping.size(), expectedMapping.size());
+		for (int tweet = 0; tweet < tweets.size(); tweet++) {
+			Assert.assertEquals(citiesOfTweet(mapping, tweet), citiesOfTweet(expectedMapping, tweet));
+		}
+
+		Assert.assertTrue(cityNameCache.size() <= 20);
+		Assert.assertEquals(cityNameCache.getMissCount(), cityNameCache.size());
+		Assert.assertTrue(cityNameCache.getHitRate() > 0.9);
+		Assert.assertEquals(cityNameCache.getEvictionCount(), 0);
+	}
+
+	/**
+	 * Tests that the least recently used texts are evicted when the cache is full, and that mappings are still correct
+	 */
+	@Test
+	public void testEviction() {
+		CityGazetteer cityGazetteer = generateTestGazetteer();
+		TweetLocationMapper expectedMapper = new TweetLocationMapper(cityGazetteer);
+		TweetLocationMapper cachingMapper = new TweetLocationMapper(cityGazetteer);
+		CityNameCache cityNameCache = new CityNameCache(16);
+		cachingMapper.setCityNameCache(cityNameCache);
+		for (TweetDBO tweet : generateTestTweets(2000, 500, new Random(67))) {
+			Assert.assertEquals(cachingMapper.mapTweetToCitiesUsingProfile(tweet),
+					expectedMapper.mapTweetToCitiesUsingProfile(tweet));
+		}
+		Assert.assertTrue(cityNameCache.size() <= 16);
+		Assert.assertTrue(cityNameCache.getEvictionCount() > 0);
+		Assert.assertEquals(cityNameCache.getMissCount(), cityNameCache.size() + cityNameCache.getEvictionCount());
+		cityNameCache.clear();
+		Assert.assertEquals(cityNameCache.size(), 0);
+	}
+
+	/**
+	 * Tests that a cache can be shared by mappers of the same gazetteer, and that it can not be set for a mapper of
+	 * another gazetteer
+	 */
+	@Test
+	public void testCacheIsBoundToGazetteer() {
+		CityGazetteer cityGazetteer = generateTestGazetteer();
+		CityNameCache cityNameCache = new CityNameCache(100);
+		new TweetLocationMapper(cityGazetteer).setCityNameCache(cityNameCache);
+		new TweetLocationMapper(generateTestGazetteer()).setCityNameCache(cityNameCache); // same cities
+
+		String[] otherNames = { "Ankara", "Turkey" };
+		CityGazetteer otherGazetteer = new CityGazetteer(new long[] { 1, 2 }, otherNames,
+				new Polygon[] { cityGazetteer.getCityBoundary(0), cityGazetteer.getCityBoundary(1) });
+		TweetLocationMapper otherMapper = new TweetLocationMapper(otherGazetteer);
+		try {
+			otherMapper.setCityNameCache(cityNameCache);
+			Assert.fail("Cache of another gazetteer is set");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertNull(otherMapper.getCityNameCache());
+		otherMapper.setCityNameCache(null);
+	}
+
+	private static String normalizeText(String text) {
+		return CityNameMatcher.normalizeText(text.toCharArray(), 0, text.length());
+	}
+
+	private HashSet<Integer> citiesOfTweet(TweetCityMapping mapping, int tweet) {
+		HashSet<Integer> cities = new HashSet<Integer>();
+		for (int i = mapping.getOffsets()[tweet]; i < mapping.getOffsets()[tweet + 1]; i++) {
+			cities.add(mapping.getCities()[i]);
+		}
+		return cities;
+	}
+
+	private static CityGazetteer generateTestGazetteer() {
+		long[] ids = new long[CITY_NAMES.length];
+		Polygon[] boundaries = new Polygon[CITY_NAMES.length];
+		for (int city = 0; city < CITY_NAMES.length; city++) {
+			ids[city] = 1 + city;
+			boundaries[city] = GEOMETRY_FACTORY.createPolygon(GEOMETRY_FACTORY.createLinearRing(new Coordinate[] {
+					new Coordinate(city, 0), new Coordinate(city + 1, 0), new Coordinate(city + 1, 1),
+					new Coordinate(city, 1), new Coordinate(city, 0) }), null);
+		}
+		return new CityGazetteer(ids, CITY_NAMES, boundaries);
+	}
+
+	/**
+	 * Generates tweets whose user locations are chosen from a given number of distinct texts, written with different
+	 * cases and delimiters.
+	 */
+	private static List<TweetDBO> generateTestTweets(int numberOfTweets, int numberOfTexts, Random random) {
+		String[] texts = new String[numberOfTexts];
+		for (int i = 0; i < numberOfTexts; i++) {
+			texts[i] = CITY_NAMES[random.nextInt(CITY_NAMES.length)] + " " + i;
+			if (random.nextBoolean()) {
+				texts[i] += ", " + CITY_NAMES[random.nextInt(CITY_NAMES.length)];
+			}
+		}
+		List<TweetDBO> tweets = new ArrayList<TweetDBO>();
+		for (int i = 0; i < numberOfTweets; i++) {
+			TweetDBO tweet = new TweetDBO();
+			tweet.setId(i);
+			String text = texts[random.nextInt(numberOfTexts)];
+			tweet.setUserLocation(random.nextInt(10) == 0 ? null : random.nextBoolean() ? text.toUpperCase() : text);
+			tweets.add(tweet);
+		}
+		return tweets;
+	}
+}
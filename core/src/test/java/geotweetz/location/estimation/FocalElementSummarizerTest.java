@@ -0,0 +1,127 @@
+package geotweetz.location.estimation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import geotweetz.location.estimation.FocalElementSummarizer.MergeTarget;
+import geotweetz.location.type.FocalElementTable;
+
+/**
+ * Test class to test FocalElementSummarizer.
+ *
+ * @author oozdikis
+ *
+ */
+public class FocalElementSummarizerTest {
+	private static final long[] THETA = new long[] { 0xFL };
+
+	/**
+	 * Tests that only the focal elements with the highest probability values are kept, and the others are merged into
+	 * their union
+	 */
+	@Test
+	public void testSummarizationWithMaximumNumberOfFocalElements() {
+		FocalElementTable bpas = generateTestTable(0.4, 0.3, 0.2, 0.1);
+		FocalElementSummarizer summarizer = new FocalElementSummarizer(3, 0, MergeTarget.UNION);
+		Assert.assertTrue(summarizer.needsSummarization(bpas));
+		FocalElementTable summarizedBpas = new FocalElementTable(1);
+		double movedProbabilityValue = summarizer.summarize(bpas, summarizedBpas, THETA);
+
+		Assert.assertEquals(movedProbabilityValue, 0.3, 1e-15);
+		Assert.assertEquals(summarizedBpas.size(), 3);
+		assertProbabilityValue(summarizedBpas, 0x1L, 0.4);
+		assertProbabilityValue(summarizedBpas, 0x2L, 0.3);
+		assertProbabilityValue(summarizedBpas, 0xCL, 0.3);
+		assertCommonalityErrors(bpas, summarizedBpas, movedProbabilityValue);
+		Assert.assertFalse(summarizer.needsSummarization(summarizedBpas));
+	}
+
+	/**
+	 * Tests that focal elements with the same probability value are kept in the order of the table
+	 */
+	@Test
+	public void testSummarizationWithTies() {
+		FocalElementTable bpas = generateTestTable(0.25, 0.25, 0.25, 0.25);
+		FocalElementTable summarizedBpas = new FocalElementTable(1);
+		double movedProbabilityValue = new FocalElementSummarizer(3, 0, MergeTarget.UNION).summarize(bpas,
+				summarizedBpas, THETA);
+
+		Assert.assertEquals(movedProbabilityValue, 0.5, 1e-15);
+		Assert.assertEquals(summarizedBpas.size(), 3);
+		assertProbabilityValue(summarizedBpas, 0x1L, 0.25);
+		assertProbabilityValue(summarizedBpas, 0x2L, 0.25);
+		assertProbabilityValue(summarizedBpas, 0xCL, 0.5);
+		assertCommonalityErrors(bpas, summarizedBpas, movedProbabilityValue);
+	}
+
+	/**
+	 * Tests that focal elements with small probability values are merged into Theta, or into their union (no
+	 * probability is moved if a single focal element is merged into itself)
+	 */
+	@Test
+	public void testSummarizationWithMinimumProbabilityValue() {
+		FocalElementTable bpas = generateTestTable(0.4, 0.3, 0.2, 0.1);
+		FocalElementTable summarizedBpas = new FocalElementTable(1);
+		double movedProbabilityValue = new FocalElementSummarizer(10, 0.15, MergeTarget.THETA).summarize(bpas,
+				summarizedBpas, THETA);
+		Assert.assertEquals(movedProbabilityValue, 0.1, 1e-15);
+		Assert.assertEquals(summarizedBpas.size(), 4);
+		assertProbabilityValue(summarizedBpas, 0xFL, 0.1);
+		assertCommonalityErrors(bpas, summarizedBpas, movedProbabilityValue);
+
+		movedProbabilityValue = new FocalElementSummarizer(10, 0.15, MergeTarget.UNION).summarize(bpas,
+				summarizedBpas, THETA);
+		Assert.assertEquals(movedProbabilityValue, 0, 0);
+		Assert.assertEquals(summarizedBpas.size(), 4);
+		assertProbabilityValue(summarizedBpas, 0x8L, 0.1);
+
+		Assert.assertFalse(new FocalElementSummarizer(4, 0.1, MergeTarget.UNION).needsSummarization(bpas));
+	}
+
+	/**
+	 * Tests that a summarizer can not be created with an invalid minimum probability value
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMinimumProbabilityValue() {
+		new FocalElementSummarizer(10, 1, MergeTarget.UNION);
+	}
+
+	/**
+	 * Generates a table with the focal elements {0}, {1}, {2}, ... with the given probability values.
+	 */
+	private static FocalElementTable generateTestTable(double... probabilityValues) {
+		FocalElementTable bpas = new FocalElementTable(1);
+		for (int i = 0; i < probabilityValues.length; i++) {
+			bpas.addProbabilityValue(new long[] { 1L << i }, 0, probabilityValues[i]);
+		}
+		return bpas;
+	}
+
+	private static void assertProbabilityValue(FocalElementTable bpas, long focalElement, double probabilityValue) {
+		int element = bpas.indexOf(new long[] { focalElement }, 0);
+		Assert.assertTrue(element >= 0);
+		Assert.assertEquals(bpas.getProbabilityValue(element), probabilityValue, 1e-15);
+	}
+
+	/**
+	 * Asserts that commonality values of locations can only increase, and not more than the moved probability.
+	 */
+	private static void assertCommonalityErrors(FocalElementTable bpas, FocalElementTable summarizedBpas,
+			double movedProbabilityValue) {
+		for (int location = 0; location < 4; location++) {
+			double error = commonality(summarizedBpas, location) - commonality(bpas, location);
+			Assert.assertTrue(error >= -1e-15);
+			Assert.assertTrue(error <= movedProbabilityValue + 1e-15);
+		}
+	}
+
+	private static double commonality(FocalElementTable bpas, int location) {
+		double commonality = 0;
+		for (int element = 0; element < bpas.size(); element++) {
+			if ((bpas.getWords()[element] & (1L << location)) != 0) {
+				commonality += bpas.getProbabilityValue(element);
+			}
+		}
+		return commonality;
+	}
+}
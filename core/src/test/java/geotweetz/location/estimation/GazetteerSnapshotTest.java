@@ -0,0 +1,221 @@
+package geotweetz.location.estimation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Test class to test GazetteerSnapshot and GazetteerSnapshotCompiler.
+ *
+ * @author oozdikis
+ *
+ */
+public class GazetteerSnapshotTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Tests tweet-location mapping with a snapshot (mappings must be the same with the mappings of the gazetteer that
+	 * the snapshot is written from)
+	 */
+	@Test
+	public void testSnapshotMappingsMatchGazetteerMappings() throws IOException {
+		CityGazetteer cityGazetteer = generateTestGazetteer(600, new Random(23));
+		File snapshotFile = temporaryFolder.newFile("cities.snapshot");
+		GazetteerSnapshot.write(cityGazetteer, snapshotFile);
+		GazetteerSnapshot gazetteerSnapshot = GazetteerSnapshot.load(snapshotFile);
+		Assert.assertEquals(gazetteerSnapshot.size(), cityGazetteer.size());
+
+		TweetLocationMapper expectedMapper = new TweetLocationMapper(cityGazetteer);
+		TweetLocationMapper snapshotMapper = new TweetLocationMapper(gazetteerSnapshot);
+		List<TweetDBO> tweets = TestGazetteers.generateTestTweets(cityGazetteer, 3000, 105, new Random(29));
+		assertSameMappings(expectedMapper.mapTweetsToCitiesUsingLatitudeLongitude(tweets),
+				snapshotMapper.mapTweetsToCitiesUsingLatitudeLongitude(tweets));
+		assertSameMappings(expectedMapper.mapTweetsToCitiesUsingContent(tweets),
+				snapshotMapper.mapTweetsToCitiesUsingContent(tweets));
+		assertSameMappings(expectedMapper.mapTweetsToCitiesUsingProfile(tweets),
+				snapshotMapper.mapTweetsToCitiesUsingProfile(tweets));
+
+		TweetBatch tweetBatch = TweetBatch.fromTweetDBOs(tweets);
+		TweetCityMapping expectedMapping = new TweetCityMapping();
+		TweetCityMapping snapshotMapping = new TweetCityMapping();
+		expectedMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, expectedMapping);
+		snapshotMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, snapshotMapping);
+		assertSameMappings(expectedMapping, snapshotMapping);
+		expectedMapper.mapBatchToCitiesUsingContent(tweetBatch, expectedMapping);
+		snapshotMapper.mapBatchToCitiesUsingContent(tweetBatch, snapshotMapping);
+		assertSameMappings(expectedMapping, snapshotMapping);
+	}
+
+	/**
+	 * Tests location estimation with a snapshot (results must be the same with the estimation using the gazetteer)
+	 */
+	@Test
+	public void testEstimateLocationWithSnapshot() throws IOException {
+		CityGazetteer cityGazetteer = generateTestGazetteer(50, new Random(31));
+		File snapshotFile = temporaryFolder.newFile("cities.snapshot");
+		GazetteerSnapshot.write(cityGazetteer, snapshotFile);
+		LocationEstimator expectedEstimator = new LocationEstimator(cityGazetteer);
+		LocationEstimator snapshotEstimator = new LocationEstimator(GazetteerSnapshot.load(snapshotFile));
+		Random random = new Random(37);
+		for (int cluster = 0; cluster < 20; cluster++) {
+			List<TweetDBO> tweets = TestGazetteers.generateTestTweets(cityGazetteer, 1 + random.nextInt(100), 105,
+					random);
+			ArrayList<LocationCommonalityValue> expectedLocations = expectedEstimator.estimateLocationForCluster(tweets);
+			ArrayList<LocationCommonalityValue> estimatedLocations = snapshotEstimator.estimateLocationForCluster(tweets);
+			Assert.assertEquals(estimatedLocations.size(), expectedLocations.size());
+			for (int i = 0; i < expectedLocations.size(); i++) {
+				Assert.assertEquals(estimatedLocations.get(i).getLocationId(), expectedLocations.get(i).getLocationId());
+				Assert.assertEquals(estimatedLocations.get(i).getCommonalityValue(),
+						expectedLocations.get(i).getCommonalityValue(), 0);
+			}
+		}
+	}
+
+	/**
+	 * Tests that the cities in a snapshot are the same with the cities in the compiled city list, and that a snapshot
+	 * file can be replaced while it is mapped
+	 */
+	@Test
+	public void testCompileCityList() throws IOException {
+		String cityList = "# id, name, boundary\n" + "1\tNew York\tPOLYGON ((0 0, 2 0, 2 2, 0 2, 0 0))\n" + "\n"
+				+ "2\tİzmir\tPOLYGON ((3 0, 6 0, 6 3, 3 3, 3 0), (4 1, 5 1, 5 2, 4 2, 4 1))\n" + "3\t\tPOLYGON EMPTY\n";
+		CityGazetteer cityGazetteer = GazetteerSnapshotCompiler.readCityGazetteer(new StringReader(cityList));
+		Assert.assertEquals(cityGazetteer.size(), 3);
+		File snapshotFile = temporaryFolder.newFile("cities.snapshot");
+		GazetteerSnapshot.write(cityGazetteer, snapshotFile);
+		GazetteerSnapshot gazetteerSnapshot = GazetteerSnapshot.load(snapshotFile);
+		GazetteerSnapshot.write(generateTestGazetteer(10, new Random(41)), snapshotFile);
+
+		CityGazetteer loadedGazetteer = gazetteerSnapshot.toCityGazetteer();
+		Assert.assertEquals(loadedGazetteer.size(), cityGazetteer.size());
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			Assert.assertEquals(loadedGazetteer.getCityId(city), cityGazetteer.getCityId(city));
+			Assert.assertEquals(loadedGazetteer.getCityName(city), cityGazetteer.getCityName(city));
+			Assert.assertTrue(loadedGazetteer.getCityBoundary(city).equalsExact(cityGazetteer.getCityBoundary(city)));
+		}
+		TweetLocationMapper snapshotMapper = new TweetLocationMapper(gazetteerSnapshot);
+		TweetDBO tweet = new TweetDBO();
+		tweet.setLatitude(4.5);
+		tweet.setLongitude(1.5);
+		tweet.setContent("NEW york and izmir");
+		Assert.assertTrue(snapshotMapper.mapTweetToCitiesUsingLatitudeLongitude(tweet).isEmpty()); // in the hole
+		Assert.assertEquals(snapshotMapper.mapTweetToCitiesUsingContent(tweet), new HashSet<Long>(Arrays.asList(1L,
+				2L)));
+		tweet.setLatitude(3.5);
+		Assert.assertEquals(snapshotMapper.mapTweetToCitiesUsingLatitudeLongitude(tweet),
+				new HashSet<Long>(Arrays.asList(2L)));
+		Assert.assertEquals(GazetteerSnapshot.load(snapshotFile).size(), 10);
+	}
+
+	/**
+	 * Tests that a file that is not a snapshot is rejected
+	 */
+	@Test(expected = IOException.class)
+	public void testLoadInvalidSnapshot() throws IOException {
+		File invalidFile = temporaryFolder.newFile("invalid.snapshot");
+		FileOutputStream output = new FileOutputStream(invalidFile);
+		try {
+			output.write(new byte[1000]);
+		} finally {
+			output.close();
+		}
+		GazetteerSnapshot.load(invalidFile);
+	}
+
+	/**
+	 * Tests that a truncated snapshot is rejected when it is loaded
+	 */
+	@Test
+	public void testLoadTruncatedSnapshot() throws IOException {
+		File snapshotFile = temporaryFolder.newFile("cities.snapshot");
+		GazetteerSnapshot.write(generateTestGazetteer(50, new Random(43)), snapshotFile);
+		byte[] data = Files.readAllBytes(snapshotFile.toPath());
+		for (int length : new int[] { 16, data.length / 2, data.length - 8, data.length - 1 }) {
+			File truncatedFile = temporaryFolder.newFile("truncated-" + length + ".snapshot");
+			Files.write(truncatedFile.toPath(), Arrays.copyOf(data, length));
+			try {
+				GazetteerSnapshot.load(truncatedFile);
+				Assert.fail("Snapshot truncated to " + length + " bytes is loaded");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Tests that a snapshot is rejected when the length of any of its sections in the header does not match the other
+	 * sections (the file is not truncated, so only the sizes of the sections are inconsistent)
+	 */
+	@Test
+	public void testLoadSnapshotWithInconsistentSections() throws IOException {
+		File snapshotFile = temporaryFolder.newFile("cities.snapshot");
+		GazetteerSnapshot.write(generateTestGazetteer(50, new Random(47)), snapshotFile);
+		byte[] data = Files.readAllBytes(snapshotFile.toPath());
+		int numberOfSections = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt(8);
+		for (int section = 0; section < numberOfSections; section++) {
+			ByteBuffer corruptData = ByteBuffer.wrap(data.clone()).order(ByteOrder.LITTLE_ENDIAN);
+			int lengthPosition = 24 + 16 * section;
+			corruptData.putLong(lengthPosition, corruptData.getLong(lengthPosition) - 8); // 8 bytes shorter
+			File corruptFile = temporaryFolder.newFile("corrupt-" + section + ".snapshot");
+			Files.write(corruptFile.toPath(), corruptData.array());
+			try {
+				GazetteerSnapshot.load(corruptFile);
+				Assert.fail("Snapshot with a shorter section #" + section + " is loaded");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	private void assertSameMappings(HashMap<TweetDBO, HashSet<Long>> expectedMappings,
+			HashMap<TweetDBO, HashSet<Long>> mappings) {
+		Assert.assertEquals(mappings.keySet(), expectedMappings.keySet());
+		for (TweetDBO tweet : expectedMappings.keySet()) {
+			Assert.assertEquals(mappings.get(tweet), expectedMappings.get(tweet));
+		}
+	}
+
+	private void assertSameMappings(TweetCityMapping expectedMapping, TweetCityMapping mapping) {
+		Assert.assertEquals(mapping.size(), expectedMapping.size());
+		for (int tweet = 0; tweet < expectedMapping.size(); tweet++) {
+			Assert.assertEquals(citiesOfTweet(mapping, tweet), citiesOfTweet(expectedMapping, tweet));
+		}
+	}
+
+	private HashSet<Integer> citiesOfTweet(TweetCityMapping mapping, int tweet) {
+		HashSet<Integer> cities = new HashSet<Integer>();
+		for (int i = mapping.getOffsets()[tweet]; i < mapping.getOffsets()[tweet + 1]; i++) {
+			cities.add(mapping.getCities()[i]);
+		}
+		return cities;
+	}
+
+	/**
+	 * Generates cities with square boundaries, and an empty boundary for the first city.
+	 */
+	private static CityGazetteer generateTestGazetteer(int numberOfCities, Random random) {
+		return TestGazetteers.withEmptyBoundary(TestGazetteers.generateSquareCities(numberOfCities, 100, random), 0);
+	}
+}
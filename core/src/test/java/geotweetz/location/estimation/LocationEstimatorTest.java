@@ -0,0 +1,895 @@
+package geotweetz.location.estimation;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.PropertyConfigurator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.CoordinateArraySequence;
+
+import geotweetz.location.dbo.CityDBO;
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.BeliefFunction;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.DenseBeliefFunction;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.LocationSet;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetObservation;
+
+/**
+ * Test class to test LocationEstimator.
+ * 
+ * @author oozdikis
+ *
+ */
+public class LocationEstimatorTest {
+	private static final int NUMBER_OF_CITIES_IN_TESTS = 10;
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+	private List<CityDBO> testCitiesInCountry = null;
+
+	@Before
+	public void initialize() {
+		configureLog4j();
+		this.testCitiesInCountry = generateTestCitiesInCountry();
+	}
+
+	/**
+	 * Tests location estimation (single location has the highest commonality)
+	 */
+	@Test
+	public void testEstimateLocationForClusterSingleResult() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+
+		// Calculation of BPAs and Commonality values for the given test data below...
+		// BPA GPS: {city1}=1/4, {city2}=1/4, Theta=2/4
+		// BPA Content: {city1}=1/4, {city1, city2}=1/4, Theta=2/4
+		// BPA Profile: {city1}=1/4, Theta=3/4
+		// Combined GPS+Content: {city1}=6/16, {city2}=3/16, {city1, city2}=3/16, Theta=4/16
+		// Combined GPS+Content+Profile: {city1}=31/64, {city2}=9/64, {city1, city2}=12/64, Theta=12/64
+		// Commonality of City1=(31+12+12)/64=55/64=0.859375
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		TweetDBO tweet0 = generateTestTweet(0, "lorem ipsum city1 city2", 0.0, 0.0, "city1");
+		tweetsInCluster.add(tweet0);
+		TweetDBO tweet1 = generateTestTweet(1, "lorem ipsum", 1.5, 0.5, "lorem ipsum");
+		tweetsInCluster.add(tweet1);
+		TweetDBO tweet2 = generateTestTweet(2, "city1", 2.5, 0.5, "lorem ipsum");
+		tweetsInCluster.add(tweet2);
+		TweetDBO tweet3 = generateTestTweet(3, "", 0.0, 0.0, "");
+		tweetsInCluster.add(tweet3);
+		ArrayList<LocationCommonalityValue> highestCityCommonalityValues = locationEstimator
+				.estimateLocationForCluster(tweetsInCluster);
+		Assert.assertEquals(highestCityCommonalityValues.size(), 1);
+		Assert.assertEquals(highestCityCommonalityValues.get(0).getLocationId(), 1L);
+		Assert.assertEquals(highestCityCommonalityValues.get(0).getCommonalityValue(), 0.859375, 1e-15);
+	}
+
+	/**
+	 * Tests location estimation (multiple locations have the highest commonality)
+	 */
+	@Test
+	public void testEstimateLocationForClusterMultipleResults() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+
+		// Calculation of BPAs and Commonality values for the given test data below...
+		// BPA GPS: {city1}=1/4, {city2}=1/4, Theta=2/4
+		// BPA Content: {city1}=1/4, {city2}=1/4, {city1, city2}=1/4, Theta=1/4
+		// BPA Profile: {city1}=1/4, {city2}=1/4, Theta=2/4
+		// Combined GPS+Content: {city1}=5/16, {city2}=5/16, {city1, city2}=4/16, Theta=2/16
+		// Combined GPS+Content+Profile: {city1}=21/64, {city2}=21/64, {city1, city2}=18/64, Theta=4/64
+		// Commonality of City1 and City2 =(21+18+4)/64=43/64=0.671875
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		TweetDBO tweet0 = generateTestTweet(0, "lorem ipsum city1 city2", 0.0, 0.0, "city1");
+		tweetsInCluster.add(tweet0);
+		TweetDBO tweet1 = generateTestTweet(1, "lorem ipsum City2", 1.5, 0.5, "city2 lorem ipsum");
+		tweetsInCluster.add(tweet1);
+		TweetDBO tweet2 = generateTestTweet(2, "city1", 2.5, 0.5, "lorem ipsum");
+		tweetsInCluster.add(tweet2);
+		TweetDBO tweet3 = generateTestTweet(3, "", 0.0, 0.0, "");
+		tweetsInCluster.add(tweet3);
+		ArrayList<LocationCommonalityValue> highestCityCommonalityValues = locationEstimator
+				.estimateLocationForCluster(tweetsInCluster);
+		Assert.assertEquals(highestCityCommonalityValues.size(), 2);
+
+		LocationCommonalityValue commonalityForCity1 = highestCityCommonalityValues.get(0).getLocationId() == 1L
+				? highestCityCommonalityValues.get(0) : highestCityCommonalityValues.get(1);
+		LocationCommonalityValue commonalityForCity2 = highestCityCommonalityValues.get(0).getLocationId() == 2L
+				? highestCityCommonalityValues.get(0) : highestCityCommonalityValues.get(1);
+		Assert.assertEquals(commonalityForCity1.getLocationId(), 1L);
+		Assert.assertEquals(commonalityForCity1.getCommonalityValue(), 0.671875, 1e-15);
+		Assert.assertEquals(commonalityForCity2.getLocationId(), 2L);
+		Assert.assertEquals(commonalityForCity2.getCommonalityValue(), 0.671875, 1e-15);
+	}
+
+	/**
+	 * Tests estimation of the k most likely locations (locations that have the same score with the k-th location must
+	 * also be returned)
+	 */
+	@Test
+	public void testEstimateTopLocationsForCluster() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+
+		// Same test data with testEstimateLocationForClusterSingleResult...
+		// Combined GPS+Content+Profile: {city1}=31/64, {city2}=9/64, {city1, city2}=12/64, Theta=12/64
+		// Commonality of City1=55/64=0.859375, City2=(9+12+12)/64=33/64=0.515625, City3..City10=12/64=0.1875
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		tweetsInCluster.add(generateTestTweet(0, "lorem ipsum city1 city2", 0.0, 0.0, "city1"));
+		tweetsInCluster.add(generateTestTweet(1, "lorem ipsum", 1.5, 0.5, "lorem ipsum"));
+		tweetsInCluster.add(generateTestTweet(2, "city1", 2.5, 0.5, "lorem ipsum"));
+		tweetsInCluster.add(generateTestTweet(3, "", 0.0, 0.0, ""));
+
+		ArrayList<LocationCommonalityValue> topCityCommonalityValues = locationEstimator
+				.estimateTopLocationsForCluster(tweetsInCluster, 2);
+		Assert.assertEquals(topCityCommonalityValues.size(), 2);
+		Assert.assertEquals(topCityCommonalityValues.get(0).getLocationId(), 1L);
+		Assert.assertEquals(topCityCommonalityValues.get(0).getCommonalityValue(), 0.859375, 1e-15);
+		Assert.assertEquals(topCityCommonalityValues.get(1).getLocationId(), 2L);
+		Assert.assertEquals(topCityCommonalityValues.get(1).getCommonalityValue(), 0.515625, 1e-15);
+
+		topCityCommonalityValues = locationEstimator.estimateTopLocationsForCluster(tweetsInCluster, 3);
+		Assert.assertEquals(topCityCommonalityValues.size(), NUMBER_OF_CITIES_IN_TESTS);
+		for (int i = 2; i < NUMBER_OF_CITIES_IN_TESTS; i++) {
+			Assert.assertEquals(topCityCommonalityValues.get(i).getLocationId(), i + 1L);
+			Assert.assertEquals(topCityCommonalityValues.get(i).getCommonalityValue(), 0.1875, 1e-15);
+		}
+
+		// top locations must be a prefix of all locations in descending order of their scores
+		for (List<TweetDBO> cluster : generateRandomTestClusters(50, new Random(19)).values()) {
+			ArrayList<LocationCommonalityValue> allCityCommonalityValues = locationEstimator
+					.estimateTopLocationsForCluster(cluster, NUMBER_OF_CITIES_IN_TESTS);
+			for (int k = 1; k <= Math.min(5, allCityCommonalityValues.size()); k++) {
+				topCityCommonalityValues = locationEstimator.estimateTopLocationsForCluster(cluster, k);
+				for (int i = 0; i < allCityCommonalityValues.size(); i++) {
+					boolean selected = allCityCommonalityValues.get(i).getCommonalityValue() >= allCityCommonalityValues
+							.get(k - 1).getCommonalityValue();
+					Assert.assertEquals(i < topCityCommonalityValues.size(), selected);
+					if (selected) {
+						Assert.assertEquals(topCityCommonalityValues.get(i).getLocationId(),
+								allCityCommonalityValues.get(i).getLocationId());
+					}
+				}
+			}
+			assertSameEstimations(Collections.singletonMap(0, locationEstimator.estimateLocationForCluster(cluster)),
+					Collections.singletonMap(0, locationEstimator.estimateTopLocationsForCluster(cluster, 1)));
+		}
+	}
+
+	/**
+	 * Tests that all locations are returned when the number of locations to estimate is larger than the frame of
+	 * discernment, without allocating memory for k locations
+	 */
+	@Test
+	public void testEstimateTopLocationsLargerThanFrame() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		ArrayList<LocationCommonalityValue> allCityCommonalityValues = locationEstimator
+				.estimateTopLocationsForCluster(generateTestCluster(), NUMBER_OF_CITIES_IN_TESTS);
+		Assert.assertEquals(allCityCommonalityValues.size(), NUMBER_OF_CITIES_IN_TESTS);
+		for (int numberOfLocations : new int[] { NUMBER_OF_CITIES_IN_TESTS + 1, Integer.MAX_VALUE }) {
+			ArrayList<LocationCommonalityValue> topCityCommonalityValues = locationEstimator
+					.estimateTopLocationsForCluster(generateTestCluster(), numberOfLocations);
+			Assert.assertEquals(topCityCommonalityValues.size(), NUMBER_OF_CITIES_IN_TESTS);
+			for (int i = 0; i < NUMBER_OF_CITIES_IN_TESTS; i++) {
+				Assert.assertEquals(topCityCommonalityValues.get(i).getLocationId(),
+						allCityCommonalityValues.get(i).getLocationId());
+				Assert.assertEquals(topCityCommonalityValues.get(i).getCommonalityValue(),
+						allCityCommonalityValues.get(i).getCommonalityValue(), 0);
+			}
+		}
+		Assert.assertEquals(locationEstimator.estimateTopLocationsForBatch(
+				TweetBatch.fromTweetDBOs(generateTestCluster()), Integer.MAX_VALUE).size(), NUMBER_OF_CITIES_IN_TESTS);
+	}
+
+	/**
+	 * Tests that the number of locations to estimate must be positive
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testEstimateTopLocationsWithInvalidNumberOfLocations() {
+		new LocationEstimator(testCitiesInCountry).estimateTopLocationsForCluster(new ArrayList<TweetDBO>(), 0);
+	}
+
+	/**
+	 * Tests the measurements of the stages of estimation, and their export with JMX
+	 */
+	@Test
+	public void testEstimationMetrics() throws Exception {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		CityNameCache cityNameCache = new CityNameCache(100);
+		locationEstimator.getTweetLocationMapper().setCityNameCache(cityNameCache);
+		EstimationStatistics statistics = new EstimationStatistics(locationEstimator.getTweetLocationMapper());
+		locationEstimator.setEstimationMetrics(statistics);
+
+		// Same test data with testEstimateLocationForClusterSingleResult...
+		// BPA GPS: {city1}=1/4, {city2}=1/4, Theta=2/4
+		// BPA Content: {city1}=1/4, {city1, city2}=1/4, Theta=2/4
+		// BPA Profile: {city1}=1/4, Theta=3/4
+		// Conflict GPS+Content: {city2}x{city1}=1/16
+		// Combined GPS+Content: {city1}=6/16, {city2}=3/16, {city1, city2}=3/16, Theta=4/16
+		// Conflict GPS+Content+Profile: {city2}x{city1}=3/64
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		tweetsInCluster.add(generateTestTweet(0, "lorem ipsum city1 city2", 0.0, 0.0, "city1"));
+		tweetsInCluster.add(generateTestTweet(1, "lorem ipsum", 1.5, 0.5, "lorem ipsum"));
+		tweetsInCluster.add(generateTestTweet(2, "city1", 2.5, 0.5, "lorem ipsum"));
+		tweetsInCluster.add(generateTestTweet(3, "", 0.0, 0.0, ""));
+		locationEstimator.estimateLocationForCluster(tweetsInCluster);
+		locationEstimator.estimateLocationForBatch(TweetBatch.fromTweetDBOs(tweetsInCluster));
+
+		Assert.assertEquals(statistics.getNumberOfEstimations(), 2);
+		for (EstimationStage stage : EstimationStage.values()) {
+			long expectedStageCount = stage == EstimationStage.BASIC_PROBABILITY_ASSIGNMENT ? 6
+					: stage == EstimationStage.SUMMARIZATION ? 0 : 2;
+			Assert.assertEquals(statistics.getStageCount(stage), expectedStageCount);
+		}
+		Assert.assertEquals(statistics.getMeanNumberOfFocalElements(EstimationStage.BASIC_PROBABILITY_ASSIGNMENT),
+				8.0 / 3, 1e-15);
+		Assert.assertEquals(statistics.getMeanNumberOfFocalElements(EstimationStage.FIRST_COMBINATION), 4, 0);
+		Assert.assertEquals(statistics.getMeanNumberOfFocalElements(EstimationStage.SECOND_COMBINATION), 4, 0);
+		Assert.assertEquals(statistics.getMeanConflictMass(EstimationStage.FIRST_COMBINATION), 1.0 / 16, 1e-15);
+		Assert.assertEquals(statistics.getMeanConflictMass(EstimationStage.SECOND_COMBINATION), 3.0 / 64, 1e-15);
+		Assert.assertTrue(statistics.getCityNameCacheHitCount() > 0);
+		Assert.assertEquals(statistics.getCityNameCacheHitCount(), cityNameCache.getHitCount());
+		Assert.assertEquals(statistics.getCityGridCacheHitCount(), 0);
+
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName("geotweetz:type=EstimationStatistics,name=test");
+		mBeanServer.registerMBean(statistics, objectName);
+		try {
+			Assert.assertEquals(mBeanServer.getAttribute(objectName, "NumberOfEstimations"), 2L);
+			mBeanServer.invoke(objectName, "reset", null, null);
+			Assert.assertEquals(statistics.getNumberOfEstimations(), 0);
+		} finally {
+			mBeanServer.unregisterMBean(objectName);
+		}
+
+		locationEstimator.setEstimationMetrics(null);
+		locationEstimator.estimateLocationForCluster(tweetsInCluster);
+		Assert.assertEquals(statistics.getNumberOfEstimations(), 0);
+	}
+
+	/**
+	 * Tests estimation with approximated probability assignments (commonality values must be within the reported error
+	 * bound of the exact commonality values)
+	 */
+	@Test
+	public void testEstimationWithFocalElementSummarization() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		LocationEstimator summarizingLocationEstimator = new LocationEstimator(testCitiesInCountry);
+		summarizingLocationEstimator.setFocalElementSummarizer(
+				new FocalElementSummarizer(3, 0.05, FocalElementSummarizer.MergeTarget.UNION));
+		EstimationStatistics statistics = new EstimationStatistics();
+		summarizingLocationEstimator.setEstimationMetrics(statistics);
+
+		double largestCommonalityErrorBound = 0;
+		for (List<TweetDBO> cluster : generateRandomTestClusters(50, new Random(23)).values()) {
+			Map<Long, Double> exactCommonalityValues = new HashMap<Long, Double>();
+			for (LocationCommonalityValue value : locationEstimator.estimateTopLocationsForCluster(cluster,
+					NUMBER_OF_CITIES_IN_TESTS)) {
+				Assert.assertEquals(value.getCommonalityErrorBound(), 0, 0);
+				exactCommonalityValues.put(value.getLocationId(), value.getCommonalityValue());
+			}
+			ArrayList<LocationCommonalityValue> approximatedValues = summarizingLocationEstimator
+					.estimateTopLocationsForCluster(cluster, NUMBER_OF_CITIES_IN_TESTS);
+			double commonalityErrorBound = approximatedValues.get(0).getCommonalityErrorBound();
+			for (LocationCommonalityValue value : approximatedValues) {
+				Double exactCommonalityValue = exactCommonalityValues.get(value.getLocationId());
+				Assert.assertEquals(value.getCommonalityValue(),
+						exactCommonalityValue == null ? 0 : exactCommonalityValue, commonalityErrorBound + 1e-12);
+				Assert.assertEquals(value.getCommonalityErrorBound(), commonalityErrorBound, 0);
+			}
+			largestCommonalityErrorBound = Math.max(largestCommonalityErrorBound, commonalityErrorBound);
+		}
+		Assert.assertTrue(largestCommonalityErrorBound > 0);
+		Assert.assertEquals(statistics.getMaximumCommonalityErrorBound(), largestCommonalityErrorBound, 0);
+		Assert.assertTrue(statistics.getStageCount(EstimationStage.SUMMARIZATION) > 0);
+		Assert.assertTrue(statistics.getMeanNumberOfFocalElements(EstimationStage.SUMMARIZATION) <= 3);
+	}
+
+	/**
+	 * Tests that no error bound is reported for approximated probability assignments with combination rules for which
+	 * the bound does not hold (Dempster's rule and PCR5), and that a bound is reported with Yager's rule
+	 */
+	@Test
+	public void testCommonalityErrorBoundWithCombinationRules() {
+		LocationEstimator summarizingLocationEstimator = new LocationEstimator(testCitiesInCountry);
+		summarizingLocationEstimator.setFocalElementSummarizer(
+				new FocalElementSummarizer(3, 0.05, FocalElementSummarizer.MergeTarget.UNION));
+		EstimationStatistics statistics = new EstimationStatistics();
+		summarizingLocationEstimator.setEstimationMetrics(statistics);
+		Collection<List<TweetDBO>> clusters = generateRandomTestClusters(20, new Random(29)).values();
+
+		for (StandardCombinationRule rule : new StandardCombinationRule[] { StandardCombinationRule.DEMPSTER,
+				StandardCombinationRule.PCR5 }) {
+			summarizingLocationEstimator.setCombinationRule(rule);
+			for (List<TweetDBO> cluster : clusters) {
+				for (LocationCommonalityValue value : summarizingLocationEstimator.estimateTopLocationsForCluster(cluster,
+						NUMBER_OF_CITIES_IN_TESTS)) {
+					Assert.assertTrue(Double.isNaN(value.getCommonalityErrorBound()));
+				}
+			}
+		}
+		Assert.assertTrue(statistics.getStageCount(EstimationStage.SUMMARIZATION) > 0);
+		Assert.assertEquals(statistics.getMaximumCommonalityErrorBound(), 0, 0); // NaN is not recorded
+		Assert.assertEquals(statistics.getMeanCommonalityErrorBound(), 0, 0);
+
+		summarizingLocationEstimator.setCombinationRule(StandardCombinationRule.YAGER);
+		for (List<TweetDBO> cluster : clusters) {
+			for (LocationCommonalityValue value : summarizingLocationEstimator.estimateTopLocationsForCluster(cluster,
+					NUMBER_OF_CITIES_IN_TESTS)) {
+				Assert.assertFalse(Double.isNaN(value.getCommonalityErrorBound()));
+			}
+		}
+		Assert.assertTrue(statistics.getMaximumCommonalityErrorBound() > 0);
+	}
+
+	/**
+	 * Tests the belief function of a cluster (values for sets of locations, and commonality values of single locations
+	 * must be the same with the estimation)
+	 */
+	@Test
+	public void testEstimateBeliefFunctionForCluster() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+
+		// Combined GPS+Content+Profile (see testEstimateLocationForClusterSingleResult): {city1}=31/64, {city2}=9/64,
+		// {city1, city2}=12/64, Theta=12/64
+		BeliefFunction beliefFunction = locationEstimator.estimateBeliefFunctionForCluster(generateTestCluster());
+		Assert.assertTrue(beliefFunction instanceof DenseBeliefFunction);
+		Assert.assertEquals(beliefFunction.getMass(Collections.singleton(1L)), 31.0 / 64, 1e-15);
+		Assert.assertEquals(beliefFunction.getMass(Collections.singleton(3L)), 0, 0);
+		Assert.assertEquals(beliefFunction.getCommonality(Collections.singleton(1L)), 55.0 / 64, 1e-15);
+		Assert.assertEquals(beliefFunction.getCommonality(new HashSet<Long>(Arrays.asList(1L, 2L))), 24.0 / 64, 1e-15);
+		Assert.assertEquals(beliefFunction.getBelief(new HashSet<Long>(Arrays.asList(1L, 2L))), 52.0 / 64, 1e-15);
+		Assert.assertEquals(beliefFunction.getPlausibility(Collections.singleton(2L)), 33.0 / 64, 1e-15);
+		Assert.assertEquals(beliefFunction.getPlausibility(Collections.singleton(3L)), 12.0 / 64, 1e-15);
+
+		for (List<TweetDBO> cluster : generateRandomTestClusters(20, new Random(29)).values()) {
+			beliefFunction = locationEstimator.estimateBeliefFunctionForCluster(cluster);
+			for (LocationCommonalityValue value : locationEstimator.estimateTopLocationsForCluster(cluster,
+					NUMBER_OF_CITIES_IN_TESTS)) {
+				Assert.assertEquals(beliefFunction.getCommonality(Collections.singleton(value.getLocationId())),
+						value.getCommonalityValue(), 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * Tests the representation of the belief function of a cluster in a frame of discernment that is larger than the
+	 * core of a dense belief function (dense only if Theta has no probability after the combination)
+	 */
+	@Test
+	public void testEstimateBeliefFunctionForClusterInLargeFrame() {
+		int numberOfCities = 4 * DenseBeliefFunction.MAXIMUM_NUMBER_OF_LOCATIONS;
+		long[] ids = new long[numberOfCities];
+		String[] names = new String[numberOfCities];
+		Polygon[] boundaries = new Polygon[numberOfCities];
+		for (int i = 0; i < numberOfCities; i++) {
+			ids[i] = i + 1;
+			names[i] = "city" + (i + 1);
+			boundaries[i] = TestGazetteers.createSquare(i + 1, 0, 1);
+		}
+		LocationEstimator locationEstimator = new LocationEstimator(new CityGazetteer(ids, names, boundaries));
+
+		// every tweet is mapped to city1 or city2 in all evidence sources, so the core is {city1, city2}
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		tweetsInCluster.add(generateTestTweet(0, "lorem city1", 1.5, 0.5, "city1"));
+		tweetsInCluster.add(generateTestTweet(1, "city2 ipsum", 2.5, 0.5, "city1"));
+		tweetsInCluster.add(generateTestTweet(2, "city1 city2", 1.5, 0.5, "city2"));
+		BeliefFunction beliefFunction = locationEstimator.estimateBeliefFunctionForCluster(tweetsInCluster);
+		Assert.assertTrue(beliefFunction instanceof DenseBeliefFunction);
+		Assert.assertEquals(((DenseBeliefFunction) beliefFunction).getNumberOfLocationsInCore(), 2);
+		Assert.assertEquals(beliefFunction.getPlausibility(Collections.singleton(3L)), 0, 0);
+		for (LocationCommonalityValue value : locationEstimator.estimateTopLocationsForCluster(tweetsInCluster, 2)) {
+			Assert.assertEquals(beliefFunction.getCommonality(Collections.singleton(value.getLocationId())),
+					value.getCommonalityValue(), 1e-12);
+		}
+
+		// a tweet without a location in its user profile assigns probability to Theta, which is intersected with the
+		// focal elements of the other evidence sources
+		tweetsInCluster.add(generateTestTweet(3, "city2", 2.5, 0.5, "lorem ipsum"));
+		beliefFunction = locationEstimator.estimateBeliefFunctionForCluster(tweetsInCluster);
+		Assert.assertTrue(beliefFunction instanceof DenseBeliefFunction);
+		Assert.assertEquals(((DenseBeliefFunction) beliefFunction).getNumberOfLocationsInCore(), 2);
+
+		// a tweet without a location in any evidence source, Theta keeps probability and the core is the whole frame
+		tweetsInCluster.add(generateTestTweet(4, "lorem", 0.0, 0.0, "ipsum"));
+		beliefFunction = locationEstimator.estimateBeliefFunctionForCluster(tweetsInCluster);
+		Assert.assertFalse(beliefFunction instanceof DenseBeliefFunction);
+		// Theta: GPS=1/5, content=1/5, profile=2/5
+		Assert.assertEquals(beliefFunction.getMass(LocationSet.allLocations(locationEstimator.getLocationIndex())),
+				1.0 / 5 * 1.0 / 5 * 2.0 / 5, 1e-15);
+	}
+
+	/**
+	 * Tests location estimation with different combination rules (the same BPAs with
+	 * testEstimateLocationForClusterSingleResult)
+	 */
+	@Test
+	public void testEstimateLocationWithCombinationRules() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		Assert.assertEquals(locationEstimator.getCombinationRule(), StandardCombinationRule.DUBOIS_PRADE);
+
+		// Dempster: Combined GPS+Content: {city1}=6/15, {city2}=3/15, {city1, city2}=2/15, Theta=4/15
+		// Combined GPS+Content+Profile: {city1}=30/57, {city2}=9/57, {city1, city2}=6/57, Theta=12/57
+		// Commonality of City1=(30+6+12)/57=48/57
+		locationEstimator.setCombinationRule(StandardCombinationRule.DEMPSTER);
+		ArrayList<LocationCommonalityValue> highestCityCommonalityValues = locationEstimator
+				.estimateLocationForCluster(generateTestCluster());
+		Assert.assertEquals(highestCityCommonalityValues.size(), 1);
+		Assert.assertEquals(highestCityCommonalityValues.get(0).getLocationId(), 1L);
+		Assert.assertEquals(highestCityCommonalityValues.get(0).getCommonalityValue(), 48.0 / 57, 1e-15);
+
+		// Yager: Combined GPS+Content: {city1}=6/16, {city2}=3/16, {city1, city2}=2/16, Theta=5/16
+		// Combined GPS+Content+Profile: {city1}=31/64, {city2}=9/64, {city1, city2}=6/64, Theta=18/64
+		// Commonality of City1=55/64, City2=33/64, City3..City10=18/64 (12/64 with Dubois and Prade)
+		locationEstimator.setCombinationRule(StandardCombinationRule.YAGER);
+		ArrayList<LocationCommonalityValue> topCityCommonalityValues = locationEstimator
+				.estimateTopLocationsForCluster(generateTestCluster(), 3);
+		Assert.assertEquals(topCityCommonalityValues.size(), NUMBER_OF_CITIES_IN_TESTS);
+		Assert.assertEquals(topCityCommonalityValues.get(0).getCommonalityValue(), 55.0 / 64, 1e-15);
+		Assert.assertEquals(topCityCommonalityValues.get(1).getCommonalityValue(), 33.0 / 64, 1e-15);
+		Assert.assertEquals(topCityCommonalityValues.get(2).getCommonalityValue(), 18.0 / 64, 1e-15);
+
+		locationEstimator.setCombinationRule(StandardCombinationRule.DUBOIS_PRADE);
+		Assert.assertEquals(locationEstimator.estimateLocationForCluster(generateTestCluster()).get(0)
+				.getCommonalityValue(), 0.859375, 1e-15);
+	}
+
+	/**
+	 * Tests concurrent location estimation for many clusters using a shared LocationEstimator (results must be the same
+	 * with sequential estimation)
+	 */
+	@Test
+	public void testEstimateLocationsForClustersConcurrently() throws Exception {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		LinkedHashMap<Integer, List<TweetDBO>> clusters = generateRandomTestClusters(200, new Random(42));
+		LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> expectedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+		for (Map.Entry<Integer, List<TweetDBO>> cluster : clusters.entrySet()) {
+			expectedLocations.put(cluster.getKey(), locationEstimator.estimateLocationForCluster(cluster.getValue()));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int repetition = 0; repetition < 5; repetition++) {
+				assertSameEstimations(expectedLocations,
+						locationEstimator.estimateLocationsForClusters(clusters, executor));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertSameEstimations(expectedLocations, locationEstimator.estimateLocationsForClusters(clusters));
+	}
+
+	/**
+	 * Tests location estimation with evidence sources that are processed concurrently (results must be the same with
+	 * sequential processing)
+	 */
+	@Test
+	public void testEstimateLocationForClusterWithConcurrentEvidenceSources() {
+		LocationEstimator sequentialLocationEstimator = new LocationEstimator(testCitiesInCountry);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			LocationEstimator concurrentLocationEstimator = new LocationEstimator(testCitiesInCountry, executor);
+			LinkedHashMap<Integer, List<TweetDBO>> clusters = generateRandomTestClusters(50, new Random(7));
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> expectedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> estimatedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			for (Map.Entry<Integer, List<TweetDBO>> cluster : clusters.entrySet()) {
+				expectedLocations.put(cluster.getKey(),
+						sequentialLocationEstimator.estimateLocationForCluster(cluster.getValue()));
+				estimatedLocations.put(cluster.getKey(),
+						concurrentLocationEstimator.estimateLocationForCluster(cluster.getValue()));
+			}
+			assertSameEstimations(expectedLocations, estimatedLocations);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests incremental location estimation with tweets added one at a time and in micro-batches (results must be the
+	 * same with the estimation for the whole cluster at each step)
+	 */
+	@Test
+	public void testIncrementalLocationEstimation() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		LinkedHashMap<Integer, List<TweetDBO>> clusters = generateRandomTestClusters(50, new Random(11));
+		for (List<TweetDBO> tweetsInCluster : clusters.values()) {
+			IncrementalLocationEstimator tweetByTweetEstimator = new IncrementalLocationEstimator(locationEstimator);
+			Assert.assertTrue(tweetByTweetEstimator.estimateLocation().isEmpty());
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> expectedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> estimatedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			for (int i = 0; i < tweetsInCluster.size(); i++) {
+				tweetByTweetEstimator.addTweet(tweetsInCluster.get(i));
+				expectedLocations.put(i, locationEstimator.estimateLocationForCluster(tweetsInCluster.subList(0, i + 1)));
+				estimatedLocations.put(i, tweetByTweetEstimator.estimateLocation());
+			}
+			assertSameEstimations(expectedLocations, estimatedLocations);
+			Assert.assertEquals(tweetByTweetEstimator.getNumberOfTweets(), tweetsInCluster.size());
+
+			IncrementalLocationEstimator microBatchEstimator = new IncrementalLocationEstimator(locationEstimator);
+			for (int i = 0; i < tweetsInCluster.size(); i += 7) {
+				microBatchEstimator.addTweets(tweetsInCluster.subList(i, Math.min(i + 7, tweetsInCluster.size())));
+			}
+			estimatedLocations.put(tweetsInCluster.size() - 1, microBatchEstimator.estimateLocation());
+			assertSameEstimations(expectedLocations, estimatedLocations);
+		}
+	}
+
+	/**
+	 * Tests location estimation with a sliding window (results must be the same with the estimation for the tweets in
+	 * the window)
+	 */
+	@Test
+	public void testSlidingWindowLocationEstimation() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		SlidingWindowLocationEstimator slidingWindowEstimator = new SlidingWindowLocationEstimator(locationEstimator,
+				60000);
+		List<TweetDBO> tweetsInCluster = generateRandomTestClusters(1, new Random(3)).get(0);
+		Random random = new Random(5);
+		List<TweetDBO> tweetsInWindow = new ArrayList<TweetDBO>();
+		long time = 0;
+		for (int repetition = 0; repetition < 20; repetition++) {
+			for (TweetDBO tweet : tweetsInCluster) {
+				time += random.nextInt(5000);
+				tweet.setCreatedAt(new Date(time));
+				slidingWindowEstimator.addTweet(tweet);
+				tweetsInWindow.add(tweet);
+				while (tweetsInWindow.get(0).getCreatedAt().getTime() <= time - 60000) {
+					tweetsInWindow.remove(0);
+				}
+				Assert.assertEquals(slidingWindowEstimator.getNumberOfTweets(), tweetsInWindow.size());
+				assertSameEstimation(locationEstimator.estimateLocationForCluster(tweetsInWindow),
+						slidingWindowEstimator.estimateLocation(), 1e-12);
+			}
+		}
+		slidingWindowEstimator.advanceTime(time + 60000);
+		Assert.assertEquals(slidingWindowEstimator.getNumberOfTweets(), 0);
+		Assert.assertTrue(slidingWindowEstimator.estimateLocation().isEmpty());
+	}
+
+	/**
+	 * Tests location estimation with a sliding window and decay (recent evidence must have more weight)
+	 */
+	@Test
+	public void testSlidingWindowLocationEstimationWithDecay() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		SlidingWindowLocationEstimator slidingWindowEstimator = new SlidingWindowLocationEstimator(locationEstimator,
+				3600000, 60000);
+		SlidingWindowLocationEstimator slidingWindowEstimatorWithoutDecay = new SlidingWindowLocationEstimator(
+				locationEstimator, 3600000);
+		// 3 tweets for city1 are 10 minutes older than 2 tweets for city2
+		long[] times = { 0, 1000, 2000, 600000, 601000 };
+		String[] cities = { "city1", "city1", "city1", "city2", "city2" };
+		for (int i = 0; i < times.length; i++) {
+			TweetDBO tweet = generateTestTweet(i, cities[i], 0.0, 0.0, "");
+			tweet.setCreatedAt(new Date(times[i]));
+			slidingWindowEstimator.addTweet(tweet);
+			slidingWindowEstimatorWithoutDecay.addTweet(tweet);
+		}
+		Assert.assertEquals(slidingWindowEstimatorWithoutDecay.estimateLocation().get(0).getLocationId(), 1L);
+		ArrayList<LocationCommonalityValue> estimatedLocations = slidingWindowEstimator.estimateLocation();
+		Assert.assertEquals(estimatedLocations.get(0).getLocationId(), 2L);
+		// weights: city1 = 1 + 2^(1/60) + 2^(2/60), city2 = 2^10 + 2^(10 + 1/60)
+		double weightOfCity1 = 1 + Math.pow(2, 1.0 / 60) + Math.pow(2, 2.0 / 60);
+		double weightOfCity2 = Math.pow(2, 10) + Math.pow(2, 10 + 1.0 / 60);
+		Assert.assertEquals(estimatedLocations.get(0).getCommonalityValue(),
+				weightOfCity2 / (weightOfCity1 + weightOfCity2), 1e-12);
+
+		// the window is emptied after 100 hours, the reference time of weights is reset, and the estimation does not
+		// change
+		for (int i = 0; i < times.length; i++) {
+			TweetDBO tweet = generateTestTweet(i, cities[i], 0.0, 0.0, "");
+			tweet.setCreatedAt(new Date(times[i] + 100 * 3600000L));
+			slidingWindowEstimator.addTweet(tweet);
+		}
+		Assert.assertEquals(slidingWindowEstimator.getNumberOfTweets(), times.length);
+		assertSameEstimation(estimatedLocations, slidingWindowEstimator.estimateLocation(), 1e-12);
+	}
+
+	/**
+	 * Tests that weights are rescaled when more half-lives pass than the weights can represent while tweets are in the
+	 * window (the estimation must be the same with an estimator that gets only the recent tweets and does not rescale
+	 * weights)
+	 */
+	@Test
+	public void testSlidingWindowLocationEstimationWithWeightRescaling() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		// half-life of 1 second in a window of 1 hour, tweets every 10 seconds: 1490 half-lives pass in the window,
+		// and weights can not be represented without rescaling (2^1490 > Double.MAX_VALUE)
+		SlidingWindowLocationEstimator slidingWindowEstimator = new SlidingWindowLocationEstimator(locationEstimator,
+				3600000, 1000);
+		SlidingWindowLocationEstimator recentTweetsEstimator = new SlidingWindowLocationEstimator(locationEstimator,
+				3600000, 1000);
+		int numberOfTweets = 150;
+		double weightOfCity1 = 0;
+		double weightOfCity2 = 0;
+		for (int i = 0; i < numberOfTweets; i++) {
+			String city = i % 3 == 2 ? "city2" : "city1";
+			TweetDBO tweet = generateTestTweet(i, city, 0.0, 0.0, "");
+			tweet.setCreatedAt(new Date(i * 10000L));
+			slidingWindowEstimator.addTweet(tweet);
+			if (i >= numberOfTweets - 20) { // 200 half-lives, weights are not rescaled
+				recentTweetsEstimator.addTweet(tweet);
+			}
+			double weight = Math.pow(2, -10.0 * (numberOfTweets - 1 - i));
+			if (i % 3 == 2) {
+				weightOfCity2 += weight;
+			} else {
+				weightOfCity1 += weight;
+			}
+		}
+		Assert.assertEquals(slidingWindowEstimator.getNumberOfTweets(), numberOfTweets);
+		ArrayList<LocationCommonalityValue> estimatedLocations = slidingWindowEstimator.estimateLocation();
+		Assert.assertEquals(estimatedLocations.get(0).getLocationId(), 2L);
+		Assert.assertEquals(estimatedLocations.get(0).getCommonalityValue(),
+				weightOfCity2 / (weightOfCity1 + weightOfCity2), 1e-12);
+		assertSameEstimation(recentTweetsEstimator.estimateLocation(), estimatedLocations, 1e-12);
+	}
+
+	/**
+	 * Tests location estimation with a sliding window and tweets that arrive late (late tweets in the window must be
+	 * evicted in order of their posting time, tweets that are older than the window must be ignored, and the
+	 * estimation with decay must be the same with the estimation for the tweets in order of time)
+	 */
+	@Test
+	public void testSlidingWindowLocationEstimationWithOutOfOrderTweets() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		SlidingWindowLocationEstimator slidingWindowEstimator = new SlidingWindowLocationEstimator(locationEstimator,
+				60000);
+		SlidingWindowLocationEstimator slidingWindowEstimatorWithDecay = new SlidingWindowLocationEstimator(
+				locationEstimator, 60000, 30000);
+		List<TweetDBO> tweetsInCluster = generateRandomTestClusters(1, new Random(7)).get(0);
+		Random random = new Random(11);
+		List<TweetDBO> tweetsInWindow = new ArrayList<TweetDBO>();
+		long latestTime = 0;
+		long time = 0;
+		for (int repetition = 0; repetition < 20; repetition++) {
+			for (TweetDBO tweet : tweetsInCluster) {
+				time += random.nextInt(5000);
+				long delay = random.nextInt(4) == 0 ? random.nextInt(80000) : 0;
+				tweet.setCreatedAt(new Date(time - delay));
+				slidingWindowEstimator.addTweet(tweet);
+				slidingWindowEstimatorWithDecay.addTweet(tweet);
+				latestTime = Math.max(latestTime, time - delay);
+				tweetsInWindow.add(tweet);
+				Iterator<TweetDBO> iterator = tweetsInWindow.iterator();
+				while (iterator.hasNext()) {
+					if (iterator.next().getCreatedAt().getTime() <= latestTime - 60000) {
+						iterator.remove();
+					}
+				}
+				Assert.assertEquals(slidingWindowEstimator.getNumberOfTweets(), tweetsInWindow.size());
+				assertSameEstimation(locationEstimator.estimateLocationForCluster(tweetsInWindow),
+						slidingWindowEstimator.estimateLocation(), 1e-12);
+			}
+		}
+		Collections.sort(tweetsInWindow, new Comparator<TweetDBO>() {
+			@Override
+			public int compare(TweetDBO tweet1, TweetDBO tweet2) {
+				return tweet1.getCreatedAt().compareTo(tweet2.getCreatedAt());
+			}
+		});
+		SlidingWindowLocationEstimator orderedEstimatorWithDecay = new SlidingWindowLocationEstimator(
+				locationEstimator, 60000, 30000);
+		orderedEstimatorWithDecay.addTweets(tweetsInWindow);
+		Assert.assertEquals(slidingWindowEstimatorWithDecay.getNumberOfTweets(), tweetsInWindow.size());
+		assertSameEstimation(orderedEstimatorWithDecay.estimateLocation(),
+				slidingWindowEstimatorWithDecay.estimateLocation(), 1e-12);
+	}
+
+	/**
+	 * Tests that weights are rescaled to 0 when the number of half-lives between tweets does not fit in an int
+	 */
+	@Test
+	public void testSlidingWindowLocationEstimationWithWeightUnderflow() {
+		SlidingWindowLocationEstimator slidingWindowEstimator = new SlidingWindowLocationEstimator(
+				new LocationEstimator(testCitiesInCountry), 1L << 40, 1);
+		TweetDBO tweet = generateTestTweet(0, "city1", 0.0, 0.0, "");
+		tweet.setCreatedAt(new Date(0));
+		slidingWindowEstimator.addTweet(tweet);
+		TweetDBO laterTweet = generateTestTweet(1, "city2", 0.0, 0.0, "");
+		laterTweet.setCreatedAt(new Date(1L << 33)); // 2^33 half-lives later
+		slidingWindowEstimator.addTweet(laterTweet);
+		Assert.assertEquals(slidingWindowEstimator.getNumberOfTweets(), 2);
+		ArrayList<LocationCommonalityValue> estimatedLocations = slidingWindowEstimator.estimateLocation();
+		Assert.assertEquals(estimatedLocations.get(0).getLocationId(), 2L);
+		Assert.assertEquals(estimatedLocations.get(0).getCommonalityValue(), 1, 1e-12);
+	}
+
+	/**
+	 * Tests location estimation with a city gazetteer and tweet observations (results must be the same with the
+	 * estimation using database objects)
+	 */
+	@Test
+	public void testEstimateLocationForObservations() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		LocationEstimator gazetteerLocationEstimator = new LocationEstimator(
+				CityGazetteer.fromCityDBOs(testCitiesInCountry));
+		LinkedHashMap<Integer, List<TweetDBO>> clusters = generateRandomTestClusters(50, new Random(13));
+		LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> expectedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+		LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> estimatedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+		for (Map.Entry<Integer, List<TweetDBO>> cluster : clusters.entrySet()) {
+			List<TweetObservation> observations = TweetObservation.fromTweetDBOs(cluster.getValue());
+			Assert.assertEquals(observations, TweetObservation.fromTweetDBOs(cluster.getValue()));
+			expectedLocations.put(cluster.getKey(), locationEstimator.estimateLocationForCluster(cluster.getValue()));
+			estimatedLocations.put(cluster.getKey(),
+					gazetteerLocationEstimator.estimateLocationForObservations(observations));
+		}
+		assertSameEstimations(expectedLocations, estimatedLocations);
+	}
+
+	/**
+	 * Tests location estimation with columnar tweet batches, sequentially and with concurrent evidence sources
+	 * (results must be the same with the estimation using database objects)
+	 */
+	@Test
+	public void testEstimateLocationForBatch() {
+		LocationEstimator locationEstimator = new LocationEstimator(testCitiesInCountry);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			LocationEstimator concurrentLocationEstimator = new LocationEstimator(testCitiesInCountry, executor);
+			LinkedHashMap<Integer, List<TweetDBO>> clusters = generateRandomTestClusters(50, new Random(17));
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> expectedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> estimatedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>> concurrentlyEstimatedLocations = new LinkedHashMap<Integer, ArrayList<LocationCommonalityValue>>();
+			for (Map.Entry<Integer, List<TweetDBO>> cluster : clusters.entrySet()) {
+				TweetBatch tweetBatch = TweetBatch.fromTweetDBOs(cluster.getValue());
+				expectedLocations.put(cluster.getKey(), locationEstimator.estimateLocationForCluster(cluster.getValue()));
+				estimatedLocations.put(cluster.getKey(), locationEstimator.estimateLocationForBatch(tweetBatch));
+				concurrentlyEstimatedLocations.put(cluster.getKey(),
+						concurrentLocationEstimator.estimateLocationForBatch(tweetBatch));
+			}
+			assertSameEstimations(expectedLocations, estimatedLocations);
+			assertSameEstimations(expectedLocations, concurrentlyEstimatedLocations);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Generates the cluster of testEstimateLocationForClusterSingleResult.
+	 */
+	private List<TweetDBO> generateTestCluster() {
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		tweetsInCluster.add(generateTestTweet(0, "lorem ipsum city1 city2", 0.0, 0.0, "city1"));
+		tweetsInCluster.add(generateTestTweet(1, "lorem ipsum", 1.5, 0.5, "lorem ipsum"));
+		tweetsInCluster.add(generateTestTweet(2, "city1", 2.5, 0.5, "lorem ipsum"));
+		tweetsInCluster.add(generateTestTweet(3, "", 0.0, 0.0, ""));
+		return tweetsInCluster;
+	}
+
+	private LinkedHashMap<Integer, List<TweetDBO>> generateRandomTestClusters(int numberOfClusters, Random random) {
+		LinkedHashMap<Integer, List<TweetDBO>> clusters = new LinkedHashMap<Integer, List<TweetDBO>>();
+		for (int clusterId = 0; clusterId < numberOfClusters; clusterId++) {
+			List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+			int numberOfTweetsInCluster = 1 + random.nextInt(50);
+			for (int i = 0; i < numberOfTweetsInCluster; i++) {
+				String content = "lorem city" + (1 + random.nextInt(NUMBER_OF_CITIES_IN_TESTS)) + " ipsum";
+				String userLocation = random.nextBoolean() ? "city" + (1 + random.nextInt(NUMBER_OF_CITIES_IN_TESTS))
+						: "lorem ipsum";
+				tweetsInCluster.add(generateTestTweet(i, content, random.nextDouble() * (NUMBER_OF_CITIES_IN_TESTS + 2),
+						0.5, userLocation));
+			}
+			clusters.put(clusterId, tweetsInCluster);
+		}
+		return clusters;
+	}
+
+	private void assertSameEstimations(Map<Integer, ArrayList<LocationCommonalityValue>> expectedLocations,
+			Map<Integer, ArrayList<LocationCommonalityValue>> estimatedLocations) {
+		Assert.assertEquals(estimatedLocations.keySet(), expectedLocations.keySet());
+		for (Integer clusterId : expectedLocations.keySet()) {
+			ArrayList<LocationCommonalityValue> expected = expectedLocations.get(clusterId);
+			ArrayList<LocationCommonalityValue> estimated = estimatedLocations.get(clusterId);
+			Assert.assertEquals(estimated.size(), expected.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(estimated.get(i).getLocationId(), expected.get(i).getLocationId());
+				Assert.assertEquals(estimated.get(i).getCommonalityValue(), expected.get(i).getCommonalityValue(), 0);
+			}
+		}
+	}
+
+	/**
+	 * Compares estimations that are calculated with different orders of floating-point operations. Highest commonality
+	 * values must be the same within delta. Locations with (almost) the same highest value may differ, since a
+	 * location can be in the result of one estimation only because of rounding errors.
+	 */
+	private void assertSameEstimation(ArrayList<LocationCommonalityValue> expected,
+			ArrayList<LocationCommonalityValue> estimated, double delta) {
+		Assert.assertEquals(estimated.isEmpty(), expected.isEmpty());
+		for (LocationCommonalityValue value : estimated) {
+			Assert.assertEquals(value.getCommonalityValue(), expected.get(0).getCommonalityValue(), delta);
+		}
+		if (estimated.size() == expected.size()) {
+			HashSet<Long> expectedLocationIds = new HashSet<Long>();
+			HashSet<Long> estimatedLocationIds = new HashSet<Long>();
+			for (int i = 0; i < expected.size(); i++) {
+				expectedLocationIds.add(expected.get(i).getLocationId());
+				estimatedLocationIds.add(estimated.get(i).getLocationId());
+			}
+			Assert.assertEquals(estimatedLocationIds, expectedLocationIds);
+		}
+	}
+
+	private TweetDBO generateTestTweet(long id, String content, double lat, double lon, String userLocation) {
+		TweetDBO tweet = new TweetDBO();
+		tweet.setId(id);
+		tweet.setContent(content);
+		tweet.setLatitude(lat);
+		tweet.setLongitude(lon);
+		tweet.setUserLocation(userLocation);
+		return tweet;
+	}
+
+	private static List<CityDBO> generateTestCitiesInCountry() {
+		List<CityDBO> testCities = new ArrayList<CityDBO>();
+		for (int i = 1; i <= NUMBER_OF_CITIES_IN_TESTS; i++) {
+			CityDBO testCity = generateTestCity(i, "city" + i, new double[][] { { 0.0 + i, 0.0 }, { 1.0 + i, 0.0 },
+					{ 1.0 + i, 1.0 }, { 0.0 + i, 1.0 }, { 0.0 + i, 0.0 } });
+			testCities.add(testCity);
+		}
+		return testCities;
+	}
+
+	private static CityDBO generateTestCity(long cityId, String cityTitle, double[][] boundaryCoordinatesOfCity) {
+		CityDBO city = new CityDBO();
+		city.setId(cityId);
+		city.setName(cityTitle);
+		Coordinate[] coordinatesArray = new Coordinate[boundaryCoordinatesOfCity.length];
+		for (int i = 0; i < boundaryCoordinatesOfCity.length; i++) {
+			coordinatesArray[i] = new Coordinate(boundaryCoordinatesOfCity[i][0], boundaryCoordinatesOfCity[i][1]);
+		}
+		CoordinateSequence coordinateSequence = new CoordinateArraySequence(coordinatesArray);
+		LinearRing linearRingOfCityBoundaryCoordinates = new LinearRing(coordinateSequence, GEOMETRY_FACTORY);
+		Polygon polygon = new Polygon(linearRingOfCityBoundaryCoordinates, null, GEOMETRY_FACTORY);
+		city.setBoundaryCoordinates(polygon);
+		return city;
+	}
+
+	private void configureLog4j() {
+		try {
+			String log4jPath = "config/log4j.properties";
+			URL log4jURL = getResource(log4jPath);
+			PropertyConfigurator.configure(log4jURL);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private URL getResource(String configFileName) throws Exception {
+		File file = new File(configFileName);
+		if (file.exists()) {
+			URI uri = file.toURI();
+			if (uri != null) {
+				return uri.toURL();
+			}
+		}
+		throw new Exception("No config file exists at " + configFileName);
+	}
+
+}
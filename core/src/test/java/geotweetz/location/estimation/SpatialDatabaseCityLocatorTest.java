@@ -0,0 +1,171 @@
+package geotweetz.location.estimation;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.h2gis.functions.factory.H2GISFunctions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
+
+/**
+ * Test class to test SpatialDatabaseCityLocator with an embedded spatial database.
+ *
+ * @author oozdikis
+ *
+ */
+public class SpatialDatabaseCityLocatorTest {
+	private static final int NUMBER_OF_CITIES_IN_TESTS = 200;
+	private Connection connection = null;
+	private CityGazetteer testCityGazetteer = null;
+
+	@Before
+	public void initialize() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:cities");
+		H2GISFunctions.load(connection);
+		connection.setAutoCommit(true); // switched off by H2GISFunctions
+		Statement statement = connection.createStatement();
+		statement.execute("create table city (id bigint primary key, name varchar(255), boundary geometry)");
+		testCityGazetteer = TestGazetteers.generateSquareCities(NUMBER_OF_CITIES_IN_TESTS, 50, new Random(47));
+		PreparedStatement insert = connection.prepareStatement("insert into city values (?, ?, ST_GeomFromText(?, 0))");
+		for (int city = 0; city < testCityGazetteer.size(); city++) {
+			insert.setLong(1, testCityGazetteer.getCityId(city));
+			insert.setString(2, testCityGazetteer.getCityName(city));
+			insert.setString(3, testCityGazetteer.getCityBoundary(city).toText());
+			insert.addBatch();
+		}
+		insert.executeBatch();
+		insert.close();
+		statement.execute("create spatial index on city(boundary)");
+		statement.close();
+	}
+
+	@After
+	public void close() throws SQLException {
+		connection.close();
+	}
+
+	/**
+	 * Tests tweet-location mapping using GPS coordinates in the database (mappings must be the same with the mappings
+	 * using city boundaries in the JVM)
+	 */
+	@Test
+	public void testMapTweetsToCitiesInDatabase() throws SQLException {
+		CityGazetteer cityGazetteer = SpatialDatabaseCityLocator.readCityGazetteer(connection);
+		Assert.assertEquals(cityGazetteer.size(), testCityGazetteer.size());
+		TweetLocationMapper databaseMapper = new TweetLocationMapper(
+				new SpatialDatabaseCityLocator(connection, 0, cityGazetteer));
+		TweetLocationMapper expectedMapper = new TweetLocationMapper(testCityGazetteer);
+		List<TweetDBO> tweets = TestGazetteers.generateTestTweets(testCityGazetteer, 2000, 55, new Random(53));
+
+		HashMap<TweetDBO, HashSet<Long>> expectedMappings = expectedMapper.mapTweetsToCitiesUsingLatitudeLongitude(tweets);
+		HashMap<TweetDBO, HashSet<Long>> mappings = databaseMapper.mapTweetsToCitiesUsingLatitudeLongitude(tweets);
+		for (TweetDBO tweet : tweets) {
+			Assert.assertEquals(mappings.get(tweet), expectedMappings.get(tweet));
+		}
+		for (TweetDBO tweet : tweets.subList(0, 100)) {
+			Assert.assertEquals(databaseMapper.mapTweetToCitiesUsingLatitudeLongitude(tweet),
+					expectedMappings.get(tweet));
+		}
+
+		TweetBatch tweetBatch = TweetBatch.fromTweetDBOs(tweets);
+		TweetCityMapping expectedMapping = new TweetCityMapping();
+		TweetCityMapping mapping = new TweetCityMapping();
+		expectedMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, expectedMapping);
+		databaseMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, mapping);
+		Assert.assertEquals(mapping.size(), expectedMapping.size());
+		for (int tweet = 0; tweet < tweets.size(); tweet++) {
+			Assert.assertEquals(citiesOfTweet(mapping, tweet), citiesOfTweet(expectedMapping, tweet));
+		}
+		Assert.assertTrue(connection.getAutoCommit());
+	}
+
+	/**
+	 * Tests location estimation using GPS coordinates in the database (results must be the same with the estimation
+	 * using city boundaries in the JVM)
+	 */
+	@Test
+	public void testEstimateLocationUsingDatabase() throws SQLException {
+		LocationEstimator databaseEstimator = new LocationEstimator(new TweetLocationMapper(
+				new SpatialDatabaseCityLocator(connection, 0, SpatialDatabaseCityLocator.readCityGazetteer(connection))));
+		LocationEstimator expectedEstimator = new LocationEstimator(testCityGazetteer);
+		Random random = new Random(59);
+		for (int cluster = 0; cluster < 10; cluster++) {
+			List<TweetDBO> tweets = TestGazetteers.generateTestTweets(testCityGazetteer, 1 + random.nextInt(200), 55,
+					random);
+			ArrayList<LocationCommonalityValue> expectedLocations = expectedEstimator.estimateLocationForCluster(tweets);
+			ArrayList<LocationCommonalityValue> estimatedLocations = databaseEstimator.estimateLocationForCluster(tweets);
+			Assert.assertEquals(estimatedLocations.size(), expectedLocations.size());
+			for (int i = 0; i < expectedLocations.size(); i++) {
+				Assert.assertEquals(estimatedLocations.get(i).getLocationId(), expectedLocations.get(i).getLocationId());
+				Assert.assertEquals(estimatedLocations.get(i).getCommonalityValue(),
+						expectedLocations.get(i).getCommonalityValue(), 0);
+			}
+		}
+	}
+
+	/**
+	 * Tests that the positions of a batch are rolled back when the spatial join fails, and that the connection can be
+	 * used afterwards
+	 */
+	@Test
+	public void testFailedBatchIsRolledBack() throws SQLException {
+		SpatialDatabaseCityLocator cityLocator = new SpatialDatabaseCityLocator(connection, 0,
+				SpatialDatabaseCityLocator.readCityGazetteer(connection));
+		Statement statement = connection.createStatement();
+		statement.execute("alter table city rename to city_renamed"); // the join with the city table fails
+		try {
+			cityLocator.findCitiesAtLatitudesLongitudes(new double[] { 1, 2, 3 }, new double[] { 1, 2, 3 },
+					new TweetCityMapping());
+			Assert.fail("Failure of the spatial join is not thrown");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getCause() instanceof SQLException);
+		}
+		Assert.assertTrue(connection.getAutoCommit());
+		ResultSet resultSet = statement.executeQuery("select count(*) from tweet_position");
+		Assert.assertTrue(resultSet.next());
+		Assert.assertEquals(resultSet.getInt(1), 0);
+		resultSet.close();
+
+		statement.execute("alter table city_renamed rename to city");
+		statement.close();
+		cityLocator.close();
+		cityLocator = new SpatialDatabaseCityLocator(connection, 0, testCityGazetteer);
+		TweetCityMapping mapping = new TweetCityMapping();
+		TweetCityMapping expectedMapping = new TweetCityMapping();
+		double[] latitudes = new double[] { 1, 20, 50 };
+		double[] longitudes = new double[] { 1, 20, 50 };
+		cityLocator.findCitiesAtLatitudesLongitudes(latitudes, longitudes, mapping);
+		new TweetLocationMapper(testCityGazetteer).mapBatchToCitiesUsingLatitudeLongitude(
+				new TweetBatch(new long[3], latitudes, longitudes, new long[3], new char[0], new int[4], new char[0],
+						new int[4]), expectedMapping);
+		for (int tweet = 0; tweet < latitudes.length; tweet++) {
+			Assert.assertEquals(citiesOfTweet(mapping, tweet), citiesOfTweet(expectedMapping, tweet));
+		}
+		cityLocator.close();
+	}
+
+	private HashSet<Integer> citiesOfTweet(TweetCityMapping mapping, int tweet) {
+		HashSet<Integer> cities = new HashSet<Integer>();
+		for (int i = mapping.getOffsets()[tweet]; i < mapping.getOffsets()[tweet + 1]; i++) {
+			cities.add(mapping.getCities()[i]);
+		}
+		return cities;
+	}
+}
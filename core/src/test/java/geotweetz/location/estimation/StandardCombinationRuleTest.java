@@ -0,0 +1,188 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import geotweetz.location.type.FocalElementTable;
+import geotweetz.location.type.LocationIndex;
+import geotweetz.location.type.LocationSet;
+
+/**
+ * Test class to test StandardCombinationRule with FocalElementCombiner.
+ *
+ * @author oozdikis
+ *
+ */
+public class StandardCombinationRuleTest {
+	private static final int NUMBER_OF_CITIES_IN_TESTS = 100;
+	private LocationIndex locationIndex = null;
+	private FocalElementCombiner combiner = null;
+	private FocalElementTable bpas1 = null;
+	private FocalElementTable bpas2 = null;
+
+	@Before
+	public void initialize() {
+		List<Long> locationIds = new ArrayList<Long>();
+		for (long i = 1; i <= NUMBER_OF_CITIES_IN_TESTS; i++) {
+			locationIds.add(i);
+		}
+		this.locationIndex = new LocationIndex(locationIds);
+		this.combiner = new FocalElementCombiner(locationIndex.getNumberOfWords(),
+				LocationSet.allLocations(locationIndex).getWords());
+
+		// same BPAs with the first step in LocationEstimatorTest.testEstimateLocationForClusterSingleResult, the pair
+		// {city2} x {city1} is conflicting (K=1/16)
+		// BPA GPS: {city1}=1/4, {city2}=1/4, Theta=2/4
+		this.bpas1 = new FocalElementTable(locationIndex.getNumberOfWords());
+		addProbabilityValue(bpas1, 0.25, 1L);
+		addProbabilityValue(bpas1, 0.25, 2L);
+		bpas1.addProbabilityValue(LocationSet.allLocations(locationIndex).getWords(), 0, 0.5);
+		// BPA Content: {city1}=1/4, {city1, city2}=1/4, Theta=2/4
+		this.bpas2 = new FocalElementTable(locationIndex.getNumberOfWords());
+		addProbabilityValue(bpas2, 0.25, 1L);
+		addProbabilityValue(bpas2, 0.25, 1L, 2L);
+		bpas2.addProbabilityValue(LocationSet.allLocations(locationIndex).getWords(), 0, 0.5);
+	}
+
+	/**
+	 * Tests Dempster's rule (conflicting evidence is discarded and the others are normalized by 1/(1-K))
+	 */
+	@Test
+	public void testDempster() {
+		// Combined GPS+Content: {city1}=6/15, {city2}=3/15, {city1, city2}=2/15, Theta=4/15
+		FocalElementTable combinedBpas = combine(StandardCombinationRule.DEMPSTER);
+		Assert.assertEquals(combinedBpas.size(), 4);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L), 6.0 / 15, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 2L), 3.0 / 15, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L, 2L), 2.0 / 15, 1e-15);
+		Assert.assertEquals(getProbabilityValueOfTheta(combinedBpas), 4.0 / 15, 1e-15);
+	}
+
+	/**
+	 * Tests Yager's rule (conflicting evidence is assigned to Theta)
+	 */
+	@Test
+	public void testYager() {
+		// Combined GPS+Content: {city1}=6/16, {city2}=3/16, {city1, city2}=2/16, Theta=5/16
+		FocalElementTable combinedBpas = combine(StandardCombinationRule.YAGER);
+		Assert.assertEquals(combinedBpas.size(), 4);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L), 6.0 / 16, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 2L), 3.0 / 16, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L, 2L), 2.0 / 16, 1e-15);
+		Assert.assertEquals(getProbabilityValueOfTheta(combinedBpas), 5.0 / 16, 1e-15);
+	}
+
+	/**
+	 * Tests Dubois and Prade's rule (same values with the first combination in
+	 * LocationEstimatorTest.testEstimateLocationForClusterSingleResult)
+	 */
+	@Test
+	public void testDuboisPrade() {
+		// Combined GPS+Content: {city1}=6/16, {city2}=3/16, {city1, city2}=3/16, Theta=4/16
+		FocalElementTable combinedBpas = combine(StandardCombinationRule.DUBOIS_PRADE);
+		Assert.assertEquals(combinedBpas.size(), 4);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L), 6.0 / 16, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 2L), 3.0 / 16, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L, 2L), 3.0 / 16, 1e-15);
+		Assert.assertEquals(getProbabilityValueOfTheta(combinedBpas), 4.0 / 16, 1e-15);
+	}
+
+	/**
+	 * Tests PCR5 (conflicting evidence is redistributed to the conflicting focal elements)
+	 */
+	@Test
+	public void testPcr5() {
+		// {city2}=1/4 x {city1}=1/4: (1/16)*(1/4)/(1/2)=1/32 to each of {city2} and {city1}
+		// Combined GPS+Content: {city1}=13/32, {city2}=7/32, {city1, city2}=4/32, Theta=8/32
+		FocalElementTable combinedBpas = combine(StandardCombinationRule.PCR5);
+		Assert.assertEquals(combinedBpas.size(), 4);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L), 13.0 / 32, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 2L), 7.0 / 32, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L, 2L), 4.0 / 32, 1e-15);
+		Assert.assertEquals(getProbabilityValueOfTheta(combinedBpas), 8.0 / 32, 1e-15);
+	}
+
+	/**
+	 * Tests the combination of totally conflicting evidence (Dempster's rule is undefined)
+	 */
+	@Test
+	public void testTotallyConflictingEvidence() {
+		bpas1.clear();
+		addProbabilityValue(bpas1, 1, 1L);
+		bpas2.clear();
+		addProbabilityValue(bpas2, 0.75, 2L);
+		addProbabilityValue(bpas2, 0.25, 3L);
+
+		Assert.assertEquals(combine(StandardCombinationRule.DEMPSTER).size(), 0);
+		Assert.assertEquals(combiner.getConflictMass(), 1, 1e-15);
+		Assert.assertEquals(getProbabilityValueOfTheta(combine(StandardCombinationRule.YAGER)), 1, 1e-15);
+		FocalElementTable combinedBpas = combine(StandardCombinationRule.PCR5);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L), 0.75 * 1 / 1.75 + 0.25 * 1 / 1.25, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 2L), 0.75 * 0.75 / 1.75, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 3L), 0.25 * 0.25 / 1.25, 1e-15);
+		Assert.assertEquals(getProbabilityValue(combinedBpas, 1L) + getProbabilityValue(combinedBpas, 2L)
+				+ getProbabilityValue(combinedBpas, 3L), 1, 1e-15);
+	}
+
+	/**
+	 * Tests that conflicting evidence is assigned to unions by Dubois and Prade's rule, and that the combined table can
+	 * grow and be reused
+	 */
+	@Test
+	public void testDuboisPradeWithConflictingEvidence() {
+		bpas1.clear();
+		bpas2.clear();
+		for (long i = 1; i <= 50; i++) {
+			addProbabilityValue(bpas1, 1.0 / 50, i);
+			addProbabilityValue(bpas2, 1.0 / 50, 50 + i);
+		}
+		FocalElementTable combinedBpas = new FocalElementTable(locationIndex.getNumberOfWords());
+		for (int repetition = 0; repetition < 2; repetition++) {
+			combiner.combine(StandardCombinationRule.DUBOIS_PRADE, bpas1, bpas2, combinedBpas);
+			Assert.assertEquals(combinedBpas.size(), 50 * 50);
+			double sumOfProbabilityValues = 0;
+			for (int element = 0; element < combinedBpas.size(); element++) {
+				sumOfProbabilityValues += combinedBpas.getProbabilityValue(element);
+			}
+			Assert.assertEquals(sumOfProbabilityValues, 1.0, 1e-12);
+			Assert.assertEquals(getProbabilityValue(combinedBpas, 7L, 93L), 1.0 / 2500, 1e-15);
+		}
+	}
+
+	/**
+	 * Tests that a combiner can not be created without Theta (which Yager's rule assigns conflicting evidence to)
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testCombinerWithoutTheta() {
+		new FocalElementCombiner(locationIndex.getNumberOfWords(), null);
+	}
+
+	private FocalElementTable combine(CombinationRule combinationRule) {
+		FocalElementTable combinedBpas = new FocalElementTable(locationIndex.getNumberOfWords());
+		combiner.combine(combinationRule, bpas1, bpas2, combinedBpas);
+		return combinedBpas;
+	}
+
+	private void addProbabilityValue(FocalElementTable bpas, double probabilityValue, Long... locationIds) {
+		LocationSet locationSet = LocationSet.fromLocationIds(Arrays.asList(locationIds), locationIndex);
+		bpas.addProbabilityValue(locationSet.getWords(), 0, probabilityValue);
+	}
+
+	private double getProbabilityValue(FocalElementTable bpas, Long... locationIds) {
+		LocationSet locationSet = LocationSet.fromLocationIds(Arrays.asList(locationIds), locationIndex);
+		int element = bpas.indexOf(locationSet.getWords(), 0);
+		Assert.assertTrue(element >= 0);
+		return bpas.getProbabilityValue(element);
+	}
+
+	private double getProbabilityValueOfTheta(FocalElementTable bpas) {
+		int element = bpas.indexOf(LocationSet.allLocations(locationIndex).getWords(), 0);
+		Assert.assertTrue(element >= 0);
+		return bpas.getProbabilityValue(element);
+	}
+}
@@ -0,0 +1,131 @@
+package geotweetz.location.estimation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+
+/**
+ * Gazetteers and tweets that are generated for the tests of city boundary locators (GPS mapping with a gazetteer, a
+ * snapshot, a grid or a spatial database).
+ *
+ * @author oozdikis
+ *
+ */
+final class TestGazetteers {
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private TestGazetteers() {
+	}
+
+	/**
+	 * Generates cities with overlapping square boundaries (some with holes) in [0, extent + 4], with multi-term names
+	 * and repeated names. Cities are ordered by id, as in the gazetteer that is read from the database.
+	 */
+	static CityGazetteer generateSquareCities(int numberOfCities, int extent, Random random) {
+		String[] nameTerms = { "new", "york", "san", "jose", "city", "salem", "winston" };
+		long[] ids = new long[numberOfCities];
+		String[] names = new String[numberOfCities];
+		Polygon[] boundaries = new Polygon[numberOfCities];
+		for (int city = 0; city < numberOfCities; city++) {
+			ids[city] = 1 + city;
+			names[city] = random.nextInt(3) == 0
+					? nameTerms[random.nextInt(nameTerms.length)] + " " + nameTerms[random.nextInt(nameTerms.length)]
+					: "city" + random.nextInt(numberOfCities);
+			double x = random.nextInt(extent);
+			double y = random.nextInt(extent);
+			double size = 1 + random.nextInt(4);
+			LinearRing[] holes = random.nextInt(4) == 0
+					? new LinearRing[] { createRing(x + size / 4, y + size / 4, size / 2) } : null;
+			boundaries[city] = GEOMETRY_FACTORY.createPolygon(createRing(x, y, size), holes);
+		}
+		return new CityGazetteer(ids, names, boundaries);
+	}
+
+	/**
+	 * Generates three jagged cities side by side, and a square city that shares its edges with the cells of a grid.
+	 */
+	static CityGazetteer generateJaggedCities(Random random) {
+		Polygon[] boundaries = new Polygon[4];
+		for (int city = 0; city < 3; city++) {
+			Coordinate[] coordinates = new Coordinate[61];
+			for (int i = 0; i < 60; i++) {
+				double angle = 2 * Math.PI * i / 60;
+				double radius = 0.35 + 0.1 * Math.sin(7 * angle) + 0.04 * random.nextDouble();
+				coordinates[i] = new Coordinate(city + 0.5 + radius * Math.cos(angle), 0.5 + radius * Math.sin(angle));
+			}
+			coordinates[60] = new Coordinate(coordinates[0]);
+			boundaries[city] = GEOMETRY_FACTORY.createPolygon(GEOMETRY_FACTORY.createLinearRing(coordinates), null);
+		}
+		boundaries[3] = createSquare(3, 0, 1);
+		return new CityGazetteer(new long[] { 1, 2, 3, 4 }, new String[] { "a", "b", "c", "d" }, boundaries);
+	}
+
+	/**
+	 * Creates a copy of a gazetteer in which a city has an empty boundary.
+	 */
+	static CityGazetteer withEmptyBoundary(CityGazetteer cityGazetteer, int emptyCity) {
+		long[] ids = new long[cityGazetteer.size()];
+		String[] names = new String[cityGazetteer.size()];
+		Polygon[] boundaries = new Polygon[cityGazetteer.size()];
+		for (int city = 0; city < cityGazetteer.size(); city++) {
+			ids[city] = cityGazetteer.getCityId(city);
+			names[city] = cityGazetteer.getCityName(city);
+			boundaries[city] = city == emptyCity ? GEOMETRY_FACTORY.createPolygon(null, null)
+					: cityGazetteer.getCityBoundary(city);
+		}
+		return new CityGazetteer(ids, names, boundaries);
+	}
+
+	static Polygon createSquare(double x, double y, double size) {
+		return GEOMETRY_FACTORY.createPolygon(createRing(x, y, size), null);
+	}
+
+	static LinearRing createRing(double x, double y, double size) {
+		return GEOMETRY_FACTORY.createLinearRing(new Coordinate[] { new Coordinate(x, y), new Coordinate(x + size, y),
+				new Coordinate(x + size, y + size), new Coordinate(x, y + size), new Coordinate(x, y) });
+	}
+
+	/**
+	 * Generates tweets at random positions in [0, extent) (including positions on the vertices and edges of city
+	 * boundaries), and with random city names in content and user profile.
+	 */
+	static List<TweetDBO> generateTestTweets(CityGazetteer cityGazetteer, int numberOfTweets, double extent,
+			Random random) {
+		List<TweetDBO> tweets = new ArrayList<TweetDBO>();
+		LinkedHashMap<Integer, String> texts = new LinkedHashMap<Integer, String>();
+		for (int i = 0; i < numberOfTweets; i++) {
+			double latitude;
+			double longitude;
+			Polygon boundary = cityGazetteer.getCityBoundary(random.nextInt(cityGazetteer.size()));
+			if (random.nextInt(5) == 0 && !boundary.isEmpty()) { // on a boundary
+				Coordinate[] vertices = boundary.getCoordinates();
+				Coordinate vertex = vertices[random.nextInt(vertices.length - 1)];
+				latitude = vertex.x + (random.nextBoolean() ? 0.5 : 0);
+				longitude = vertex.y;
+			} else {
+				latitude = random.nextDouble() * extent;
+				longitude = random.nextDouble() * extent;
+			}
+			texts.put(0, "lorem " + cityGazetteer.getCityName(random.nextInt(cityGazetteer.size())) + " ipsum");
+			texts.put(1, cityGazetteer.getCityName(random.nextInt(cityGazetteer.size())).toUpperCase() + ", "
+					+ cityGazetteer.getCityName(random.nextInt(cityGazetteer.size())));
+			TweetDBO tweet = new TweetDBO();
+			tweet.setId(i);
+			tweet.setLatitude(latitude);
+			tweet.setLongitude(longitude);
+			tweet.setContent(texts.get(random.nextInt(2)));
+			tweet.setUserLocation(random.nextBoolean() ? texts.get(random.nextInt(2)) : null);
+			tweets.add(tweet);
+		}
+		return tweets;
+	}
+}
@@ -4,9 +4,11 @@ import java.io.File;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.PropertyConfigurator;
 import org.junit.Assert;
@@ -17,11 +19,15 @@ import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.impl.CoordinateArraySequence;
 
 import geotweetz.location.dbo.CityDBO;
 import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.TweetBatch;
+import geotweetz.location.type.TweetCityMapping;
 
 /**
  * Test class to test TweetLocationMapper.
@@ -86,6 +92,88 @@ public class TweetLocationMapperTest {
 		Assert.assertEquals(mappedCityIdsForTweet0.size(), 0);
 	}
 
+	/**
+	 * Tests tweet-location mapping using lat-lon for tweets without coordinates (tweets at (0, 0) or NaN are not
+	 * mapped, even if a city contains (0, 0))
+	 */
+	@Test
+	public void testMappingWithLatitudeLongitudeWithoutCoordinates() {
+		List<CityDBO> cities = new ArrayList<CityDBO>(testCitiesInCountry);
+		cities.add(generateTestCity(11, "origin", new double[][] { { -1.0, -1.0 }, { 0.5, -1.0 }, { 0.5, 0.5 },
+				{ -1.0, 0.5 }, { -1.0, -1.0 } }));
+		TweetLocationMapper tweetLocationMapper = new TweetLocationMapper(cities);
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		TweetDBO tweet0 = generateTestTweet(0, "test0", 0.0, 0.0, "cityx");
+		tweetsInCluster.add(tweet0);
+		TweetDBO tweet1 = generateTestTweet(1, "test1", Double.NaN, 0.5, "cityx");
+		tweetsInCluster.add(tweet1);
+		TweetDBO tweet2 = generateTestTweet(2, "test2", 0.0, 0.25, "cityx");
+		tweetsInCluster.add(tweet2);
+		TweetDBO tweet3 = generateTestTweet(3, "test3", 1.5, 0.5, "cityx");
+		tweetsInCluster.add(tweet3);
+		Assert.assertFalse(tweet0.hasCoordinates());
+		Assert.assertFalse(tweet1.hasCoordinates());
+		Assert.assertTrue(tweet2.hasCoordinates());
+
+		HashMap<TweetDBO, HashSet<Long>> tweetsMappedToCities = tweetLocationMapper
+				.mapTweetsToCitiesUsingLatitudeLongitude(tweetsInCluster);
+		Assert.assertEquals(tweetsMappedToCities.get(tweet0).size(), 0);
+		Assert.assertEquals(tweetsMappedToCities.get(tweet1).size(), 0);
+		Assert.assertEquals(tweetsMappedToCities.get(tweet2), new HashSet<Long>(Arrays.asList(11L)));
+		Assert.assertEquals(tweetsMappedToCities.get(tweet3), new HashSet<Long>(Arrays.asList(1L)));
+		Assert.assertEquals(tweetLocationMapper.mapTweetToCitiesUsingLatitudeLongitude(tweet0).size(), 0);
+
+		TweetBatch tweetBatch = TweetBatch.fromTweetDBOs(tweetsInCluster);
+		Assert.assertEquals(tweetBatch.getNumberOfGeotaggedTweets(), 2);
+		Assert.assertFalse(tweetBatch.hasCoordinates(0));
+		TweetCityMapping tweetCityMapping = new TweetCityMapping(1);
+		tweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, tweetCityMapping);
+		assertSameMappings(tweetsInCluster, tweetsMappedToCities, tweetCityMapping,
+				tweetLocationMapper.getCityGazetteer());
+		tweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(
+				TweetBatch.fromTweetDBOs(tweetsInCluster.subList(0, 2)), tweetCityMapping);
+		Assert.assertEquals(tweetCityMapping.size(), 2);
+		Assert.assertEquals(tweetCityMapping.getOffsets()[2], 0);
+	}
+
+	/**
+	 * Tests that lat-lon mapping through the spatial index gives the same results with a linear scan over all cities
+	 * (overlapping and non-rectangular city boundaries)
+	 */
+	@Test
+	public void testMappingWithLatitudeLongitudeMatchesLinearScan() {
+		List<CityDBO> overlappingCities = new ArrayList<CityDBO>();
+		for (int i = 1; i <= NUMBER_OF_CITIES_IN_TESTS; i++) {
+			overlappingCities.add(generateTestCity(i, "city" + i, new double[][] { { 0.5 * i, 0.0 },
+					{ 0.5 * i + 2.0, 0.0 }, { 0.5 * i + 1.0, 2.0 }, { 0.5 * i, 0.0 } }));
+		}
+		TweetLocationMapper tweetLocationMapper = new TweetLocationMapper(overlappingCities);
+		Random random = new Random(42);
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		for (int i = 0; i < 1000; i++) {
+			tweetsInCluster.add(generateTestTweet(i, "test" + i, random.nextDouble() * 8.0 - 0.5,
+					random.nextDouble() * 3.0 - 0.5, "cityx"));
+		}
+		for (int i = 1; i <= NUMBER_OF_CITIES_IN_TESTS; i++) { // points on vertices and edges of boundaries
+			tweetsInCluster.add(generateTestTweet(1000 + 3 * i, "vertex", 0.5 * i, 0.0, "cityx"));
+			tweetsInCluster.add(generateTestTweet(1001 + 3 * i, "edge", 0.5 * i + 1.0, 0.0, "cityx"));
+			tweetsInCluster.add(generateTestTweet(1002 + 3 * i, "edge", 0.5 * i + 0.5, 1.0, "cityx"));
+		}
+		HashMap<TweetDBO, HashSet<Long>> tweetsMappedToCities = tweetLocationMapper
+				.mapTweetsToCitiesUsingLatitudeLongitude(tweetsInCluster);
+		Assert.assertEquals(tweetsMappedToCities.size(), tweetsInCluster.size());
+		for (TweetDBO tweet : tweetsInCluster) {
+			Point point = GEOMETRY_FACTORY.createPoint(new Coordinate(tweet.getLatitude(), tweet.getLongitude()));
+			HashSet<Long> expectedCityIds = new HashSet<Long>();
+			for (CityDBO city : overlappingCities) {
+				if (point.within(city.getBoundaryCoordinates())) {
+					expectedCityIds.add(city.getId());
+				}
+			}
+			Assert.assertEquals(tweetsMappedToCities.get(tweet), expectedCityIds);
+		}
+	}
+
 	/**
 	 * Tests tweet-location mapping using tweet content (finds a matching location)
 	 */
@@ -134,6 +222,82 @@ public class TweetLocationMapperTest {
 		Assert.assertEquals(mappedCityIdsForTweet0.size(), 0);
 	}
 
+	/**
+	 * Tests tweet-location mapping using tweet content and user profile with city names that consist of multiple terms
+	 */
+	@Test
+	public void testMappingWithMultiTermCityNames() {
+		List<CityDBO> citiesWithMultiTermNames = new ArrayList<CityDBO>(testCitiesInCountry);
+		citiesWithMultiTermNames.add(generateTestCity(11, "New York", new double[][] { { 20.0, 0.0 }, { 21.0, 0.0 },
+				{ 21.0, 1.0 }, { 20.0, 1.0 }, { 20.0, 0.0 } }));
+		citiesWithMultiTermNames.add(generateTestCity(12, "York", new double[][] { { 22.0, 0.0 }, { 23.0, 0.0 },
+				{ 23.0, 1.0 }, { 22.0, 1.0 }, { 22.0, 0.0 } }));
+		citiesWithMultiTermNames.add(generateTestCity(13, "Winston-Salem", new double[][] { { 24.0, 0.0 },
+				{ 25.0, 0.0 }, { 25.0, 1.0 }, { 24.0, 1.0 }, { 24.0, 0.0 } }));
+		TweetLocationMapper tweetLocationMapper = new TweetLocationMapper(citiesWithMultiTermNames);
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		TweetDBO tweet0 = generateTestTweet(0, "lorem NEW york, ipsum", 0.0, 0.0, "new   York City");
+		tweetsInCluster.add(tweet0);
+		TweetDBO tweet1 = generateTestTweet(1, "york new lorem ipsum", 0.0, 0.0, "winston salem");
+		tweetsInCluster.add(tweet1);
+		TweetDBO tweet2 = generateTestTweet(2, "new new york city1", 0.0, 0.0, "new");
+		tweetsInCluster.add(tweet2);
+		HashMap<TweetDBO, HashSet<Long>> tweetsMappedToCitiesUsingContent = tweetLocationMapper
+				.mapTweetsToCitiesUsingContent(tweetsInCluster);
+		Assert.assertEquals(tweetsMappedToCitiesUsingContent.get(tweet0), new HashSet<Long>(Arrays.asList(11L, 12L)));
+		Assert.assertEquals(tweetsMappedToCitiesUsingContent.get(tweet1), new HashSet<Long>(Arrays.asList(12L)));
+		Assert.assertEquals(tweetsMappedToCitiesUsingContent.get(tweet2),
+				new HashSet<Long>(Arrays.asList(1L, 11L, 12L)));
+		HashMap<TweetDBO, HashSet<Long>> tweetsMappedToCitiesUsingProfile = tweetLocationMapper
+				.mapTweetsToCitiesUsingProfile(tweetsInCluster);
+		Assert.assertEquals(tweetsMappedToCitiesUsingProfile.get(tweet0), new HashSet<Long>(Arrays.asList(11L, 12L)));
+		Assert.assertEquals(tweetsMappedToCitiesUsingProfile.get(tweet1), new HashSet<Long>(Arrays.asList(13L)));
+		Assert.assertEquals(tweetsMappedToCitiesUsingProfile.get(tweet2).size(), 0);
+	}
+
+	/**
+	 * Tests tweet-location mapping of a columnar batch (mappings must be the same with the mappings of tweets)
+	 */
+	@Test
+	public void testBatchMappingMatchesTweetMapping() {
+		List<CityDBO> cities = new ArrayList<CityDBO>();
+		for (int i = 1; i <= NUMBER_OF_CITIES_IN_TESTS; i++) { // overlapping boundaries
+			cities.add(generateTestCity(i, "city" + i, new double[][] { { 0.5 * i, 0.0 }, { 0.5 * i + 2.0, 0.0 },
+					{ 0.5 * i + 1.0, 2.0 }, { 0.5 * i, 0.0 } }));
+		}
+		cities.add(generateTestCity(11, "New York", new double[][] { { 20.0, 0.0 }, { 21.0, 0.0 }, { 21.0, 1.0 },
+				{ 20.0, 1.0 }, { 20.0, 0.0 } }));
+		cities.add(generateTestCity(12, "York", new double[][] { { 22.0, 0.0 }, { 23.0, 0.0 }, { 23.0, 1.0 },
+				{ 22.0, 1.0 }, { 22.0, 0.0 } }));
+		TweetLocationMapper tweetLocationMapper = new TweetLocationMapper(cities);
+		CityGazetteer cityGazetteer = tweetLocationMapper.getCityGazetteer();
+		String[] texts = { "lorem city1 ipsum", "CITY2, city2 and city3", "new york “city4”", "york new", "", null,
+				"city5#city6/new-york" };
+		Random random = new Random(17);
+		List<TweetDBO> tweetsInCluster = new ArrayList<TweetDBO>();
+		for (int i = 0; i < 500; i++) {
+			tweetsInCluster.add(generateTestTweet(i, texts[random.nextInt(texts.length)],
+					random.nextDouble() * 8.0 - 0.5, random.nextDouble() * 3.0 - 0.5,
+					texts[random.nextInt(texts.length)]));
+		}
+		tweetsInCluster.add(generateTestTweet(500, "vertex", 0.5, 0.0, "edge")); // points on boundaries
+		tweetsInCluster.add(generateTestTweet(501, "edge", 1.5, 0.0, "vertex"));
+		TweetBatch tweetBatch = TweetBatch.fromTweetDBOs(tweetsInCluster);
+		Assert.assertEquals(tweetBatch.size(), tweetsInCluster.size());
+
+		TweetCityMapping tweetCityMapping = new TweetCityMapping(1);
+		HashMap<TweetDBO, HashSet<Long>> expectedMappings = tweetLocationMapper
+				.mapTweetsToCitiesUsingLatitudeLongitude(tweetsInCluster);
+		tweetLocationMapper.mapBatchToCitiesUsingLatitudeLongitude(tweetBatch, tweetCityMapping);
+		assertSameMappings(tweetsInCluster, expectedMappings, tweetCityMapping, cityGazetteer);
+		expectedMappings = tweetLocationMapper.mapTweetsToCitiesUsingContent(tweetsInCluster);
+		tweetLocationMapper.mapBatchToCitiesUsingContent(tweetBatch, tweetCityMapping);
+		assertSameMappings(tweetsInCluster, expectedMappings, tweetCityMapping, cityGazetteer);
+		expectedMappings = tweetLocationMapper.mapTweetsToCitiesUsingProfile(tweetsInCluster);
+		tweetLocationMapper.mapBatchToCitiesUsingProfile(tweetBatch, tweetCityMapping);
+		assertSameMappings(tweetsInCluster, expectedMappings, tweetCityMapping, cityGazetteer);
+	}
+
 	/**
 	 * Tests tweet-location mapping using user profile (finds a matching location)
 	 */
@@ -187,6 +351,19 @@ public class TweetLocationMapperTest {
 		Assert.assertEquals(mappedCityIdsForTweet1.size(), 0);
 	}
 
+	private void assertSameMappings(List<TweetDBO> tweets, HashMap<TweetDBO, HashSet<Long>> expectedMappings,
+			TweetCityMapping tweetCityMapping, CityGazetteer cityGazetteer) {
+		Assert.assertEquals(tweetCityMapping.size(), tweets.size());
+		for (int tweet = 0; tweet < tweets.size(); tweet++) {
+			HashSet<Long> cityIds = new HashSet<Long>();
+			for (int i = tweetCityMapping.getOffsets()[tweet]; i < tweetCityMapping.getOffsets()[tweet + 1]; i++) {
+				cityIds.add(cityGazetteer.getCityId(tweetCityMapping.getCities()[i]));
+			}
+			Assert.assertEquals(cityIds.size(), tweetCityMapping.getNumberOfCities(tweet));
+			Assert.assertEquals(cityIds, expectedMappings.get(tweets.get(tweet)));
+		}
+	}
+
 	private TweetDBO generateTestTweet(long id, String content, double lat, double lon, String userLocation) {
 		TweetDBO tweet = new TweetDBO();
 		tweet.setId(id);
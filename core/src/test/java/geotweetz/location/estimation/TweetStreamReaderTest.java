@@ -0,0 +1,182 @@
+package geotweetz.location.estimation;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import geotweetz.location.dbo.TweetDBO;
+import geotweetz.location.type.CityGazetteer;
+import geotweetz.location.type.LocationCommonalityValue;
+import geotweetz.location.type.TweetBatch;
+
+/**
+ * Test class to test TweetStreamReader with an embedded database.
+ *
+ * @author oozdikis
+ *
+ */
+public class TweetStreamReaderTest {
+	private static final int NUMBER_OF_CITIES_IN_TESTS = 10;
+	private Connection connection = null;
+	private CityGazetteer testCityGazetteer = null;
+	private List<TweetDBO> testTweets = null;
+
+	@Before
+	public void initialize() throws SQLException {
+		connection = DriverManager.getConnection("jdbc:h2:mem:tweets");
+		Statement statement = connection.createStatement();
+		statement.execute("create table tweet (id bigint primary key, content varchar(255), latitude double, "
+				+ "longitude double, userlocation varchar(255), createdat timestamp)");
+		statement.close();
+		Random random = new Random(43);
+		testCityGazetteer = TestGazetteers.generateSquareCities(NUMBER_OF_CITIES_IN_TESTS, 10, random);
+		testTweets = TestGazetteers.generateTestTweets(testCityGazetteer, 1000, 14, random);
+		for (TweetDBO tweet : testTweets) {
+			tweet.setCreatedAt(random.nextBoolean() ? new Date(1400000000000L + tweet.getId() * 1000L) : null);
+		}
+		PreparedStatement insert = connection.prepareStatement("insert into tweet values (?, ?, ?, ?, ?, ?)");
+		for (TweetDBO tweet : testTweets) {
+			insert.setLong(1, tweet.getId());
+			insert.setString(2, tweet.getContent());
+			insert.setDouble(3, tweet.getLatitude());
+			insert.setDouble(4, tweet.getLongitude());
+			insert.setString(5, tweet.getUserLocation());
+			if (tweet.getCreatedAt() == null) {
+				insert.setNull(6, Types.TIMESTAMP);
+			} else {
+				insert.setTimestamp(6, new Timestamp(tweet.getCreatedAt().getTime()));
+			}
+			insert.addBatch();
+		}
+		insert.executeBatch();
+		insert.close();
+	}
+
+	@After
+	public void close() throws SQLException {
+		connection.close();
+	}
+
+	/**
+	 * Tests that tweets are read in batches of at most fetchSize tweets, and that the connection is left in auto-commit
+	 * mode
+	 */
+	@Test
+	public void testReadTweetsInBatches() throws SQLException {
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+		final HashSet<Long> tweetIds = new HashSet<Long>();
+		TweetStreamReader tweetStreamReader = new TweetStreamReader(connection, 64);
+		int numberOfTweets = tweetStreamReader.readTweets("id < ?", new Object[] { 500 },
+				new TweetStreamReader.TweetBatchHandler() {
+					public void handleBatch(TweetBatch tweetBatch) {
+						batchSizes.add(tweetBatch.size());
+						for (int i = 0; i < tweetBatch.size(); i++) {
+							tweetIds.add(tweetBatch.getId(i));
+						}
+					}
+				});
+		Assert.assertEquals(numberOfTweets, 500);
+		Assert.assertEquals(tweetIds.size(), 500);
+		Assert.assertEquals(batchSizes.size(), 8);
+		for (int i = 0; i < batchSizes.size() - 1; i++) {
+			Assert.assertEquals(batchSizes.get(i).intValue(), 64);
+		}
+		Assert.assertEquals(batchSizes.get(batchSizes.size() - 1).intValue(), 500 - 7 * 64);
+		Assert.assertTrue(connection.getAutoCommit());
+	}
+
+	/**
+	 * Tests that the transaction of the reader is rolled back when the handler fails, so that the changes made in it
+	 * are not committed when auto-commit is restored
+	 */
+	@Test
+	public void testReadTweetsRollsBackWhenHandlerFails() throws SQLException {
+		TweetStreamReader tweetStreamReader = new TweetStreamReader(connection, 64);
+		try {
+			tweetStreamReader.readTweets(null, null, new TweetStreamReader.TweetBatchHandler() {
+				public void handleBatch(TweetBatch tweetBatch) {
+					try {
+						Statement statement = connection.createStatement();
+						statement.executeUpdate("delete from tweet where id = " + tweetBatch.getId(0));
+						statement.close();
+					} catch (SQLException e) {
+						throw new IllegalStateException(e);
+					}
+					throw new IllegalStateException("handler failed");
+				}
+			});
+			Assert.fail("Failure of the handler is not thrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals(e.getMessage(), "handler failed");
+		}
+		Assert.assertTrue(connection.getAutoCommit());
+		Statement statement = connection.createStatement();
+		ResultSet resultSet = statement.executeQuery("select count(*) from tweet");
+		Assert.assertTrue(resultSet.next());
+		Assert.assertEquals(resultSet.getInt(1), testTweets.size());
+		statement.close();
+	}
+
+	/**
+	 * Tests that NULL coordinates and the position (0, 0) are read as TweetObservation.NO_COORDINATE
+	 */
+	@Test
+	public void testReadTweetWithNullCoordinates() throws SQLException {
+		Statement statement = connection.createStatement();
+		statement.executeUpdate("update tweet set latitude = null, longitude = null where id = 0");
+		statement.executeUpdate("update tweet set latitude = 0, longitude = 0 where id = 1");
+		statement.close();
+		final List<TweetBatch> tweetBatches = new ArrayList<TweetBatch>();
+		new TweetStreamReader(connection, 64).readTweets("id in (?, ?)", new Object[] { 0, 1 },
+				new TweetStreamReader.TweetBatchHandler() {
+					public void handleBatch(TweetBatch tweetBatch) {
+						tweetBatches.add(tweetBatch);
+					}
+				});
+		Assert.assertEquals(tweetBatches.size(), 1);
+		Assert.assertEquals(tweetBatches.get(0).size(), 2);
+		for (int tweet = 0; tweet < 2; tweet++) {
+			Assert.assertTrue(Double.isNaN(tweetBatches.get(0).getLatitude(tweet)));
+			Assert.assertTrue(Double.isNaN(tweetBatches.get(0).getLongitude(tweet)));
+			Assert.assertFalse(tweetBatches.get(0).hasCoordinates(tweet));
+		}
+	}
+
+	/**
+	 * Tests location estimation for a cluster that is read from the database (results must be the same with the
+	 * estimation for the list of tweets)
+	 */
+	@Test
+	public void testEstimateLocationForClusterFromDatabase() throws SQLException {
+		LocationEstimator locationEstimator = new LocationEstimator(testCityGazetteer);
+		TweetStreamReader tweetStreamReader = new TweetStreamReader(connection, 7);
+		for (int firstId = 0; firstId < testTweets.size(); firstId += 100) {
+			ArrayList<LocationCommonalityValue> expectedLocations = locationEstimator
+					.estimateLocationForCluster(testTweets.subList(firstId, firstId + 100));
+			ArrayList<LocationCommonalityValue> estimatedLocations = tweetStreamReader.estimateLocationForCluster(
+					locationEstimator, "id >= ? and id < ?", new Object[] { firstId, firstId + 100 });
+			Assert.assertEquals(estimatedLocations.size(), expectedLocations.size());
+			for (int i = 0; i < expectedLocations.size(); i++) {
+				Assert.assertEquals(estimatedLocations.get(i).getLocationId(), expectedLocations.get(i).getLocationId());
+				Assert.assertEquals(estimatedLocations.get(i).getCommonalityValue(),
+						expectedLocations.get(i).getCommonalityValue(), 1e-12);
+			}
+		}
+		Assert.assertTrue(tweetStreamReader.estimateLocationForCluster(locationEstimator, "id < 0", null).isEmpty());
+	}
+}
@@ -0,0 +1,138 @@
+package geotweetz.location.type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class to test DenseBeliefFunction.
+ *
+ * @author oozdikis
+ *
+ */
+public class DenseBeliefFunctionTest {
+	private static final int NUMBER_OF_LOCATIONS_IN_TESTS = 130;
+	private LocationIndex locationIndex = null;
+
+	@Before
+	public void initialize() {
+		List<Long> locationIds = new ArrayList<Long>();
+		for (long i = 1; i <= NUMBER_OF_LOCATIONS_IN_TESTS; i++) {
+			locationIds.add(i * 10);
+		}
+		this.locationIndex = new LocationIndex(locationIds);
+	}
+
+	/**
+	 * Tests that mass, belief, plausibility and commonality values of all subsets of the core (and of sets with other
+	 * locations) are the same with the values that are found by scanning the focal elements
+	 */
+	@Test
+	public void testSameValuesWithSparseBeliefFunction() {
+		int[] coreLocationIndices = new int[] { 0, 5, 63, 64, 100, 129 };
+		FocalElementTable probabilityAssignments = generateRandomTable(coreLocationIndices, 20, new Random(7));
+		BeliefFunction denseBeliefFunction = BeliefFunction.fromProbabilityAssignments(probabilityAssignments,
+				locationIndex);
+		BeliefFunction sparseBeliefFunction = new SparseBeliefFunction(probabilityAssignments, locationIndex);
+		Assert.assertTrue(denseBeliefFunction instanceof DenseBeliefFunction);
+		Assert.assertEquals(((DenseBeliefFunction) denseBeliefFunction).getNumberOfLocationsInCore(),
+				coreLocationIndices.length);
+
+		for (int subset = 0; subset < 1 << coreLocationIndices.length; subset++) {
+			for (int otherLocationIndex : new int[] { -1, 1, 70 }) {
+				long[] words = getWords(coreLocationIndices, subset);
+				if (otherLocationIndex >= 0) {
+					words[otherLocationIndex >>> 6] |= 1L << otherLocationIndex;
+				}
+				LocationSet locations = new LocationSet(words, locationIndex);
+				Assert.assertEquals(denseBeliefFunction.getMass(locations), sparseBeliefFunction.getMass(locations),
+						1e-12);
+				Assert.assertEquals(denseBeliefFunction.getBelief(locations),
+						sparseBeliefFunction.getBelief(locations), 1e-12);
+				Assert.assertEquals(denseBeliefFunction.getPlausibility(locations),
+						sparseBeliefFunction.getPlausibility(locations), 1e-12);
+				Assert.assertEquals(denseBeliefFunction.getCommonality(locations),
+						sparseBeliefFunction.getCommonality(locations), 1e-12);
+			}
+		}
+		LocationSet theta = LocationSet.allLocations(locationIndex);
+		Assert.assertEquals(denseBeliefFunction.getBelief(theta), 1, 1e-12);
+		Assert.assertEquals(denseBeliefFunction.getPlausibility(theta), 1, 1e-12);
+	}
+
+	/**
+	 * Tests that a belief function with a large core is not kept as dense vectors
+	 */
+	@Test
+	public void testSparseBeliefFunctionForLargeCore() {
+		int[] coreLocationIndices = new int[DenseBeliefFunction.MAXIMUM_NUMBER_OF_LOCATIONS + 1];
+		for (int i = 0; i < coreLocationIndices.length; i++) {
+			coreLocationIndices[i] = i * 7;
+		}
+		FocalElementTable probabilityAssignments = generateRandomTable(coreLocationIndices, 10, new Random(11));
+		probabilityAssignments.addProbabilityValue(getWords(coreLocationIndices, -1), 0, 0);
+		Assert.assertTrue(BeliefFunction.fromProbabilityAssignments(probabilityAssignments,
+				locationIndex) instanceof SparseBeliefFunction);
+	}
+
+	/**
+	 * Tests that Mobius transforms are the inverses of zeta transforms, and the zeta transforms of a small vector
+	 */
+	@Test
+	public void testZetaAndMobiusTransforms() {
+		double[] masses = new double[] { 0, 0.1, 0.2, 0.3, 0.05, 0.05, 0.1, 0.2 };
+		double[] beliefs = masses.clone();
+		DenseBeliefFunction.subsetZetaTransform(beliefs);
+		Assert.assertEquals(beliefs[3], 0.6, 1e-15); // {0}, {1}, {0,1}
+		Assert.assertEquals(beliefs[5], 0.2, 1e-15); // {0}, {2}, {0,2}
+		Assert.assertEquals(beliefs[7], 1, 1e-15);
+		DenseBeliefFunction.subsetMobiusTransform(beliefs);
+		Assert.assertArrayEquals(beliefs, masses, 1e-15);
+
+		double[] commonalities = masses.clone();
+		DenseBeliefFunction.supersetZetaTransform(commonalities);
+		Assert.assertEquals(commonalities[0], 1, 1e-15);
+		Assert.assertEquals(commonalities[1], 0.65, 1e-15); // {0}, {0,1}, {0,2}, {0,1,2}
+		Assert.assertEquals(commonalities[6], 0.3, 1e-15); // {1,2}, {0,1,2}
+		DenseBeliefFunction.supersetMobiusTransform(commonalities);
+		Assert.assertArrayEquals(commonalities, masses, 1e-15);
+	}
+
+	/**
+	 * Generates a table with random focal elements that are subsets of the given locations, and with probability
+	 * values that sum to 1.
+	 */
+	private FocalElementTable generateRandomTable(int[] coreLocationIndices, int numberOfFocalElements,
+			Random random) {
+		FocalElementTable probabilityAssignments = new FocalElementTable(locationIndex.getNumberOfWords());
+		double[] weights = new double[numberOfFocalElements];
+		double totalWeight = 0;
+		for (int i = 0; i < numberOfFocalElements; i++) {
+			weights[i] = random.nextDouble();
+			totalWeight += weights[i];
+		}
+		for (int i = 0; i < numberOfFocalElements; i++) {
+			int subset = 1 + random.nextInt((1 << coreLocationIndices.length) - 1);
+			probabilityAssignments.addProbabilityValue(getWords(coreLocationIndices, subset), 0,
+					weights[i] / totalWeight);
+		}
+		return probabilityAssignments;
+	}
+
+	/**
+	 * Converts a subset mask of the given locations to a bitset of location indices.
+	 */
+	private long[] getWords(int[] coreLocationIndices, int subset) {
+		long[] words = new long[locationIndex.getNumberOfWords()];
+		for (int i = 0; i < coreLocationIndices.length; i++) {
+			if ((subset & (1 << i)) != 0) {
+				words[coreLocationIndices[i] >>> 6] |= 1L << coreLocationIndices[i];
+			}
+		}
+		return words;
+	}
+}
@@ -0,0 +1,76 @@
+package geotweetz.location.type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class to test LocationSet.
+ *
+ * @author oozdikis
+ *
+ */
+public class LocationSetTest {
+	private static final int NUMBER_OF_LOCATIONS_IN_TESTS = 130;
+	private LocationIndex locationIndex = null;
+
+	@Before
+	public void initialize() {
+		List<Long> locationIds = new ArrayList<Long>();
+		for (long i = 1; i <= NUMBER_OF_LOCATIONS_IN_TESTS; i++) {
+			locationIds.add(i * 10);
+		}
+		this.locationIndex = new LocationIndex(locationIds);
+	}
+
+	/**
+	 * Tests conversion between location ids and LocationSet (locations in different words of the bitset)
+	 */
+	@Test
+	public void testLocationIdsRoundTrip() {
+		HashSet<Long> locationIds = new HashSet<Long>(Arrays.asList(10L, 640L, 650L, 1300L));
+		LocationSet locationSet = LocationSet.fromLocationIds(locationIds, locationIndex);
+		Assert.assertEquals(locationSet.size(), 4);
+		Assert.assertEquals(locationSet.toLocationIds(), locationIds);
+		Assert.assertEquals(locationSet, LocationSet.fromLocationIds(new ArrayList<Long>(locationIds), locationIndex));
+		Assert.assertEquals(locationSet.hashCode(),
+				LocationSet.fromLocationIds(new ArrayList<Long>(locationIds), locationIndex).hashCode());
+	}
+
+	/**
+	 * Tests the set of all locations (Theta)
+	 */
+	@Test
+	public void testAllLocations() {
+		LocationSet theta = LocationSet.allLocations(locationIndex);
+		Assert.assertEquals(theta.size(), NUMBER_OF_LOCATIONS_IN_TESTS);
+		Assert.assertEquals(theta.nextLocationIndex(NUMBER_OF_LOCATIONS_IN_TESTS - 1), NUMBER_OF_LOCATIONS_IN_TESTS - 1);
+		Assert.assertEquals(theta.nextLocationIndex(NUMBER_OF_LOCATIONS_IN_TESTS), -1);
+	}
+
+	/**
+	 * Tests word-wise intersection and union of location sets
+	 */
+	@Test
+	public void testIntersectionAndUnion() {
+		LocationSet locationSet1 = LocationSet.fromLocationIds(Arrays.asList(10L, 650L, 1300L), locationIndex);
+		LocationSet locationSet2 = LocationSet.fromLocationIds(Arrays.asList(20L, 650L), locationIndex);
+		LocationSet locationSet3 = LocationSet.fromLocationIds(Arrays.asList(30L), locationIndex);
+		long[] buffer = new long[locationIndex.getNumberOfWords()];
+
+		Assert.assertTrue(LocationSet.intersect(locationSet1.getWords(), locationSet2.getWords(), buffer));
+		Assert.assertEquals(new LocationSet(buffer.clone(), locationIndex).toLocationIds(),
+				new HashSet<Long>(Arrays.asList(650L)));
+
+		Assert.assertFalse(LocationSet.intersect(locationSet1.getWords(), locationSet3.getWords(), buffer));
+		LocationSet.union(locationSet1.getWords(), locationSet3.getWords(), buffer);
+		Assert.assertEquals(new LocationSet(buffer.clone(), locationIndex).toLocationIds(),
+				new HashSet<Long>(Arrays.asList(10L, 30L, 650L, 1300L)));
+	}
+
+}
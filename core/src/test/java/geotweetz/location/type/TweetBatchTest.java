@@ -0,0 +1,90 @@
+package geotweetz.location.type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class to test TweetBatch.
+ *
+ * @author oozdikis
+ *
+ */
+public class TweetBatchTest {
+
+	/**
+	 * Tests that the observations are kept in columns, and that missing texts (null) are kept as empty texts
+	 */
+	@Test
+	public void testFromObservations() {
+		List<TweetObservation> observations = new ArrayList<TweetObservation>();
+		observations.add(new TweetObservation(1, 1.5, 2.5, "lorem city1", null, 1000));
+		observations.add(new TweetObservation(2, TweetObservation.NO_COORDINATE, TweetObservation.NO_COORDINATE, null,
+				"city2", TweetObservation.UNKNOWN_TIME));
+		observations.add(new TweetObservation(3, 0, 0, "", "ipsum", 3000));
+		TweetBatch tweetBatch = TweetBatch.fromObservations(observations);
+
+		Assert.assertEquals(tweetBatch.size(), 3);
+		Assert.assertEquals(tweetBatch.getId(1), 2L);
+		Assert.assertEquals(tweetBatch.getLatitude(0), 1.5, 0);
+		Assert.assertEquals(tweetBatch.getCreatedAtMillis(1), TweetObservation.UNKNOWN_TIME);
+		Assert.assertEquals(tweetBatch.getContent(0), "lorem city1");
+		Assert.assertEquals(tweetBatch.getContent(1), "");
+		Assert.assertEquals(tweetBatch.getUserLocation(0), "");
+		Assert.assertEquals(tweetBatch.getUserLocation(1), "city2");
+		Assert.assertEquals(tweetBatch.getUserLocation(2), "ipsum");
+		Assert.assertEquals(tweetBatch.getContentOffsets()[1], tweetBatch.getContentOffsets()[2]);
+		Assert.assertTrue(tweetBatch.hasCoordinates(0));
+		Assert.assertFalse(tweetBatch.hasCoordinates(1));
+		// only tweet database objects use (0, 0) for tweets that are not geotagged (see TweetObservation.fromTweetDBO)
+		Assert.assertTrue(tweetBatch.hasCoordinates(2));
+		Assert.assertEquals(tweetBatch.getNumberOfGeotaggedTweets(), 2);
+	}
+
+	/**
+	 * Tests that a batch can not be created from columns with different numbers of tweets
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedColumnLengths() {
+		new TweetBatch(new long[] { 1, 2 }, new double[2], new double[1], new long[2], new char[0], new int[3],
+				new char[0], new int[3]);
+	}
+
+	/**
+	 * Tests that a batch can not be created with a wrong number of text offsets
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedNumberOfOffsets() {
+		new TweetBatch(new long[] { 1, 2 }, new double[2], new double[2], new long[2], new char[0], new int[2],
+				new char[0], new int[3]);
+	}
+
+	/**
+	 * Tests that a batch can not be created with decreasing text offsets
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecreasingOffsets() {
+		new TweetBatch(new long[] { 1, 2 }, new double[2], new double[2], new long[2], "abcd".toCharArray(),
+				new int[] { 0, 3, 2 }, new char[0], new int[3]);
+	}
+
+	/**
+	 * Tests that a batch can not be created with text offsets beyond the characters
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testOffsetsOutOfRange() {
+		new TweetBatch(new long[] { 1, 2 }, new double[2], new double[2], new long[2], new char[0], new int[3],
+				"abcd".toCharArray(), new int[] { 0, 2, 5 });
+	}
+
+	/**
+	 * Tests that a batch can not be created with a negative text offset
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeOffset() {
+		new TweetBatch(new long[] { 1, 2 }, new double[2], new double[2], new long[2], "abcd".toCharArray(),
+				new int[] { -1, 2, 4 }, new char[0], new int[3]);
+	}
+}
@@ -1,11 +1,14 @@
 package geotweetz.location.dbo;
 
 import java.io.Serializable;
+import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 
 import org.hibernate.annotations.Index;
 
@@ -17,7 +20,7 @@ import org.hibernate.annotations.Index;
  */
 /*
  * This data model for tweets contains only the necessary attributes for location estimation. Other tweet attributes
- * (e.g., posting time, user id, retweet info) are not included in this sample code.
+ * (e.g., user id, retweet info) are not included in this sample code.
  * 
  */
 @Entity
@@ -40,14 +43,14 @@ public class TweetDBO implements Serializable {
 	private String content;
 
 	/**
-	 * latitude of tweet
+	 * latitude of tweet (0 if the tweet is not geotagged, see hasCoordinates)
 	 */
 	@Column(name = "latitude")
 	@Index(name = "latitude")
 	double latitude;
 
 	/**
-	 * longitude of tweet
+	 * longitude of tweet (0 if the tweet is not geotagged, see hasCoordinates)
 	 */
 	@Column(name = "longitude")
 	@Index(name = "longitude")
@@ -59,6 +62,13 @@ public class TweetDBO implements Serializable {
 	@Column(name = "userlocation")
 	private String userLocation;
 
+	/**
+	 * posting time of tweet
+	 */
+	@Column(name = "createdat")
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date createdAt;
+
 	/**
 	 * 
 	 * @return tweet id
@@ -127,6 +137,30 @@ public class TweetDBO implements Serializable {
 		this.longitude = longitude;
 	}
 
+	/**
+	 * Checks if the tweet is geotagged. Latitude and longitude are primitive values, so a tweet that is not geotagged
+	 * is stored with the position (0, 0), which is also the default position of a new tweet. The position (0, 0) is in
+	 * the ocean, so it is treated as no coordinates. A NaN latitude or longitude is also treated as no coordinates.
+	 * 
+	 * @return true if the tweet has a latitude and longitude
+	 */
+	public boolean hasCoordinates() {
+		return hasCoordinates(latitude, longitude);
+	}
+
+	/**
+	 * Checks if a position that is stored for a tweet is the position of a geotagged tweet (see hasCoordinates()).
+	 * 
+	 * @param latitude
+	 *            latitude
+	 * @param longitude
+	 *            longitude
+	 * @return true if the position is neither (0, 0) nor NaN
+	 */
+	public static boolean hasCoordinates(double latitude, double longitude) {
+		return !(latitude == 0 && longitude == 0) && !Double.isNaN(latitude) && !Double.isNaN(longitude);
+	}
+
 	/**
 	 * 
 	 * @return location attribute in the user profile
@@ -144,6 +178,23 @@ public class TweetDBO implements Serializable {
 		this.userLocation = userLocation;
 	}
 
+	/**
+	 * 
+	 * @return posting time of tweet
+	 */
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * 
+	 * @param createdAt
+	 *            posting time to set
+	 */
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
 	public String toString() {
 		return "(tweet: " + id + ", " + content + ")";
 	}